@@ -0,0 +1,107 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares paged {@link LongArray}s to plain java arrays for sequential writes, reads and growth.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class BigArraysBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    private long[] array;
+    private LongArray bigArray;
+
+    @Setup
+    public void setUp() {
+        array = new long[size];
+        bigArray = BigArrays.NON_RECYCLING_INSTANCE.newLongArray(size);
+        for (int i = 0; i < size; i++) {
+            array[i] = i;
+            bigArray.set(i, i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bigArray.close();
+    }
+
+    @Benchmark
+    public long readArray() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readBigArray() {
+        long sum = 0;
+        for (long i = 0; i < size; i++) {
+            sum += bigArray.get(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long[] writeArray() {
+        for (int i = 0; i < size; i++) {
+            array[i] = i;
+        }
+        return array;
+    }
+
+    @Benchmark
+    public LongArray writeBigArray() {
+        for (long i = 0; i < size; i++) {
+            bigArray.set(i, i);
+        }
+        return bigArray;
+    }
+
+    @Benchmark
+    public long growBigArray() {
+        LongArray array = BigArrays.NON_RECYCLING_INSTANCE.newLongArray(1);
+        try {
+            for (long i = 0; i < size; i++) {
+                array = BigArrays.NON_RECYCLING_INSTANCE.grow(array, i + 1);
+                array.set(i, i);
+            }
+            return array.size();
+        } finally {
+            array.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds and looks up terms in a {@link BytesRefHash}, the hash table behind the string terms aggregations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class BytesRefHashBenchmark {
+
+    @Param({"1000", "100000"})
+    public int numTerms;
+
+    @Param({"8", "32"})
+    public int termLength;
+
+    private BytesRef[] terms;
+    private BytesRefHash hash;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        terms = new BytesRef[numTerms];
+        for (int i = 0; i < terms.length; i++) {
+            byte[] bytes = new byte[termLength];
+            random.nextBytes(bytes);
+            terms[i] = new BytesRef(bytes);
+        }
+        hash = new BytesRefHash(numTerms, BigArrays.NON_RECYCLING_INSTANCE);
+        for (BytesRef term : terms) {
+            hash.add(term);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        hash.close();
+    }
+
+    @Benchmark
+    public long add() {
+        try (BytesRefHash hash = new BytesRefHash(1, BigArrays.NON_RECYCLING_INSTANCE)) {
+            for (BytesRef term : terms) {
+                hash.add(term);
+            }
+            return hash.size();
+        }
+    }
+
+    @Benchmark
+    public long find() {
+        long sum = 0;
+        for (BytesRef term : terms) {
+            sum += hash.find(term);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects pre-computed hashes into {@link HyperLogLogPlusPlus} counters, below and above the linear counting threshold.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class HyperLogLogPlusPlusBenchmark {
+
+    @Param({"1000", "100000"})
+    public int numValues;
+
+    @Param({"14"})
+    public int precision;
+
+    @Param({"1", "100"})
+    public int numBuckets;
+
+    private long[] hashes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+        byte[] bytes = new byte[8];
+        hashes = new long[numValues];
+        for (int i = 0; i < hashes.length; i++) {
+            random.nextBytes(bytes);
+            hashes[i] = MurmurHash3.hash128(bytes, 0, bytes.length, 0, hash).h1;
+        }
+    }
+
+    @Benchmark
+    public long collect() {
+        try (HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, BigArrays.NON_RECYCLING_INSTANCE, numBuckets)) {
+            for (int i = 0; i < hashes.length; i++) {
+                counts.collect(i % numBuckets, hashes[i]);
+            }
+            return counts.cardinality(0);
+        }
+    }
+}
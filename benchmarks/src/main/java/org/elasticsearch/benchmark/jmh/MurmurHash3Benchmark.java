@@ -0,0 +1,55 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes byte arrays of various lengths with {@link MurmurHash3#hash128}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class MurmurHash3Benchmark {
+
+    @Param({"8", "32", "256"})
+    public int length;
+
+    private byte[] bytes;
+    private final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[length];
+        new Random(0).nextBytes(bytes);
+    }
+
+    @Benchmark
+    public long hash128() {
+        return MurmurHash3.hash128(bytes, 0, bytes.length, 0, hash).h1;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and reads variable length ints and longs with {@link BytesStreamOutput} and {@link BytesStreamInput}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamVIntBenchmark {
+
+    @Param({"10000"})
+    public int numValues;
+
+    /** The maximum number of bits of the encoded values, the larger, the more bytes per value. */
+    @Param({"7", "21", "31"})
+    public int bits;
+
+    private int[] ints;
+    private long[] longs;
+    private BytesStreamOutput out;
+    private BytesReference encodedInts;
+    private BytesReference encodedLongs;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(0);
+        ints = new int[numValues];
+        longs = new long[numValues];
+        for (int i = 0; i < numValues; i++) {
+            ints[i] = random.nextInt() >>> (32 - bits);
+            longs[i] = ints[i] * 31l;
+        }
+        out = new BytesStreamOutput();
+        for (int value : ints) {
+            out.writeVInt(value);
+        }
+        encodedInts = out.bytes().copyBytesArray();
+        out.reset();
+        for (long value : longs) {
+            out.writeVLong(value);
+        }
+        encodedLongs = out.bytes().copyBytesArray();
+    }
+
+    @Benchmark
+    public int writeVInt() throws IOException {
+        out.reset();
+        for (int value : ints) {
+            out.writeVInt(value);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeVLong() throws IOException {
+        out.reset();
+        for (long value : longs) {
+            out.writeVLong(value);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public int readVInt() throws IOException {
+        BytesStreamInput in = new BytesStreamInput(encodedInts);
+        int sum = 0;
+        for (int i = 0; i < numValues; i++) {
+            sum += in.readVInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readVLong() throws IOException {
+        BytesStreamInput in = new BytesStreamInput(encodedLongs);
+        long sum = 0;
+        for (int i = 0; i < numValues; i++) {
+            sum += in.readVLong();
+        }
+        return sum;
+    }
+}
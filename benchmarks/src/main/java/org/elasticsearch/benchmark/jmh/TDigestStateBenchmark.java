@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds values to a {@link TDigestState}, as the percentiles aggregations do, and computes quantiles out of it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class TDigestStateBenchmark {
+
+    @Param({"10000"})
+    public int numValues;
+
+    @Param({"100", "1000"})
+    public double compression;
+
+    private double[] values;
+    private TDigestState state;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        values = new double[numValues];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+        }
+        state = new TDigestState(compression);
+        for (double value : values) {
+            state.add(value);
+        }
+    }
+
+    @Benchmark
+    public TDigestState add() {
+        TDigestState state = new TDigestState(compression);
+        for (double value : values) {
+            state.add(value);
+        }
+        return state;
+    }
+
+    @Benchmark
+    public double quantiles() {
+        double sum = 0;
+        for (double q = 0.01; q < 1; q += 0.01) {
+            sum += state.quantile(q);
+        }
+        return sum;
+    }
+}
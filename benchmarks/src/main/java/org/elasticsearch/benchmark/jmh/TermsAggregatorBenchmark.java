@@ -0,0 +1,120 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_REPLICAS;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_SHARDS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.node.NodeBuilder.nodeBuilder;
+
+/**
+ * Runs terms aggregations with each execution mode against a single shard of a local node, on a string field
+ * and on a long field.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TermsAggregatorBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"100000"})
+    public int numDocs;
+
+    @Param({"100", "10000"})
+    public int numTerms;
+
+    @Param({"map", "global_ordinals", "global_ordinals_hash"})
+    public String executionHint;
+
+    private Node node;
+    private Client client;
+
+    @Setup
+    public void setUp() throws IOException {
+        node = nodeBuilder().local(true).settings(settingsBuilder()
+                .put("cluster.name", TermsAggregatorBenchmark.class.getSimpleName())
+                .put("path.data", "target/data")
+                .put("http.enabled", false)).node();
+        client = node.client();
+        client.admin().indices().prepareCreate("test")
+                .setSettings(settingsBuilder()
+                        .put(SETTING_NUMBER_OF_SHARDS, 1)
+                        .put(SETTING_NUMBER_OF_REPLICAS, 0)
+                        .put("index.refresh_interval", -1))
+                .addMapping("type", "s_value", "type=string,index=not_analyzed", "l_value", "type=long")
+                .get();
+        client.admin().cluster().prepareHealth("test").setWaitForGreenStatus().get();
+
+        Random random = new Random(0);
+        for (int i = 0; i < numDocs; i += BATCH) {
+            BulkRequestBuilder bulk = client.prepareBulk();
+            for (int j = i; j < Math.min(numDocs, i + BATCH); j++) {
+                int term = random.nextInt(numTerms);
+                bulk.add(client.prepareIndex("test", "type", Integer.toString(j)).setSource(jsonBuilder().startObject()
+                        .field("s_value", "term_" + term)
+                        .field("l_value", term)
+                        .endObject()));
+            }
+            if (bulk.get().hasFailures()) {
+                throw new IllegalStateException("failed to index benchmark documents");
+            }
+        }
+        client.admin().indices().prepareOptimize("test").setMaxNumSegments(1).get();
+        client.admin().indices().prepareRefresh("test").get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.admin().indices().prepareDelete("test").get();
+        node.close();
+    }
+
+    @Benchmark
+    public SearchResponse stringTerms() {
+        return client.prepareSearch("test").setSearchType(SearchType.COUNT)
+                .addAggregation(AggregationBuilders.terms("terms").field("s_value").executionHint(executionHint))
+                .get();
+    }
+
+    @Benchmark
+    public SearchResponse longTerms() {
+        // the execution hint only applies to string fields
+        return client.prepareSearch("test").setSearchType(SearchType.COUNT)
+                .addAggregation(AggregationBuilders.terms("terms").field("l_value"))
+                .get();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.jmh;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a typical small log document with an {@link XContentBuilder}, for each of the binary and text formats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class XContentBuilderBenchmark {
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public XContentType type;
+
+    @Benchmark
+    public BytesReference build() throws IOException {
+        XContentBuilder builder = XContentFactory.contentBuilder(type);
+        builder.startObject()
+                .field("@timestamp", 1408000000000l)
+                .field("host", "web-042.example.com")
+                .field("method", "GET")
+                .field("path", "/products/12345/reviews")
+                .field("status", 200)
+                .field("bytes", 5173)
+                .field("took", 12.5d)
+                .startArray("tags").value("production").value("frontend").endArray()
+                .startObject("geo").field("lat", 48.8567).field("lon", 2.3508).endObject()
+                .endObject();
+        return builder.bytes();
+    }
+}
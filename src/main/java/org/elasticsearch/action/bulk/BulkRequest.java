@@ -250,6 +250,17 @@ public class BulkRequest extends ActionRequest<BulkRequest> implements Composite
     }
 
     public BulkRequest add(BytesReference data, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType, @Nullable String defaultRouting, @Nullable Object payload, boolean allowExplicitIndex) throws Exception {
+        addCompleteActions(data, contentUnsafe, defaultIndex, defaultType, defaultRouting, payload, allowExplicitIndex);
+        return this;
+    }
+
+    /**
+     * Adds all the complete actions found in the framed data, and returns the number of bytes they span. A trailing
+     * action that is not terminated yet (or an index, create or update action without its source line) is left
+     * unconsumed, so the data can be fed chunk by chunk with the returned offset marking where the next chunk should
+     * be appended.
+     */
+    public int addCompleteActions(BytesReference data, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType, @Nullable String defaultRouting, @Nullable Object payload, boolean allowExplicitIndex) throws Exception {
         XContent xContent = XContentFactory.xContent(data);
         int from = 0;
         int length = data.length();
@@ -259,6 +270,7 @@ public class BulkRequest extends ActionRequest<BulkRequest> implements Composite
             if (nextMarker == -1) {
                 break;
             }
+            final int actionFrom = from;
             // now parse the action
 
             try (XContentParser parser = xContent.createParser(data.slice(from, nextMarker - from))) {
@@ -334,6 +346,8 @@ public class BulkRequest extends ActionRequest<BulkRequest> implements Composite
                 } else {
                     nextMarker = findNextMarker(marker, from, data, length);
                     if (nextMarker == -1) {
+                        // the source is not there yet, leave the action line unconsumed
+                        from = actionFrom;
                         break;
                     }
                     // order is important, we set parent after routing, so routing will be set to parent if not set explicitly
@@ -383,7 +397,7 @@ public class BulkRequest extends ActionRequest<BulkRequest> implements Composite
                 }
             }
         }
-        return this;
+        return from;
     }
 
     /**
@@ -0,0 +1,668 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.WriteConsistencyLevel;
+import org.elasticsearch.action.support.replication.ReplicationType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Processes bulk data that arrives as a stream of chunks (for example the chunks of a chunked HTTP request), without
+ * requiring the whole body to be buffered. Complete actions are parsed and dispatched as a bulk request as soon as
+ * the buffered data reaches the batch size, while trailing partial actions are kept until the next chunk arrives.
+ * <p/>
+ * Chunks are only queued by {@link #add(BytesReference)}, which can be called from a network thread: they are parsed
+ * on the <tt>bulk</tt> thread pool, one at a time and in order.
+ * <p/>
+ * The number of bulk requests in flight and the amount of queued data are bounded: once the limit of in flight
+ * requests is reached, or a batch worth of data is queued, {@link Listener#pause()} is called and the producer is
+ * expected to stop feeding chunks until {@link Listener#resume()} is called. Items (or whole bulk requests) rejected
+ * because the <tt>bulk</tt> thread pool is saturated are retried with a linear backoff while the stream stays paused,
+ * rather than failing right away.
+ * <p/>
+ * {@link #add(BytesReference)} and {@link #close()} are expected to be called by a single producer.
+ */
+public class StreamingBulkProcessor {
+
+    /**
+     * A listener notified of flow control changes and of the completion of the stream.
+     */
+    public static interface Listener {
+
+        /**
+         * Called when the maximum number of bulk requests in flight has been reached or when too much data is waiting to
+         * be parsed, no more chunks should be added.
+         */
+        void pause();
+
+        /**
+         * Called when chunks can be added again after the processor was paused.
+         */
+        void resume();
+
+        /**
+         * Called once the stream has been closed and all its bulk requests have completed.
+         */
+        void onCompletion(Summary summary);
+    }
+
+    /**
+     * A builder used to create a streaming bulk processor.
+     */
+    public static class Builder {
+
+        private final Client client;
+        private final Listener listener;
+
+        private String defaultIndex;
+        private String defaultType;
+        private String defaultRouting;
+        private boolean allowExplicitIndex = true;
+        private ReplicationType replicationType;
+        private WriteConsistencyLevel consistencyLevel;
+        private TimeValue timeout = BulkShardRequest.DEFAULT_TIMEOUT;
+        private boolean refresh = false;
+        private ByteSizeValue batchSize = new ByteSizeValue(5, ByteSizeUnit.MB);
+        private int maxInFlight = 1;
+        private int maxRetries = 3;
+        private TimeValue retryBackoff = TimeValue.timeValueMillis(50);
+        private int maxReportedFailures = 100;
+
+        public Builder(Client client, Listener listener) {
+            this.client = client;
+            this.listener = listener;
+        }
+
+        public Builder setDefaultIndex(@Nullable String defaultIndex) {
+            this.defaultIndex = defaultIndex;
+            return this;
+        }
+
+        public Builder setDefaultType(@Nullable String defaultType) {
+            this.defaultType = defaultType;
+            return this;
+        }
+
+        public Builder setDefaultRouting(@Nullable String defaultRouting) {
+            this.defaultRouting = defaultRouting;
+            return this;
+        }
+
+        public Builder setAllowExplicitIndex(boolean allowExplicitIndex) {
+            this.allowExplicitIndex = allowExplicitIndex;
+            return this;
+        }
+
+        public Builder setReplicationType(@Nullable ReplicationType replicationType) {
+            this.replicationType = replicationType;
+            return this;
+        }
+
+        public Builder setConsistencyLevel(@Nullable WriteConsistencyLevel consistencyLevel) {
+            this.consistencyLevel = consistencyLevel;
+            return this;
+        }
+
+        public Builder setTimeout(TimeValue timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder setRefresh(boolean refresh) {
+            this.refresh = refresh;
+            return this;
+        }
+
+        /**
+         * Sets the amount of buffered data that triggers parsing and dispatching a bulk request. Defaults to <tt>5mb</tt>.
+         */
+        public Builder setBatchSize(ByteSizeValue batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of bulk requests allowed to be in flight before the processor asks to be paused.
+         * Defaults to <tt>1</tt>.
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets how many times rejected items are retried before being reported as failed. Defaults to <tt>3</tt>.
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the base delay before retrying rejected items, multiplied by the retry attempt. Defaults to <tt>50ms</tt>.
+         */
+        public Builder setRetryBackoff(TimeValue retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of item failures kept for the {@link Summary}. Defaults to <tt>100</tt>.
+         */
+        public Builder setMaxReportedFailures(int maxReportedFailures) {
+            this.maxReportedFailures = maxReportedFailures;
+            return this;
+        }
+
+        public StreamingBulkProcessor build() {
+            if (maxInFlight < 1) {
+                throw new ElasticsearchIllegalArgumentException("max in flight bulk requests must be at least 1, got [" + maxInFlight + "]");
+            }
+            return new StreamingBulkProcessor(this);
+        }
+    }
+
+    public static Builder builder(Client client, Listener listener) {
+        return new Builder(client, listener);
+    }
+
+    private final Client client;
+    private final ThreadPool threadPool;
+    private final Listener listener;
+
+    private final String defaultIndex;
+    private final String defaultType;
+    private final String defaultRouting;
+    private final boolean allowExplicitIndex;
+    private final ReplicationType replicationType;
+    private final WriteConsistencyLevel consistencyLevel;
+    private final TimeValue timeout;
+    private final boolean refresh;
+
+    private final long batchSize;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final TimeValue retryBackoff;
+    private final int maxReportedFailures;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // only accessed by the thread draining the queue
+    private BytesStreamOutput buffer = new BytesStreamOutput();
+
+    // guarded by this
+    private final Deque<BytesReference> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean closeQueued;
+    private boolean draining;
+    private int inFlight;
+    private boolean inFlightPaused;
+    private boolean queuePaused;
+    private boolean paused;
+    private boolean closed;
+    private boolean completed;
+    private long items;
+    private long failedItems;
+    private long retries;
+    private final List<BulkItemResponse.Failure> failures = new ArrayList<>();
+    private Throwable failure;
+
+    StreamingBulkProcessor(Builder builder) {
+        this.client = builder.client;
+        this.threadPool = builder.client.threadPool();
+        this.listener = builder.listener;
+        this.defaultIndex = builder.defaultIndex;
+        this.defaultType = builder.defaultType;
+        this.defaultRouting = builder.defaultRouting;
+        this.allowExplicitIndex = builder.allowExplicitIndex;
+        this.replicationType = builder.replicationType;
+        this.consistencyLevel = builder.consistencyLevel;
+        this.timeout = builder.timeout;
+        this.refresh = builder.refresh;
+        this.batchSize = builder.batchSize.bytes();
+        this.maxInFlight = builder.maxInFlight;
+        this.maxRetries = builder.maxRetries;
+        this.retryBackoff = builder.retryBackoff;
+        this.maxReportedFailures = builder.maxReportedFailures;
+    }
+
+    /**
+     * Queues the next chunk of the stream. Once the processor failed (for example because the data could not be
+     * parsed), the remaining chunks are ignored and the failure is reported on completion.
+     */
+    public void add(BytesReference chunk) {
+        if (chunk.length() == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (closeQueued) {
+                throw new ElasticsearchIllegalStateException("the bulk stream is already closed");
+            }
+            queue.add(chunk);
+            queuedBytes += chunk.length();
+            if (queuedBytes >= batchSize && !queuePaused) {
+                queuePaused = true;
+                updatePaused();
+            }
+        }
+        maybeDrain();
+    }
+
+    /**
+     * Marks the end of the stream, the remaining actions are dispatched once the queued chunks are parsed. The listener
+     * is notified once all the bulk requests are done.
+     */
+    public void close() {
+        synchronized (this) {
+            closeQueued = true;
+        }
+        maybeDrain();
+    }
+
+    private void maybeDrain() {
+        synchronized (this) {
+            if (draining || (queue.isEmpty() && (!closeQueued || closed))) {
+                return;
+            }
+            draining = true;
+        }
+        submitDrain();
+    }
+
+    private void submitDrain() {
+        try {
+            threadPool.executor(ThreadPool.Names.BULK).execute(drainTask);
+        } catch (EsRejectedExecutionException e) {
+            // the stream gets paused as chunks pile up in the queue
+            threadPool.schedule(retryBackoff, ThreadPool.Names.SAME, new Runnable() {
+                @Override
+                public void run() {
+                    submitDrain();
+                }
+            });
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            BytesReference chunk;
+            synchronized (this) {
+                chunk = queue.poll();
+                if (chunk == null && (!closeQueued || closed)) {
+                    draining = false;
+                    return;
+                }
+                if (chunk != null) {
+                    queuedBytes -= chunk.length();
+                    if (queuePaused && queuedBytes < batchSize / 2) {
+                        queuePaused = false;
+                        updatePaused();
+                    }
+                }
+            }
+            if (chunk != null) {
+                parse(chunk);
+            } else {
+                finish();
+            }
+        }
+    }
+
+    private void parse(BytesReference chunk) {
+        if (failed()) {
+            return;
+        }
+        try {
+            chunk.writeTo(buffer);
+        } catch (IOException e) {
+            onFailure(e);
+            return;
+        }
+        // only try and parse once a full line might have been added, so a single large source spanning many chunks
+        // is not re-parsed on each one of them
+        if (buffer.size() >= batchSize && indexOf(chunk, (byte) '\n', 0) != -1) {
+            flush(false);
+        }
+    }
+
+    private void finish() {
+        if (!failed()) {
+            flush(true);
+        }
+        synchronized (this) {
+            closed = true;
+            updatePaused();
+        }
+        maybeComplete();
+    }
+
+    /**
+     * Notifies the listener when the stream needs to be paused or resumed, must be called while holding the lock.
+     */
+    private void updatePaused() {
+        boolean shouldPause = (inFlightPaused || queuePaused) && !closed;
+        if (shouldPause != paused) {
+            paused = shouldPause;
+            if (paused) {
+                listener.pause();
+            } else {
+                listener.resume();
+            }
+        }
+    }
+
+    private void flush(boolean last) {
+        BytesReference data = buffer.bytes();
+        buffer = new BytesStreamOutput();
+        if (isBlank(data, 0)) {
+            return;
+        }
+        if (last && data.get(data.length() - 1) != '\n') {
+            // be lenient with a missing line feed at the end of the stream
+            byte[] terminated = new byte[data.length() + 1];
+            System.arraycopy(data.toBytes(), 0, terminated, 0, data.length());
+            terminated[data.length()] = '\n';
+            data = new BytesArray(terminated);
+        }
+        BulkRequest bulkRequest = newBulkRequest();
+        int consumed;
+        try {
+            consumed = bulkRequest.addCompleteActions(data, false, defaultIndex, defaultType, defaultRouting, null, allowExplicitIndex);
+            if (consumed < data.length()) {
+                if (last && !isBlank(data, consumed)) {
+                    throw new ElasticsearchIllegalArgumentException("incomplete bulk action at the end of the stream");
+                }
+                data.slice(consumed, data.length() - consumed).writeTo(buffer);
+            }
+        } catch (Throwable t) {
+            onFailure(t);
+            return;
+        }
+        if (bulkRequest.numberOfActions() > 0) {
+            synchronized (this) {
+                inFlight++;
+                if (inFlight >= maxInFlight && !inFlightPaused) {
+                    inFlightPaused = true;
+                    updatePaused();
+                }
+            }
+            execute(bulkRequest, 0);
+        }
+    }
+
+    private BulkRequest newBulkRequest() {
+        BulkRequest bulkRequest = new BulkRequest();
+        bulkRequest.listenerThreaded(false);
+        if (replicationType != null) {
+            bulkRequest.replicationType(replicationType);
+        }
+        if (consistencyLevel != null) {
+            bulkRequest.consistencyLevel(consistencyLevel);
+        }
+        bulkRequest.timeout(timeout);
+        bulkRequest.refresh(refresh);
+        return bulkRequest;
+    }
+
+    private void execute(final BulkRequest bulkRequest, final int attempt) {
+        client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                BulkRequest retryRequest = null;
+                synchronized (StreamingBulkProcessor.this) {
+                    for (BulkItemResponse item : response) {
+                        if (item.isFailed()) {
+                            if (attempt < maxRetries && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+                                if (retryRequest == null) {
+                                    retryRequest = newBulkRequest();
+                                }
+                                retryRequest.add(bulkRequest.requests().get(item.getItemId()));
+                                continue;
+                            }
+                            failedItems++;
+                            if (failures.size() < maxReportedFailures) {
+                                failures.add(item.getFailure());
+                            }
+                        }
+                        items++;
+                    }
+                }
+                if (retryRequest != null) {
+                    retry(retryRequest, attempt);
+                } else {
+                    onBulkDone();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (attempt < maxRetries && ExceptionsHelper.status(e) == RestStatus.TOO_MANY_REQUESTS) {
+                    retry(bulkRequest, attempt);
+                    return;
+                }
+                synchronized (StreamingBulkProcessor.this) {
+                    items += bulkRequest.numberOfActions();
+                    failedItems += bulkRequest.numberOfActions();
+                }
+                StreamingBulkProcessor.this.onFailure(e);
+                onBulkDone();
+            }
+        });
+    }
+
+    private void retry(final BulkRequest bulkRequest, final int attempt) {
+        synchronized (this) {
+            retries += bulkRequest.numberOfActions();
+        }
+        TimeValue delay = TimeValue.timeValueMillis(retryBackoff.millis() * (attempt + 1));
+        threadPool.schedule(delay, ThreadPool.Names.SAME, new Runnable() {
+            @Override
+            public void run() {
+                execute(bulkRequest, attempt + 1);
+            }
+        });
+    }
+
+    private void onBulkDone() {
+        synchronized (this) {
+            inFlight--;
+            if (inFlightPaused && (inFlight < maxInFlight || failure != null)) {
+                inFlightPaused = false;
+                updatePaused();
+            }
+        }
+        maybeComplete();
+    }
+
+    private void onFailure(Throwable t) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = t;
+            }
+        }
+    }
+
+    private synchronized boolean failed() {
+        return failure != null;
+    }
+
+    private void maybeComplete() {
+        synchronized (this) {
+            if (!closed || inFlight > 0 || completed) {
+                return;
+            }
+            completed = true;
+        }
+        listener.onCompletion(new Summary(System.currentTimeMillis() - startTime, items, failedItems, retries, failures, failure));
+    }
+
+    private static boolean isBlank(BytesReference data, int from) {
+        for (int i = from; i < data.length(); i++) {
+            if (!Character.isWhitespace(data.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(BytesReference data, byte marker, int from) {
+        for (int i = from; i < data.length(); i++) {
+            if (data.get(i) == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The outcome of a streamed bulk, only holding the item failures since the number of items is unbounded.
+     */
+    public static class Summary implements ToXContent {
+
+        private final long tookInMillis;
+        private final long items;
+        private final long failedItems;
+        private final long retries;
+        private final List<BulkItemResponse.Failure> failures;
+        private final Throwable failure;
+
+        Summary(long tookInMillis, long items, long failedItems, long retries, List<BulkItemResponse.Failure> failures, @Nullable Throwable failure) {
+            this.tookInMillis = tookInMillis;
+            this.items = items;
+            this.failedItems = failedItems;
+            this.retries = retries;
+            this.failures = failures;
+            this.failure = failure;
+        }
+
+        public long getTookInMillis() {
+            return tookInMillis;
+        }
+
+        /**
+         * The number of items processed, including the failed ones.
+         */
+        public long getItems() {
+            return items;
+        }
+
+        public long getFailedItems() {
+            return failedItems;
+        }
+
+        /**
+         * The number of item executions that were retried after being rejected.
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * The first item failures, up to the configured maximum.
+         */
+        public List<BulkItemResponse.Failure> getFailures() {
+            return failures;
+        }
+
+        /**
+         * A failure that stopped the stream from being processed further, if any.
+         */
+        @Nullable
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public boolean hasFailures() {
+            return failedItems > 0 || failure != null;
+        }
+
+        public RestStatus status() {
+            return failure == null ? RestStatus.OK : ExceptionsHelper.status(failure);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field(Fields.TOOK, tookInMillis);
+            builder.field(Fields.ERRORS, hasFailures());
+            if (failure != null) {
+                builder.field(Fields.ERROR, ExceptionsHelper.detailedMessage(failure));
+            }
+            builder.field(Fields.ITEMS, items);
+            builder.field(Fields.FAILED, failedItems);
+            builder.field(Fields.RETRIES, retries);
+            builder.startArray(Fields.FAILURES);
+            for (BulkItemResponse.Failure itemFailure : failures) {
+                builder.startObject();
+                builder.field(Fields._INDEX, itemFailure.getIndex());
+                builder.field(Fields._TYPE, itemFailure.getType());
+                builder.field(Fields._ID, itemFailure.getId());
+                builder.field(Fields.STATUS, itemFailure.getStatus().getStatus());
+                builder.field(Fields.ERROR, itemFailure.getMessage());
+                builder.endObject();
+            }
+            builder.endArray();
+            return builder;
+        }
+
+        static final class Fields {
+            static final XContentBuilderString TOOK = new XContentBuilderString("took");
+            static final XContentBuilderString ERRORS = new XContentBuilderString("errors");
+            static final XContentBuilderString ERROR = new XContentBuilderString("error");
+            static final XContentBuilderString ITEMS = new XContentBuilderString("items");
+            static final XContentBuilderString FAILED = new XContentBuilderString("failed");
+            static final XContentBuilderString RETRIES = new XContentBuilderString("retries");
+            static final XContentBuilderString FAILURES = new XContentBuilderString("failures");
+            static final XContentBuilderString _INDEX = new XContentBuilderString("_index");
+            static final XContentBuilderString _TYPE = new XContentBuilderString("_type");
+            static final XContentBuilderString _ID = new XContentBuilderString("_id");
+            static final XContentBuilderString STATUS = new XContentBuilderString("status");
+        }
+    }
+}
@@ -95,14 +95,34 @@ public class TransportShardMultiPercolateAction extends TransportShardSingleOper
 
     @Override
     protected Response shardOperation(Request request, ShardId shardId) throws ElasticsearchException {
-        // TODO: Look into combining the shard req's docs into one in memory index.
+        List<PercolateShardRequest> shardRequests = new ArrayList<>(request.items.size());
+        for (Request.Item item : request.items) {
+            shardRequests.add(item.request);
+        }
+        // the documents that can be percolated together are percolated in a single pass
+        PercolateShardResponse[] batchResponses;
+        try {
+            batchResponses = percolatorService.percolate(shardRequests);
+        } catch (Throwable t) {
+            if (TransportActions.isShardNotAvailableException(t)) {
+                throw (ElasticsearchException) t;
+            }
+            logger.debug("{} failed to batch percolate", t, request.shardId());
+            batchResponses = new PercolateShardResponse[shardRequests.size()];
+        }
+
         Response response = new Response();
         response.items = new ArrayList<>(request.items.size());
-        for (Request.Item item : request.items) {
+        for (int i = 0; i < request.items.size(); i++) {
+            Request.Item item = request.items.get(i);
             Response.Item responseItem;
             int slot = item.slot;
             try {
-                responseItem = new Response.Item(slot, percolatorService.percolate(item.request));
+                PercolateShardResponse shardResponse = batchResponses[i];
+                if (shardResponse == null) {
+                    shardResponse = percolatorService.percolate(item.request);
+                }
+                responseItem = new Response.Item(slot, shardResponse);
             } catch (Throwable t) {
                 if (TransportActions.isShardNotAvailableException(t)) {
                     throw (ElasticsearchException) t;
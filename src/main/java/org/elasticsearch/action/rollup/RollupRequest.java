@@ -0,0 +1,324 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.rounding.DateTimeUnit;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.rounding.TimeZoneRounding;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramParser;
+
+import java.io.IOException;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * A request to roll the documents of one or more source indices up into a summary index. Every rollup document
+ * holds the number of source documents and the <code>min</code>, <code>max</code>, <code>sum</code> and
+ * <code>value_count</code> of the metric fields for one <code>interval</code> of the date <code>field</code>.
+ * <p/>
+ * The id of a rollup document is the start of its interval, so rolling up the same range of time again replaces
+ * the previous rollup documents. This allows to periodically roll up the most recent data using {@link #from(Long)}.
+ * Both {@link #from(Long)} and {@link #to(Long)} must be aligned to the interval, otherwise the documents of the
+ * intervals at the edges of the range would be replaced by rollups of only part of their source documents.
+ */
+public class RollupRequest extends ActionRequest<RollupRequest> implements IndicesRequest {
+
+    public static final String DEFAULT_TYPE = "rollup";
+    public static final String DOC_COUNT_FIELD = "doc_count";
+    public static final String MIN_FIELD = "min";
+    public static final String MAX_FIELD = "max";
+    public static final String SUM_FIELD = "sum";
+    public static final String VALUE_COUNT_FIELD = "value_count";
+
+    private String[] indices = Strings.EMPTY_ARRAY;
+    private IndicesOptions indicesOptions = IndicesOptions.strictExpandOpenAndForbidClosed();
+    private String rollupIndex;
+    private String rollupType = DEFAULT_TYPE;
+    private String field;
+    private String interval;
+    private String timeZone;
+    private String[] metrics = Strings.EMPTY_ARRAY;
+    private Long from;
+    private Long to;
+
+    RollupRequest() {
+    }
+
+    /**
+     * Constructs a new rollup request against the provided source indices.
+     */
+    public RollupRequest(String... indices) {
+        this.indices = indices;
+    }
+
+    @Override
+    public String[] indices() {
+        return indices;
+    }
+
+    public RollupRequest indices(String... indices) {
+        this.indices = indices;
+        return this;
+    }
+
+    @Override
+    public IndicesOptions indicesOptions() {
+        return indicesOptions;
+    }
+
+    public RollupRequest indicesOptions(IndicesOptions indicesOptions) {
+        this.indicesOptions = indicesOptions;
+        return this;
+    }
+
+    /**
+     * The index the rollup documents are written to.
+     */
+    public String rollupIndex() {
+        return rollupIndex;
+    }
+
+    public RollupRequest rollupIndex(String rollupIndex) {
+        this.rollupIndex = rollupIndex;
+        return this;
+    }
+
+    /**
+     * The type of the rollup documents, defaults to <tt>rollup</tt>.
+     */
+    public String rollupType() {
+        return rollupType;
+    }
+
+    public RollupRequest rollupType(String rollupType) {
+        this.rollupType = rollupType;
+        return this;
+    }
+
+    /**
+     * The date field to roll documents up on. Rollup documents store the start of their interval under the same name.
+     */
+    public String field() {
+        return field;
+    }
+
+    public RollupRequest field(String field) {
+        this.field = field;
+        return this;
+    }
+
+    /**
+     * The interval of the rollup, using the same syntax as the <tt>date_histogram</tt> aggregation (eg. <tt>1h</tt>
+     * or <tt>day</tt>).
+     */
+    public String interval() {
+        return interval;
+    }
+
+    public RollupRequest interval(String interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * The time zone used to round dates to the interval, defaults to UTC.
+     */
+    @Nullable
+    public String timeZone() {
+        return timeZone;
+    }
+
+    public RollupRequest timeZone(String timeZone) {
+        this.timeZone = timeZone;
+        return this;
+    }
+
+    /**
+     * The numeric fields to compute <code>min</code>, <code>max</code>, <code>sum</code> and <code>value_count</code> for.
+     */
+    public String[] metrics() {
+        return metrics;
+    }
+
+    public RollupRequest metrics(String... metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Only roll up documents whose date is greater than or equal to this value, in milliseconds since the epoch. Must be
+     * the start of an interval.
+     */
+    @Nullable
+    public Long from() {
+        return from;
+    }
+
+    public RollupRequest from(Long from) {
+        this.from = from;
+        return this;
+    }
+
+    /**
+     * Only roll up documents whose date is less than this value, in milliseconds since the epoch. Must be the start of
+     * an interval.
+     */
+    @Nullable
+    public Long to() {
+        return to;
+    }
+
+    public RollupRequest to(Long to) {
+        this.to = to;
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (indices == null || indices.length == 0) {
+            validationException = addValidationError("source index is missing", validationException);
+        }
+        if (rollupIndex == null) {
+            validationException = addValidationError("rollup index is missing", validationException);
+        }
+        if (rollupType == null) {
+            validationException = addValidationError("rollup type is missing", validationException);
+        }
+        if (field == null) {
+            validationException = addValidationError("field is missing", validationException);
+        }
+        if (interval == null) {
+            validationException = addValidationError("interval is missing", validationException);
+        }
+        if (metrics == null) {
+            validationException = addValidationError("metrics must not be null", validationException);
+        }
+        if (from != null && to != null && from > to) {
+            validationException = addValidationError("from [" + from + "] must be less than or equal to to [" + to + "]", validationException);
+        }
+        if (interval != null && (from != null || to != null)) {
+            Rounding rounding = null;
+            try {
+                rounding = rounding();
+            } catch (Exception e) {
+                validationException = addValidationError("failed to parse interval [" + interval + "] and time zone [" + timeZone + "]: "
+                        + e.getMessage(), validationException);
+            }
+            if (rounding != null) {
+                validationException = validateAligned("from", from, rounding, validationException);
+                validationException = validateAligned("to", to, rounding, validationException);
+            }
+        }
+        return validationException;
+    }
+
+    private ActionRequestValidationException validateAligned(String name, Long value, Rounding rounding, ActionRequestValidationException validationException) {
+        // compares keys rather than rounded values, as day and larger intervals in a time zone are keyed by their local start
+        if (value != null && rounding.roundKey(value) == rounding.roundKey(value - 1)) {
+            validationException = addValidationError(name + " [" + value + "] must be the start of an interval [" + interval + "]", validationException);
+        }
+        return validationException;
+    }
+
+    /**
+     * Rounds dates to the start of their interval the same way as the date histogram the documents are rolled up with.
+     */
+    /**
+     * The nominal duration of an interval, calendar intervals such as months can be a bit longer or shorter.
+     */
+    long intervalMillis() {
+        DateTimeUnit dateTimeUnit = DateHistogramParser.DATE_FIELD_UNITS.get(interval);
+        if (dateTimeUnit != null) {
+            return dateTimeUnit.field().getDurationField().getUnitMillis();
+        }
+        return TimeValue.parseTimeValue(interval, null).millis();
+    }
+
+    Rounding rounding() throws IOException {
+        TimeZoneRounding.Builder builder;
+        DateTimeUnit dateTimeUnit = DateHistogramParser.DATE_FIELD_UNITS.get(interval);
+        if (dateTimeUnit != null) {
+            builder = TimeZoneRounding.builder(dateTimeUnit);
+        } else {
+            builder = TimeZoneRounding.builder(TimeValue.parseTimeValue(interval, null));
+        }
+        if (timeZone != null) {
+            builder.preZone(DateMathParser.parseZone(timeZone));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        indices = in.readStringArray();
+        indicesOptions = IndicesOptions.readIndicesOptions(in);
+        rollupIndex = in.readString();
+        rollupType = in.readString();
+        field = in.readString();
+        interval = in.readString();
+        timeZone = in.readOptionalString();
+        metrics = in.readStringArray();
+        if (in.readBoolean()) {
+            from = in.readLong();
+        }
+        if (in.readBoolean()) {
+            to = in.readLong();
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeStringArray(indices);
+        indicesOptions.writeIndicesOptions(out);
+        out.writeString(rollupIndex);
+        out.writeString(rollupType);
+        out.writeString(field);
+        out.writeString(interval);
+        out.writeOptionalString(timeZone);
+        out.writeStringArray(metrics);
+        out.writeBoolean(from != null);
+        if (from != null) {
+            out.writeLong(from);
+        }
+        out.writeBoolean(to != null);
+        if (to != null) {
+            out.writeLong(to);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "rollup " + Strings.arrayToCommaDelimitedString(indices) + " into [" + rollupIndex + "][" + rollupType + "] on ["
+                + field + "] every [" + interval + "], metrics " + Strings.arrayToCommaDelimitedString(metrics);
+    }
+}
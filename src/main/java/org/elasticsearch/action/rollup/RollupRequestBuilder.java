@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Client;
+
+/**
+ * A request builder for {@link RollupRequest}.
+ */
+public class RollupRequestBuilder extends ActionRequestBuilder<RollupRequest, RollupResponse, RollupRequestBuilder, Client> {
+
+    public RollupRequestBuilder(Client client) {
+        super(client, new RollupRequest());
+    }
+
+    public RollupRequestBuilder(Client client, String... indices) {
+        super(client, new RollupRequest(indices));
+    }
+
+    /**
+     * Sets the source indices.
+     */
+    public RollupRequestBuilder setIndices(String... indices) {
+        request.indices(indices);
+        return this;
+    }
+
+    /**
+     * Specifies what type of requested indices to ignore and wildcard indices expressions.
+     */
+    public RollupRequestBuilder setIndicesOptions(IndicesOptions indicesOptions) {
+        request.indicesOptions(indicesOptions);
+        return this;
+    }
+
+    /**
+     * Sets the index the rollup documents are written to.
+     */
+    public RollupRequestBuilder setRollupIndex(String rollupIndex) {
+        request.rollupIndex(rollupIndex);
+        return this;
+    }
+
+    /**
+     * Sets the type of the rollup documents, defaults to <tt>rollup</tt>.
+     */
+    public RollupRequestBuilder setRollupType(String rollupType) {
+        request.rollupType(rollupType);
+        return this;
+    }
+
+    /**
+     * Sets the date field to roll documents up on.
+     */
+    public RollupRequestBuilder setField(String field) {
+        request.field(field);
+        return this;
+    }
+
+    /**
+     * Sets the interval of the rollup, eg. <tt>1h</tt> or <tt>day</tt>.
+     */
+    public RollupRequestBuilder setInterval(String interval) {
+        request.interval(interval);
+        return this;
+    }
+
+    /**
+     * Sets the time zone used to round dates to the interval.
+     */
+    public RollupRequestBuilder setTimeZone(String timeZone) {
+        request.timeZone(timeZone);
+        return this;
+    }
+
+    /**
+     * Sets the numeric fields to compute metrics for.
+     */
+    public RollupRequestBuilder setMetrics(String... metrics) {
+        request.metrics(metrics);
+        return this;
+    }
+
+    /**
+     * Only roll up documents whose date is greater than or equal to <code>from</code>, in milliseconds since the epoch.
+     */
+    public RollupRequestBuilder setFrom(Long from) {
+        request.from(from);
+        return this;
+    }
+
+    /**
+     * Only roll up documents whose date is less than <code>to</code>, in milliseconds since the epoch.
+     */
+    public RollupRequestBuilder setTo(Long to) {
+        request.to(to);
+        return this;
+    }
+
+    @Override
+    protected void doExecute(ActionListener<RollupResponse> listener) {
+        client.rollup(request, listener);
+    }
+}
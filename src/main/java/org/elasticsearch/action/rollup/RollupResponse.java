@@ -0,0 +1,100 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+
+import java.io.IOException;
+
+/**
+ * The response of a rollup, which tells how many source documents were rolled up into how many rollup documents.
+ */
+public class RollupResponse extends ActionResponse implements ToXContent {
+
+    private long sourceDocs;
+    private long rollupDocs;
+    private long tookInMillis;
+
+    RollupResponse() {
+    }
+
+    RollupResponse(long sourceDocs, long rollupDocs, long tookInMillis) {
+        this.sourceDocs = sourceDocs;
+        this.rollupDocs = rollupDocs;
+        this.tookInMillis = tookInMillis;
+    }
+
+    /**
+     * The number of source documents that were rolled up.
+     */
+    public long getSourceDocs() {
+        return sourceDocs;
+    }
+
+    /**
+     * The number of rollup documents that were written, one per interval that had at least one source document.
+     */
+    public long getRollupDocs() {
+        return rollupDocs;
+    }
+
+    /**
+     * How long the rollup took.
+     */
+    public TimeValue getTook() {
+        return new TimeValue(tookInMillis);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        sourceDocs = in.readVLong();
+        rollupDocs = in.readVLong();
+        tookInMillis = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(sourceDocs);
+        out.writeVLong(rollupDocs);
+        out.writeVLong(tookInMillis);
+    }
+
+    static final class Fields {
+        static final XContentBuilderString TOOK = new XContentBuilderString("took");
+        static final XContentBuilderString SOURCE_DOCS = new XContentBuilderString("source_docs");
+        static final XContentBuilderString ROLLUP_DOCS = new XContentBuilderString("rollup_docs");
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field(Fields.TOOK, tookInMillis);
+        builder.field(Fields.SOURCE_DOCS, sourceDocs);
+        builder.field(Fields.ROLLUP_DOCS, rollupDocs);
+        return builder;
+    }
+}
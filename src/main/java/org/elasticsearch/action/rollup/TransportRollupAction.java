@@ -0,0 +1,337 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.TransportBulkAction;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.action.search.TransportSearchAction;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+
+/**
+ * Rolls up source documents by running a <tt>date_histogram</tt> aggregation with <tt>stats</tt> sub aggregations on the
+ * source indices, and indexing one document per bucket into the rollup index.
+ */
+public class TransportRollupAction extends HandledTransportAction<RollupRequest, RollupResponse> {
+
+    public static final String WINDOW_SIZE = "action.rollup.window_size";
+
+    private static final String HISTOGRAM_NAME = "rollup";
+    private static final String MIN_NAME = "min";
+    private static final String MAX_NAME = "max";
+
+    private final TransportSearchAction searchAction;
+    private final TransportBulkAction bulkAction;
+    private final int windowSize;
+
+    @Inject
+    public TransportRollupAction(Settings settings, ThreadPool threadPool, TransportService transportService, ActionFilters actionFilters,
+                                 TransportSearchAction searchAction, TransportBulkAction bulkAction) {
+        super(settings, RollupAction.NAME, threadPool, transportService, actionFilters);
+        this.searchAction = searchAction;
+        this.bulkAction = bulkAction;
+        this.windowSize = settings.getAsInt(WINDOW_SIZE, 1000);
+        if (windowSize < 1) {
+            throw new ElasticsearchIllegalArgumentException("[" + WINDOW_SIZE + "] must be at least 1, got [" + windowSize + "]");
+        }
+    }
+
+    @Override
+    public RollupRequest newRequestInstance() {
+        return new RollupRequest();
+    }
+
+    @Override
+    protected void doExecute(final RollupRequest request, final ActionListener<RollupResponse> listener) {
+        final Rounding rounding;
+        try {
+            rounding = request.rounding();
+        } catch (Throwable t) {
+            listener.onFailure(t);
+            return;
+        }
+        new AsyncRollup(request, rounding, listener).start();
+    }
+
+    /**
+     * Rolls up the requested range one window of at most <tt>action.rollup.window_size</tt> intervals at a time: the buckets
+     * of a window are indexed before the next window is searched, so that neither the search response nor the bulk request
+     * grows with the size of the range.
+     */
+    private class AsyncRollup {
+
+        private final RollupRequest request;
+        private final Rounding rounding;
+        private final long intervalMillis;
+        private final ActionListener<RollupResponse> listener;
+        private final long startTime = System.currentTimeMillis();
+
+        private long to;
+        private long sourceDocs;
+        private long rollupDocs;
+
+        AsyncRollup(RollupRequest request, Rounding rounding, ActionListener<RollupResponse> listener) {
+            this.request = request;
+            this.rounding = rounding;
+            this.intervalMillis = request.intervalMillis();
+            this.listener = listener;
+        }
+
+        void start() {
+            if (request.from() != null && request.to() != null) {
+                to = request.to();
+                rollupWindow(request.from());
+                return;
+            }
+            // the range is open, use the oldest and newest source documents to bound it
+            SearchRequest searchRequest = newSearchRequest(new SearchSourceBuilder()
+                    .query(buildQuery(request.field(), request.from(), request.to()))
+                    .aggregation(AggregationBuilders.min(MIN_NAME).field(request.field()))
+                    .aggregation(AggregationBuilders.max(MAX_NAME).field(request.field())));
+            searchAction.execute(searchRequest, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse searchResponse) {
+                    if (failedOnShards(searchResponse)) {
+                        return;
+                    }
+                    if (searchResponse.getHits().getTotalHits() == 0) {
+                        finish();
+                        return;
+                    }
+                    final Min min = searchResponse.getAggregations().get(MIN_NAME);
+                    final Max max = searchResponse.getAggregations().get(MAX_NAME);
+                    to = request.to() != null ? request.to() : (long) max.getValue() + 1;
+                    rollupWindow(request.from() != null ? request.from() : (long) min.getValue());
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+
+        private void rollupWindow(final long windowFrom) {
+            if (windowFrom >= to) {
+                finish();
+                return;
+            }
+            final long windowTo = windowEnd(windowFrom);
+            SearchRequest searchRequest = newSearchRequest(buildSource(request, windowFrom, windowTo));
+            searchAction.execute(searchRequest, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse searchResponse) {
+                    if (failedOnShards(searchResponse)) {
+                        return;
+                    }
+                    sourceDocs += searchResponse.getHits().getTotalHits();
+                    final DateHistogram histogram = searchResponse.getAggregations().get(HISTOGRAM_NAME);
+                    final BulkRequest bulkRequest;
+                    try {
+                        bulkRequest = buildBulkRequest(request, histogram);
+                    } catch (Throwable t) {
+                        listener.onFailure(t);
+                        return;
+                    }
+                    if (bulkRequest.numberOfActions() == 0) {
+                        rollupWindow(windowTo);
+                        return;
+                    }
+                    bulkRequest.listenerThreaded(false);
+                    bulkAction.execute(bulkRequest, new ActionListener<BulkResponse>() {
+                        @Override
+                        public void onResponse(BulkResponse bulkResponse) {
+                            if (bulkResponse.hasFailures()) {
+                                listener.onFailure(new ElasticsearchException("failed to index rollup documents: " + bulkResponse.buildFailureMessage()));
+                            } else {
+                                rollupDocs += bulkResponse.getItems().length;
+                                rollupWindow(windowTo);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable e) {
+                            listener.onFailure(e);
+                        }
+                    });
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+
+        private void finish() {
+            listener.onResponse(new RollupResponse(sourceDocs, rollupDocs, System.currentTimeMillis() - startTime));
+        }
+
+        /**
+         * Fails the request if some shards could not be searched: the buckets of a partial response would replace rollup
+         * documents that were computed from all shards.
+         */
+        private boolean failedOnShards(SearchResponse searchResponse) {
+            if (searchResponse.getFailedShards() == 0) {
+                return false;
+            }
+            StringBuilder reasons = new StringBuilder();
+            for (ShardSearchFailure failure : searchResponse.getShardFailures()) {
+                reasons.append("\n[").append(failure.index()).append("][").append(failure.shardId()).append("]: ").append(failure.reason());
+            }
+            listener.onFailure(new ElasticsearchException("failed to search [" + searchResponse.getFailedShards() + "] out of ["
+                    + searchResponse.getTotalShards() + "] shards, no rollup documents were written for this window:" + reasons));
+            return true;
+        }
+
+        /**
+         * Returns the end of the window that starts at <code>windowFrom</code>, which is the start of an interval so that no
+         * interval is split across two windows.
+         */
+        private long windowEnd(long windowFrom) {
+            long step = intervalMillis * windowSize;
+            while (true) {
+                if (step >= to - windowFrom) {
+                    return to;
+                }
+                final long end = intervalStart(windowFrom + step);
+                if (end > windowFrom) {
+                    return end;
+                }
+                // calendar intervals can be longer than their nominal duration
+                step += intervalMillis;
+            }
+        }
+
+        /**
+         * Returns the first millisecond of the interval that contains <code>value</code>. Keys of day and longer intervals in
+         * a time zone are local times, so the start is searched for among the instants that round to the same key.
+         */
+        private long intervalStart(long value) {
+            final long key = rounding.roundKey(value);
+            long lo = value - intervalMillis;
+            while (rounding.roundKey(lo) == key) {
+                lo -= intervalMillis;
+            }
+            long hi = value;
+            while (hi - lo > 1) {
+                final long mid = lo + ((hi - lo) >>> 1);
+                if (rounding.roundKey(mid) == key) {
+                    hi = mid;
+                } else {
+                    lo = mid;
+                }
+            }
+            return hi;
+        }
+
+        private SearchRequest newSearchRequest(SearchSourceBuilder source) {
+            SearchRequest searchRequest = new SearchRequest(request)
+                    .indices(request.indices())
+                    .indicesOptions(request.indicesOptions())
+                    .searchType(SearchType.COUNT)
+                    .source(source);
+            searchRequest.listenerThreaded(false);
+            return searchRequest;
+        }
+    }
+
+    private static QueryBuilder buildQuery(String field, @Nullable Long from, @Nullable Long to) {
+        if (from == null && to == null) {
+            return QueryBuilders.matchAllQuery();
+        }
+        RangeQueryBuilder range = QueryBuilders.rangeQuery(field);
+        if (from != null) {
+            range.gte(from);
+        }
+        if (to != null) {
+            range.lt(to);
+        }
+        return QueryBuilders.constantScoreQuery(range);
+    }
+
+    private static SearchSourceBuilder buildSource(RollupRequest request, long from, long to) {
+        DateHistogramBuilder histogram = AggregationBuilders.dateHistogram(HISTOGRAM_NAME)
+                .field(request.field())
+                .interval(new DateHistogram.Interval(request.interval()))
+                .minDocCount(1);
+        if (request.timeZone() != null) {
+            histogram.preZone(request.timeZone());
+        }
+        for (String metric : request.metrics()) {
+            histogram.subAggregation(AggregationBuilders.stats(metric).field(metric));
+        }
+        return new SearchSourceBuilder().query(buildQuery(request.field(), from, to)).aggregation(histogram);
+    }
+
+    private static BulkRequest buildBulkRequest(RollupRequest request, DateHistogram histogram) throws IOException {
+        BulkRequest bulkRequest = new BulkRequest();
+        for (DateHistogram.Bucket bucket : histogram.getBuckets()) {
+            XContentBuilder source = XContentFactory.jsonBuilder().startObject();
+            source.field(request.field(), bucket.getKeyAsDate());
+            source.field(RollupRequest.DOC_COUNT_FIELD, bucket.getDocCount());
+            for (String metric : request.metrics()) {
+                final Stats stats = bucket.getAggregations().get(metric);
+                source.startObject(metric);
+                source.field(RollupRequest.VALUE_COUNT_FIELD, stats.getCount());
+                if (stats.getCount() > 0) {
+                    source.field(RollupRequest.MIN_FIELD, stats.getMin());
+                    source.field(RollupRequest.MAX_FIELD, stats.getMax());
+                    source.field(RollupRequest.SUM_FIELD, stats.getSum());
+                }
+                source.endObject();
+            }
+            source.endObject();
+            // the start of the interval is the id, so that rolling up the same data again overwrites previous rollups
+            final String id = Long.toString(bucket.getKeyAsNumber().longValue());
+            bulkRequest.add(new IndexRequest(request.rollupIndex(), request.rollupType(), id).source(source));
+        }
+        return bulkRequest;
+    }
+}
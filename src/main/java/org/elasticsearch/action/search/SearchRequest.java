@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 
+import static org.elasticsearch.action.ValidateActions.addValidationError;
 import static org.elasticsearch.search.Scroll.readScroll;
 
 /**
@@ -61,6 +62,8 @@ import static org.elasticsearch.search.Scroll.readScroll;
  */
 public class SearchRequest extends ActionRequest<SearchRequest> implements IndicesRequest {
 
+    public static final int DEFAULT_BATCHED_REDUCE_SIZE = 512;
+
     private SearchType searchType = SearchType.DEFAULT;
 
     private String[] indices;
@@ -83,6 +86,8 @@ public class SearchRequest extends ActionRequest<SearchRequest> implements Indic
     private boolean extraSourceUnsafe;
     private Boolean queryCache;
 
+    private int batchedReduceSize = DEFAULT_BATCHED_REDUCE_SIZE;
+
     private Scroll scroll;
 
     private String[] types = Strings.EMPTY_ARRAY;
@@ -114,6 +119,7 @@ public class SearchRequest extends ActionRequest<SearchRequest> implements Indic
         this.extraSource = searchRequest.extraSource;
         this.extraSourceUnsafe = searchRequest.extraSourceUnsafe;
         this.queryCache = searchRequest.queryCache;
+        this.batchedReduceSize = searchRequest.batchedReduceSize;
         this.scroll = searchRequest.scroll;
         this.types = searchRequest.types;
         this.indicesOptions = searchRequest.indicesOptions;
@@ -150,6 +156,9 @@ public class SearchRequest extends ActionRequest<SearchRequest> implements Indic
 //        if (source == null && extraSource == null) {
 //            validationException = addValidationError("search source is missing", validationException);
 //        }
+        if (batchedReduceSize < 2) {
+            validationException = addValidationError("batched_reduce_size must be >= 2", validationException);
+        }
         return validationException;
     }
 
@@ -541,6 +550,20 @@ public class SearchRequest extends ActionRequest<SearchRequest> implements Indic
         return this.queryCache;
     }
 
+    /**
+     * Sets the number of shard results that should be reduced at once on the coordinating node. Shard results
+     * are reduced incrementally as they arrive once there are more shards than this value, which bounds the
+     * memory needed to hold the aggregations of the shard results. Defaults to <tt>512</tt>.
+     */
+    public SearchRequest batchedReduceSize(int batchedReduceSize) {
+        this.batchedReduceSize = batchedReduceSize;
+        return this;
+    }
+
+    public int batchedReduceSize() {
+        return this.batchedReduceSize;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -585,6 +608,10 @@ public class SearchRequest extends ActionRequest<SearchRequest> implements Indic
         if (in.getVersion().onOrAfter(Version.V_1_4_0)) {
             queryCache = in.readOptionalBoolean();
         }
+
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            batchedReduceSize = in.readVInt();
+        }
     }
 
     @Override
@@ -630,5 +657,9 @@ public class SearchRequest extends ActionRequest<SearchRequest> implements Indic
         if (out.getVersion().onOrAfter(Version.V_1_4_0)) {
             out.writeOptionalBoolean(queryCache);
         }
+
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVInt(batchedReduceSize);
+        }
     }
 }
@@ -96,6 +96,7 @@ public class TransportSearchDfsQueryAndFetchAction extends TransportSearchTypeAc
                 public void onResult(QueryFetchSearchResult result) {
                     result.shardTarget(dfsResult.shardTarget());
                     queryFetchResults.set(shardIndex, result);
+                    consumeAggregations(result.queryResult());
                     if (counter.decrementAndGet() == 0) {
                         finishHim();
                     }
@@ -136,7 +137,7 @@ public class TransportSearchDfsQueryAndFetchAction extends TransportSearchTypeAc
         void innerFinishHim() throws Exception {
             boolean useScroll = !useSlowScroll && request.scroll() != null;
             sortedShardList = searchPhaseController.sortDocs(useScroll, queryFetchResults);
-            final InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, queryFetchResults, queryFetchResults);
+            final InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, queryFetchResults, queryFetchResults, aggregationsReducer);
             String scrollId = null;
             if (request.scroll() != null) {
                 scrollId = TransportSearchHelper.buildScrollId(request.searchType(), firstResults, null);
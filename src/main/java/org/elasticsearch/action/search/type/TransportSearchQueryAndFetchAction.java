@@ -88,7 +88,7 @@ public class TransportSearchQueryAndFetchAction extends TransportSearchTypeActio
         private void innerFinishHim() throws IOException {
             boolean useScroll = !useSlowScroll && request.scroll() != null;
             sortedShardList = searchPhaseController.sortDocs(useScroll, firstResults);
-            final InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, firstResults, firstResults);
+            final InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, firstResults, firstResults, aggregationsReducer);
             String scrollId = null;
             if (request.scroll() != null) {
                 scrollId = buildScrollId(request.searchType(), firstResults, null);
@@ -43,6 +43,7 @@ import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.action.SearchServiceListener;
 import org.elasticsearch.search.action.SearchServiceTransportAction;
+import org.elasticsearch.search.controller.BatchedAggregationsReducer;
 import org.elasticsearch.search.controller.SearchPhaseController;
 import org.elasticsearch.search.fetch.FetchSearchRequest;
 import org.elasticsearch.search.internal.InternalSearchResponse;
@@ -95,6 +96,8 @@ public abstract class TransportSearchTypeAction extends TransportAction<SearchRe
         private final AtomicInteger totalOps = new AtomicInteger();
 
         protected final AtomicArray<FirstResult> firstResults;
+        @Nullable
+        protected final BatchedAggregationsReducer aggregationsReducer;
         private volatile AtomicArray<ShardSearchFailure> shardFailures;
         private final Object shardFailuresMutex = new Object();
         protected volatile ScoreDoc[] sortedShardList;
@@ -125,6 +128,7 @@ public abstract class TransportSearchTypeAction extends TransportAction<SearchRe
             expectedTotalOps = shardsIts.totalSizeWith1ForEmpty();
 
             firstResults = new AtomicArray<>(shardsIts.size());
+            aggregationsReducer = searchPhaseController.newAggregationsReducer(request, expectedSuccessfulOps);
             // Not so nice, but we need to know if there're nodes below the supported version
             // and if so fall back to classic scroll (based on from). We need to check every node
             // because we don't to what nodes we end up sending the request (shard may fail or relocate)
@@ -365,10 +369,23 @@ public abstract class TransportSearchTypeAction extends TransportAction<SearchRe
             }
         }
 
+        /**
+         * Hands the aggregations of a shard result over to the aggregations reducer, if the shard results are reduced
+         * incrementally.
+         */
+        protected final void consumeAggregations(QuerySearchResult queryResult) {
+            if (aggregationsReducer != null) {
+                aggregationsReducer.consume(queryResult);
+            }
+        }
+
         protected abstract void sendExecuteFirstPhase(DiscoveryNode node, ShardSearchRequest request, SearchServiceListener<FirstResult> listener);
 
         protected final void processFirstPhaseResult(int shardIndex, ShardRouting shard, FirstResult result) {
             firstResults.set(shardIndex, result);
+            if (result instanceof QuerySearchResultProvider) {
+                consumeAggregations(((QuerySearchResultProvider) result).queryResult());
+            }
 
             if (logger.isTraceEnabled()) {
                 logger.trace("got first-phase result from {}", result != null ? result.shardTarget() : null);
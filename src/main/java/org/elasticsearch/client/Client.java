@@ -54,6 +54,9 @@ import org.elasticsearch.action.indexedscripts.put.PutIndexedScriptRequestBuilde
 import org.elasticsearch.action.indexedscripts.put.PutIndexedScriptResponse;
 import org.elasticsearch.action.mlt.MoreLikeThisRequest;
 import org.elasticsearch.action.mlt.MoreLikeThisRequestBuilder;
+import org.elasticsearch.action.rollup.RollupRequest;
+import org.elasticsearch.action.rollup.RollupRequestBuilder;
+import org.elasticsearch.action.rollup.RollupResponse;
 import org.elasticsearch.action.percolate.*;
 import org.elasticsearch.action.search.*;
 import org.elasticsearch.action.suggest.SuggestRequest;
@@ -533,6 +536,29 @@ public interface Client extends ElasticsearchClient<Client>, Releasable {
      */
     MoreLikeThisRequestBuilder prepareMoreLikeThis(String index, String type, String id);
 
+    /**
+     * Rolls the documents of the source indices up into a summary index.
+     *
+     * @param request The rollup request
+     * @return The response future
+     */
+    ActionFuture<RollupResponse> rollup(RollupRequest request);
+
+    /**
+     * Rolls the documents of the source indices up into a summary index.
+     *
+     * @param request  The rollup request
+     * @param listener A listener to be notified of the result
+     */
+    void rollup(RollupRequest request, ActionListener<RollupResponse> listener);
+
+    /**
+     * Rolls the documents of the source indices up into a summary index.
+     *
+     * @param indices The source indices
+     */
+    RollupRequestBuilder prepareRollup(String... indices);
+
 
     /**
      * An action that returns the term vectors for a specific document.
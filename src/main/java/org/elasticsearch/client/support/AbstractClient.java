@@ -66,6 +66,10 @@ import org.elasticsearch.action.indexedscripts.put.PutIndexedScriptResponse;
 import org.elasticsearch.action.mlt.MoreLikeThisAction;
 import org.elasticsearch.action.mlt.MoreLikeThisRequest;
 import org.elasticsearch.action.mlt.MoreLikeThisRequestBuilder;
+import org.elasticsearch.action.rollup.RollupAction;
+import org.elasticsearch.action.rollup.RollupRequest;
+import org.elasticsearch.action.rollup.RollupRequestBuilder;
+import org.elasticsearch.action.rollup.RollupResponse;
 import org.elasticsearch.action.percolate.*;
 import org.elasticsearch.action.search.*;
 import org.elasticsearch.action.suggest.SuggestAction;
@@ -431,6 +435,21 @@ public abstract class AbstractClient implements Client {
         return new MoreLikeThisRequestBuilder(this, index, type, id);
     }
 
+    @Override
+    public ActionFuture<RollupResponse> rollup(final RollupRequest request) {
+        return execute(RollupAction.INSTANCE, request);
+    }
+
+    @Override
+    public void rollup(final RollupRequest request, final ActionListener<RollupResponse> listener) {
+        execute(RollupAction.INSTANCE, request, listener);
+    }
+
+    @Override
+    public RollupRequestBuilder prepareRollup(String... indices) {
+        return new RollupRequestBuilder(this, indices);
+    }
+
     @Override
     public ActionFuture<TermVectorResponse> termVector(final TermVectorRequest request) {
         return execute(TermVectorAction.INSTANCE, request);
@@ -43,6 +43,8 @@ import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.mlt.MoreLikeThisRequest;
+import org.elasticsearch.action.rollup.RollupRequest;
+import org.elasticsearch.action.rollup.RollupResponse;
 import org.elasticsearch.action.percolate.PercolateRequest;
 import org.elasticsearch.action.percolate.PercolateResponse;
 import org.elasticsearch.action.search.*;
@@ -456,6 +458,16 @@ public class TransportClient extends AbstractClient {
         internalClient.moreLikeThis(request, listener);
     }
 
+    @Override
+    public ActionFuture<RollupResponse> rollup(RollupRequest request) {
+        return internalClient.rollup(request);
+    }
+
+    @Override
+    public void rollup(RollupRequest request, ActionListener<RollupResponse> listener) {
+        internalClient.rollup(request, listener);
+    }
+
     @Override
     public ActionFuture<TermVectorResponse> termVector(TermVectorRequest request) {
         return internalClient.termVector(request);
@@ -115,8 +115,12 @@ public class ClusterState implements ToXContent {
     }
 
 
+    public static final String UNKNOWN_UUID = "_na_";
+
     private final long version;
 
+    private final String uuid;
+
     private final RoutingTable routingTable;
 
     private final DiscoveryNodes nodes;
@@ -137,11 +141,16 @@ public class ClusterState implements ToXContent {
     private volatile ClusterStateStatus status;
 
     public ClusterState(long version, ClusterState state) {
-        this(state.clusterName, version, state.metaData(), state.routingTable(), state.nodes(), state.blocks(), state.customs());
+        this(state.clusterName, version, Strings.randomBase64UUID(), state.metaData(), state.routingTable(), state.nodes(), state.blocks(), state.customs());
     }
 
     public ClusterState(ClusterName clusterName, long version, MetaData metaData, RoutingTable routingTable, DiscoveryNodes nodes, ClusterBlocks blocks, ImmutableOpenMap<String, Custom> customs) {
+        this(clusterName, version, Strings.randomBase64UUID(), metaData, routingTable, nodes, blocks, customs);
+    }
+
+    public ClusterState(ClusterName clusterName, long version, String uuid, MetaData metaData, RoutingTable routingTable, DiscoveryNodes nodes, ClusterBlocks blocks, ImmutableOpenMap<String, Custom> customs) {
         this.version = version;
+        this.uuid = uuid;
         this.clusterName = clusterName;
         this.metaData = metaData;
         this.routingTable = routingTable;
@@ -168,6 +177,18 @@ public class ClusterState implements ToXContent {
         return version();
     }
 
+    /**
+     * A unique id of this exact cluster state instance, regenerated every time the version changes. Used
+     * together with the version to make sure a diff is only ever applied on top of the state it was computed from.
+     */
+    public String uuid() {
+        return this.uuid;
+    }
+
+    public String getUuid() {
+        return uuid();
+    }
+
     public DiscoveryNodes nodes() {
         return this.nodes;
     }
@@ -470,6 +491,7 @@ public class ClusterState implements ToXContent {
 
         private final ClusterName clusterName;
         private long version = 0;
+        private String uuid = UNKNOWN_UUID;
         private MetaData metaData = MetaData.EMPTY_META_DATA;
         private RoutingTable routingTable = RoutingTable.EMPTY_ROUTING_TABLE;
         private DiscoveryNodes nodes = DiscoveryNodes.EMPTY_NODES;
@@ -480,6 +502,7 @@ public class ClusterState implements ToXContent {
         public Builder(ClusterState state) {
             this.clusterName = state.clusterName;
             this.version = state.version();
+            this.uuid = state.uuid();
             this.nodes = state.nodes();
             this.routingTable = state.routingTable();
             this.metaData = state.metaData();
@@ -534,6 +557,10 @@ public class ClusterState implements ToXContent {
         }
 
         public Builder version(long version) {
+            if (version != this.version) {
+                // a new version is a new state, make sure it gets a fresh uuid
+                this.uuid = UNKNOWN_UUID;
+            }
             this.version = version;
             return this;
         }
@@ -553,7 +580,10 @@ public class ClusterState implements ToXContent {
         }
 
         public ClusterState build() {
-            return new ClusterState(clusterName, version, metaData, routingTable, nodes, blocks, customs.build());
+            if (UNKNOWN_UUID.equals(uuid)) {
+                uuid = Strings.randomBase64UUID();
+            }
+            return new ClusterState(clusterName, version, uuid, metaData, routingTable, nodes, blocks, customs.build());
         }
 
         public static byte[] toBytes(ClusterState state) throws IOException {
@@ -574,6 +604,9 @@ public class ClusterState implements ToXContent {
                 }
             }
             out.writeLong(state.version());
+            if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+                out.writeString(state.uuid());
+            }
             MetaData.Builder.writeTo(state.metaData(), out);
             RoutingTable.Builder.writeTo(state.routingTable(), out);
             DiscoveryNodes.Builder.writeTo(state.nodes(), out);
@@ -599,6 +632,9 @@ public class ClusterState implements ToXContent {
             }
             Builder builder = new Builder(clusterName);
             builder.version = in.readLong();
+            if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+                builder.uuid = in.readString();
+            }
             builder.metaData = MetaData.Builder.readFrom(in);
             builder.routingTable = RoutingTable.Builder.readFrom(in);
             builder.nodes = DiscoveryNodes.Builder.readFrom(in, localNode);
@@ -615,5 +651,84 @@ public class ClusterState implements ToXContent {
             }
             return builder.build();
         }
+
+        /**
+         * Writes the changes needed to go from the <tt>previous</tt> cluster state to the <tt>current</tt> one. The
+         * diff is keyed by the version and uuid of the previous state, see {@link #readDiffFrom(StreamInput, ClusterState, DiscoveryNode)}.
+         * Parts of the cluster state that did not change are only marked as such and not serialized again.
+         */
+        public static void writeDiffTo(ClusterState previous, ClusterState current, StreamOutput out) throws IOException {
+            out.writeLong(previous.version());
+            out.writeString(previous.uuid());
+            out.writeBoolean(current.clusterName != null);
+            if (current.clusterName != null) {
+                current.clusterName.writeTo(out);
+            }
+            out.writeLong(current.version());
+            out.writeString(current.uuid());
+            MetaData.Builder.writeDiffTo(previous.metaData(), current.metaData(), out);
+            RoutingTable.Builder.writeDiffTo(previous.routingTable(), current.routingTable(), out);
+            if (previous.nodes() == current.nodes()) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                DiscoveryNodes.Builder.writeTo(current.nodes(), out);
+            }
+            if (previous.blocks() == current.blocks()) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                ClusterBlocks.Builder.writeClusterBlocks(current.blocks(), out);
+            }
+            out.writeVInt(current.customs().size());
+            for (ObjectObjectCursor<String, Custom> cursor : current.customs()) {
+                out.writeString(cursor.key);
+                lookupFactorySafe(cursor.key).writeTo(cursor.value, out);
+            }
+        }
+
+        /**
+         * Reads a diff written by {@link #writeDiffTo(ClusterState, ClusterState, StreamOutput)} and applies it on top
+         * of the <tt>previous</tt> cluster state.
+         *
+         * @throws IncompatibleClusterStateVersionException if the diff was not computed from the <tt>previous</tt> state,
+         *                                                  in which case the full cluster state needs to be sent instead
+         */
+        public static ClusterState readDiffFrom(StreamInput in, @Nullable ClusterState previous, @Nullable DiscoveryNode localNode) throws IOException {
+            long fromVersion = in.readLong();
+            String fromUuid = in.readString();
+            if (previous == null) {
+                throw new IncompatibleClusterStateVersionException("no cluster state to apply diff from version [" + fromVersion + "] uuid [" + fromUuid + "] on");
+            }
+            if (previous.version() != fromVersion || !previous.uuid().equals(fromUuid)) {
+                throw new IncompatibleClusterStateVersionException(previous.version(), previous.uuid(), fromVersion, fromUuid);
+            }
+            ClusterName clusterName = null;
+            if (in.readBoolean()) {
+                clusterName = ClusterName.readClusterName(in);
+            }
+            Builder builder = new Builder(clusterName);
+            builder.version = in.readLong();
+            builder.uuid = in.readString();
+            builder.metaData = MetaData.Builder.readDiffFrom(previous.metaData(), in);
+            builder.routingTable = RoutingTable.Builder.readDiffFrom(previous.routingTable(), in);
+            if (in.readBoolean()) {
+                builder.nodes = DiscoveryNodes.Builder.readFrom(in, localNode);
+            } else {
+                builder.nodes = previous.nodes();
+            }
+            if (in.readBoolean()) {
+                builder.blocks = ClusterBlocks.Builder.readClusterBlocks(in);
+            } else {
+                builder.blocks = previous.blocks();
+            }
+            int customSize = in.readVInt();
+            for (int i = 0; i < customSize; i++) {
+                String type = in.readString();
+                Custom customIndexMetaData = lookupFactorySafe(type).readFrom(in);
+                builder.putCustom(type, customIndexMetaData);
+            }
+            return builder.build();
+        }
     }
 }
@@ -1409,5 +1409,96 @@ public class MetaData implements Iterable<IndexMetaData> {
                 lookupFactorySafe(cursor.key).writeTo(cursor.value, out);
             }
         }
+
+        /**
+         * Writes the changes between two versions of the meta data. Indices and templates that did not change
+         * (same instance) are skipped, removed ones are written by name only.
+         */
+        public static void writeDiffTo(MetaData previous, MetaData current, StreamOutput out) throws IOException {
+            out.writeLong(current.version);
+            out.writeString(current.uuid);
+            writeSettingsToStream(current.transientSettings(), out);
+            writeSettingsToStream(current.persistentSettings(), out);
+
+            List<String> removedIndices = newArrayList();
+            for (ObjectCursor<String> cursor : previous.indices.keys()) {
+                if (!current.indices.containsKey(cursor.value)) {
+                    removedIndices.add(cursor.value);
+                }
+            }
+            out.writeStringArray(removedIndices.toArray(new String[removedIndices.size()]));
+            List<IndexMetaData> changedIndices = newArrayList();
+            for (IndexMetaData indexMetaData : current) {
+                if (previous.indices.get(indexMetaData.index()) != indexMetaData) {
+                    changedIndices.add(indexMetaData);
+                }
+            }
+            out.writeVInt(changedIndices.size());
+            for (IndexMetaData indexMetaData : changedIndices) {
+                IndexMetaData.Builder.writeTo(indexMetaData, out);
+            }
+
+            List<String> removedTemplates = newArrayList();
+            for (ObjectCursor<String> cursor : previous.templates.keys()) {
+                if (!current.templates.containsKey(cursor.value)) {
+                    removedTemplates.add(cursor.value);
+                }
+            }
+            out.writeStringArray(removedTemplates.toArray(new String[removedTemplates.size()]));
+            List<IndexTemplateMetaData> changedTemplates = newArrayList();
+            for (ObjectObjectCursor<String, IndexTemplateMetaData> cursor : current.templates) {
+                if (previous.templates.get(cursor.key) != cursor.value) {
+                    changedTemplates.add(cursor.value);
+                }
+            }
+            out.writeVInt(changedTemplates.size());
+            for (IndexTemplateMetaData template : changedTemplates) {
+                IndexTemplateMetaData.Builder.writeTo(template, out);
+            }
+
+            out.writeVInt(current.customs().size());
+            for (ObjectObjectCursor<String, Custom> cursor : current.customs()) {
+                out.writeString(cursor.key);
+                lookupFactorySafe(cursor.key).writeTo(cursor.value, out);
+            }
+        }
+
+        /**
+         * Reads a diff written by {@link #writeDiffTo(MetaData, MetaData, StreamOutput)} and applies it on top of
+         * the <tt>previous</tt> meta data, reusing the instances of all indices and templates that did not change.
+         */
+        public static MetaData readDiffFrom(MetaData previous, StreamInput in) throws IOException {
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            builder.uuid = in.readString();
+            builder.transientSettings(readSettingsFromStream(in));
+            builder.persistentSettings(readSettingsFromStream(in));
+
+            builder.indices.putAll(previous.indices);
+            for (String index : in.readStringArray()) {
+                builder.indices.remove(index);
+            }
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.put(IndexMetaData.Builder.readFrom(in), false);
+            }
+
+            builder.templates.putAll(previous.templates);
+            for (String template : in.readStringArray()) {
+                builder.templates.remove(template);
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.put(IndexTemplateMetaData.Builder.readFrom(in));
+            }
+
+            int customSize = in.readVInt();
+            for (int i = 0; i < customSize; i++) {
+                String type = in.readString();
+                Custom customIndexMetaData = lookupFactorySafe(type).readFrom(in);
+                builder.putCustom(type, customIndexMetaData);
+            }
+            return builder.build();
+        }
     }
 }
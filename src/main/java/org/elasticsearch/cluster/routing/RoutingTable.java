@@ -473,6 +473,80 @@ public class RoutingTable implements Iterable<IndexRoutingTable> {
                 IndexRoutingTable.Builder.writeTo(index, out);
             }
         }
+
+        /**
+         * Writes the changes between two versions of the routing table. Only the routing of indices that were
+         * added or had at least one shard routing change is written, removed indices are written by name.
+         */
+        public static void writeDiffTo(RoutingTable previous, RoutingTable current, StreamOutput out) throws IOException {
+            out.writeLong(current.version);
+            List<String> removedIndices = newArrayList();
+            for (String index : previous.indicesRouting.keySet()) {
+                if (!current.indicesRouting.containsKey(index)) {
+                    removedIndices.add(index);
+                }
+            }
+            out.writeStringArray(removedIndices.toArray(new String[removedIndices.size()]));
+            List<IndexRoutingTable> changedIndices = newArrayList();
+            for (IndexRoutingTable index : current.indicesRouting.values()) {
+                if (!sameRouting(previous.indicesRouting.get(index.index()), index)) {
+                    changedIndices.add(index);
+                }
+            }
+            out.writeVInt(changedIndices.size());
+            for (IndexRoutingTable index : changedIndices) {
+                IndexRoutingTable.Builder.writeTo(index, out);
+            }
+        }
+
+        /**
+         * Reads a diff written by {@link #writeDiffTo(RoutingTable, RoutingTable, StreamOutput)} and applies it on top
+         * of the <tt>previous</tt> routing table.
+         */
+        public static RoutingTable readDiffFrom(RoutingTable previous, StreamInput in) throws IOException {
+            Builder builder = new Builder(previous);
+            builder.version = in.readLong();
+            for (String index : in.readStringArray()) {
+                builder.remove(index);
+            }
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.add(IndexRoutingTable.Builder.readFrom(in));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Routing tables are rebuilt on every reroute, so we can't rely on instance equality. Shard routing equality
+         * does not take the version into account, so we check it explicitly.
+         */
+        private static boolean sameRouting(IndexRoutingTable previous, IndexRoutingTable current) {
+            if (previous == current) {
+                return true;
+            }
+            if (previous == null || previous.shards().size() != current.shards().size()) {
+                return false;
+            }
+            for (IndexShardRoutingTable currentShard : current) {
+                IndexShardRoutingTable previousShard = previous.shards().get(currentShard.shardId().id());
+                if (previousShard == null || previousShard.primaryAllocatedPostApi() != currentShard.primaryAllocatedPostApi()) {
+                    return false;
+                }
+                List<ShardRouting> previousRoutings = previousShard.shards();
+                List<ShardRouting> currentRoutings = currentShard.shards();
+                if (previousRoutings.size() != currentRoutings.size()) {
+                    return false;
+                }
+                for (int i = 0; i < currentRoutings.size(); i++) {
+                    ShardRouting previousRouting = previousRoutings.get(i);
+                    ShardRouting currentRouting = currentRoutings.get(i);
+                    if (previousRouting.version() != currentRouting.version() || !previousRouting.equals(currentRouting)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
     }
 
     public String prettyPrint() {
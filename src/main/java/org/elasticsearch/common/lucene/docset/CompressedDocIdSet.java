@@ -0,0 +1,501 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.lucene.docset;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A compressed {@link DocIdSet} which content is stored off heap, in a direct {@link ByteBuffer}.
+ * <p/>
+ * Similar to roaring bitmaps, the doc id space is split into blocks of 2^16 documents, and each non empty block is
+ * encoded using the smallest of:
+ * <ul>
+ * <li>a sorted array of the (16 bits) documents in the block, for sparse blocks</li>
+ * <li>a sorted array of the documents <b>missing</b> from the block, for dense blocks (a full block takes no space)</li>
+ * <li>a bitmap of the block</li>
+ * </ul>
+ * Only the small per block index lives on heap. Direct buffers are normally only reclaimed by the garbage collector,
+ * which may never happen in time when explicit GCs are disabled, so the off heap memory is reference counted and
+ * freed explicitly once the last reference is released, see {@link #tryIncRef()} and {@link #decRef()}. A set that is
+ * never released is still reclaimed when it is garbage collected.
+ */
+public class CompressedDocIdSet extends DocIdSet {
+
+    static final int BLOCK_SHIFT = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    static final byte ARRAY = 0;
+    static final byte INVERTED = 1;
+    static final byte BITMAP = 2;
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(CompressedDocIdSet.class);
+    // direct byte buffers are small objects on heap, but they come with a cleaner and a deallocator
+    private static final long BUFFER_RAM_BYTES_USED = 3 * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 8 * RamUsageEstimator.NUM_BYTES_LONG;
+
+    private final int maxDoc;
+    private final int cardinality;
+    // for each non empty block, in doc id order
+    private final int[] blocks;
+    private final byte[] types;
+    private final int[] offsets;
+    private final int[] lengths;
+    // the index in the above arrays of each block, or -1 if empty, used for random access
+    private final int[] slots;
+    private final ByteBuffer data;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private CompressedDocIdSet(int maxDoc, int cardinality, int[] blocks, byte[] types, int[] offsets, int[] lengths, ByteBuffer data) {
+        this.maxDoc = maxDoc;
+        this.cardinality = cardinality;
+        this.blocks = blocks;
+        this.types = types;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.data = data;
+        this.slots = new int[(maxDoc + BLOCK_MASK) >>> BLOCK_SHIFT];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < blocks.length; i++) {
+            slots[blocks[i]] = i;
+        }
+    }
+
+    /**
+     * Builds a compressed set out of the documents returned by the iterator, which must not be positioned yet.
+     */
+    public static CompressedDocIdSet build(DocIdSetIterator iterator, int maxDoc) throws IOException {
+        Builder builder = new Builder(maxDoc);
+        for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            builder.add(doc);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The number of documents in the set.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * The number of bytes used off heap.
+     */
+    public long offHeapBytesUsed() {
+        return data.capacity();
+    }
+
+    /**
+     * Tries to acquire a reference on the off heap memory of the set, returning <tt>false</tt> if it was already freed.
+     * Each successful call must be followed by a call to {@link #decRef()} once the set is not used anymore.
+     */
+    public boolean tryIncRef() {
+        while (true) {
+            int count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference on the set, the off heap memory is freed when the last one is released. Sets are built
+     * with a single reference, owned by whoever built them.
+     */
+    public void decRef() {
+        int count = refCount.decrementAndGet();
+        assert count >= 0 : "released more references than acquired";
+        if (count == 0) {
+            free(data);
+        }
+    }
+
+    /**
+     * The number of references held on the set, <tt>0</tt> once its off heap memory is freed.
+     */
+    public int refCount() {
+        return refCount.get();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + BUFFER_RAM_BYTES_USED
+                + RamUsageEstimator.sizeOf(blocks) + RamUsageEstimator.sizeOf(types) + RamUsageEstimator.sizeOf(offsets)
+                + RamUsageEstimator.sizeOf(lengths) + RamUsageEstimator.sizeOf(slots);
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    public DocIdSetIterator iterator() throws IOException {
+        return new Iterator();
+    }
+
+    @Override
+    public Bits bits() throws IOException {
+        return new Bits() {
+            @Override
+            public boolean get(int index) {
+                int slot = slots[index >>> BLOCK_SHIFT];
+                if (slot == -1) {
+                    return false;
+                }
+                int target = index & BLOCK_MASK;
+                switch (types[slot]) {
+                    case ARRAY:
+                        return indexOf(offsets[slot], lengths[slot], target) >= 0;
+                    case INVERTED:
+                        return indexOf(offsets[slot], lengths[slot], target) < 0;
+                    default:
+                        return (data.getLong(offsets[slot] + ((target >>> 6) << 3)) & (1L << target)) != 0;
+                }
+            }
+
+            @Override
+            public int length() {
+                return maxDoc;
+            }
+        };
+    }
+
+    private static final Method CLEANER_METHOD;
+    private static final Method CLEAN_METHOD;
+
+    static {
+        Method cleanerMethod = null;
+        Method cleanMethod = null;
+        try {
+            // same as the unmapping of MMapDirectory, this relies on the internals of the jdk's direct buffers
+            cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        } catch (Throwable t) {
+            cleanerMethod = null;
+            cleanMethod = null;
+        }
+        CLEANER_METHOD = cleanerMethod;
+        CLEAN_METHOD = cleanMethod;
+    }
+
+    /**
+     * Frees the memory of a direct buffer right away, the buffer must not be used anymore. If the jdk doesn't allow
+     * it, the memory is reclaimed when the buffer is garbage collected.
+     */
+    static void free(ByteBuffer buffer) {
+        if (CLEANER_METHOD == null || !CLEANER_METHOD.getDeclaringClass().isInstance(buffer)) {
+            return;
+        }
+        try {
+            Object cleaner = CLEANER_METHOD.invoke(buffer);
+            if (cleaner != null) {
+                CLEAN_METHOD.invoke(cleaner);
+            }
+        } catch (Throwable t) {
+            // left to the garbage collector
+        }
+    }
+
+    private int blockLength(int block) {
+        return Math.min(BLOCK_SIZE, maxDoc - (block << BLOCK_SHIFT));
+    }
+
+    private int shortAt(int offset, int index) {
+        return data.getShort(offset + (index << 1)) & 0xFFFF;
+    }
+
+    /**
+     * Binary search for the target in the array of shorts at the given offset, same contract as
+     * {@link Arrays#binarySearch(short[], short)}.
+     */
+    private int indexOf(int offset, int length, int target) {
+        return indexOf(offset, 0, length, target);
+    }
+
+    private int indexOf(int offset, int from, int length, int target) {
+        int low = from;
+        int high = length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = shortAt(offset, mid);
+            if (value < target) {
+                low = mid + 1;
+            } else if (value > target) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    class Iterator extends DocIdSetIterator {
+
+        private int doc = -1;
+        private int slot = -1;
+        private int blockBase;
+        private int blockLength;
+        // position in the array of documents (or missing documents) of the current block
+        private int index;
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            if (doc == NO_MORE_DOCS) {
+                return doc;
+            }
+            return advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            if (target >= maxDoc) {
+                return doc = NO_MORE_DOCS;
+            }
+            int block = target >>> BLOCK_SHIFT;
+            if (slot == -1 || blocks[slot] != block) {
+                // move to the first non empty block at or after the target one
+                int nextSlot = Arrays.binarySearch(blocks, slot + 1, blocks.length, block);
+                if (nextSlot < 0) {
+                    nextSlot = -nextSlot - 1;
+                    if (nextSlot == blocks.length) {
+                        return doc = NO_MORE_DOCS;
+                    }
+                    target = blocks[nextSlot] << BLOCK_SHIFT;
+                }
+                slot = nextSlot;
+                blockBase = blocks[slot] << BLOCK_SHIFT;
+                blockLength = blockLength(blocks[slot]);
+                index = 0;
+            }
+            int next = nextInBlock(target - blockBase);
+            while (next == -1) {
+                if (++slot == blocks.length) {
+                    return doc = NO_MORE_DOCS;
+                }
+                blockBase = blocks[slot] << BLOCK_SHIFT;
+                blockLength = blockLength(blocks[slot]);
+                index = 0;
+                next = nextInBlock(0);
+            }
+            return doc = blockBase + next;
+        }
+
+        /**
+         * Returns the first document of the current block which is greater than or equal to the target, relative to
+         * the block, or -1 if there is none. Targets only increase while the iterator stays on the same block.
+         */
+        private int nextInBlock(int target) {
+            int offset = offsets[slot];
+            int length = lengths[slot];
+            switch (types[slot]) {
+                case ARRAY: {
+                    int i = indexOf(offset, index, length, target);
+                    if (i < 0) {
+                        i = -i - 1;
+                    }
+                    index = i;
+                    return i < length ? shortAt(offset, i) : -1;
+                }
+                case INVERTED: {
+                    int candidate = target;
+                    while (candidate < blockLength) {
+                        while (index < length && shortAt(offset, index) < candidate) {
+                            index++;
+                        }
+                        if (index == length || shortAt(offset, index) != candidate) {
+                            return candidate;
+                        }
+                        candidate++;
+                    }
+                    return -1;
+                }
+                default: {
+                    int word = target >>> 6;
+                    int numWords = length;
+                    if (word >= numWords) {
+                        return -1;
+                    }
+                    long bits = data.getLong(offset + (word << 3)) >>> target;
+                    if (bits != 0) {
+                        return target + Long.numberOfTrailingZeros(bits);
+                    }
+                    while (++word < numWords) {
+                        bits = data.getLong(offset + (word << 3));
+                        if (bits != 0) {
+                            return (word << 6) + Long.numberOfTrailingZeros(bits);
+                        }
+                    }
+                    return -1;
+                }
+            }
+        }
+
+        @Override
+        public long cost() {
+            return cardinality;
+        }
+    }
+
+    /**
+     * Builds a {@link CompressedDocIdSet} out of documents added in increasing order.
+     */
+    public static class Builder {
+
+        private final int maxDoc;
+
+        private int[] blocks = new int[8];
+        private byte[] types = new byte[8];
+        private int[] offsets = new int[8];
+        private int[] lengths = new int[8];
+        private int numBlocks;
+        private int cardinality;
+
+        private byte[] bytes = new byte[1024];
+        private int numBytes;
+
+        // documents of the block being built
+        private int currentBlock = -1;
+        private final int[] buffer;
+        private int bufferSize;
+        private int lastDoc = -1;
+
+        public Builder(int maxDoc) {
+            this.maxDoc = maxDoc;
+            this.buffer = new int[Math.min(BLOCK_SIZE, maxDoc)];
+        }
+
+        public Builder add(int doc) {
+            if (doc <= lastDoc || doc >= maxDoc) {
+                throw new IllegalArgumentException("documents must be added in increasing order and be lower than maxDoc, got [" + doc + "] after [" + lastDoc + "]");
+            }
+            lastDoc = doc;
+            int block = doc >>> BLOCK_SHIFT;
+            if (block != currentBlock) {
+                flushBlock();
+                currentBlock = block;
+            }
+            buffer[bufferSize++] = doc & BLOCK_MASK;
+            return this;
+        }
+
+        private void flushBlock() {
+            if (bufferSize == 0) {
+                return;
+            }
+            int blockLength = Math.min(BLOCK_SIZE, maxDoc - (currentBlock << BLOCK_SHIFT));
+            int numMissing = blockLength - bufferSize;
+            int numWords = (blockLength + 63) >>> 6;
+            long arrayBytes = 2L * bufferSize;
+            long invertedBytes = 2L * numMissing;
+            long bitmapBytes = 8L * numWords;
+
+            if (numBlocks == blocks.length) {
+                int newSize = ArrayUtil.oversize(numBlocks + 1, RamUsageEstimator.NUM_BYTES_INT);
+                blocks = Arrays.copyOf(blocks, newSize);
+                types = Arrays.copyOf(types, newSize);
+                offsets = Arrays.copyOf(offsets, newSize);
+                lengths = Arrays.copyOf(lengths, newSize);
+            }
+            blocks[numBlocks] = currentBlock;
+            offsets[numBlocks] = numBytes;
+            if (invertedBytes <= arrayBytes && invertedBytes <= bitmapBytes) {
+                types[numBlocks] = INVERTED;
+                lengths[numBlocks] = numMissing;
+                ensureCapacity(invertedBytes);
+                int next = 0;
+                for (int i = 0; i < bufferSize; i++) {
+                    for (; next < buffer[i]; next++) {
+                        writeShort(next);
+                    }
+                    next = buffer[i] + 1;
+                }
+                for (; next < blockLength; next++) {
+                    writeShort(next);
+                }
+            } else if (arrayBytes <= bitmapBytes) {
+                types[numBlocks] = ARRAY;
+                lengths[numBlocks] = bufferSize;
+                ensureCapacity(arrayBytes);
+                for (int i = 0; i < bufferSize; i++) {
+                    writeShort(buffer[i]);
+                }
+            } else {
+                types[numBlocks] = BITMAP;
+                lengths[numBlocks] = numWords;
+                ensureCapacity(bitmapBytes);
+                int i = 0;
+                for (int word = 0; word < numWords; word++) {
+                    long bits = 0;
+                    for (; i < bufferSize && (buffer[i] >>> 6) == word; i++) {
+                        bits |= 1L << buffer[i];
+                    }
+                    writeLong(bits);
+                }
+            }
+            numBlocks++;
+            cardinality += bufferSize;
+            bufferSize = 0;
+        }
+
+        private void ensureCapacity(long extra) {
+            bytes = ArrayUtil.grow(bytes, (int) (numBytes + extra));
+        }
+
+        private void writeShort(int value) {
+            bytes[numBytes++] = (byte) (value >>> 8);
+            bytes[numBytes++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[numBytes++] = (byte) (value >>> shift);
+            }
+        }
+
+        public CompressedDocIdSet build() {
+            flushBlock();
+            // big endian, like the bytes were written
+            ByteBuffer data = ByteBuffer.allocateDirect(numBytes);
+            data.put(bytes, 0, numBytes);
+            data.clear();
+            return new CompressedDocIdSet(maxDoc, cardinality, Arrays.copyOf(blocks, numBlocks), Arrays.copyOf(types, numBlocks),
+                    Arrays.copyOf(offsets, numBlocks), Arrays.copyOf(lengths, numBlocks), data);
+        }
+    }
+}
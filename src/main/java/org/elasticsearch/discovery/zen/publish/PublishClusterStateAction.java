@@ -20,8 +20,10 @@
 package org.elasticsearch.discovery.zen.publish;
 
 import com.google.common.collect.Maps;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
@@ -30,6 +32,7 @@ import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.stream.*;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.discovery.AckClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.ClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.Discovery;
@@ -38,6 +41,7 @@ import org.elasticsearch.discovery.zen.DiscoveryNodesProvider;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -64,6 +68,9 @@ public class PublishClusterStateAction extends AbstractComponent {
     private final NewClusterStateListener listener;
     private final DiscoverySettings discoverySettings;
 
+    // the last cluster state we published as master, or received from the master, diffs are computed and applied against it
+    private volatile ClusterState lastSeenClusterState;
+
     public PublishClusterStateAction(Settings settings, TransportService transportService, DiscoveryNodesProvider nodesProvider,
                                      NewClusterStateListener listener, DiscoverySettings discoverySettings) {
         super(settings);
@@ -86,23 +93,39 @@ public class PublishClusterStateAction extends AbstractComponent {
 
         DiscoveryNode localNode = nodesProvider.nodes().localNode();
 
-        Map<Version, BytesReference> serializedStates = Maps.newHashMap();
+        // the state we published last, all nodes that successfully processed it can apply a diff against it
+        ClusterState previousState = lastSeenClusterState;
+        lastSeenClusterState = clusterState;
+        boolean sendDiffs = discoverySettings.getPublishDiff() && previousState != null && previousState.version() < clusterState.version();
+
+        // full states might be serialized on a transport thread as well, when a node can't apply a diff
+        Map<Version, BytesReference> serializedStates = ConcurrentCollections.newConcurrentMap();
+        Map<Version, BytesReference> serializedDiffs = Maps.newHashMap();
 
         for (final DiscoveryNode node : clusterState.nodes()) {
             if (node.equals(localNode)) {
                 continue;
             }
-            // try and serialize the cluster state once (or per version), so we don't serialize it
-            // per node when we send it over the wire, compress it while we are at it...
+            // nodes that were not part of the previous state, or are too old to understand diffs, get the full state
+            if (sendDiffs && node.version().onOrAfter(Version.V_2_0_0) && previousState.nodes().nodeExists(node.id())) {
+                BytesReference bytes = serializedDiffs.get(node.version());
+                if (bytes == null) {
+                    try {
+                        bytes = serializeDiff(previousState, clusterState, node.version());
+                        serializedDiffs.put(node.version(), bytes);
+                    } catch (Throwable e) {
+                        logger.warn("failed to serialize cluster_state diff before publishing it to node {}, sending full state", e, node);
+                    }
+                }
+                if (bytes != null) {
+                    sendClusterState(clusterState, node, bytes, true, serializedStates, publishResponseHandler);
+                    continue;
+                }
+            }
             BytesReference bytes = serializedStates.get(node.version());
             if (bytes == null) {
                 try {
-                    BytesStreamOutput bStream = new BytesStreamOutput();
-                    StreamOutput stream = new HandlesStreamOutput(CompressorFactory.defaultCompressor().streamOutput(bStream));
-                    stream.setVersion(node.version());
-                    ClusterState.Builder.writeTo(clusterState, stream);
-                    stream.close();
-                    bytes = bStream.bytes();
+                    bytes = serializeFullClusterState(clusterState, node.version());
                     serializedStates.put(node.version(), bytes);
                 } catch (Throwable e) {
                     logger.warn("failed to serialize cluster_state before publishing it to node {}", e, node);
@@ -110,31 +133,7 @@ public class PublishClusterStateAction extends AbstractComponent {
                     continue;
                 }
             }
-            try {
-                TransportRequestOptions options = TransportRequestOptions.options().withType(TransportRequestOptions.Type.STATE).withCompress(false);
-                // no need to put a timeout on the options here, because we want the response to eventually be received
-                // and not log an error if it arrives after the timeout
-                transportService.sendRequest(node, ACTION_NAME,
-                        new BytesTransportRequest(bytes, node.version()),
-                        options, // no need to compress, we already compressed the bytes
-
-                        new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
-
-                            @Override
-                            public void handleResponse(TransportResponse.Empty response) {
-                                publishResponseHandler.onResponse(node);
-                            }
-
-                            @Override
-                            public void handleException(TransportException exp) {
-                                logger.debug("failed to send cluster state to [{}]", exp, node);
-                                publishResponseHandler.onFailure(node, exp);
-                            }
-                        });
-            } catch (Throwable t) {
-                logger.debug("error sending cluster state to [{}]", t, node);
-                publishResponseHandler.onFailure(node, t);
-            }
+            sendClusterState(clusterState, node, bytes, false, serializedStates, publishResponseHandler);
         }
 
         TimeValue publishTimeout = discoverySettings.getPublishTimeout();
@@ -152,6 +151,80 @@ public class PublishClusterStateAction extends AbstractComponent {
         }
     }
 
+    private void sendClusterState(final ClusterState clusterState, final DiscoveryNode node, BytesReference bytes, final boolean diff,
+                                  final Map<Version, BytesReference> serializedStates, final ClusterStatePublishResponseHandler publishResponseHandler) {
+        try {
+            TransportRequestOptions options = TransportRequestOptions.options().withType(TransportRequestOptions.Type.STATE).withCompress(false);
+            // no need to put a timeout on the options here, because we want the response to eventually be received
+            // and not log an error if it arrives after the timeout
+            transportService.sendRequest(node, ACTION_NAME,
+                    new BytesTransportRequest(bytes, node.version()),
+                    options, // no need to compress, we already compressed the bytes
+
+                    new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+
+                        @Override
+                        public void handleResponse(TransportResponse.Empty response) {
+                            publishResponseHandler.onResponse(node);
+                        }
+
+                        @Override
+                        public void handleException(TransportException exp) {
+                            if (diff && ExceptionsHelper.unwrapCause(exp) instanceof IncompatibleClusterStateVersionException) {
+                                logger.debug("resending full cluster state to node {} reason {}", node, exp.getDetailedMessage());
+                                resendFullClusterState(clusterState, node, serializedStates, publishResponseHandler);
+                                return;
+                            }
+                            logger.debug("failed to send cluster state to [{}]", exp, node);
+                            publishResponseHandler.onFailure(node, exp);
+                        }
+                    });
+        } catch (Throwable t) {
+            logger.debug("error sending cluster state to [{}]", t, node);
+            publishResponseHandler.onFailure(node, t);
+        }
+    }
+
+    private void resendFullClusterState(ClusterState clusterState, DiscoveryNode node, Map<Version, BytesReference> serializedStates,
+                                        ClusterStatePublishResponseHandler publishResponseHandler) {
+        BytesReference bytes = serializedStates.get(node.version());
+        if (bytes == null) {
+            try {
+                bytes = serializeFullClusterState(clusterState, node.version());
+                serializedStates.put(node.version(), bytes);
+            } catch (Throwable e) {
+                logger.warn("failed to serialize cluster_state before publishing it to node {}", e, node);
+                publishResponseHandler.onFailure(node, e);
+                return;
+            }
+        }
+        sendClusterState(clusterState, node, bytes, false, serializedStates, publishResponseHandler);
+    }
+
+    // try and serialize the cluster state once (or per version), so we don't serialize it
+    // per node when we send it over the wire, compress it while we are at it...
+    private static BytesReference serializeFullClusterState(ClusterState clusterState, Version nodeVersion) throws IOException {
+        BytesStreamOutput bStream = new BytesStreamOutput();
+        StreamOutput stream = new HandlesStreamOutput(CompressorFactory.defaultCompressor().streamOutput(bStream));
+        stream.setVersion(nodeVersion);
+        if (nodeVersion.onOrAfter(Version.V_2_0_0)) {
+            stream.writeBoolean(false);
+        }
+        ClusterState.Builder.writeTo(clusterState, stream);
+        stream.close();
+        return bStream.bytes();
+    }
+
+    private static BytesReference serializeDiff(ClusterState previousState, ClusterState clusterState, Version nodeVersion) throws IOException {
+        BytesStreamOutput bStream = new BytesStreamOutput();
+        StreamOutput stream = new HandlesStreamOutput(CompressorFactory.defaultCompressor().streamOutput(bStream));
+        stream.setVersion(nodeVersion);
+        stream.writeBoolean(true);
+        ClusterState.Builder.writeDiffTo(previousState, clusterState, stream);
+        stream.close();
+        return bStream.bytes();
+    }
+
     private class PublishClusterStateRequestHandler extends BaseTransportRequestHandler<BytesTransportRequest> {
 
         @Override
@@ -169,9 +242,22 @@ public class PublishClusterStateAction extends AbstractComponent {
                 in = CachedStreamInput.cachedHandles(request.bytes().streamInput());
             }
             in.setVersion(request.version());
-            ClusterState clusterState = ClusterState.Builder.readFrom(in, nodesProvider.nodes().localNode());
+            boolean diff = false;
+            if (request.version().onOrAfter(Version.V_2_0_0)) {
+                diff = in.readBoolean();
+            }
+            ClusterState clusterState;
+            if (diff) {
+                // throws IncompatibleClusterStateVersionException if we don't have the state the diff is based on,
+                // the master will send us the full cluster state instead
+                clusterState = ClusterState.Builder.readDiffFrom(in, lastSeenClusterState, nodesProvider.nodes().localNode());
+                logger.debug("received diff cluster state version {} with uuid {}", clusterState.version(), clusterState.uuid());
+            } else {
+                clusterState = ClusterState.Builder.readFrom(in, nodesProvider.nodes().localNode());
+                logger.debug("received full cluster state version {} with uuid {}", clusterState.version(), clusterState.uuid());
+            }
+            lastSeenClusterState = clusterState;
             clusterState.status(ClusterState.ClusterStateStatus.RECEIVED);
-            logger.debug("received cluster state version {}", clusterState.version());
             listener.onNewClusterState(clusterState, new NewClusterStateListener.NewStateProcessed() {
                 @Override
                 public void onNewClusterStateProcessed() {
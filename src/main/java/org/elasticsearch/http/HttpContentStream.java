@@ -0,0 +1,164 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http;
+
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.RestContentStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link RestContentStream} fed by an HTTP transport. The chunks received before the handler of the request starts
+ * consuming them, which may be delayed by asynchronous rest filters, are buffered and reading is paused once
+ * <code>maxBufferedBytes</code> are buffered. The stream can be discarded, for instance when a response is sent
+ * before the whole body was read, in which case the remaining chunks are dropped and reading resumes.
+ */
+public abstract class HttpContentStream implements RestContentStream {
+
+    private final long maxBufferedBytes;
+
+    // guarded by this, chunks are delivered while holding the lock so that they are never reordered
+    private Consumer consumer;
+    private List<BytesReference> buffered = new ArrayList<>();
+    private long bufferedBytes;
+    private boolean bufferPaused;
+    private boolean ended;
+    private boolean discarded;
+
+    private final Object readableMutex = new Object();
+    // guarded by readableMutex, never nested with the lock on this
+    private int pauses;
+    private boolean alwaysReadable;
+
+    protected HttpContentStream(long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Changes whether the transport reads from the client.
+     */
+    protected abstract void setReadable(boolean readable);
+
+    /**
+     * Called by the transport for each chunk of the body.
+     */
+    public synchronized void onChunk(BytesReference chunk) {
+        if (discarded || chunk.length() == 0) {
+            return;
+        }
+        if (consumer != null) {
+            consumer.onChunk(chunk);
+            return;
+        }
+        buffered.add(chunk);
+        bufferedBytes += chunk.length();
+        if (bufferedBytes >= maxBufferedBytes && !bufferPaused) {
+            bufferPaused = true;
+            pause();
+        }
+    }
+
+    /**
+     * Called by the transport once the whole body has been received.
+     */
+    public synchronized void onEnd() {
+        if (discarded) {
+            return;
+        }
+        ended = true;
+        if (consumer != null) {
+            consumer.onEnd();
+        }
+    }
+
+    @Override
+    public void consume(Consumer consumer) {
+        boolean resume;
+        synchronized (this) {
+            if (this.consumer != null) {
+                throw new ElasticsearchIllegalStateException("the content stream is already consumed");
+            }
+            if (discarded) {
+                return;
+            }
+            this.consumer = consumer;
+            for (BytesReference chunk : buffered) {
+                consumer.onChunk(chunk);
+            }
+            buffered = null;
+            if (ended) {
+                consumer.onEnd();
+            }
+            resume = bufferPaused;
+            bufferPaused = false;
+        }
+        if (resume) {
+            resume();
+        }
+    }
+
+    /**
+     * Drops the chunks received so far and the ones still to come, and resumes reading from the client if it was
+     * paused. Consumers are not notified anymore.
+     */
+    public void discard() {
+        synchronized (this) {
+            if (discarded) {
+                return;
+            }
+            discarded = true;
+            buffered = null;
+            consumer = null;
+        }
+        synchronized (readableMutex) {
+            alwaysReadable = true;
+            if (pauses > 0) {
+                pauses = 0;
+                setReadable(true);
+            }
+        }
+    }
+
+    @Override
+    public void pause() {
+        synchronized (readableMutex) {
+            if (alwaysReadable) {
+                return;
+            }
+            if (pauses++ == 0) {
+                setReadable(false);
+            }
+        }
+    }
+
+    @Override
+    public void resume() {
+        synchronized (readableMutex) {
+            if (alwaysReadable || pauses == 0) {
+                return;
+            }
+            if (--pauses == 0) {
+                setReadable(true);
+            }
+        }
+    }
+}
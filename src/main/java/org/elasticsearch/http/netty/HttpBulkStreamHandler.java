@@ -0,0 +1,197 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ChannelBufferBytesReference;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.http.HttpContentStream;
+import org.elasticsearch.rest.RestContentStream;
+import org.elasticsearch.rest.RestResponse;
+import org.jboss.netty.channel.*;
+import org.jboss.netty.handler.codec.http.*;
+
+import java.util.regex.Pattern;
+
+/**
+ * Dispatches requests sent to the <tt>_bulk/stream</tt> endpoints as soon as their headers are received, before they
+ * reach the {@link HttpChunkAggregator}, and streams their body to the rest handler through a
+ * {@link RestContentStream} instead of buffering it. The requests still go through the rest controller, so rest
+ * filters apply to them as to any other request.
+ * <p/>
+ * The handler keeps the state of the request being streamed, so a new instance is needed per channel.
+ */
+public class HttpBulkStreamHandler extends SimpleChannelUpstreamHandler {
+
+    static final String ENDPOINT = "_bulk/stream";
+
+    /**
+     * The amount of data buffered before the rest handler starts consuming the body, past which reading is paused.
+     */
+    static final ByteSizeValue MAX_BUFFERED = new ByteSizeValue(1, ByteSizeUnit.MB);
+
+    private final NettyHttpServerTransport transport;
+    private final Pattern corsPattern;
+
+    private HttpContentStream stream;
+
+    public HttpBulkStreamHandler(NettyHttpServerTransport transport, Pattern corsPattern) {
+        this.transport = transport;
+        this.corsPattern = corsPattern;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        Object message = e.getMessage();
+        if (stream != null && message instanceof HttpChunk) {
+            HttpChunk chunk = (HttpChunk) message;
+            if (chunk.getContent().readable()) {
+                stream.onChunk(new ChannelBufferBytesReference(chunk.getContent()));
+            }
+            if (chunk.isLast()) {
+                end();
+            }
+            return;
+        }
+        if (message instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) message;
+            if ((request.getMethod() == HttpMethod.POST || request.getMethod() == HttpMethod.PUT) && isBulkStreamPath(request.getUri())) {
+                start(e.getChannel(), request);
+                return;
+            }
+        }
+        ctx.sendUpstream(e);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        // the client went away, the data buffered is dropped and bulk requests in flight complete on their own
+        if (stream != null) {
+            stream.discard();
+            stream = null;
+        }
+        super.channelClosed(ctx, e);
+    }
+
+    private void start(final Channel channel, HttpRequest request) {
+        if (HttpHeaders.is100ContinueExpected(request)) {
+            channel.write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+        }
+        final NettyHttpContentStream stream = new NettyHttpContentStream(channel);
+        this.stream = stream;
+        BytesReference firstChunk = request.getContent().readable() ? new ChannelBufferBytesReference(request.getContent()) : null;
+        NettyHttpRequest httpRequest = new StreamedNettyHttpRequest(request, channel, stream);
+        NettyHttpChannel httpChannel = new NettyHttpChannel(transport, channel, httpRequest, corsPattern) {
+            @Override
+            public void sendResponse(RestResponse response) {
+                // the rest of the body, if any, is of no use anymore
+                stream.discard();
+                super.sendResponse(response);
+            }
+        };
+        if (firstChunk != null) {
+            stream.onChunk(firstChunk);
+        }
+        if (!request.isChunked()) {
+            end();
+        }
+        transport.dispatchRequest(httpRequest, httpChannel);
+    }
+
+    private void end() {
+        HttpContentStream stream = this.stream;
+        this.stream = null;
+        stream.onEnd();
+    }
+
+    /**
+     * Whether the uri is one of <tt>/_bulk/stream</tt>, <tt>/{index}/_bulk/stream</tt> or
+     * <tt>/{index}/{type}/_bulk/stream</tt>, with an optional query string.
+     */
+    static boolean isBulkStreamPath(String uri) {
+        int queryStart = uri.indexOf('?');
+        String path = queryStart < 0 ? uri : uri.substring(0, queryStart);
+        if (!path.endsWith("/" + ENDPOINT)) {
+            return false;
+        }
+        String prefix = path.substring(0, path.length() - ENDPOINT.length() - 1);
+        if (prefix.isEmpty()) {
+            return true;
+        }
+        if (!prefix.startsWith("/")) {
+            return false;
+        }
+        String[] parts = prefix.substring(1).split("/", -1);
+        if (parts.length > 2) {
+            return false;
+        }
+        for (String part : parts) {
+            if (part.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static class NettyHttpContentStream extends HttpContentStream {
+
+        private final Channel channel;
+
+        NettyHttpContentStream(Channel channel) {
+            super(MAX_BUFFERED.bytes());
+            this.channel = channel;
+        }
+
+        @Override
+        protected void setReadable(boolean readable) {
+            channel.setReadable(readable);
+        }
+    }
+
+    /**
+     * A request whose body is only available through its {@link #contentStream()}.
+     */
+    static class StreamedNettyHttpRequest extends NettyHttpRequest {
+
+        private final RestContentStream stream;
+
+        StreamedNettyHttpRequest(HttpRequest request, Channel channel, RestContentStream stream) {
+            super(request, channel);
+            this.stream = stream;
+        }
+
+        @Override
+        public boolean hasContent() {
+            return false;
+        }
+
+        @Override
+        public BytesReference content() {
+            return BytesArray.EMPTY;
+        }
+
+        @Override
+        public RestContentStream contentStream() {
+            return stream;
+        }
+    }
+}
@@ -19,10 +19,12 @@
 
 package org.elasticsearch.index.cache.filter;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
@@ -34,19 +36,36 @@ import java.io.IOException;
 public class FilterCacheStats implements Streamable, ToXContent {
 
     long memorySize;
+    long offHeapMemorySize;
     long evictions;
+    long rejections;
+    long rejectionsTimeInMillis;
 
     public FilterCacheStats() {
     }
 
     public FilterCacheStats(long memorySize, long evictions) {
+        this(memorySize, 0, evictions);
+    }
+
+    public FilterCacheStats(long memorySize, long offHeapMemorySize, long evictions) {
+        this(memorySize, offHeapMemorySize, evictions, 0, 0);
+    }
+
+    public FilterCacheStats(long memorySize, long offHeapMemorySize, long evictions, long rejections, long rejectionsTimeInMillis) {
         this.memorySize = memorySize;
+        this.offHeapMemorySize = offHeapMemorySize;
         this.evictions = evictions;
+        this.rejections = rejections;
+        this.rejectionsTimeInMillis = rejectionsTimeInMillis;
     }
 
     public void add(FilterCacheStats stats) {
         this.memorySize += stats.memorySize;
+        this.offHeapMemorySize += stats.offHeapMemorySize;
         this.evictions += stats.evictions;
+        this.rejections += stats.rejections;
+        this.rejectionsTimeInMillis += stats.rejectionsTimeInMillis;
     }
 
     public long getMemorySizeInBytes() {
@@ -57,10 +76,39 @@ public class FilterCacheStats implements Streamable, ToXContent {
         return new ByteSizeValue(memorySize);
     }
 
+    /**
+     * The memory used off heap by the cached filters, in addition to {@link #getMemorySize()}.
+     */
+    public long getOffHeapMemorySizeInBytes() {
+        return this.offHeapMemorySize;
+    }
+
+    public ByteSizeValue getOffHeapMemorySize() {
+        return new ByteSizeValue(offHeapMemorySize);
+    }
+
     public long getEvictions() {
         return this.evictions;
     }
 
+    /**
+     * The number of times the caching policy decided not to cache a filter.
+     */
+    public long getRejections() {
+        return this.rejections;
+    }
+
+    /**
+     * The time spent computing the filters the caching policy decided not to cache.
+     */
+    public long getRejectionsTimeInMillis() {
+        return this.rejectionsTimeInMillis;
+    }
+
+    public TimeValue getRejectionsTime() {
+        return new TimeValue(rejectionsTimeInMillis);
+    }
+
     public static FilterCacheStats readFilterCacheStats(StreamInput in) throws IOException {
         FilterCacheStats stats = new FilterCacheStats();
         stats.readFrom(in);
@@ -70,20 +118,37 @@ public class FilterCacheStats implements Streamable, ToXContent {
     @Override
     public void readFrom(StreamInput in) throws IOException {
         memorySize = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            offHeapMemorySize = in.readVLong();
+        }
         evictions = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            rejections = in.readVLong();
+            rejectionsTimeInMillis = in.readVLong();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(memorySize);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVLong(offHeapMemorySize);
+        }
         out.writeVLong(evictions);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            out.writeVLong(rejections);
+            out.writeVLong(rejectionsTimeInMillis);
+        }
     }
 
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, ToXContent.Params params) throws IOException {
         builder.startObject(Fields.FILTER_CACHE);
         builder.byteSizeField(Fields.MEMORY_SIZE_IN_BYTES, Fields.MEMORY_SIZE, memorySize);
+        builder.byteSizeField(Fields.OFF_HEAP_MEMORY_SIZE_IN_BYTES, Fields.OFF_HEAP_MEMORY_SIZE, offHeapMemorySize);
         builder.field(Fields.EVICTIONS, getEvictions());
+        builder.field(Fields.REJECTIONS, getRejections());
+        builder.timeValueField(Fields.REJECTIONS_TIME_IN_MILLIS, Fields.REJECTIONS_TIME, rejectionsTimeInMillis);
         builder.endObject();
         return builder;
     }
@@ -92,6 +157,11 @@ public class FilterCacheStats implements Streamable, ToXContent {
         static final XContentBuilderString FILTER_CACHE = new XContentBuilderString("filter_cache");
         static final XContentBuilderString MEMORY_SIZE = new XContentBuilderString("memory_size");
         static final XContentBuilderString MEMORY_SIZE_IN_BYTES = new XContentBuilderString("memory_size_in_bytes");
+        static final XContentBuilderString OFF_HEAP_MEMORY_SIZE = new XContentBuilderString("off_heap_memory_size");
+        static final XContentBuilderString OFF_HEAP_MEMORY_SIZE_IN_BYTES = new XContentBuilderString("off_heap_memory_size_in_bytes");
         static final XContentBuilderString EVICTIONS = new XContentBuilderString("evictions");
+        static final XContentBuilderString REJECTIONS = new XContentBuilderString("rejections");
+        static final XContentBuilderString REJECTIONS_TIME = new XContentBuilderString("rejections_time");
+        static final XContentBuilderString REJECTIONS_TIME_IN_MILLIS = new XContentBuilderString("rejections_time_in_millis");
     }
 }
@@ -31,12 +31,17 @@ import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.ShardId;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  */
 public class ShardFilterCache extends AbstractIndexShardComponent implements RemovalListener<WeightedFilterCache.FilterCacheKey, DocIdSet> {
 
     final CounterMetric evictionsMetric = new CounterMetric();
     final CounterMetric totalMetric = new CounterMetric();
+    final CounterMetric offHeapMetric = new CounterMetric();
+    final CounterMetric rejectionsMetric = new CounterMetric();
+    final CounterMetric rejectionsTimeMetric = new CounterMetric();
 
     @Inject
     public ShardFilterCache(ShardId shardId, @IndexSettings Settings indexSettings) {
@@ -44,13 +49,30 @@ public class ShardFilterCache extends AbstractIndexShardComponent implements Rem
     }
 
     public FilterCacheStats stats() {
-        return new FilterCacheStats(totalMetric.count(), evictionsMetric.count());
+        return new FilterCacheStats(totalMetric.count(), offHeapMetric.count(), evictionsMetric.count(),
+                rejectionsMetric.count(), TimeUnit.NANOSECONDS.toMillis(rejectionsTimeMetric.count()));
     }
 
     public void onCached(long sizeInBytes) {
         totalMetric.inc(sizeInBytes);
     }
 
+    /**
+     * Accounts for a cached entry which is partially held off heap.
+     */
+    public void onCached(long sizeInBytes, long offHeapSizeInBytes) {
+        totalMetric.inc(sizeInBytes);
+        offHeapMetric.inc(offHeapSizeInBytes);
+    }
+
+    /**
+     * Accounts for a filter the caching policy decided not to cache, and the time it took to compute it.
+     */
+    public void onRejected(long tookInNanos) {
+        rejectionsMetric.inc();
+        rejectionsTimeMetric.inc(tookInNanos);
+    }
+
     @Override
     public void onRemoval(RemovalNotification<WeightedFilterCache.FilterCacheKey, DocIdSet> removalNotification) {
         if (removalNotification.wasEvicted()) {
@@ -60,4 +82,15 @@ public class ShardFilterCache extends AbstractIndexShardComponent implements Rem
             totalMetric.dec(DocIdSets.sizeInBytes(removalNotification.getValue()));
         }
     }
+
+    /**
+     * Same as {@link #onRemoval(RemovalNotification)}, for entries not held in a guava cache.
+     */
+    public void onRemoval(long sizeInBytes, long offHeapSizeInBytes, boolean evicted) {
+        if (evicted) {
+            evictionsMetric.inc();
+        }
+        totalMetric.dec(sizeInBytes);
+        offHeapMetric.dec(offHeapSizeInBytes);
+    }
 }
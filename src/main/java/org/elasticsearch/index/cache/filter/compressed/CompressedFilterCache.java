@@ -0,0 +1,311 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.filter.compressed;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lucene.SegmentReaderUtils;
+import org.elasticsearch.common.lucene.docset.CompressedDocIdSet;
+import org.elasticsearch.common.lucene.docset.DocIdSets;
+import org.elasticsearch.common.lucene.search.CachedFilter;
+import org.elasticsearch.common.lucene.search.NoCacheFilter;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.AbstractIndexComponent;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.filter.FilterCache;
+import org.elasticsearch.index.cache.filter.ShardFilterCache;
+import org.elasticsearch.index.cache.filter.support.CacheKeyFilter;
+import org.elasticsearch.index.cache.filter.support.UsageTrackingFilterCachingPolicy;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.settings.IndexSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardUtils;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.indices.cache.filter.IndicesCompressedFilterCache;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A filter cache that keeps the cached doc id sets compressed and off heap, see {@link CompressedDocIdSet}, in the
+ * node level {@link IndicesCompressedFilterCache}. Enabled by setting <tt>index.cache.filter.type</tt> to
+ * <tt>compressed</tt>.
+ */
+public class CompressedFilterCache extends AbstractIndexComponent implements FilterCache, SegmentReader.CoreClosedListener, IndexReader.ReaderClosedListener {
+
+    final IndicesCompressedFilterCache indicesFilterCache;
+    final UsageTrackingFilterCachingPolicy cachingPolicy;
+    IndexService indexService;
+
+    final ConcurrentMap<Object, Boolean> seenReaders = ConcurrentCollections.newConcurrentMap();
+
+    @Inject
+    public CompressedFilterCache(Index index, @IndexSettings Settings indexSettings, IndicesCompressedFilterCache indicesFilterCache) {
+        super(index, indexSettings);
+        this.indicesFilterCache = indicesFilterCache;
+        this.cachingPolicy = UsageTrackingFilterCachingPolicy.fromSettings(indexSettings);
+    }
+
+    @Override
+    public void setIndexService(IndexService indexService) {
+        this.indexService = indexService;
+    }
+
+    @Override
+    public String type() {
+        return "compressed";
+    }
+
+    @Override
+    public void close() throws ElasticsearchException {
+        clear("close");
+    }
+
+    @Override
+    public void onClose(IndexReader reader) {
+        clear(reader.getCoreCacheKey());
+    }
+
+    @Override
+    public void clear(String reason) {
+        logger.debug("full cache clear, reason [{}]", reason);
+        for (Object readerKey : seenReaders.keySet()) {
+            Boolean removed = seenReaders.remove(readerKey);
+            if (removed == null) {
+                return;
+            }
+            indicesFilterCache.addReaderKeyToClean(readerKey);
+        }
+    }
+
+    @Override
+    public void clear(String reason, String[] keys) {
+        logger.debug("clear keys [], reason [{}]", reason, keys);
+        final BytesRef spare = new BytesRef();
+        for (String key : keys) {
+            final byte[] keyBytes = Strings.toUTF8Bytes(key, spare);
+            indicesFilterCache.invalidate(new CacheKeyFilter.Key(keyBytes));
+        }
+    }
+
+    @Override
+    public void onClose(Object coreKey) {
+        clear(coreKey);
+    }
+
+    @Override
+    public void clear(Object coreCacheKey) {
+        // we add the seen reader before we add the first cache entry for this reader
+        // so, if we don't see it here, its won't be in the cache
+        Boolean removed = seenReaders.remove(coreCacheKey);
+        if (removed == null) {
+            return;
+        }
+        indicesFilterCache.addReaderKeyToClean(coreCacheKey);
+    }
+
+    @Override
+    public Filter cache(Filter filterToCache) {
+        if (filterToCache == null) {
+            return null;
+        }
+        if (filterToCache instanceof NoCacheFilter) {
+            return filterToCache;
+        }
+        if (CachedFilter.isCached(filterToCache)) {
+            return filterToCache;
+        }
+        return new FilterCacheFilterWrapper(filterToCache, this);
+    }
+
+    /**
+     * Converts the doc id set to its compressed form, or to {@link DocIdSet#EMPTY} if it has no documents.
+     */
+    static DocIdSet toCacheable(int maxDoc, @Nullable DocIdSet set) throws IOException {
+        if (set == null || set == DocIdSet.EMPTY) {
+            return DocIdSet.EMPTY;
+        }
+        DocIdSetIterator it = set.iterator();
+        if (it == null) {
+            return DocIdSet.EMPTY;
+        }
+        CompressedDocIdSet compressed = CompressedDocIdSet.build(it, maxDoc);
+        if (compressed.cardinality() == 0) {
+            compressed.decRef();
+            return DocIdSet.EMPTY;
+        }
+        return compressed;
+    }
+
+    /**
+     * Releases the reference held on a compressed set once the current search phase is done. Filters that are not
+     * executed by a search leave the set to the garbage collector.
+     */
+    static void releaseAfterPhase(DocIdSet docIdSet) {
+        if (!(docIdSet instanceof CompressedDocIdSet)) {
+            return;
+        }
+        final CompressedDocIdSet compressed = (CompressedDocIdSet) docIdSet;
+        SearchContext searchContext = SearchContext.current();
+        if (searchContext != null) {
+            searchContext.addReleasable(new Releasable() {
+                @Override
+                public void close() {
+                    compressed.decRef();
+                }
+            }, SearchContext.Lifetime.PHASE);
+        }
+    }
+
+    /**
+     * Computes the doc id set of a filter the caching policy decided not to cache, accounting for it in the shard stats.
+     */
+    DocIdSet uncached(Filter filter, AtomicReaderContext context, Bits acceptDocs) throws IOException {
+        long start = System.nanoTime();
+        DocIdSet docIdSet = filter.getDocIdSet(context, acceptDocs);
+        ShardId shardId = ShardUtils.extractShardId(context.reader());
+        if (shardId != null) {
+            IndexShard shard = indexService.shard(shardId.id());
+            if (shard != null) {
+                shard.filterCache().onRejected(System.nanoTime() - start);
+            }
+        }
+        return docIdSet;
+    }
+
+    static class FilterCacheFilterWrapper extends CachedFilter {
+
+        private final Filter filter;
+
+        private final CompressedFilterCache cache;
+
+        FilterCacheFilterWrapper(Filter filter, CompressedFilterCache cache) {
+            this.filter = filter;
+            this.cache = cache;
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+            Object filterKey = filter;
+            if (filter instanceof CacheKeyFilter) {
+                filterKey = ((CacheKeyFilter) filter).cacheKey();
+            }
+            FilterCacheKey cacheKey = new FilterCacheKey(context.reader().getCoreCacheKey(), filterKey);
+
+            ShardId shardId = null;
+            if (cache.cachingPolicy != null) {
+                shardId = ShardUtils.extractShardId(context.reader());
+                cache.cachingPolicy.onUse(shardId, filterKey, context);
+            }
+            DocIdSet cacheValue = cache.indicesFilterCache.get(cacheKey);
+            if (cacheValue == null) {
+                if (cache.cachingPolicy != null && !cache.cachingPolicy.shouldCache(shardId, filter, filterKey)) {
+                    return cache.uncached(filter, context, acceptDocs);
+                }
+                if (!cache.seenReaders.containsKey(context.reader().getCoreCacheKey())) {
+                    Boolean previous = cache.seenReaders.putIfAbsent(context.reader().getCoreCacheKey(), Boolean.TRUE);
+                    if (previous == null) {
+                        // we add a core closed listener only, for non core IndexReaders we rely on clear being called (percolator for example)
+                        SegmentReaderUtils.registerCoreListener(context.reader(), cache);
+                    }
+                }
+                // same as the weighted filter cache, neither the provided accepted docs nor the live docs are passed down
+                cacheValue = toCacheable(context.reader().maxDoc(), filter.getDocIdSet(context, null));
+                shardId = ShardUtils.extractShardId(context.reader());
+                if (shardId != null) {
+                    IndexShard shard = cache.indexService.shard(shardId.id());
+                    if (shard != null) {
+                        cacheKey.shardCache = shard.filterCache();
+                    }
+                }
+                long offHeapBytesUsed = cacheValue instanceof CompressedDocIdSet ? ((CompressedDocIdSet) cacheValue).offHeapBytesUsed() : 0;
+                cache.indicesFilterCache.put(cacheKey, cacheValue, DocIdSets.sizeInBytes(cacheValue), offHeapBytesUsed);
+            }
+            // the set may be evicted while the search still uses it, the reference we hold keeps it from being freed
+            releaseAfterPhase(cacheValue);
+
+            // note, we don't wrap the return value with a BitsFilteredDocIdSet.wrap(docIdSet, acceptDocs) because
+            // we rely on our custom XFilteredQuery to do the wrapping if needed, so we don't have the wrap each
+            // filter on its own
+            return DocIdSets.isEmpty(cacheValue) ? null : cacheValue;
+        }
+
+        public String toString() {
+            return "cache(" + filter + ")";
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof FilterCacheFilterWrapper)) return false;
+            return this.filter.equals(((FilterCacheFilterWrapper) o).filter);
+        }
+
+        public int hashCode() {
+            return filter.hashCode() ^ 0x3C6EF372;
+        }
+    }
+
+    public static class FilterCacheKey {
+        private final Object readerKey;
+        private final Object filterKey;
+
+        // if we know, we set the shard cache to account for the entry (for statistics)
+        // its ok that its not volatile because we make sure we only set it when the object is created before its shared between threads
+        @Nullable
+        public ShardFilterCache shardCache;
+
+        public FilterCacheKey(Object readerKey, Object filterKey) {
+            this.readerKey = readerKey;
+            this.filterKey = filterKey;
+        }
+
+        public Object readerKey() {
+            return readerKey;
+        }
+
+        public Object filterKey() {
+            return filterKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            FilterCacheKey that = (FilterCacheKey) o;
+            return (readerKey.equals(that.readerKey) && filterKey.equals(that.filterKey));
+        }
+
+        @Override
+        public int hashCode() {
+            return readerKey.hashCode() + 31 * filterKey.hashCode();
+        }
+    }
+}
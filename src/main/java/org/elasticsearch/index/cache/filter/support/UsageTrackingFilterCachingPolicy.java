@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.filter.support;
+
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.queries.TermsFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MultiTermQueryWrapperFilter;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.search.geo.GeoDistanceFilter;
+import org.elasticsearch.index.search.geo.GeoDistanceRangeFilter;
+import org.elasticsearch.index.search.geo.GeoPolygonFilter;
+import org.elasticsearch.index.search.geo.InMemoryGeoBoundingBoxFilter;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A filter caching policy that only caches filters that were used several times recently, instead of caching
+ * every filter that the query parsers mark as cacheable.
+ * <p/>
+ * The policy keeps a bounded history of the most recently used filter keys per shard, and a filter is only cached
+ * on a shard once it appears {@link #INDEX_CACHE_FILTER_POLICY_MIN_FREQUENCY} times in the history. Filters that are costly to compute
+ * because they need to visit many terms or to load field data (multi term and geo filters) are cached sooner, once
+ * they appear {@link #INDEX_CACHE_FILTER_POLICY_COSTLY_MIN_FREQUENCY} times. The policy is shared by all the shards
+ * of an index on a node, so keeping one history per shard makes sure that a single search request that hits several
+ * local shards only counts as one use on each of them.
+ * <p/>
+ * Enabled by setting {@link #INDEX_CACHE_FILTER_POLICY} to <tt>usage_tracking</tt>, the default being to cache all
+ * the filters (<tt>always</tt>).
+ */
+public class UsageTrackingFilterCachingPolicy {
+
+    public static final String INDEX_CACHE_FILTER_POLICY = "index.cache.filter.policy";
+    public static final String INDEX_CACHE_FILTER_POLICY_HISTORY_SIZE = "index.cache.filter.policy.history_size";
+    public static final String INDEX_CACHE_FILTER_POLICY_MIN_FREQUENCY = "index.cache.filter.policy.min_frequency";
+    public static final String INDEX_CACHE_FILTER_POLICY_COSTLY_MIN_FREQUENCY = "index.cache.filter.policy.costly_min_frequency";
+
+    /**
+     * Returns the policy configured in the index settings, or <tt>null</tt> if all filters should be cached.
+     */
+    @Nullable
+    public static UsageTrackingFilterCachingPolicy fromSettings(Settings indexSettings) {
+        String policy = indexSettings.get(INDEX_CACHE_FILTER_POLICY, "always");
+        if ("always".equals(policy)) {
+            return null;
+        } else if ("usage_tracking".equals(policy) || "usageTracking".equals(policy)) {
+            return new UsageTrackingFilterCachingPolicy(indexSettings.getAsInt(INDEX_CACHE_FILTER_POLICY_HISTORY_SIZE, 256),
+                    indexSettings.getAsInt(INDEX_CACHE_FILTER_POLICY_MIN_FREQUENCY, 5),
+                    indexSettings.getAsInt(INDEX_CACHE_FILTER_POLICY_COSTLY_MIN_FREQUENCY, 2));
+        }
+        throw new ElasticsearchIllegalArgumentException("unknown filter cache policy [" + policy + "], expected [always] or [usage_tracking]");
+    }
+
+    private final int historySize;
+    private final int minFrequency;
+    private final int costlyMinFrequency;
+
+    // the number of shards of an index is fixed, so this map is bounded even if shards come and go
+    private final ConcurrentMap<ShardId, History> histories = ConcurrentCollections.newConcurrentMap();
+    // readers that are not backed by a shard (the percolator for example) share a single history
+    private final History noShardHistory;
+
+    public UsageTrackingFilterCachingPolicy(int historySize, int minFrequency, int costlyMinFrequency) {
+        if (historySize < 1) {
+            throw new ElasticsearchIllegalArgumentException("filter cache policy history size must be at least 1, got [" + historySize + "]");
+        }
+        this.historySize = historySize;
+        this.minFrequency = minFrequency;
+        this.costlyMinFrequency = costlyMinFrequency;
+        this.noShardHistory = new History(historySize);
+    }
+
+    /**
+     * Records that the filter is used by a search on the given shard, which may be <tt>null</tt> if the reader is
+     * not backed by a shard. Filters are asked for a doc id set once per segment, so the use is only recorded for
+     * the first segment of the shard reader.
+     */
+    public void onUse(@Nullable ShardId shardId, Object filterKey, AtomicReaderContext context) {
+        if (context.ord != 0) {
+            return;
+        }
+        History history = history(shardId, true);
+        history.add(filterKey);
+    }
+
+    /**
+     * Returns how many times the filter key appears in the history of the given shard.
+     */
+    public int frequency(@Nullable ShardId shardId, Object filterKey) {
+        History history = history(shardId, false);
+        return history == null ? 0 : history.frequency(filterKey);
+    }
+
+    /**
+     * Should the doc id set of the filter be cached on the given shard?
+     */
+    public boolean shouldCache(@Nullable ShardId shardId, Filter filter, Object filterKey) {
+        return frequency(shardId, filterKey) >= (isCostly(filter) ? costlyMinFrequency : minFrequency);
+    }
+
+    private History history(@Nullable ShardId shardId, boolean create) {
+        if (shardId == null) {
+            return noShardHistory;
+        }
+        History history = histories.get(shardId);
+        if (history == null && create) {
+            history = new History(historySize);
+            History previous = histories.putIfAbsent(shardId, history);
+            if (previous != null) {
+                history = previous;
+            }
+        }
+        return history;
+    }
+
+    static boolean isCostly(Filter filter) {
+        if (filter instanceof CacheKeyFilter.Wrapper) {
+            filter = ((CacheKeyFilter.Wrapper) filter).wrappedFilter();
+        }
+        return filter instanceof MultiTermQueryWrapperFilter
+                || filter instanceof TermsFilter
+                || filter instanceof GeoDistanceFilter
+                || filter instanceof GeoDistanceRangeFilter
+                || filter instanceof GeoPolygonFilter
+                || filter instanceof InMemoryGeoBoundingBoxFilter;
+    }
+
+    /**
+     * A ring buffer of the last used filter keys, and how many times each of them appears in it.
+     */
+    static class History {
+
+        private final Object[] keys;
+        private final ObjectIntOpenHashMap<Object> frequencies;
+        private int position;
+
+        History(int size) {
+            this.keys = new Object[size];
+            this.frequencies = new ObjectIntOpenHashMap<>(size);
+        }
+
+        synchronized void add(Object filterKey) {
+            Object evicted = keys[position];
+            if (evicted != null) {
+                int frequency = frequencies.get(evicted) - 1;
+                if (frequency == 0) {
+                    frequencies.remove(evicted);
+                } else {
+                    frequencies.put(evicted, frequency);
+                }
+            }
+            keys[position] = filterKey;
+            frequencies.addTo(filterKey, 1);
+            position = (position + 1) % keys.length;
+        }
+
+        synchronized int frequency(Object filterKey) {
+            return frequencies.get(filterKey);
+        }
+    }
+}
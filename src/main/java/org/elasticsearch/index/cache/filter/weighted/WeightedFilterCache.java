@@ -43,6 +43,7 @@ import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.cache.filter.FilterCache;
 import org.elasticsearch.index.cache.filter.support.CacheKeyFilter;
+import org.elasticsearch.index.cache.filter.support.UsageTrackingFilterCachingPolicy;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.ShardId;
@@ -56,6 +57,7 @@ import java.util.concurrent.ConcurrentMap;
 public class WeightedFilterCache extends AbstractIndexComponent implements FilterCache, SegmentReader.CoreClosedListener, IndexReader.ReaderClosedListener {
 
     final IndicesFilterCache indicesFilterCache;
+    final UsageTrackingFilterCachingPolicy cachingPolicy;
     IndexService indexService;
 
     final ConcurrentMap<Object, Boolean> seenReaders = ConcurrentCollections.newConcurrentMap();
@@ -64,6 +66,7 @@ public class WeightedFilterCache extends AbstractIndexComponent implements Filte
     public WeightedFilterCache(Index index, @IndexSettings Settings indexSettings, IndicesFilterCache indicesFilterCache) {
         super(index, indexSettings);
         this.indicesFilterCache = indicesFilterCache;
+        this.cachingPolicy = UsageTrackingFilterCachingPolicy.fromSettings(indexSettings);
     }
 
     @Override
@@ -141,6 +144,22 @@ public class WeightedFilterCache extends AbstractIndexComponent implements Filte
         return new FilterCacheFilterWrapper(filterToCache, this);
     }
 
+    /**
+     * Computes the doc id set of a filter the caching policy decided not to cache, accounting for it in the shard stats.
+     */
+    DocIdSet uncached(Filter filter, AtomicReaderContext context, Bits acceptDocs) throws IOException {
+        long start = System.nanoTime();
+        DocIdSet docIdSet = filter.getDocIdSet(context, acceptDocs);
+        ShardId shardId = ShardUtils.extractShardId(context.reader());
+        if (shardId != null) {
+            IndexShard shard = indexService.shard(shardId.id());
+            if (shard != null) {
+                shard.filterCache().onRejected(System.nanoTime() - start);
+            }
+        }
+        return docIdSet;
+    }
+
     static class FilterCacheFilterWrapper extends CachedFilter {
 
         private final Filter filter;
@@ -162,8 +181,16 @@ public class WeightedFilterCache extends AbstractIndexComponent implements Filte
             FilterCacheKey cacheKey = new FilterCacheKey(context.reader().getCoreCacheKey(), filterKey);
             Cache<FilterCacheKey, DocIdSet> innerCache = cache.indicesFilterCache.cache();
 
+            ShardId shardId = null;
+            if (cache.cachingPolicy != null) {
+                shardId = ShardUtils.extractShardId(context.reader());
+                cache.cachingPolicy.onUse(shardId, filterKey, context);
+            }
             DocIdSet cacheValue = innerCache.getIfPresent(cacheKey);
             if (cacheValue == null) {
+                if (cache.cachingPolicy != null && !cache.cachingPolicy.shouldCache(shardId, filter, filterKey)) {
+                    return cache.uncached(filter, context, acceptDocs);
+                }
                 if (!cache.seenReaders.containsKey(context.reader().getCoreCacheKey())) {
                     Boolean previous = cache.seenReaders.putIfAbsent(context.reader().getCoreCacheKey(), Boolean.TRUE);
                     if (previous == null) {
@@ -177,7 +204,7 @@ public class WeightedFilterCache extends AbstractIndexComponent implements Filte
                 cacheValue = DocIdSets.toCacheable(context.reader(), filter.getDocIdSet(context, null));
                 // we might put the same one concurrently, that's fine, it will be replaced and the removal
                 // will be called
-                ShardId shardId = ShardUtils.extractShardId(context.reader());
+                shardId = ShardUtils.extractShardId(context.reader());
                 if (shardId != null) {
                     IndexShard shard = cache.indexService.shard(shardId.id());
                     if (shard != null) {
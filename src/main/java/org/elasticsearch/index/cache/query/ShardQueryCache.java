@@ -22,6 +22,7 @@ package org.elasticsearch.index.cache.query;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.util.Accountable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.docset.DocIdSets;
@@ -60,21 +61,29 @@ public class ShardQueryCache extends AbstractIndexShardComponent implements Remo
         missCount.inc();
     }
 
-    public void onCached(IndicesQueryCache.Key key, BytesReference value) {
+    public void onCached(Accountable key, BytesReference value) {
         totalMetric.inc(key.ramBytesUsed() + value.length());
     }
 
     @Override
     public void onRemoval(RemovalNotification<IndicesQueryCache.Key, BytesReference> removalNotification) {
-        if (removalNotification.wasEvicted()) {
+        onRemoval(removalNotification.wasEvicted(), removalNotification.getKey(), removalNotification.getValue());
+    }
+
+    public void onSegmentRemoval(RemovalNotification<IndicesQueryCache.SegmentKey, BytesReference> removalNotification) {
+        onRemoval(removalNotification.wasEvicted(), removalNotification.getKey(), removalNotification.getValue());
+    }
+
+    private void onRemoval(boolean evicted, Accountable key, BytesReference value) {
+        if (evicted) {
             evictionsMetric.inc();
         }
         long dec = 0;
-        if (removalNotification.getKey() != null) {
-            dec += removalNotification.getKey().ramBytesUsed();
+        if (key != null) {
+            dec += key.ramBytesUsed();
         }
-        if (removalNotification.getValue() != null) {
-            dec += removalNotification.getValue().length();
+        if (value != null) {
+            dec += value.length();
         }
         totalMetric.dec(dec);
     }
@@ -0,0 +1,369 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine.internal;
+
+import com.carrotsearch.hppc.hash.MurmurHash3;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.translog.Translog;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link VersionMap} that stores the uids, versions and translog locations of the operations pending refresh in
+ * paged {@link BigArrays} structures (a {@link BytesRefHash} with parallel primitive arrays) rather than in maps of
+ * {@link BytesRef}/{@link VersionValue} objects. This keeps the number of heap objects per shard constant between
+ * refreshes, pages are recycled once a generation is dropped, and the reported RAM usage is exact rather than estimated.
+ * <p/>
+ * Like {@link LiveVersionMap}, writes go to the current generation which becomes the old generation when a refresh
+ * starts, and the old generation is released once the refresh finished. Delete tombstones outlive refreshes and are
+ * pruned by time, they are kept in a concurrent map on heap.
+ */
+class PagedLiveVersionMap extends VersionMap {
+
+    // number of independently locked segments per generation, must be a power of 2
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = 32 - Integer.numberOfTrailingZeros(SEGMENTS);
+
+    private final BigArrays bigArrays;
+
+    private static class Maps {
+
+        // All writes (adds and deletes) go into here:
+        final Generation current;
+
+        // Used while refresh is running, and to hold adds/deletes until refresh finishes, may be null:
+        final Generation old;
+
+        Maps(Generation current, Generation old) {
+            this.current = current;
+            this.old = old;
+        }
+    }
+
+    // All deletes also go here, and delete "tombstones" are retained after refresh:
+    private final Map<BytesRef,VersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+
+    private volatile Maps maps;
+
+    private ReferenceManager mgr;
+
+    /** Tracks bytes used by tombstones (deletes) */
+    final AtomicLong ramBytesUsedTombstones = new AtomicLong();
+
+    PagedLiveVersionMap(BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        this.maps = new Maps(new Generation(bigArrays), null);
+    }
+
+    @Override
+    synchronized void setManager(ReferenceManager newMgr) {
+        if (mgr != null) {
+            mgr.removeListener(this);
+        }
+        mgr = newMgr;
+
+        // In case InternalEngine closes & opens a new IndexWriter/SearcherManager, all deletes are made visible, so we clear old and
+        // current here.  This is safe because caller holds writeLock here (so no concurrent adds/deletes can be happening):
+        Maps previous = maps;
+        maps = new Maps(new Generation(bigArrays), null);
+        Releasables.close(previous.current, previous.old);
+
+        // So we are notified when reopen starts and finishes
+        mgr.addListener(this);
+    }
+
+    @Override
+    public void beforeRefresh() throws IOException {
+        // Start sending all updates after this point to the new generation. While reopen is running, any lookup will first
+        // try the new generation, then fallback to old, then to the current searcher:
+        Maps previous = maps;
+        maps = new Maps(new Generation(bigArrays), previous.current);
+        // if the previous refresh did not finish properly, its old generation is not reachable anymore
+        Releasables.close(previous.old);
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) throws IOException {
+        // We can now drop old because these operations are now visible via the newly opened searcher, see LiveVersionMap#afterRefresh.
+        // Concurrent lookups that still hold a reference to the old generation see it as empty once released, and fall back to the
+        // searcher which already has these operations:
+        Maps previous = maps;
+        maps = new Maps(previous.current, null);
+        Releasables.close(previous.old);
+    }
+
+    @Override
+    VersionValue getUnderLock(BytesRef uid) {
+        Maps currentMaps = maps;
+
+        // First try to get the "live" value:
+        VersionValue value = currentMaps.current.get(uid);
+        if (value != null) {
+            return value;
+        }
+
+        if (currentMaps.old != null) {
+            value = currentMaps.old.get(uid);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return tombstones.get(uid);
+    }
+
+    @Override
+    void putUnderLock(BytesRef uid, VersionValue version) {
+        maps.current.put(uid, version);
+
+        final VersionValue prevTombstone;
+        if (version.delete()) {
+            // Also enroll the delete into tombstones:
+            prevTombstone = tombstones.put(uid, version);
+            ramBytesUsedTombstones.addAndGet(BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.length);
+        } else {
+            // UID came back to life so we remove the tombstone:
+            prevTombstone = tombstones.remove(uid);
+        }
+
+        // Deduct tombstones bytes used for the version we just removed or replaced:
+        if (prevTombstone != null) {
+            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prevTombstone.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.length));
+            assert v >= 0: "bytes=" + v;
+        }
+    }
+
+    @Override
+    void removeTombstoneUnderLock(BytesRef uid) {
+        final VersionValue prev = tombstones.remove(uid);
+        if (prev != null) {
+            assert prev.delete();
+            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prev.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.length));
+            assert v >= 0: "bytes=" + v;
+        }
+    }
+
+    @Override
+    VersionValue getTombstoneUnderLock(BytesRef uid) {
+        return tombstones.get(uid);
+    }
+
+    @Override
+    Iterable<Map.Entry<BytesRef,VersionValue>> getAllTombstones() {
+        return tombstones.entrySet();
+    }
+
+    @Override
+    synchronized void clear() {
+        // the map is cleared when the engine closes, so the empty generation that replaces the released ones must not hold
+        // any pages as nothing would release them
+        Maps previous = maps;
+        maps = new Maps(Generation.EMPTY, null);
+        Releasables.close(previous.current, previous.old);
+        tombstones.clear();
+
+        // NOTE: we don't zero ramBytesUsedTombstones here, see LiveVersionMap#clear
+
+        if (mgr != null) {
+            mgr.removeListener(this);
+            mgr = null;
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        Maps currentMaps = maps;
+        long bytes = currentMaps.current.ramBytesUsed() + ramBytesUsedTombstones.get();
+        if (currentMaps.old != null) {
+            bytes += currentMaps.old.ramBytesUsed();
+        }
+        return bytes;
+    }
+
+    @Override
+    long ramBytesUsedForRefresh() {
+        return maps.current.ramBytesUsed();
+    }
+
+    /** One generation of pending operations, split into segments that are locked independently. */
+    static final class Generation implements Releasable {
+
+        /** A generation that holds no pages, it stays empty as writes to it are ignored. */
+        static final Generation EMPTY = new Generation();
+
+        private final Segment[] segments;
+        private final AtomicLong ramBytesUsed = new AtomicLong();
+
+        private Generation() {
+            segments = null;
+        }
+
+        Generation(BigArrays bigArrays) {
+            segments = new Segment[SEGMENTS];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = new Segment(bigArrays);
+                ramBytesUsed.addAndGet(segments[i].ramBytesUsed());
+            }
+        }
+
+        private Segment segment(int code) {
+            // BytesRefHash uses the low bits of the hash to find a slot, so we use the high bits to pick a segment
+            return segments[MurmurHash3.hash(code) >>> SEGMENT_SHIFT];
+        }
+
+        VersionValue get(BytesRef uid) {
+            if (segments == null) {
+                return null;
+            }
+            final int code = uid.hashCode();
+            return segment(code).get(uid, code);
+        }
+
+        void put(BytesRef uid, VersionValue version) {
+            if (segments == null) {
+                return;
+            }
+            final int code = uid.hashCode();
+            ramBytesUsed.addAndGet(segment(code).put(uid, code, version));
+        }
+
+        long ramBytesUsed() {
+            return ramBytesUsed.get();
+        }
+
+        @Override
+        public void close() {
+            if (segments != null) {
+                Releasables.close(segments);
+            }
+        }
+    }
+
+    /**
+     * Maps uids to ids through a {@link BytesRefHash}, the version information of an id is stored at the same index of the
+     * parallel arrays. Not thread-safe by itself, all access is synchronized on the segment.
+     */
+    static final class Segment implements Releasable {
+
+        private static final long NO_TIME = -1;
+        private static final long NO_TRANSLOG = -1;
+
+        private final BigArrays bigArrays;
+        private final BytesRefHash uids;
+        private LongArray versions;
+        // the time of deletes, NO_TIME for adds
+        private LongArray times;
+        private LongArray translogIds;
+        private LongArray translogLocations;
+        private IntArray translogSizes;
+        private boolean closed;
+
+        Segment(BigArrays bigArrays) {
+            this.bigArrays = bigArrays;
+            boolean success = false;
+            try {
+                uids = new BytesRefHash(1, bigArrays);
+                versions = bigArrays.newLongArray(1, false);
+                times = bigArrays.newLongArray(1, false);
+                translogIds = bigArrays.newLongArray(1, false);
+                translogLocations = bigArrays.newLongArray(1, false);
+                translogSizes = bigArrays.newIntArray(1, false);
+                success = true;
+            } finally {
+                if (!success) {
+                    close();
+                }
+            }
+        }
+
+        synchronized VersionValue get(BytesRef uid, int code) {
+            if (closed) {
+                return null;
+            }
+            final long id = uids.find(uid, code);
+            if (id < 0) {
+                return null;
+            }
+            final long translogId = translogIds.get(id);
+            final Translog.Location location = translogId == NO_TRANSLOG ? null : new Translog.Location(translogId, translogLocations.get(id), translogSizes.get(id));
+            final long time = times.get(id);
+            if (time == NO_TIME) {
+                return new VersionValue(versions.get(id), location);
+            } else {
+                return new DeleteVersionValue(versions.get(id), time, location);
+            }
+        }
+
+        /** Sets the version of the given uid and returns by how many bytes this segment grew. */
+        synchronized long put(BytesRef uid, int code, VersionValue version) {
+            if (closed) {
+                // a concurrent refresh released this generation after the caller picked it up, the operation
+                // is already visible in the searcher, see PagedLiveVersionMap#afterRefresh
+                return 0;
+            }
+            final long bytesBefore = ramBytesUsed();
+            long id = uids.add(uid, code);
+            if (id < 0) {
+                id = -1 - id;
+            } else {
+                versions = bigArrays.grow(versions, id + 1);
+                times = bigArrays.grow(times, id + 1);
+                translogIds = bigArrays.grow(translogIds, id + 1);
+                translogLocations = bigArrays.grow(translogLocations, id + 1);
+                translogSizes = bigArrays.grow(translogSizes, id + 1);
+            }
+            versions.set(id, version.version());
+            times.set(id, version.delete() ? version.time() : NO_TIME);
+            final Translog.Location location = version.translogLocation();
+            if (location == null) {
+                translogIds.set(id, NO_TRANSLOG);
+            } else {
+                translogIds.set(id, location.translogId);
+                translogLocations.set(id, location.translogLocation);
+                translogSizes.set(id, location.size);
+            }
+            return ramBytesUsed() - bytesBefore;
+        }
+
+        private long ramBytesUsed() {
+            return uids.ramBytesUsed() + versions.ramBytesUsed() + times.ramBytesUsed() + translogIds.ramBytesUsed()
+                    + translogLocations.ramBytesUsed() + translogSizes.ramBytesUsed();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Releasables.close(uids, versions, times, translogIds, translogLocations, translogSizes);
+        }
+    }
+}
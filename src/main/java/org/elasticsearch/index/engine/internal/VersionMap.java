@@ -0,0 +1,105 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine.internal;
+
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.util.BigArrays;
+
+import java.util.Locale;
+import java.util.Map;
+
+/** Maps _uid value to its version information, for uids that were added or deleted since the last refresh and for delete tombstones. */
+abstract class VersionMap implements ReferenceManager.RefreshListener, Accountable {
+
+    static enum Type {
+        /** {@link LiveVersionMap}, keeps versions in concurrent hash maps on heap */
+        LIVE,
+        /** {@link PagedLiveVersionMap}, keeps versions of pending adds in paged {@link BigArrays} structures */
+        PAGED;
+
+        static Type fromString(String type) {
+            if ("live".equals(type)) {
+                return LIVE;
+            } else if ("paged".equals(type)) {
+                return PAGED;
+            }
+            throw new ElasticsearchIllegalArgumentException("No version map type [" + type + "]");
+        }
+
+        VersionMap create(BigArrays bigArrays) {
+            switch (this) {
+                case LIVE:
+                    return new LiveVersionMap();
+                case PAGED:
+                    return new PagedLiveVersionMap(bigArrays);
+                default:
+                    throw new ElasticsearchIllegalArgumentException("No version map type [" + name().toLowerCase(Locale.ROOT) + "]");
+            }
+        }
+    }
+
+    /** Bytes consumed for each BytesRef UID:
+     *
+     *  NUM_BYTES_OBJECT_HEADER + 2*NUM_BYTES_INT + NUM_BYTES_OBJECT_REF + NUM_BYTES_ARRAY_HEADER [ + bytes.length] */
+    static final int BASE_BYTES_PER_BYTESREF = RamUsageEstimator.NUM_BYTES_OBJECT_HEADER +
+        2*RamUsageEstimator.NUM_BYTES_INT +
+        RamUsageEstimator.NUM_BYTES_OBJECT_REF +
+        RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
+    /** Bytes used by having CHM point to a key/value:
+     *
+     *  CHM.Entry:
+     *     + NUM_BYTES_OBJECT_HEADER + 3*NUM_BYTES_OBJECT_REF + NUM_BYTES_INT
+     *
+     *  CHM's pointer to CHM.Entry, double for approx load factor:
+     *     + 2*NUM_BYTES_OBJECT_REF */
+    static final int BASE_BYTES_PER_CHM_ENTRY = RamUsageEstimator.NUM_BYTES_OBJECT_HEADER +
+        RamUsageEstimator.NUM_BYTES_INT +
+        5*RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    /** Sync'd because we replace old mgr. */
+    abstract void setManager(ReferenceManager newMgr);
+
+    /** Returns the live version (add or delete) for this uid. */
+    abstract VersionValue getUnderLock(BytesRef uid);
+
+    /** Adds this uid/version to the pending adds map. */
+    abstract void putUnderLock(BytesRef uid, VersionValue version);
+
+    /** Removes this uid from the pending deletes map. */
+    abstract void removeTombstoneUnderLock(BytesRef uid);
+
+    /** Caller has a lock, so that this uid will not be concurrently added/deleted by another thread. */
+    abstract VersionValue getTombstoneUnderLock(BytesRef uid);
+
+    /** Iterates over all deleted versions, including new ones (not yet exposed via reader) and old ones (exposed via reader but not yet GC'd). */
+    abstract Iterable<Map.Entry<BytesRef,VersionValue>> getAllTombstones();
+
+    /** Called when this index is closed. */
+    abstract void clear();
+
+    /** Returns how much RAM would be freed up by refreshing. This is {@link #ramBytesUsed} except does not include tombstones because they
+     *  don't clear on refresh. */
+    abstract long ramBytesUsedForRefresh();
+}
@@ -20,7 +20,6 @@
 package org.elasticsearch.index.fielddata.ordinals;
 
 import org.apache.lucene.index.RandomAccessOrds;
-import org.apache.lucene.index.XOrdinalMap;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
 import org.elasticsearch.index.fielddata.AbstractRandomAccessOrds;
@@ -31,11 +30,11 @@ import org.elasticsearch.index.fielddata.AbstractRandomAccessOrds;
 public class GlobalOrdinalMapping extends AbstractRandomAccessOrds {
 
     private final RandomAccessOrds values;
-    private final XOrdinalMap ordinalMap;
+    private final IncrementalOrdinalMap ordinalMap;
     private final LongValues mapping;
     private final RandomAccessOrds[] bytesValues;
 
-    GlobalOrdinalMapping(XOrdinalMap ordinalMap, RandomAccessOrds[] bytesValues, int segmentIndex) {
+    GlobalOrdinalMapping(IncrementalOrdinalMap ordinalMap, RandomAccessOrds[] bytesValues, int segmentIndex) {
         super();
         this.values = bytesValues[segmentIndex];
         this.bytesValues = bytesValues;
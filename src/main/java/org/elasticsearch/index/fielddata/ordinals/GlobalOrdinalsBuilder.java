@@ -21,16 +21,20 @@ package org.elasticsearch.index.fielddata.ordinals;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomAccessOrds;
-import org.apache.lucene.index.XOrdinalMap;
-import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardUtils;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utility class to build global ordinals.
@@ -38,29 +42,61 @@ import java.io.IOException;
 public enum GlobalOrdinalsBuilder {
     ;
 
+    /**
+     * Whether global ordinals should be built from the global ordinals of the previous reader of the shard when
+     * possible, defaults to <tt>true</tt>.
+     */
+    public static final String INCREMENTAL_SETTING = "index.fielddata.global_ordinals.incremental";
+
     /**
      * Build global ordinals for the provided {@link IndexReader}.
      */
     public static IndexOrdinalsFieldData build(final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData, Settings settings, CircuitBreakerService breakerService, ESLogger logger) throws IOException {
+        return build(indexReader, indexFieldData, settings, breakerService, logger, null);
+    }
+
+    /**
+     * Build global ordinals for the provided {@link IndexReader}, from the global ordinals of the previous reader of
+     * the same shard if they are tracked by the provided generations and the new reader only added segments to it.
+     */
+    public static IndexOrdinalsFieldData build(final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData, Settings settings, CircuitBreakerService breakerService, ESLogger logger,
+                                               @Nullable Generations generations) throws IOException {
         assert indexReader.leaves().size() > 1;
         long startTime = System.currentTimeMillis();
 
         final AtomicOrdinalsFieldData[] atomicFD = new AtomicOrdinalsFieldData[indexReader.leaves().size()];
         final RandomAccessOrds[] subs = new RandomAccessOrds[indexReader.leaves().size()];
+        final Object[] segmentKeys = new Object[indexReader.leaves().size()];
         for (int i = 0; i < indexReader.leaves().size(); ++i) {
             atomicFD[i] = indexFieldData.load(indexReader.leaves().get(i));
             subs[i] = atomicFD[i].getOrdinalsValues();
+            segmentKeys[i] = indexReader.leaves().get(i).reader().getCoreCacheKey();
+        }
+
+        final ShardId shardId = generations != null && settings.getAsBoolean(INCREMENTAL_SETTING, true) ? ShardUtils.extractShardId(indexReader) : null;
+        IncrementalOrdinalMap ordinalMap = null;
+        if (shardId != null) {
+            final IncrementalOrdinalMap previous = generations.get(shardId);
+            if (previous != null) {
+                ordinalMap = IncrementalOrdinalMap.update(previous, segmentKeys, subs);
+            }
+        }
+        if (ordinalMap == null) {
+            ordinalMap = IncrementalOrdinalMap.build(segmentKeys, subs);
+        }
+        if (shardId != null) {
+            generations.put(shardId, ordinalMap);
         }
-        final XOrdinalMap ordinalMap = XOrdinalMap.build(null, subs, PackedInts.DEFAULT);
         final long memorySizeInBytes = ordinalMap.ramBytesUsed();
         breakerService.getBreaker(CircuitBreaker.Name.FIELDDATA).addWithoutBreaking(memorySizeInBytes);
 
         if (logger.isDebugEnabled()) {
             logger.debug(
-                    "Global-ordinals[{}][{}] took {} ms",
+                    "Global-ordinals[{}][{}] took {} ms (generation [{}])",
                     indexFieldData.getFieldNames().fullName(),
                     ordinalMap.getValueCount(),
-                    (System.currentTimeMillis() - startTime)
+                    (System.currentTimeMillis() - startTime),
+                    ordinalMap.getGeneration()
             );
         }
         return new InternalGlobalOrdinalsIndexFieldData(indexFieldData.index(), settings, indexFieldData.getFieldNames(),
@@ -68,4 +104,24 @@ public enum GlobalOrdinalsBuilder {
         );
     }
 
+    /**
+     * Keeps track of the last global ordinals that were built for each shard, so that the global ordinals of the next
+     * reader of the shard can be built from them. The global ordinals are only weakly referenced, so that they can still
+     * be released once they are evicted from the field data cache.
+     */
+    public static final class Generations {
+
+        private final ConcurrentMap<ShardId, WeakReference<IncrementalOrdinalMap>> lastMaps = ConcurrentCollections.newConcurrentMap();
+
+        @Nullable
+        IncrementalOrdinalMap get(ShardId shardId) {
+            final WeakReference<IncrementalOrdinalMap> ref = lastMaps.get(shardId);
+            return ref == null ? null : ref.get();
+        }
+
+        void put(ShardId shardId, IncrementalOrdinalMap ordinalMap) {
+            lastMaps.put(shardId, new WeakReference<>(ordinalMap));
+        }
+    }
+
 }
@@ -0,0 +1,336 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.fielddata.ordinals;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.index.XOrdinalMap;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.common.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Maps segment ordinals to global ordinals and back. Unlike {@link XOrdinalMap}, the map of a new generation of a reader
+ * can be built from the map of the previous generation, when the new reader only adds segments to the previous one:
+ * the terms of the new segments are merged into the term space of the previous generation, and the mappings of the
+ * segments that didn't change are derived from the previous ones, shifted by the number of new terms that sort before
+ * their terms. Building the new generation only compares the terms of the new segments, and copies the mappings of the
+ * other segments in linear time. The mappings are materialized, so lookups don't depend on the previous generations.
+ * <p/>
+ * Materialized mappings are less compact than the ones of a map built from scratch, so a map is built from scratch
+ * again after {@link #MAX_GENERATIONS} generations, or when segments of the previous generation went away.
+ */
+public final class IncrementalOrdinalMap implements Accountable {
+
+    public static final int MAX_GENERATIONS = 16;
+
+    private static final long[] EMPTY_LONGS = new long[0];
+
+    // the core cache keys of the segments, to find out which segments the next generation shares with this one
+    private final Object[] segmentKeys;
+    private final long valueCount;
+    private final int generation;
+    private final long ramBytesUsed;
+
+    // only set on a map built from scratch
+    private final XOrdinalMap ordinalMap;
+
+    // only set on a map built from the previous generation
+    // for every segment, segment ordinal -> global ordinal
+    private final LongValues[] segmentMappings;
+    // for every global ordinal, the first segment that contains the term and the ordinal of the term in this segment
+    private final PackedInts.Reader firstSegments;
+    private final PackedInts.Reader firstSegmentOrds;
+
+    private IncrementalOrdinalMap(Object[] segmentKeys, XOrdinalMap ordinalMap) {
+        this.segmentKeys = segmentKeys;
+        this.ordinalMap = ordinalMap;
+        this.valueCount = ordinalMap.getValueCount();
+        this.generation = 0;
+        this.ramBytesUsed = ordinalMap.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(segmentKeys);
+        this.segmentMappings = null;
+        this.firstSegments = null;
+        this.firstSegmentOrds = null;
+    }
+
+    private IncrementalOrdinalMap(Object[] segmentKeys, long valueCount, int generation, LongValues[] segmentMappings,
+                                  long segmentMappingsBytesUsed, PackedInts.Reader firstSegments, PackedInts.Reader firstSegmentOrds) {
+        this.segmentKeys = segmentKeys;
+        this.ordinalMap = null;
+        this.valueCount = valueCount;
+        this.generation = generation;
+        this.segmentMappings = segmentMappings;
+        this.firstSegments = firstSegments;
+        this.firstSegmentOrds = firstSegmentOrds;
+        this.ramBytesUsed = segmentMappingsBytesUsed + RamUsageEstimator.shallowSizeOf(segmentKeys)
+                + firstSegments.ramBytesUsed() + firstSegmentOrds.ramBytesUsed();
+    }
+
+    /**
+     * Builds the map of the provided segments from scratch.
+     *
+     * @param segmentKeys the core cache keys of the segments
+     * @param subs        the ordinals of the segments
+     */
+    public static IncrementalOrdinalMap build(Object[] segmentKeys, RandomAccessOrds[] subs) throws IOException {
+        assert segmentKeys.length == subs.length;
+        return new IncrementalOrdinalMap(segmentKeys, XOrdinalMap.build(null, subs, PackedInts.DEFAULT));
+    }
+
+    /**
+     * Builds the map of the provided segments from the map of the previous generation, or returns <tt>null</tt> if
+     * it needs to be built from scratch, because some segments of the previous generation are gone or because the
+     * previous generation is already too deep.
+     *
+     * @param segmentKeys the core cache keys of the segments
+     * @param subs        the ordinals of the segments
+     */
+    @Nullable
+    public static IncrementalOrdinalMap update(IncrementalOrdinalMap previous, Object[] segmentKeys, RandomAccessOrds[] subs) throws IOException {
+        assert segmentKeys.length == subs.length;
+        if (previous.generation + 1 >= MAX_GENERATIONS) {
+            return null;
+        }
+        final ObjectIntOpenHashMap<Object> previousSegments = new ObjectIntOpenHashMap<>(previous.segmentKeys.length);
+        for (int i = 0; i < previous.segmentKeys.length; i++) {
+            previousSegments.put(previous.segmentKeys[i], i);
+        }
+        final int[] currentToPrevious = new int[segmentKeys.length];
+        final int[] previousToCurrent = new int[previous.segmentKeys.length];
+        final IntArrayList newSegments = new IntArrayList();
+        int sharedSegments = 0;
+        for (int i = 0; i < segmentKeys.length; i++) {
+            if (previousSegments.containsKey(segmentKeys[i])) {
+                final int previousIndex = previousSegments.lget();
+                currentToPrevious[i] = previousIndex;
+                previousToCurrent[previousIndex] = i;
+                sharedSegments++;
+            } else {
+                currentToPrevious[i] = -1;
+                newSegments.add(i);
+            }
+        }
+        if (sharedSegments != previous.segmentKeys.length) {
+            // segments were merged away, their terms might not exist anymore
+            return null;
+        }
+
+        // the union of the terms of the new segments
+        final RandomAccessOrds[] newSubs = new RandomAccessOrds[newSegments.size()];
+        for (int i = 0; i < newSubs.length; i++) {
+            newSubs[i] = subs[newSegments.get(i)];
+        }
+        final XOrdinalMap newTerms = newSubs.length == 0 ? null : XOrdinalMap.build(null, newSubs, PackedInts.DEFAULT);
+        final long numNewTerms = newTerms == null ? 0 : newTerms.getValueCount();
+        if (previous.valueCount + numNewTerms > Integer.MAX_VALUE) {
+            // too many terms for the materialized mappings
+            return null;
+        }
+
+        // find where each of them goes in the terms of the previous generation, since the terms are sorted the
+        // searches never need to go back
+        final long[] previousOrds = new long[(int) numNewTerms]; // ordinal in the previous generation, or -1 - index of the inserted term
+        final LongArrayList insertionPoints = new LongArrayList();
+        final IntArrayList insertedFirstSegments = new IntArrayList();
+        final LongArrayList insertedFirstSegmentOrds = new LongArrayList();
+        long from = 0;
+        for (int ord = 0; ord < numNewTerms; ord++) {
+            final int segment = newSegments.get(newTerms.getFirstSegmentNumber(ord));
+            final long segmentOrd = newTerms.getFirstSegmentOrd(ord);
+            final BytesRef term = BytesRef.deepCopyOf(subs[segment].lookupOrd(segmentOrd));
+            final long previousOrd = previous.search(subs, previousToCurrent, term, from);
+            if (previousOrd >= 0) {
+                previousOrds[ord] = previousOrd;
+                from = previousOrd + 1;
+            } else {
+                final long insertionPoint = -1 - previousOrd;
+                previousOrds[ord] = -1 - insertionPoints.size();
+                insertionPoints.add(insertionPoint);
+                insertedFirstSegments.add(segment);
+                insertedFirstSegmentOrds.add(segmentOrd);
+                from = insertionPoint;
+            }
+        }
+        final long[] points = insertionPoints.isEmpty() ? EMPTY_LONGS : insertionPoints.toArray();
+        final long valueCount = previous.valueCount + points.length;
+        final int globalOrdBits = PackedInts.bitsRequired(Math.max(0, valueCount - 1));
+
+        // map the ordinals of every segment to the new global ordinals
+        final LongValues[] segmentMappings = new LongValues[segmentKeys.length];
+        long segmentMappingsBytesUsed = RamUsageEstimator.shallowSizeOf(segmentMappings);
+        long maxSegmentValueCount = 0;
+        int newSegment = 0;
+        for (int segment = 0; segment < segmentKeys.length; segment++) {
+            final int size = (int) subs[segment].getValueCount();
+            maxSegmentValueCount = Math.max(maxSegmentValueCount, size);
+            final PackedInts.Mutable mapping = PackedInts.getMutable(size, globalOrdBits, PackedInts.DEFAULT);
+            final int previousIndex = currentToPrevious[segment];
+            if (previousIndex == -1) {
+                final LongValues newTermOrds = newTerms.getGlobalOrds(newSegment++);
+                for (int segmentOrd = 0; segmentOrd < size; segmentOrd++) {
+                    final long previousOrd = previousOrds[(int) newTermOrds.get(segmentOrd)];
+                    final long globalOrd;
+                    if (previousOrd >= 0) {
+                        globalOrd = previousOrd + countLessThanOrEqual(points, previousOrd);
+                    } else {
+                        final int inserted = (int) (-1 - previousOrd);
+                        globalOrd = points[inserted] + inserted;
+                    }
+                    mapping.set(segmentOrd, globalOrd);
+                }
+            } else {
+                // segment ordinals and previous global ordinals sort the same way, so the number of inserted terms
+                // that sort before the term only goes up
+                final LongValues previousGlobalOrds = previous.getGlobalOrds(previousIndex);
+                int numInsertedBefore = 0;
+                for (int segmentOrd = 0; segmentOrd < size; segmentOrd++) {
+                    final long previousOrd = previousGlobalOrds.get(segmentOrd);
+                    while (numInsertedBefore < points.length && points[numInsertedBefore] <= previousOrd) {
+                        numInsertedBefore++;
+                    }
+                    mapping.set(segmentOrd, previousOrd + numInsertedBefore);
+                }
+            }
+            segmentMappings[segment] = new LongValues() {
+                @Override
+                public long get(long ord) {
+                    return mapping.get((int) ord);
+                }
+            };
+            segmentMappingsBytesUsed += mapping.ramBytesUsed();
+        }
+
+        // and map the global ordinals back to their first segment, by merging the terms of the previous generation
+        // with the inserted ones
+        final PackedInts.Mutable firstSegments = PackedInts.getMutable((int) valueCount,
+                PackedInts.bitsRequired(Math.max(0, segmentKeys.length - 1)), PackedInts.DEFAULT);
+        final PackedInts.Mutable firstSegmentOrds = PackedInts.getMutable((int) valueCount,
+                PackedInts.bitsRequired(Math.max(0, maxSegmentValueCount - 1)), PackedInts.DEFAULT);
+        int inserted = 0;
+        long previousOrd = 0;
+        for (int globalOrd = 0; globalOrd < valueCount; globalOrd++) {
+            if (inserted < points.length && points[inserted] <= previousOrd) {
+                firstSegments.set(globalOrd, insertedFirstSegments.get(inserted));
+                firstSegmentOrds.set(globalOrd, insertedFirstSegmentOrds.get(inserted));
+                inserted++;
+            } else {
+                firstSegments.set(globalOrd, previousToCurrent[previous.getFirstSegmentNumber(previousOrd)]);
+                firstSegmentOrds.set(globalOrd, previous.getFirstSegmentOrd(previousOrd));
+                previousOrd++;
+            }
+        }
+
+        return new IncrementalOrdinalMap(segmentKeys, valueCount, previous.generation + 1, segmentMappings, segmentMappingsBytesUsed,
+                firstSegments, firstSegmentOrds);
+    }
+
+    /**
+     * Returns the ordinal of the term in this map if it exists, or <tt>-1 - insertion point</tt> otherwise.
+     */
+    private long search(RandomAccessOrds[] subs, int[] toCurrent, BytesRef term, long from) {
+        long low = from;
+        long high = valueCount - 1;
+        while (low <= high) {
+            final long mid = (low + high) >>> 1;
+            final long segmentOrd = getFirstSegmentOrd(mid);
+            final int segment = toCurrent[getFirstSegmentNumber(mid)];
+            final int cmp = subs[segment].lookupOrd(segmentOrd).compareTo(term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1 - low;
+    }
+
+    // the number of values of the sorted array that are less than or equal to the key
+    private static int countLessThanOrEqual(long[] values, long key) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Given a segment number, return a {@link LongValues} instance that maps segment ordinals to global ordinals.
+     */
+    public LongValues getGlobalOrds(int segmentIndex) {
+        if (ordinalMap != null) {
+            return ordinalMap.getGlobalOrds(segmentIndex);
+        }
+        return segmentMappings[segmentIndex];
+    }
+
+    /**
+     * Given global ordinal, returns the ordinal of the first segment which contains this ordinal (the corresponding
+     * to the segment return {@link #getFirstSegmentNumber}).
+     */
+    public long getFirstSegmentOrd(long globalOrd) {
+        if (ordinalMap != null) {
+            return ordinalMap.getFirstSegmentOrd(globalOrd);
+        }
+        return firstSegmentOrds.get((int) globalOrd);
+    }
+
+    /**
+     * Given a global ordinal, returns the index of the first segment that contains this term.
+     */
+    public int getFirstSegmentNumber(long globalOrd) {
+        if (ordinalMap != null) {
+            return ordinalMap.getFirstSegmentNumber(globalOrd);
+        }
+        return (int) firstSegments.get((int) globalOrd);
+    }
+
+    /**
+     * Returns the total number of unique terms in global ord space.
+     */
+    public long getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Returns how many generations were built incrementally on top of the last map built from scratch.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed;
+    }
+}
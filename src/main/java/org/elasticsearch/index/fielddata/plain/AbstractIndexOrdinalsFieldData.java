@@ -44,6 +44,7 @@ public abstract class AbstractIndexOrdinalsFieldData extends AbstractIndexFieldD
     protected Settings frequency;
     protected Settings regex;
     protected final CircuitBreakerService breakerService;
+    private final GlobalOrdinalsBuilder.Generations globalOrdinalsGenerations = new GlobalOrdinalsBuilder.Generations();
 
     protected AbstractIndexOrdinalsFieldData(Index index, Settings indexSettings, Names fieldNames, FieldDataType fieldDataType,
                                           IndexFieldDataCache cache, CircuitBreakerService breakerService) {
@@ -78,7 +79,7 @@ public abstract class AbstractIndexOrdinalsFieldData extends AbstractIndexFieldD
 
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(IndexReader indexReader) throws Exception {
-        return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger);
+        return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger, globalOrdinalsGenerations);
     }
 
     protected TermsEnum filter(Terms terms, AtomicReader reader) throws IOException {
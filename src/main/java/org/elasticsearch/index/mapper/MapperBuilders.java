@@ -153,6 +153,14 @@ public final class MapperBuilders {
         return new Murmur3FieldMapper.Builder(name);
     }
 
+    public static HyperLogLogFieldMapper.Builder hyperLogLogField(String name) {
+        return new HyperLogLogFieldMapper.Builder(name);
+    }
+
+    public static TDigestFieldMapper.Builder tDigestField(String name) {
+        return new TDigestFieldMapper.Builder(name);
+    }
+
     public static FloatFieldMapper.Builder floatField(String name) {
         return new FloatFieldMapper.Builder(name);
     }
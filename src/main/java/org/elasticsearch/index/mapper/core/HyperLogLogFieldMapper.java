@@ -0,0 +1,159 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper.core;
+
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.codec.docvaluesformat.DocValuesFormatProvider;
+import org.elasticsearch.index.codec.postingsformat.PostingsFormatProvider;
+import org.elasticsearch.index.mapper.Mapper;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.mapper.MergeContext;
+import org.elasticsearch.index.mapper.MergeMappingException;
+import org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.elasticsearch.common.xcontent.support.XContentMapValues.nodeIntegerValue;
+import static org.elasticsearch.index.mapper.MapperBuilders.hyperLogLogField;
+import static org.elasticsearch.index.mapper.core.TypeParsers.parseField;
+
+/**
+ * A field that stores a HyperLogLog++ counter of the values of the field in each document, which the
+ * <tt>cardinality</tt> aggregation can merge in order to count unique values across documents.
+ */
+public class HyperLogLogFieldMapper extends SketchFieldMapper {
+
+    public static final String CONTENT_TYPE = "hyperloglog";
+
+    public static class Defaults extends SketchFieldMapper.Defaults {
+        public static final int PRECISION = HyperLogLogPlusPlus.DEFAULT_PRECISION;
+    }
+
+    public static class Builder extends AbstractFieldMapper.Builder<Builder, HyperLogLogFieldMapper> {
+
+        private int precision = Defaults.PRECISION;
+
+        public Builder(String name) {
+            super(name, new FieldType(Defaults.FIELD_TYPE));
+            builder = this;
+        }
+
+        public Builder precision(int precision) {
+            if (precision < HyperLogLogPlusPlus.MIN_PRECISION || precision > HyperLogLogPlusPlus.MAX_PRECISION) {
+                throw new MapperParsingException("[precision] must be between " + HyperLogLogPlusPlus.MIN_PRECISION
+                        + " and " + HyperLogLogPlusPlus.MAX_PRECISION + ", got " + precision);
+            }
+            this.precision = precision;
+            return this;
+        }
+
+        @Override
+        public HyperLogLogFieldMapper build(BuilderContext context) {
+            return new HyperLogLogFieldMapper(buildNames(context), fieldType, precision, postingsProvider, docValuesProvider,
+                    fieldDataSettings, context.indexSettings());
+        }
+    }
+
+    public static class TypeParser implements Mapper.TypeParser {
+        @Override
+        public Mapper.Builder parse(String name, Map<String, Object> node, ParserContext parserContext) throws MapperParsingException {
+            HyperLogLogFieldMapper.Builder builder = hyperLogLogField(name);
+            parseField(builder, name, node, parserContext);
+            for (Map.Entry<String, Object> entry : node.entrySet()) {
+                String fieldName = Strings.toUnderscoreCase(entry.getKey());
+                Object fieldNode = entry.getValue();
+                if (fieldName.equals("precision") && fieldNode != null) {
+                    builder.precision(nodeIntegerValue(fieldNode));
+                }
+            }
+            return builder;
+        }
+    }
+
+    private final int precision;
+
+    protected HyperLogLogFieldMapper(Names names, FieldType fieldType, int precision, PostingsFormatProvider postingsProvider,
+                                     DocValuesFormatProvider docValuesProvider, @Nullable Settings fieldDataSettings, Settings indexSettings) {
+        super(names, fieldType, postingsProvider, docValuesProvider, fieldDataSettings, indexSettings);
+        this.precision = precision;
+    }
+
+    /**
+     * The precision of the counters, sketches can only be merged with counters that have the same precision.
+     */
+    public int precision() {
+        return precision;
+    }
+
+    @Override
+    protected Sketch newSketch() {
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        return new Sketch() {
+
+            private final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+
+            @Override
+            public void add(XContentParser parser) throws IOException {
+                // values are hashed the same way as murmur3 fields
+                final BytesRef bytes = new BytesRef(parser.text());
+                counts.collect(0, MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, 0, hash).h1);
+            }
+
+            @Override
+            public void writeTo(StreamOutput out) throws IOException {
+                counts.writeTo(0, out);
+            }
+        };
+    }
+
+    @Override
+    protected String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    protected void doXContentBody(XContentBuilder builder, boolean includeDefaults, Params params) throws IOException {
+        super.doXContentBody(builder, includeDefaults, params);
+        if (includeDefaults || precision != Defaults.PRECISION) {
+            builder.field("precision", precision);
+        }
+    }
+
+    @Override
+    public void merge(Mapper mergeWith, MergeContext mergeContext) throws MergeMappingException {
+        super.merge(mergeWith, mergeContext);
+        if (!this.getClass().equals(mergeWith.getClass())) {
+            return;
+        }
+        if (precision != ((HyperLogLogFieldMapper) mergeWith).precision) {
+            mergeContext.addConflict("mapper [" + names.fullName() + "] has different precision");
+        }
+    }
+}
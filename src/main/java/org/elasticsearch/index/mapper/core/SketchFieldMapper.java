@@ -0,0 +1,167 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper.core;
+
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.Base64;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.codec.docvaluesformat.DocValuesFormatProvider;
+import org.elasticsearch.index.codec.postingsformat.PostingsFormatProvider;
+import org.elasticsearch.index.fielddata.FieldDataType;
+import org.elasticsearch.index.mapper.ParseContext;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Base class for fields that store a mergeable sketch per document, such as a HyperLogLog++ counter or a t-digest.
+ * The sketch is built at index time from all the values of the field in the document and stored, serialized, as
+ * binary doc values so that aggregations can merge sketches instead of the original values.
+ */
+public abstract class SketchFieldMapper extends AbstractFieldMapper<BytesReference> {
+
+    public static class Defaults extends AbstractFieldMapper.Defaults {
+        public static final FieldType FIELD_TYPE = new FieldType(AbstractFieldMapper.Defaults.FIELD_TYPE);
+
+        static {
+            FIELD_TYPE.setIndexed(false);
+            FIELD_TYPE.freeze();
+        }
+    }
+
+    /**
+     * A sketch that the values of a document are added to.
+     */
+    protected static interface Sketch {
+
+        /**
+         * Add the current value of the parser to the sketch.
+         */
+        void add(XContentParser parser) throws IOException;
+
+        /**
+         * Serialize the sketch.
+         */
+        void writeTo(StreamOutput out) throws IOException;
+
+    }
+
+    protected SketchFieldMapper(Names names, FieldType fieldType, PostingsFormatProvider postingsProvider,
+                                DocValuesFormatProvider docValuesProvider, @Nullable Settings fieldDataSettings, Settings indexSettings) {
+        // sketches are only useful to aggregations, so they always have doc values
+        super(names, 1.0f, fieldType, true, null, null, postingsProvider, docValuesProvider, null, null, fieldDataSettings, indexSettings);
+    }
+
+    /**
+     * Create a new empty sketch.
+     */
+    protected abstract Sketch newSketch();
+
+    @Override
+    public FieldType defaultFieldType() {
+        return Defaults.FIELD_TYPE;
+    }
+
+    @Override
+    public FieldDataType defaultFieldDataType() {
+        return new FieldDataType("binary");
+    }
+
+    @Override
+    public Object valueForSearch(Object value) {
+        return value(value);
+    }
+
+    @Override
+    public BytesReference value(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BytesRef) {
+            return new BytesArray((BytesRef) value);
+        } else if (value instanceof BytesReference) {
+            return (BytesReference) value;
+        } else if (value instanceof byte[]) {
+            return new BytesArray((byte[]) value);
+        }
+        try {
+            return new BytesArray(Base64.decode(value.toString()));
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("failed to convert bytes", e);
+        }
+    }
+
+    @Override
+    protected void parseCreateField(ParseContext context, List<Field> fields) throws IOException {
+        final XContentParser parser = context.parser();
+        if (parser.currentToken() == XContentParser.Token.VALUE_NULL) {
+            return;
+        }
+        // values of arrays are parsed one by one, they all go to the same sketch
+        SketchDocValuesField field = (SketchDocValuesField) context.doc().getByKey(names().indexName());
+        if (field == null) {
+            field = new SketchDocValuesField(names().indexName(), newSketch());
+            context.doc().addWithKey(names().indexName(), field);
+        }
+        field.sketch.add(parser);
+    }
+
+    /**
+     * Binary doc values field that serializes the sketch of the document using the same format as
+     * {@link BinaryFieldMapper.CustomBinaryDocValuesField} with a single value.
+     */
+    public static class SketchDocValuesField extends NumberFieldMapper.CustomNumericDocValuesField {
+
+        private final Sketch sketch;
+
+        public SketchDocValuesField(String name, Sketch sketch) {
+            super(name);
+            this.sketch = sketch;
+        }
+
+        @Override
+        public BytesRef binaryValue() {
+            try {
+                BytesStreamOutput out = new BytesStreamOutput();
+                sketch.writeTo(out);
+                final BytesRef value = out.bytes().toBytesRef();
+                final byte[] bytes = new byte[value.length + 10];
+                ByteArrayDataOutput dataOut = new ByteArrayDataOutput(bytes);
+                dataOut.writeVInt(1); // a single value
+                dataOut.writeVInt(value.length);
+                dataOut.writeBytes(value.bytes, value.offset, value.length);
+                return new BytesRef(bytes, 0, dataOut.getPosition());
+            } catch (IOException e) {
+                throw new ElasticsearchException("Failed to serialize sketch", e);
+            }
+        }
+    }
+}
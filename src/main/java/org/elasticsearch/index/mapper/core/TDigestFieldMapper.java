@@ -0,0 +1,148 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper.core;
+
+import org.apache.lucene.document.FieldType;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.codec.docvaluesformat.DocValuesFormatProvider;
+import org.elasticsearch.index.codec.postingsformat.PostingsFormatProvider;
+import org.elasticsearch.index.mapper.Mapper;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.mapper.MergeContext;
+import org.elasticsearch.index.mapper.MergeMappingException;
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.elasticsearch.common.xcontent.support.XContentMapValues.nodeDoubleValue;
+import static org.elasticsearch.index.mapper.MapperBuilders.tDigestField;
+import static org.elasticsearch.index.mapper.core.TypeParsers.parseField;
+
+/**
+ * A field that stores a t-digest of the numeric values of the field in each document, which the <tt>percentiles</tt>
+ * and <tt>percentile_ranks</tt> aggregations can merge in order to compute percentiles across documents.
+ */
+public class TDigestFieldMapper extends SketchFieldMapper {
+
+    public static final String CONTENT_TYPE = "tdigest";
+
+    public static class Defaults extends SketchFieldMapper.Defaults {
+        public static final double COMPRESSION = 100;
+    }
+
+    public static class Builder extends AbstractFieldMapper.Builder<Builder, TDigestFieldMapper> {
+
+        private double compression = Defaults.COMPRESSION;
+
+        public Builder(String name) {
+            super(name, new FieldType(Defaults.FIELD_TYPE));
+            builder = this;
+        }
+
+        public Builder compression(double compression) {
+            if (compression <= 0) {
+                throw new MapperParsingException("[compression] must be greater than 0, got " + compression);
+            }
+            this.compression = compression;
+            return this;
+        }
+
+        @Override
+        public TDigestFieldMapper build(BuilderContext context) {
+            return new TDigestFieldMapper(buildNames(context), fieldType, compression, postingsProvider, docValuesProvider,
+                    fieldDataSettings, context.indexSettings());
+        }
+    }
+
+    public static class TypeParser implements Mapper.TypeParser {
+        @Override
+        public Mapper.Builder parse(String name, Map<String, Object> node, ParserContext parserContext) throws MapperParsingException {
+            TDigestFieldMapper.Builder builder = tDigestField(name);
+            parseField(builder, name, node, parserContext);
+            for (Map.Entry<String, Object> entry : node.entrySet()) {
+                String fieldName = Strings.toUnderscoreCase(entry.getKey());
+                Object fieldNode = entry.getValue();
+                if (fieldName.equals("compression") && fieldNode != null) {
+                    builder.compression(nodeDoubleValue(fieldNode));
+                }
+            }
+            return builder;
+        }
+    }
+
+    private final double compression;
+
+    protected TDigestFieldMapper(Names names, FieldType fieldType, double compression, PostingsFormatProvider postingsProvider,
+                                 DocValuesFormatProvider docValuesProvider, @Nullable Settings fieldDataSettings, Settings indexSettings) {
+        super(names, fieldType, postingsProvider, docValuesProvider, fieldDataSettings, indexSettings);
+        this.compression = compression;
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    @Override
+    protected Sketch newSketch() {
+        final TDigestState state = new TDigestState(compression);
+        return new Sketch() {
+
+            @Override
+            public void add(XContentParser parser) throws IOException {
+                state.add(parser.doubleValue());
+            }
+
+            @Override
+            public void writeTo(StreamOutput out) throws IOException {
+                TDigestState.write(state, out);
+            }
+        };
+    }
+
+    @Override
+    protected String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    protected void doXContentBody(XContentBuilder builder, boolean includeDefaults, Params params) throws IOException {
+        super.doXContentBody(builder, includeDefaults, params);
+        if (includeDefaults || compression != Defaults.COMPRESSION) {
+            builder.field("compression", compression);
+        }
+    }
+
+    @Override
+    public void merge(Mapper mergeWith, MergeContext mergeContext) throws MergeMappingException {
+        super.merge(mergeWith, mergeContext);
+        if (!this.getClass().equals(mergeWith.getClass())) {
+            return;
+        }
+        if (compression != ((TDigestFieldMapper) mergeWith).compression) {
+            mergeContext.addConflict("mapper [" + names.fullName() + "] has different compression");
+        }
+    }
+}
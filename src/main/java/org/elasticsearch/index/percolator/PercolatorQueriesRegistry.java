@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.percolator;
 
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.TermFilter;
 import org.apache.lucene.search.Query;
@@ -53,7 +54,10 @@ import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.percolator.PercolatorService;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -77,6 +81,7 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
     private final ShardPercolateService shardPercolateService;
 
     private final ConcurrentMap<BytesRef, Query> percolateQueries = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+    private final QueryTermsIndex queryTermsIndex = new QueryTermsIndex();
     private final ShardLifecycleListener shardLifecycleListener = new ShardLifecycleListener();
     private final RealTimePercolatorOperationListener realTimePercolatorOperationListener = new RealTimePercolatorOperationListener();
     private final PercolateTypeListener percolateTypeListener = new PercolateTypeListener();
@@ -110,6 +115,26 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
         return percolateQueries;
     }
 
+    /**
+     * Returns the queries that may match the document(s) of the given reader, based on the terms that
+     * the queries require. The returned queries are a superset of the queries that match.
+     */
+    public Map<BytesRef, Query> candidateQueries(IndexReader reader) throws IOException {
+        if (queryTermsIndex.unindexedQueriesCount() >= percolateQueries.size()) {
+            // all queries are candidates
+            return percolateQueries;
+        }
+        final Set<BytesRef> ids = queryTermsIndex.candidates(reader);
+        final Map<BytesRef, Query> candidates = new HashMap<>(ids.size());
+        for (BytesRef id : ids) {
+            final Query query = percolateQueries.get(id);
+            if (query != null) {
+                candidates.put(id, query);
+            }
+        }
+        return candidates;
+    }
+
     public void close() {
         mapperService.removeTypeListener(percolateTypeListener);
         indicesLifecycle.removeListener(shardLifecycleListener);
@@ -119,6 +144,7 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
 
     public void clear() {
         percolateQueries.clear();
+        queryTermsIndex.clear();
     }
 
     void enableRealTimePercolator() {
@@ -137,12 +163,14 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
         Query newquery = parsePercolatorDocument(idAsString, source);
         BytesRef id = new BytesRef(idAsString);
         Query previousQuery = percolateQueries.put(id, newquery);
+        queryTermsIndex.add(id, newquery);
         shardPercolateService.addedQuery(id, previousQuery, newquery);
     }
 
     public void removePercolateQuery(String idAsString) {
         BytesRef id = new BytesRef(idAsString);
         Query query = percolateQueries.remove(id);
+        queryTermsIndex.remove(id);
         if (query != null) {
             shardPercolateService.removedQuery(id, query);
         }
@@ -270,6 +298,7 @@ public class PercolatorQueriesRegistry extends AbstractIndexShardComponent {
                 Map<BytesRef, Query> queries = queryCollector.queries();
                 for (Map.Entry<BytesRef, Query> entry : queries.entrySet()) {
                     Query previousQuery = percolateQueries.put(entry.getKey(), entry.getValue());
+                    queryTermsIndex.add(entry.getKey(), entry.getValue());
                     shardPercolateService.addedQuery(entry.getKey(), previousQuery, entry.getValue());
                 }
                 return queries.size();
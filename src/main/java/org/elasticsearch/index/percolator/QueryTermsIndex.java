@@ -0,0 +1,209 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.queries.TermFilter;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.search.XFilteredQuery;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Indexes the percolator queries of a shard by the terms that a document must contain in order to be matched by them,
+ * so that a document only needs to be percolated against the queries that share terms with it.
+ * <p/>
+ * Queries whose required terms can't be extracted, like range or wildcard queries, are always candidates.
+ */
+public class QueryTermsIndex {
+
+    private final ConcurrentMap<Term, Set<BytesRef>> queriesByTerm = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<BytesRef, Set<Term>> termsByQuery = ConcurrentCollections.newConcurrentMap();
+    private final Set<BytesRef> unindexedQueries = ConcurrentCollections.newConcurrentSet();
+
+    /**
+     * Register the query with the given id, replacing the previous version of the query if any.
+     */
+    public synchronized void add(BytesRef id, Query query) {
+        remove(id);
+        final Set<Term> terms = extractQueryTerms(query);
+        if (terms == null) {
+            unindexedQueries.add(id);
+            termsByQuery.put(id, Collections.<Term>emptySet());
+        } else {
+            for (Term term : terms) {
+                Set<BytesRef> ids = queriesByTerm.get(term);
+                if (ids == null) {
+                    ids = ConcurrentCollections.newConcurrentSet();
+                    queriesByTerm.put(term, ids);
+                }
+                ids.add(id);
+            }
+            termsByQuery.put(id, terms);
+        }
+    }
+
+    /**
+     * Unregister the query with the given id.
+     */
+    public synchronized void remove(BytesRef id) {
+        final Set<Term> terms = termsByQuery.remove(id);
+        if (terms == null) {
+            return;
+        }
+        if (terms.isEmpty()) {
+            unindexedQueries.remove(id);
+        }
+        for (Term term : terms) {
+            final Set<BytesRef> ids = queriesByTerm.get(term);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                queriesByTerm.remove(term);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        queriesByTerm.clear();
+        termsByQuery.clear();
+        unindexedQueries.clear();
+    }
+
+    /** The number of registered queries whose terms could not be extracted. */
+    public int unindexedQueriesCount() {
+        return unindexedQueries.size();
+    }
+
+    /**
+     * Return the ids of the queries that may match a document of the given reader: the queries that have at least
+     * one of their required terms in the reader and the queries whose terms could not be extracted.
+     */
+    public Set<BytesRef> candidates(IndexReader reader) throws IOException {
+        final Set<BytesRef> candidates = new HashSet<>(unindexedQueries);
+        final Fields fields = MultiFields.getFields(reader);
+        if (fields == null) {
+            return candidates;
+        }
+        for (String field : fields) {
+            final Terms terms = fields.terms(field);
+            if (terms == null) {
+                continue;
+            }
+            final TermsEnum termsEnum = terms.iterator(null);
+            for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                final Set<BytesRef> ids = queriesByTerm.get(new Term(field, term));
+                if (ids != null) {
+                    candidates.addAll(ids);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Extract a set of terms so that any document matched by the query contains at least one of them,
+     * or return {@code null} if no such set can be computed for this query.
+     */
+    public static Set<Term> extractQueryTerms(Query query) {
+        if (query instanceof TermQuery) {
+            return Collections.singleton(((TermQuery) query).getTerm());
+        } else if (query instanceof PhraseQuery) {
+            // all terms are required, the longest one is likely the least frequent
+            Term longest = null;
+            for (Term term : ((PhraseQuery) query).getTerms()) {
+                if (longest == null || term.bytes().length > longest.bytes().length) {
+                    longest = term;
+                }
+            }
+            return longest == null ? null : Collections.singleton(longest);
+        } else if (query instanceof BooleanQuery) {
+            return extractBooleanQueryTerms((BooleanQuery) query);
+        } else if (query instanceof DisjunctionMaxQuery) {
+            final Set<Term> terms = new HashSet<>();
+            for (Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts()) {
+                final Set<Term> disjunctTerms = extractQueryTerms(disjunct);
+                if (disjunctTerms == null) {
+                    return null;
+                }
+                terms.addAll(disjunctTerms);
+            }
+            return terms.isEmpty() ? null : terms;
+        } else if (query instanceof ConstantScoreQuery) {
+            final ConstantScoreQuery constantScoreQuery = (ConstantScoreQuery) query;
+            if (constantScoreQuery.getQuery() != null) {
+                return extractQueryTerms(constantScoreQuery.getQuery());
+            } else if (constantScoreQuery.getFilter() instanceof TermFilter) {
+                return Collections.singleton(((TermFilter) constantScoreQuery.getFilter()).getTerm());
+            }
+            return null;
+        } else if (query instanceof XFilteredQuery) {
+            return extractQueryTerms(((XFilteredQuery) query).getQuery());
+        } else if (query instanceof FilteredQuery) {
+            return extractQueryTerms(((FilteredQuery) query).getQuery());
+        }
+        return null;
+    }
+
+    private static Set<Term> extractBooleanQueryTerms(BooleanQuery query) {
+        Set<Term> best = null;
+        boolean hasRequiredClauses = false;
+        for (BooleanClause clause : query.clauses()) {
+            if (clause.isRequired()) {
+                hasRequiredClauses = true;
+                // matching docs must match every required clause, so any of them can be used
+                final Set<Term> terms = extractQueryTerms(clause.getQuery());
+                if (terms != null && (best == null || shortestTermLength(terms) > shortestTermLength(best))) {
+                    best = terms;
+                }
+            }
+        }
+        if (hasRequiredClauses) {
+            return best;
+        }
+
+        // matching docs must match at least one of the optional clauses
+        final Set<Term> terms = new HashSet<>();
+        for (BooleanClause clause : query.clauses()) {
+            if (clause.isProhibited()) {
+                continue;
+            }
+            final Set<Term> clauseTerms = extractQueryTerms(clause.getQuery());
+            if (clauseTerms == null) {
+                return null;
+            }
+            terms.addAll(clauseTerms);
+        }
+        return terms.isEmpty() ? null : terms;
+    }
+
+    private static int shortestTermLength(Set<Term> terms) {
+        int shortest = Integer.MAX_VALUE;
+        for (Term term : terms) {
+            shortest = Math.min(shortest, term.bytes().length);
+        }
+        return shortest;
+    }
+}
@@ -37,6 +37,7 @@ import org.elasticsearch.index.query.QueryParseContext;
 import org.elasticsearch.index.query.QueryParser;
 import org.elasticsearch.index.query.QueryParsingException;
 import org.elasticsearch.index.query.functionscore.factor.FactorParser;
+import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -78,6 +79,12 @@ public class FunctionScoreQueryParser implements QueryParser {
     public Query parse(QueryParseContext parseContext) throws IOException, QueryParsingException {
         XContentParser parser = parseContext.parser();
 
+        SearchContext searchContext = SearchContext.current();
+        if (searchContext != null) {
+            // the functions are moved to the next segment on the instances that are shared by all the scorers of the query
+            searchContext.markScoreFunctionsUsed();
+        }
+
         Query query = null;
         float boost = 1.0f;
 
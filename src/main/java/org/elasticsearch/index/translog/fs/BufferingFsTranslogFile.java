@@ -49,6 +49,11 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
 
     private volatile long lastSyncPosition = 0;
 
+    // serializes group commits, see #syncUpTo
+    private final Object syncLock = new Object();
+    // the position up to which data is known to be fsync'ed, only updated after the fsync returned
+    private volatile long lastDurablePosition = 0;
+
     private byte[] buffer;
     private int bufferCount;
     private WrapperOutputStream bufferOs = new WrapperOutputStream();
@@ -173,6 +178,32 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
         raf.channel().force(false);
     }
 
+    @Override
+    public boolean syncUpTo(long offset) throws IOException {
+        if (lastDurablePosition >= offset) {
+            return false;
+        }
+        // writers that arrive while an fsync is in flight queue up here, and the first one to get
+        // the lock syncs everything written so far on behalf of all of them
+        synchronized (syncLock) {
+            if (lastDurablePosition >= offset) {
+                return false;
+            }
+            long syncPosition;
+            rwl.writeLock().lock();
+            try {
+                flushBuffer();
+                syncPosition = lastPosition;
+                lastSyncPosition = syncPosition;
+            } finally {
+                rwl.writeLock().unlock();
+            }
+            raf.channel().force(false);
+            lastDurablePosition = syncPosition;
+            return true;
+        }
+    }
+
     @Override
     public void close(boolean delete) {
         if (!closed.compareAndSet(false, true)) {
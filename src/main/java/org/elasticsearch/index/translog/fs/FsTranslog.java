@@ -52,6 +52,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class FsTranslog extends AbstractIndexShardComponent implements Translog {
 
     public static final String INDEX_TRANSLOG_FS_TYPE = "index.translog.fs.type";
+    public static final String INDEX_TRANSLOG_FS_GROUP_COMMIT = "index.translog.fs.group_commit";
 
     class ApplySettings implements IndexSettingsService.Listener {
         @Override
@@ -61,6 +62,11 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
                 logger.info("updating type from [{}] to [{}]", FsTranslog.this.type, type);
                 FsTranslog.this.type = type;
             }
+            boolean groupCommit = settings.getAsBoolean(INDEX_TRANSLOG_FS_GROUP_COMMIT, FsTranslog.this.groupCommit);
+            if (groupCommit != FsTranslog.this.groupCommit) {
+                logger.info("updating group_commit from [{}] to [{}]", FsTranslog.this.groupCommit, groupCommit);
+                FsTranslog.this.groupCommit = groupCommit;
+            }
         }
     }
 
@@ -77,6 +83,9 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
 
     private boolean syncOnEachOperation = false;
 
+    // when syncing on each operation, share fsyncs between concurrent writers instead of syncing per operation
+    private volatile boolean groupCommit;
+
     private volatile int bufferSize;
     private volatile int transientBufferSize;
 
@@ -97,6 +106,7 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
         this.type = FsTranslogFile.Type.fromString(componentSettings.get("type", FsTranslogFile.Type.BUFFERED.name()));
         this.bufferSize = (int) componentSettings.getAsBytesSize("buffer_size", ByteSizeValue.parseBytesSizeValue("64k")).bytes(); // Not really interesting, updated by IndexingMemoryController...
         this.transientBufferSize = (int) componentSettings.getAsBytesSize("transient_buffer_size", ByteSizeValue.parseBytesSizeValue("8k")).bytes();
+        this.groupCommit = componentSettings.getAsBoolean("group_commit", false);
 
         indexSettingsService.addListener(applySettings);
     }
@@ -110,6 +120,7 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
 
         this.type = FsTranslogFile.Type.fromString(componentSettings.get("type", FsTranslogFile.Type.BUFFERED.name()));
         this.bufferSize = (int) componentSettings.getAsBytesSize("buffer_size", ByteSizeValue.parseBytesSizeValue("64k")).bytes();
+        this.groupCommit = componentSettings.getAsBoolean("group_commit", false);
     }
 
     @Override
@@ -360,7 +371,11 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
             ReleasableBytesReference bytes = out.bytes();
             Location location = current.add(bytes);
             if (syncOnEachOperation) {
-                current.sync();
+                if (groupCommit) {
+                    current.syncUpTo(location.translogLocation + location.size);
+                } else {
+                    current.sync();
+                }
             }
 
             assert new BytesArray(current.read(location)).equals(bytes);
@@ -433,7 +448,10 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
     public void syncOnEachOperation(boolean syncOnEachOperation) {
         this.syncOnEachOperation = syncOnEachOperation;
         if (syncOnEachOperation) {
-            type = FsTranslogFile.Type.SIMPLE;
+            // with group commit, buffering is fine since the buffer is flushed by whoever syncs next
+            if (!groupCommit) {
+                type = FsTranslogFile.Type.SIMPLE;
+            }
         } else {
             type = FsTranslogFile.Type.BUFFERED;
         }
@@ -76,5 +76,14 @@ public interface FsTranslogFile {
 
     void sync() throws IOException;
 
+    /**
+     * Makes sure everything written up to the given offset is fsync'ed to disk. Concurrent callers are grouped
+     * so that a single fsync covers all of them, callers whose offset was already covered by another thread's
+     * fsync return without touching the disk.
+     *
+     * @return <tt>true</tt> if this call performed an fsync
+     */
+    boolean syncUpTo(long offset) throws IOException;
+
     boolean syncNeeded();
 }
@@ -46,6 +46,11 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
 
     private volatile long lastSyncPosition = 0;
 
+    // serializes group commits, see #syncUpTo
+    private final Object syncLock = new Object();
+    // the position up to which data is known to be fsync'ed, only updated after the fsync returned
+    private volatile long lastDurablePosition = 0;
+
     public SimpleFsTranslogFile(ShardId shardId, long id, RafReference raf) throws IOException {
         this.shardId = shardId;
         this.id = id;
@@ -150,6 +155,25 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
         }
     }
 
+    @Override
+    public boolean syncUpTo(long offset) throws IOException {
+        if (lastDurablePosition >= offset) {
+            return false;
+        }
+        synchronized (syncLock) {
+            if (lastDurablePosition >= offset) {
+                return false;
+            }
+            // unlike #sync, we don't block writers while forcing, operations added concurrently are
+            // simply not guaranteed to be covered by this fsync
+            long syncPosition = lastWrittenPosition;
+            raf.channel().force(false);
+            lastSyncPosition = syncPosition;
+            lastDurablePosition = syncPosition;
+            return true;
+        }
+    }
+
     @Override
     public void reuse(FsTranslogFile other) {
         // nothing to do there
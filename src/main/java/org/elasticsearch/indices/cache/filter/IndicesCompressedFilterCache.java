@@ -0,0 +1,429 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.cache.filter;
+
+import com.carrotsearch.hppc.ObjectOpenHashSet;
+import org.apache.lucene.search.DocIdSet;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.docset.CompressedDocIdSet;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.MemorySizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.cache.filter.compressed.CompressedFilterCache;
+import org.elasticsearch.monitor.jvm.JvmInfo;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The node level cache backing the {@link CompressedFilterCache}, which doc id sets are mostly held off heap.
+ * <p/>
+ * The cache is a segmented LRU: new entries go to a probationary segment, and are only promoted to the protected
+ * segment (which gets {@value #PROTECTED_RATIO} of the size) once they are hit again. Eviction always starts with
+ * the least recently used probationary entries, so filters that were used once don't push out the frequently used
+ * ones.
+ * <p/>
+ * The on heap memory of the entries is bounded by {@link #INDICES_CACHE_FILTER_COMPRESSED_SIZE}, a ratio of the heap,
+ * and their off heap memory by {@link #INDICES_CACHE_FILTER_COMPRESSED_OFF_HEAP_SIZE}, a ratio of the maximum direct
+ * memory of the JVM. Entries are evicted as soon as either of them is exceeded. The cache holds a reference on the
+ * {@link CompressedDocIdSet}s it caches, and releases it when they are removed so that their off heap memory is
+ * freed once the searches that still use them are done.
+ */
+public class IndicesCompressedFilterCache extends AbstractComponent {
+
+    public static final String INDICES_CACHE_FILTER_COMPRESSED_SIZE = "indices.cache.filter.compressed.size";
+    public static final String INDICES_CACHE_FILTER_COMPRESSED_OFF_HEAP_SIZE = "indices.cache.filter.compressed.off_heap_size";
+
+    static final double PROTECTED_RATIO = 0.8;
+    // the rest of the direct memory is left to the network layer
+    static final double MAX_OFF_HEAP_RATIO = 0.5;
+
+    private final ThreadPool threadPool;
+    private final long sizeInBytes;
+    private final long protectedSizeInBytes;
+    private final long offHeapSizeInBytes;
+    private final long protectedOffHeapSizeInBytes;
+    private final TimeValue cleanInterval;
+
+    private final Set<Object> readersKeysToClean = ConcurrentCollections.newConcurrentSet();
+
+    // both segments are in access order, and guarded by the mutex
+    private final Object mutex = new Object();
+    private final LinkedHashMap<CompressedFilterCache.FilterCacheKey, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<CompressedFilterCache.FilterCacheKey, Entry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+    private long probationOffHeapBytes;
+    private long protectedOffHeapBytes;
+
+    private volatile boolean closed;
+
+    @Inject
+    public IndicesCompressedFilterCache(Settings settings, ThreadPool threadPool) {
+        super(settings);
+        this.threadPool = threadPool;
+        String size = settings.get(INDICES_CACHE_FILTER_COMPRESSED_SIZE, "10%");
+        this.sizeInBytes = MemorySizeValue.parseBytesSizeValueOrHeapRatio(size).bytes();
+        this.protectedSizeInBytes = (long) (sizeInBytes * PROTECTED_RATIO);
+        String offHeapSize = settings.get(INDICES_CACHE_FILTER_COMPRESSED_OFF_HEAP_SIZE, "10%");
+        long maxDirectMemory = maxDirectMemory();
+        long offHeapSizeInBytes = parseOffHeapSize(offHeapSize, maxDirectMemory);
+        if (offHeapSizeInBytes > maxDirectMemory * MAX_OFF_HEAP_RATIO) {
+            logger.warn("[{}] of [{}] is more than half of the maximum direct memory [{}], capping it",
+                    INDICES_CACHE_FILTER_COMPRESSED_OFF_HEAP_SIZE, offHeapSize, new ByteSizeValue(maxDirectMemory));
+            offHeapSizeInBytes = (long) (maxDirectMemory * MAX_OFF_HEAP_RATIO);
+        }
+        this.offHeapSizeInBytes = offHeapSizeInBytes;
+        this.protectedOffHeapSizeInBytes = (long) (offHeapSizeInBytes * PROTECTED_RATIO);
+        this.cleanInterval = settings.getAsTime("indices.cache.filter.compressed.clean_interval", TimeValue.timeValueSeconds(60));
+        logger.debug("using [node] compressed filter cache with size [{}], actual_size [{}], off_heap_size [{}], actual_off_heap_size [{}], clean_interval [{}]",
+                size, new ByteSizeValue(sizeInBytes), offHeapSize, new ByteSizeValue(this.offHeapSizeInBytes), cleanInterval);
+
+        threadPool.schedule(cleanInterval, ThreadPool.Names.SAME, new ReaderCleaner());
+    }
+
+    private static long maxDirectMemory() {
+        long maxDirectMemory = JvmInfo.jvmInfo().mem().directMemoryMax().bytes();
+        if (maxDirectMemory <= 0) {
+            // unknown, the JVM defaults to the maximum heap size
+            maxDirectMemory = JvmInfo.jvmInfo().mem().heapMax().bytes();
+        }
+        return maxDirectMemory;
+    }
+
+    /**
+     * Parses the off heap size of the cache, either an absolute value or a percentage of the maximum direct memory.
+     */
+    static long parseOffHeapSize(String value, long maxDirectMemory) {
+        if (value.endsWith("%")) {
+            String percentAsString = value.substring(0, value.length() - 1);
+            try {
+                double percent = Double.parseDouble(percentAsString);
+                if (percent < 0 || percent > 100) {
+                    throw new ElasticsearchParseException("Percentage should be in [0-100], got " + percentAsString);
+                }
+                return (long) ((percent / 100) * maxDirectMemory);
+            } catch (NumberFormatException e) {
+                throw new ElasticsearchParseException("Failed to parse [" + percentAsString + "] as a double", e);
+            }
+        }
+        return ByteSizeValue.parseBytesSizeValue(value).bytes();
+    }
+
+    /**
+     * Returns the cached doc id set for the given key, or <tt>null</tt> if it is not cached. If the set is a
+     * {@link CompressedDocIdSet}, a reference is acquired on behalf of the caller, which must release it with
+     * {@link CompressedDocIdSet#decRef()} once done with it.
+     */
+    public DocIdSet get(CompressedFilterCache.FilterCacheKey key) {
+        synchronized (mutex) {
+            Entry entry = protectedEntries.get(key);
+            if (entry != null) {
+                return entry.acquire();
+            }
+            entry = probation.remove(key);
+            if (entry == null) {
+                return null;
+            }
+            // second hit, promote to the protected segment, demoting its least recently used entries if needed
+            probationBytes -= entry.ramBytesUsed;
+            probationOffHeapBytes -= entry.offHeapBytesUsed;
+            protectedEntries.put(key, entry);
+            protectedBytes += entry.ramBytesUsed;
+            protectedOffHeapBytes += entry.offHeapBytesUsed;
+            for (Iterator<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> it = protectedEntries.entrySet().iterator();
+                 (protectedBytes > protectedSizeInBytes || protectedOffHeapBytes > protectedOffHeapSizeInBytes) && it.hasNext(); ) {
+                Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> eldest = it.next();
+                if (eldest.getValue() == entry) {
+                    break;
+                }
+                it.remove();
+                protectedBytes -= eldest.getValue().ramBytesUsed;
+                protectedOffHeapBytes -= eldest.getValue().offHeapBytesUsed;
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationBytes += eldest.getValue().ramBytesUsed;
+                probationOffHeapBytes += eldest.getValue().offHeapBytesUsed;
+            }
+            return entry.acquire();
+        }
+    }
+
+    /**
+     * Caches the doc id set, unless it is larger than the whole cache. The cache acquires its own reference on
+     * {@link CompressedDocIdSet}s, the caller keeps the one it holds.
+     */
+    public void put(CompressedFilterCache.FilterCacheKey key, DocIdSet value, long ramBytesUsed, long offHeapBytesUsed) {
+        if (ramBytesUsed > sizeInBytes || offHeapBytesUsed > offHeapSizeInBytes) {
+            return;
+        }
+        if (value instanceof CompressedDocIdSet && !((CompressedDocIdSet) value).tryIncRef()) {
+            // already freed by its owner, there is nothing to cache
+            return;
+        }
+        Entry entry = new Entry(value, ramBytesUsed, offHeapBytesUsed);
+        if (key.shardCache != null) {
+            key.shardCache.onCached(ramBytesUsed, offHeapBytesUsed);
+        }
+        List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> evicted = new ArrayList<>();
+        List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> replaced = new ArrayList<>();
+        synchronized (mutex) {
+            // we might put the same one concurrently, the previous value is replaced
+            Entry previous = protectedEntries.remove(key);
+            if (previous != null) {
+                protectedBytes -= previous.ramBytesUsed;
+                protectedOffHeapBytes -= previous.offHeapBytesUsed;
+            } else {
+                previous = probation.remove(key);
+                if (previous != null) {
+                    probationBytes -= previous.ramBytesUsed;
+                    probationOffHeapBytes -= previous.offHeapBytesUsed;
+                }
+            }
+            if (previous != null) {
+                replaced.add(new Removal(key, previous));
+            }
+            probation.put(key, entry);
+            probationBytes += entry.ramBytesUsed;
+            probationOffHeapBytes += entry.offHeapBytesUsed;
+            evict(probation, evicted, true);
+            evict(protectedEntries, evicted, false);
+        }
+        notifyRemovals(replaced, false);
+        notifyRemovals(evicted, true);
+    }
+
+    private void evict(LinkedHashMap<CompressedFilterCache.FilterCacheKey, Entry> segment, List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> evicted, boolean probationSegment) {
+        for (Iterator<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> it = segment.entrySet().iterator();
+             (probationBytes + protectedBytes > sizeInBytes || probationOffHeapBytes + protectedOffHeapBytes > offHeapSizeInBytes) && it.hasNext(); ) {
+            Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> eldest = it.next();
+            it.remove();
+            if (probationSegment) {
+                probationBytes -= eldest.getValue().ramBytesUsed;
+                probationOffHeapBytes -= eldest.getValue().offHeapBytesUsed;
+            } else {
+                protectedBytes -= eldest.getValue().ramBytesUsed;
+                protectedOffHeapBytes -= eldest.getValue().offHeapBytesUsed;
+            }
+            evicted.add(new Removal(eldest.getKey(), eldest.getValue()));
+        }
+    }
+
+    /**
+     * Removes the entries for the given filter key, across all readers.
+     */
+    public void invalidate(Object filterKey) {
+        List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> removed = new ArrayList<>();
+        synchronized (mutex) {
+            removeMatching(probation, removed, null, filterKey, true);
+            removeMatching(protectedEntries, removed, null, filterKey, false);
+        }
+        notifyRemovals(removed, false);
+    }
+
+    private void removeMatching(LinkedHashMap<CompressedFilterCache.FilterCacheKey, Entry> segment, List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> removed,
+                                ObjectOpenHashSet<Object> readerKeys, Object filterKey, boolean probationSegment) {
+        for (Iterator<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> it = segment.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> entry = it.next();
+            boolean matches = readerKeys != null ? readerKeys.contains(entry.getKey().readerKey()) : filterKey.equals(entry.getKey().filterKey());
+            if (matches) {
+                it.remove();
+                if (probationSegment) {
+                    probationBytes -= entry.getValue().ramBytesUsed;
+                    probationOffHeapBytes -= entry.getValue().offHeapBytesUsed;
+                } else {
+                    protectedBytes -= entry.getValue().ramBytesUsed;
+                    protectedOffHeapBytes -= entry.getValue().offHeapBytesUsed;
+                }
+                removed.add(new Removal(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    public void addReaderKeyToClean(Object readerKey) {
+        readersKeysToClean.add(readerKey);
+    }
+
+    /**
+     * The number of bytes currently used on heap by the cache.
+     */
+    public long sizeInBytes() {
+        synchronized (mutex) {
+            return probationBytes + protectedBytes;
+        }
+    }
+
+    /**
+     * The number of bytes currently used off heap by the cache.
+     */
+    public long offHeapSizeInBytes() {
+        synchronized (mutex) {
+            return probationOffHeapBytes + protectedOffHeapBytes;
+        }
+    }
+
+    public void close() {
+        closed = true;
+        List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> removed = new ArrayList<>();
+        synchronized (mutex) {
+            for (Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> entry : probation.entrySet()) {
+                removed.add(new Removal(entry.getKey(), entry.getValue()));
+            }
+            for (Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> entry : protectedEntries.entrySet()) {
+                removed.add(new Removal(entry.getKey(), entry.getValue()));
+            }
+            probation.clear();
+            protectedEntries.clear();
+            probationBytes = 0;
+            protectedBytes = 0;
+            probationOffHeapBytes = 0;
+            protectedOffHeapBytes = 0;
+        }
+        notifyRemovals(removed, false);
+    }
+
+    private void notifyRemovals(List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> removals, boolean evicted) {
+        for (Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> removal : removals) {
+            Entry entry = removal.getValue();
+            if (removal.getKey().shardCache != null) {
+                removal.getKey().shardCache.onRemoval(entry.ramBytesUsed, entry.offHeapBytesUsed, evicted);
+            }
+            // frees the off heap memory, unless searches still hold references on the set
+            entry.release();
+        }
+    }
+
+    static class Entry {
+        final DocIdSet value;
+        final long ramBytesUsed;
+        final long offHeapBytesUsed;
+
+        Entry(DocIdSet value, long ramBytesUsed, long offHeapBytesUsed) {
+            this.value = value;
+            this.ramBytesUsed = ramBytesUsed;
+            this.offHeapBytesUsed = offHeapBytesUsed;
+        }
+
+        /**
+         * Returns the value, with a reference acquired for the caller if needed. Must be called while the entry is
+         * still in the cache, which guarantees that the reference of the cache was not released yet.
+         */
+        DocIdSet acquire() {
+            if (value instanceof CompressedDocIdSet) {
+                boolean acquired = ((CompressedDocIdSet) value).tryIncRef();
+                assert acquired : "cached set was freed";
+            }
+            return value;
+        }
+
+        void release() {
+            if (value instanceof CompressedDocIdSet) {
+                ((CompressedDocIdSet) value).decRef();
+            }
+        }
+    }
+
+    static class Removal implements Map.Entry<CompressedFilterCache.FilterCacheKey, Entry> {
+        private final CompressedFilterCache.FilterCacheKey key;
+        private final Entry entry;
+
+        Removal(CompressedFilterCache.FilterCacheKey key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        @Override
+        public CompressedFilterCache.FilterCacheKey getKey() {
+            return key;
+        }
+
+        @Override
+        public Entry getValue() {
+            return entry;
+        }
+
+        @Override
+        public Entry setValue(Entry value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Cleans the entries of closed readers in the background, see {@link IndicesFilterCache}.
+     */
+    class ReaderCleaner implements Runnable {
+
+        // this is thread safe since we only schedule the next cleanup once the current one is
+        // done, so no concurrent execution
+        private final ObjectOpenHashSet<Object> keys = ObjectOpenHashSet.newInstance();
+
+        @Override
+        public void run() {
+            if (closed) {
+                return;
+            }
+            if (readersKeysToClean.isEmpty()) {
+                schedule();
+                return;
+            }
+            try {
+                threadPool.executor(ThreadPool.Names.GENERIC).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        keys.clear();
+                        for (Iterator<Object> it = readersKeysToClean.iterator(); it.hasNext(); ) {
+                            keys.add(it.next());
+                            it.remove();
+                        }
+                        if (!keys.isEmpty()) {
+                            List<Map.Entry<CompressedFilterCache.FilterCacheKey, Entry>> removed = new ArrayList<>();
+                            synchronized (mutex) {
+                                removeMatching(probation, removed, keys, null, true);
+                                removeMatching(protectedEntries, removed, keys, null, false);
+                            }
+                            notifyRemovals(removed, false);
+                        }
+                        schedule();
+                        keys.clear();
+                    }
+                });
+            } catch (EsRejectedExecutionException ex) {
+                logger.debug("Can not run ReaderCleaner - execution rejected", ex);
+            }
+        }
+
+        private void schedule() {
+            try {
+                threadPool.schedule(cleanInterval, ThreadPool.Names.SAME, this);
+            } catch (EsRejectedExecutionException ex) {
+                logger.debug("Can not schedule ReaderCleaner - execution rejected", ex);
+            }
+        }
+    }
+}
@@ -22,8 +22,15 @@ package org.elasticsearch.indices.cache.query;
 import com.carrotsearch.hppc.ObjectOpenHashSet;
 import com.carrotsearch.hppc.ObjectSet;
 import com.google.common.cache.*;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.ElasticsearchIllegalStateException;
@@ -37,6 +44,12 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.MultiCollector;
+import org.elasticsearch.common.lucene.search.Queries;
+import org.elasticsearch.common.lucene.search.XCollector;
+import org.elasticsearch.common.lucene.search.XConstantScoreQuery;
+import org.elasticsearch.common.lucene.search.XFilteredQuery;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.MemorySizeValue;
@@ -46,6 +59,12 @@ import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.ShardSearchRequest;
 import org.elasticsearch.search.query.QueryPhase;
@@ -54,7 +73,11 @@ import org.elasticsearch.search.query.QuerySearchResultProvider;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
@@ -72,6 +95,12 @@ import static org.elasticsearch.common.Strings.hasLength;
  * Currently, the cache is only enabled for {@link SearchType#COUNT}, and can only be opted in on an index
  * level setting that can be dynamically changed and defaults to false.
  * <p/>
+ * When {@link #INDEX_CACHE_QUERY_SEGMENTS} is enabled, a shard level miss is computed segment by segment, and
+ * the partial (per segment) hit count and aggregations are cached as well, keyed by the segment reader. After a
+ * refresh, only the segments that changed need to be executed again, the rest of the shard result is reduced from
+ * the cached partial results. This only applies to requests which aggregations can be reduced without changing
+ * their result, see {@link org.elasticsearch.search.aggregations.AggregatorFactory#segmentReducible()}.
+ * <p/>
  * There are still several TODOs left in this class, some easily addressable, some more complex, but the support
  * is functional.
  */
@@ -82,9 +111,15 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
      * since we are checking on the cluster state IndexMetaData always.
      */
     public static final String INDEX_CACHE_QUERY_ENABLED = "index.cache.query.enable";
+    /**
+     * A setting to enable or disable caching of per segment partial results on an index level, dynamic
+     * as well. Only has an effect when the query cache is used for the request.
+     */
+    public static final String INDEX_CACHE_QUERY_SEGMENTS = "index.cache.query.segments";
     public static final String INDICES_CACHE_QUERY_CLEAN_INTERVAL = "indices.cache.query.clean_interval";
 
     public static final String INDICES_CACHE_QUERY_SIZE = "indices.cache.query.size";
+    public static final String INDICES_CACHE_QUERY_SEGMENTS_SIZE = "indices.cache.query.segments.size";
     public static final String INDICES_CACHE_QUERY_EXPIRE = "indices.cache.query.expire";
 
     private final ThreadPool threadPool;
@@ -96,10 +131,17 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
     final ConcurrentMap<CleanupKey, Boolean> registeredClosedListeners = ConcurrentCollections.newConcurrentMap();
     final Set<CleanupKey> keysToClean = ConcurrentCollections.newConcurrentSet();
 
+    // segment readers are registered by their core and deletes key, which is also what the segment entries are keyed by
+    final ConcurrentMap<Object, Boolean> registeredSegmentClosedListeners = ConcurrentCollections.newConcurrentMap();
+    final Set<Object> segmentKeysToClean = ConcurrentCollections.newConcurrentSet();
+    private final SegmentCleanupListener segmentCleanupListener = new SegmentCleanupListener();
+
     //TODO make these changes configurable on the cluster level
     private volatile String size;
+    private volatile String segmentsSize;
     private volatile TimeValue expire;
     private volatile Cache<Key, BytesReference> cache;
+    private volatile Cache<SegmentKey, BytesReference> segmentCache;
 
     @Inject
     public IndicesQueryCache(Settings settings, ClusterService clusterService, ThreadPool threadPool) {
@@ -109,6 +151,7 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         this.cleanInterval = settings.getAsTime(INDICES_CACHE_QUERY_CLEAN_INTERVAL, TimeValue.timeValueSeconds(60));
         // this cache can be very small yet still be very effective
         this.size = settings.get(INDICES_CACHE_QUERY_SIZE, "1%");
+        this.segmentsSize = settings.get(INDICES_CACHE_QUERY_SEGMENTS_SIZE, "1%");
         this.expire = settings.getAsTime(INDICES_CACHE_QUERY_EXPIRE, null);
         buildCache();
 
@@ -117,32 +160,41 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
     }
 
     private void buildCache() {
-        long sizeInBytes = MemorySizeValue.parseBytesSizeValueOrHeapRatio(size).bytes();
-        if (sizeInBytes > ByteSizeValue.MAX_GUAVA_CACHE_SIZE.bytes()) {
-            logger.warn("reducing requested query cache size of [{}] to the maximum allowed size of [{}]", new ByteSizeValue(sizeInBytes), ByteSizeValue.MAX_GUAVA_CACHE_SIZE);
-            sizeInBytes = ByteSizeValue.MAX_GUAVA_CACHE_SIZE.bytes();
-            // Even though it feels wrong for size and sizeInBytes to get out of
-            // sync we don't update size here because it might cause the cache
-            // to be rebuilt every time new settings are applied.
-        }
-
         CacheBuilder<Key, BytesReference> cacheBuilder = CacheBuilder.newBuilder()
-                .maximumWeight(sizeInBytes).weigher(new QueryCacheWeigher()).removalListener(this);
+                .maximumWeight(sizeInBytes(size, "query cache")).weigher(new QueryCacheWeigher<Key>()).removalListener(this);
+        CacheBuilder<SegmentKey, BytesReference> segmentCacheBuilder = CacheBuilder.newBuilder()
+                .maximumWeight(sizeInBytes(segmentsSize, "query segments cache")).weigher(new QueryCacheWeigher<SegmentKey>())
+                .removalListener(new SegmentRemovalListener());
 
         // defaults to 4, but this is a busy map for all indices, increase it a bit
         cacheBuilder.concurrencyLevel(16);
+        segmentCacheBuilder.concurrencyLevel(16);
 
         if (expire != null) {
             cacheBuilder.expireAfterAccess(expire.millis(), TimeUnit.MILLISECONDS);
+            segmentCacheBuilder.expireAfterAccess(expire.millis(), TimeUnit.MILLISECONDS);
         }
 
         cache = cacheBuilder.build();
+        segmentCache = segmentCacheBuilder.build();
     }
 
-    private static class QueryCacheWeigher implements Weigher<Key, BytesReference> {
+    private long sizeInBytes(String size, String description) {
+        long sizeInBytes = MemorySizeValue.parseBytesSizeValueOrHeapRatio(size).bytes();
+        if (sizeInBytes > ByteSizeValue.MAX_GUAVA_CACHE_SIZE.bytes()) {
+            logger.warn("reducing requested {} size of [{}] to the maximum allowed size of [{}]", description, new ByteSizeValue(sizeInBytes), ByteSizeValue.MAX_GUAVA_CACHE_SIZE);
+            sizeInBytes = ByteSizeValue.MAX_GUAVA_CACHE_SIZE.bytes();
+            // Even though it feels wrong for size and sizeInBytes to get out of
+            // sync we don't update size here because it might cause the cache
+            // to be rebuilt every time new settings are applied.
+        }
+        return sizeInBytes;
+    }
+
+    private static class QueryCacheWeigher<K extends Accountable> implements Weigher<K, BytesReference> {
 
         @Override
-        public int weigh(Key key, BytesReference value) {
+        public int weigh(K key, BytesReference value) {
             // TODO add sizeInBytes to BytesReference, since it might be paged.... (Accountable)
             return (int) (key.ramBytesUsed() + value.length());
         }
@@ -151,6 +203,7 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
     public void close() {
         reaper.close();
         cache.invalidateAll();
+        segmentCache.invalidateAll();
     }
 
     public void clear(IndexShard shard) {
@@ -170,6 +223,17 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         notification.getKey().shard.queryCache().onRemoval(notification);
     }
 
+    private static class SegmentRemovalListener implements RemovalListener<SegmentKey, BytesReference> {
+
+        @Override
+        public void onRemoval(RemovalNotification<SegmentKey, BytesReference> notification) {
+            if (notification.getKey() == null) {
+                return;
+            }
+            notification.getKey().shard.queryCache().onSegmentRemoval(notification);
+        }
+    }
+
     /**
      * Can the shard request be cached at all?
      */
@@ -206,6 +270,32 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         return true;
     }
 
+    /**
+     * Can the shard result be computed out of per segment partial results? Only checked once {@link #canCache}
+     * returned <tt>true</tt>.
+     */
+    boolean canCacheSegments(ShardSearchRequest request, SearchContext context) {
+        IndexMetaData index = clusterService.state().getMetaData().index(request.index());
+        if (index == null || !index.settings().getAsBoolean(INDEX_CACHE_QUERY_SEGMENTS, Boolean.FALSE)) {
+            return false;
+        }
+        // anything that needs to see the whole shard at once (or that may stop collecting early) can't be partitioned
+        if (context.parsedPostFilter() != null || context.minimumScore() != null || context.suggest() != null || !context.rescore().isEmpty()) {
+            return false;
+        }
+        if (context.timeoutInMillis() != -1 || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return false;
+        }
+        if (context.aggregations() != null && !context.aggregations().factories().segmentReducible()) {
+            return false;
+        }
+        // nothing to reduce, let the query phase build the empty result
+        if (context.searcher().getIndexReader().leaves().isEmpty()) {
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Loads the cache result, computing it if needed by executing the query phase. The combination of load + compute allows
      * to have a single load operation that will cause other requests with the same key to wait till its loaded an reuse
@@ -214,7 +304,7 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
     public QuerySearchResultProvider load(final ShardSearchRequest request, final SearchContext context, final QueryPhase queryPhase) throws Exception {
         assert canCache(request, context);
         Key key = buildKey(request, context);
-        Loader loader = new Loader(queryPhase, context, key);
+        Loader loader = new Loader(queryPhase, context, key, canCacheSegments(request, context));
         BytesReference value = cache.get(key, loader);
         if (loader.isLoaded()) {
             key.shard.queryCache().onMiss();
@@ -234,17 +324,19 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         return new BytesQuerySearchResult(context.id(), context.shardTarget(), value, loader.isLoaded() ? context.queryResult() : null);
     }
 
-    private static class Loader implements Callable<BytesReference> {
+    private class Loader implements Callable<BytesReference> {
 
         private final QueryPhase queryPhase;
         private final SearchContext context;
         private final IndicesQueryCache.Key key;
+        private final boolean perSegment;
         private boolean loaded;
 
-        Loader(QueryPhase queryPhase, SearchContext context, IndicesQueryCache.Key key) {
+        Loader(QueryPhase queryPhase, SearchContext context, IndicesQueryCache.Key key, boolean perSegment) {
             this.queryPhase = queryPhase;
             this.context = context;
             this.key = key;
+            this.perSegment = perSegment;
         }
 
         public boolean isLoaded() {
@@ -253,7 +345,11 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
 
         @Override
         public BytesReference call() throws Exception {
-            queryPhase.execute(context);
+            if (perSegment) {
+                loadPerSegment(context, key);
+            } else {
+                queryPhase.execute(context);
+            }
             BytesStreamOutput out = new BytesStreamOutput();
             context.queryResult().writeToNoId(out);
             // for now, keep the paged data structure, which might have unused bytes to fill a page, but better to keep
@@ -266,6 +362,126 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         }
     }
 
+    /**
+     * Computes the shard level query result by reducing the partial results of each segment, loading those
+     * partial results from the segments cache when possible.
+     */
+    private void loadPerSegment(SearchContext context, Key key) throws Exception {
+        context.queryResult().searchTimedOut(false);
+        context.queryResult().from(context.from());
+        context.queryResult().size(context.size());
+
+        final Weight weight = context.searcher().createNormalizedWeight(context.query());
+        long totalHits = 0;
+        List<InternalAggregations> aggregations = new ArrayList<>();
+        for (AtomicReaderContext leaf : context.searcher().getIndexReader().leaves()) {
+            SegmentKey segmentKey = new SegmentKey(key.shard, leaf.reader().getCombinedCoreAndDeletesKey(), key.value);
+            SegmentLoader loader = new SegmentLoader(context, leaf, weight, segmentKey);
+            BytesReference value = segmentCache.get(segmentKey, loader);
+            if (loader.isLoaded()) {
+                if (!registeredSegmentClosedListeners.containsKey(segmentKey.readerKey)) {
+                    Boolean previous = registeredSegmentClosedListeners.putIfAbsent(segmentKey.readerKey, Boolean.TRUE);
+                    if (previous == null) {
+                        leaf.reader().addReaderClosedListener(segmentCleanupListener);
+                    }
+                }
+            }
+            StreamInput in = value.streamInput();
+            totalHits += in.readVLong();
+            if (in.readBoolean()) {
+                aggregations.add(InternalAggregations.readAggregations(in));
+            }
+        }
+
+        context.queryResult().topDocs(new TopDocs((int) totalHits, Lucene.EMPTY_SCORE_DOCS, 0));
+        if (context.aggregations() != null) {
+            InternalAggregation.ReduceContext reduceContext = new InternalAggregation.ReduceContext(null, context.bigArrays(), context.scriptService());
+            context.queryResult().aggregations(InternalAggregations.reduce(aggregations, reduceContext));
+        }
+    }
+
+    private static class SegmentLoader implements Callable<BytesReference> {
+
+        private final SearchContext context;
+        private final AtomicReaderContext leaf;
+        private final Weight weight;
+        private final SegmentKey key;
+        private boolean loaded;
+
+        SegmentLoader(SearchContext context, AtomicReaderContext leaf, Weight weight, SegmentKey key) {
+            this.context = context;
+            this.leaf = leaf;
+            this.weight = weight;
+            this.key = key;
+        }
+
+        public boolean isLoaded() {
+            return this.loaded;
+        }
+
+        @Override
+        public BytesReference call() throws Exception {
+            final List<AtomicReaderContext> leaves = Collections.singletonList(leaf);
+            TotalHitCountCollector hitCountCollector = new TotalHitCountCollector();
+            Aggregator[] aggregators = null;
+            List<Aggregator> globals = new ArrayList<>();
+            AggregationContext aggregationContext = null;
+            XCollector aggregationsCollector = null;
+            if (context.aggregations() != null) {
+                // fresh aggregators for each segment, their results are reduced with the ones of the other segments
+                aggregationContext = new AggregationContext(context);
+                aggregators = context.aggregations().factories().createTopLevelAggregators(aggregationContext);
+                List<Aggregator> collectors = new ArrayList<>();
+                for (Aggregator aggregator : aggregators) {
+                    if (aggregator instanceof GlobalAggregator) {
+                        globals.add(aggregator);
+                    } else if (aggregator.shouldCollect()) {
+                        collectors.add(aggregator);
+                    }
+                }
+                if (!collectors.isEmpty()) {
+                    aggregationsCollector = new AggregationPhase.AggregationsCollector(collectors, aggregationContext);
+                }
+                aggregationContext.setNextReader(context.searcher().getIndexReader().getContext());
+            }
+
+            if (aggregationsCollector == null) {
+                context.searcher().search(leaves, weight, hitCountCollector);
+            } else {
+                context.searcher().search(leaves, weight, new MultiCollector(hitCountCollector, new Collector[]{aggregationsCollector}));
+                aggregationsCollector.postCollection();
+            }
+
+            if (!globals.isEmpty()) {
+                Query query = new XConstantScoreQuery(Queries.MATCH_ALL_FILTER);
+                Filter searchFilter = context.searchFilter(context.types());
+                if (searchFilter != null) {
+                    query = new XFilteredQuery(query, searchFilter);
+                }
+                AggregationPhase.AggregationsCollector globalsCollector = new AggregationPhase.AggregationsCollector(globals, aggregationContext);
+                context.searcher().search(leaves, context.searcher().createNormalizedWeight(query), globalsCollector);
+                globalsCollector.postCollection();
+            }
+
+            BytesStreamOutput out = new BytesStreamOutput();
+            out.writeVLong(hitCountCollector.getTotalHits());
+            if (aggregators == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
+                for (Aggregator aggregator : aggregators) {
+                    aggregations.add(aggregator.buildAggregation(0));
+                }
+                new InternalAggregations(aggregations).writeTo(out);
+            }
+            BytesReference value = out.bytes();
+            loaded = true;
+            key.shard.queryCache().onCached(key, value);
+            return value;
+        }
+    }
+
     public static class Key implements Accountable {
         public final IndexShard shard; // use as identity equality
         public final long readerVersion; // use the reader version to now keep a reference to a "short" lived reader until its reaped
@@ -335,10 +551,58 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         }
     }
 
+    public static class SegmentKey implements Accountable {
+        public final IndexShard shard; // use as identity equality
+        public final Object readerKey; // the segment core and deletes key, released once the segment reader is reaped
+        public final BytesReference value;
+
+        SegmentKey(IndexShard shard, Object readerKey, BytesReference value) {
+            this.shard = shard;
+            this.readerKey = readerKey;
+            this.value = value;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF + value.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            SegmentKey key = (SegmentKey) o;
+            if (!readerKey.equals(key.readerKey)) return false;
+            if (!shard.equals(key.shard)) return false;
+            if (!value.equals(key.value)) return false;
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = shard.hashCode();
+            result = 31 * result + readerKey.hashCode();
+            result = 31 * result + value.hashCode();
+            return result;
+        }
+    }
+
+    private class SegmentCleanupListener implements IndexReader.ReaderClosedListener {
+
+        @Override
+        public void onClose(IndexReader reader) {
+            Object readerKey = reader.getCombinedCoreAndDeletesKey();
+            Boolean remove = registeredSegmentClosedListeners.remove(readerKey);
+            if (remove != null) {
+                segmentKeysToClean.add(readerKey);
+            }
+        }
+    }
+
     private class Reaper implements Runnable {
 
         private final ObjectSet<CleanupKey> currentKeysToClean = ObjectOpenHashSet.newInstance();
         private final ObjectSet<IndexShard> currentFullClean = ObjectOpenHashSet.newInstance();
+        private final Set<Object> currentSegmentKeysToClean = new HashSet<>();
 
         private volatile boolean closed;
 
@@ -351,7 +615,7 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
             if (closed) {
                 return;
             }
-            if (keysToClean.isEmpty()) {
+            if (keysToClean.isEmpty() && segmentKeysToClean.isEmpty()) {
                 schedule();
                 return;
             }
@@ -379,6 +643,7 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
         synchronized void reap() {
             currentKeysToClean.clear();
             currentFullClean.clear();
+            currentSegmentKeysToClean.clear();
             for (Iterator<CleanupKey> iterator = keysToClean.iterator(); iterator.hasNext(); ) {
                 CleanupKey cleanupKey = iterator.next();
                 iterator.remove();
@@ -406,9 +671,24 @@ public class IndicesQueryCache extends AbstractComponent implements RemovalListe
                 }
             }
 
+            for (Iterator<Object> iterator = segmentKeysToClean.iterator(); iterator.hasNext(); ) {
+                currentSegmentKeysToClean.add(iterator.next());
+                iterator.remove();
+            }
+            if (!currentSegmentKeysToClean.isEmpty() || !currentFullClean.isEmpty()) {
+                for (Iterator<SegmentKey> iterator = segmentCache.asMap().keySet().iterator(); iterator.hasNext(); ) {
+                    SegmentKey key = iterator.next();
+                    if (currentFullClean.contains(key.shard) || currentSegmentKeysToClean.contains(key.readerKey)) {
+                        iterator.remove();
+                    }
+                }
+            }
+
             cache.cleanUp();
+            segmentCache.cleanUp();
             currentKeysToClean.clear();
             currentFullClean.clear();
+            currentSegmentKeysToClean.clear();
         }
     }
 
@@ -30,6 +30,7 @@ import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.store.OutputStreamIndexOutput;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
@@ -583,10 +584,12 @@ public class RecoveryTarget extends AbstractComponent {
                             recoverySettings.rateLimiter().pause(request.content().length());
                         }
                         BytesReference content = request.content();
-                        if (!content.hasArray()) {
-                            content = content.toBytesArray();
+                        if (content.hasArray()) {
+                            indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
+                        } else {
+                            // the content may be made of several network buffers, write them as is instead of copying them first
+                            content.writeTo(new OutputStreamIndexOutput(indexOutput));
                         }
-                        indexOutput.writeBytes(content.array(), content.arrayOffset(), content.length());
                         onGoingRecovery.recoveryState.getIndex().addRecoveredByteCount(content.length());
                         RecoveryState.File file = onGoingRecovery.recoveryState.getIndex().file(request.name());
                         if (file != null) {
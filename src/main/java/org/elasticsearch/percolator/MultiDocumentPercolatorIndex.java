@@ -27,6 +27,7 @@ import org.apache.lucene.index.memory.MemoryIndex;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.util.CloseableThreadLocal;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.mapper.ParsedDocument;
@@ -77,6 +78,34 @@ class MultiDocumentPercolatorIndex implements PercolatorIndex {
         }
     }
 
+    /**
+     * Indexes the root documents of several percolate requests into a single top level reader, the document
+     * of the i-th request getting the i-th doc id.
+     */
+    BatchSearcher prepareBatch(List<ParsedDocument> parsedDocuments) {
+        IndexReader[] memoryIndices = new IndexReader[parsedDocuments.size()];
+        IndexSearcher[] docSearchers = new IndexSearcher[parsedDocuments.size()];
+        MemoryIndex firstDocMemoryIndex = null;
+        for (int i = 0; i < parsedDocuments.size(); i++) {
+            ParsedDocument parsedDocument = parsedDocuments.get(i);
+            MemoryIndex memoryIndex;
+            if (i == 0) {
+                memoryIndex = firstDocMemoryIndex = cache.get();
+            } else {
+                memoryIndex = new MemoryIndex(true);
+            }
+            docSearchers[i] = indexDoc(parsedDocument.rootDoc(), parsedDocument.analyzer(), memoryIndex).createSearcher();
+            memoryIndices[i] = docSearchers[i].getIndexReader();
+        }
+        MultiReader mReader = new MultiReader(memoryIndices, true);
+        try {
+            AtomicReader slowReader = SlowCompositeReaderWrapper.wrap(mReader);
+            return new BatchSearcher(new IndexSearcher(slowReader), docSearchers, firstDocMemoryIndex);
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to create index for batch percolation", e);
+        }
+    }
+
     MemoryIndex indexDoc(ParseContext.Document d, Analyzer analyzer, MemoryIndex memoryIndex) {
         for (IndexableField field : d.getFields()) {
             if (!field.fieldType().indexed() && field.name().equals(UidFieldMapper.NAME)) {
@@ -96,6 +125,42 @@ class MultiDocumentPercolatorIndex implements PercolatorIndex {
         return memoryIndex;
     }
 
+    /**
+     * Searcher over the documents of a batch of percolate requests.
+     */
+    static class BatchSearcher implements Releasable {
+
+        private final IndexSearcher searcher;
+        private final IndexSearcher[] docSearchers;
+        private final MemoryIndex firstDocMemoryIndex;
+
+        private BatchSearcher(IndexSearcher searcher, IndexSearcher[] docSearchers, MemoryIndex firstDocMemoryIndex) {
+            this.searcher = searcher;
+            this.docSearchers = docSearchers;
+            this.firstDocMemoryIndex = firstDocMemoryIndex;
+        }
+
+        /** A searcher over all the documents of the batch. */
+        IndexSearcher searcher() {
+            return searcher;
+        }
+
+        /** A searcher over the single document with the given doc id. */
+        IndexSearcher docSearcher(int doc) {
+            return docSearchers[doc];
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            try {
+                searcher.getIndexReader().close();
+                firstDocMemoryIndex.reset();
+            } catch (IOException e) {
+                throw new ElasticsearchException("failed to close IndexReader in batch percolator", e);
+            }
+        }
+    }
+
     private class DocSearcher implements Engine.Searcher {
 
         private final IndexSearcher searcher;
@@ -24,12 +24,14 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.percolate.PercolateShardRequest;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.text.StringText;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
@@ -66,10 +68,11 @@ import org.elasticsearch.search.rescore.RescoreSearchContext;
 import org.elasticsearch.search.scan.ScanContext;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  */
@@ -88,7 +91,7 @@ public class PercolateContext extends SearchContext {
     private final PageCacheRecycler pageCacheRecycler;
     private final BigArrays bigArrays;
     private final ScriptService scriptService;
-    private final ConcurrentMap<BytesRef, Query> percolateQueries;
+    private Map<BytesRef, Query> percolateQueries;
     private final int numberOfShards;
     private String[] types;
 
@@ -133,6 +136,12 @@ public class PercolateContext extends SearchContext {
         this.docSearcher = docSearcher;
 
         IndexReader indexReader = docSearcher.reader();
+        try {
+            // only the queries that share terms with the document need to be run
+            percolateQueries = indexShard.percolateRegistry().candidateQueries(indexReader);
+        } catch (IOException e) {
+            throw new ElasticsearchException("failed to select the candidate queries", e);
+        }
         AtomicReaderContext atomicReaderContext = indexReader.leaves().get(0);
         lookup().setNextReader(atomicReaderContext);
         lookup().setNextDocId(0);
@@ -156,7 +165,7 @@ public class PercolateContext extends SearchContext {
         return indexService;
     }
 
-    public ConcurrentMap<BytesRef, Query> percolateQueries() {
+    public Map<BytesRef, Query> percolateQueries() {
         return percolateQueries;
     }
 
@@ -195,7 +204,7 @@ public class PercolateContext extends SearchContext {
     }
 
     @Override
-    public SearchLookup lookup() {
+    protected SearchLookup lookupImpl() {
         if (searchLookup == null) {
             searchLookup = new SearchLookup(mapperService(), fieldData(), types);
         }
@@ -257,6 +266,11 @@ public class PercolateContext extends SearchContext {
         return fieldDataService;
     }
 
+    @Override
+    public File tempDirectory() {
+        return indexService.injector().getInstance(Environment.class).workWithClusterFile();
+    }
+
     @Override
     public SearchContextAggregations aggregations() {
         return aggregations;
@@ -495,6 +509,26 @@ public class PercolateContext extends SearchContext {
         return sort;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return null;
+    }
+
+    @Override
+    public SearchContext sliceFilter(Filter sliceFilter) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Filter sliceFilter() {
+        return null;
+    }
+
     @Override
     public SearchContext trackScores(boolean trackScores) {
         this.trackScores = trackScores;
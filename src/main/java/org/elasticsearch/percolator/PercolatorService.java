@@ -24,6 +24,7 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.memory.ExtendedMemoryIndex;
 import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.queries.TermFilter;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CloseableThreadLocal;
@@ -69,6 +70,7 @@ import org.elasticsearch.index.percolator.stats.ShardPercolateService;
 import org.elasticsearch.index.query.ParsedQuery;
 import org.elasticsearch.index.search.nested.NonNestedDocsFilter;
 import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.percolator.QueryCollector.Count;
@@ -108,7 +110,7 @@ public class PercolatorService extends AbstractComponent {
     private final ClusterService clusterService;
 
     private final PercolatorIndex single;
-    private final PercolatorIndex multi;
+    private final MultiDocumentPercolatorIndex multi;
 
     private final HighlightPhase highlightPhase;
     private final AggregationPhase aggregationPhase;
@@ -233,6 +235,217 @@ public class PercolatorService extends AbstractComponent {
         }
     }
 
+    /**
+     * Percolates the documents of several requests that target the same shard at once. The requests that percolate a
+     * single document against all the registered queries, without query, filter, sorting, scoring, highlighting or
+     * aggregations, are indexed together in a single in-memory index so that every candidate query only needs to be
+     * executed once for the whole batch.
+     *
+     * @return the responses of the batched requests, and <tt>null</tt> for the requests that could not be batched and
+     * must be percolated with {@link #percolate(PercolateShardRequest)}
+     */
+    public PercolateShardResponse[] percolate(List<PercolateShardRequest> requests) {
+        final PercolateShardResponse[] responses = new PercolateShardResponse[requests.size()];
+        if (requests.size() < 2) {
+            return responses;
+        }
+        final ShardId shardId = requests.get(0).shardId();
+        IndexService percolateIndexService = indicesService.indexServiceSafe(shardId.getIndex());
+        IndexShard indexShard = percolateIndexService.shardSafe(shardId.id());
+        indexShard.readAllowed(); // check if we can read the shard...
+        if (indexShard.percolateRegistry().percolateQueries().isEmpty()) {
+            return responses;
+        }
+
+        ShardPercolateService shardPercolateService = indexShard.shardPercolateService();
+        SearchShardTarget searchShardTarget = new SearchShardTarget(clusterService.localNode().id(), shardId.getIndex(), shardId.id());
+        List<Integer> slots = new ArrayList<>();
+        List<PercolateContext> contexts = new ArrayList<>();
+        List<ParsedDocument> parsedDocuments = new ArrayList<>();
+        try {
+            for (int slot = 0; slot < requests.size(); slot++) {
+                PercolateShardRequest request = requests.get(slot);
+                assert shardId.equals(request.shardId());
+                PercolateContext context = new PercolateContext(
+                        request, searchShardTarget, indexShard, percolateIndexService, pageCacheRecycler, bigArrays, scriptService
+                );
+                boolean batched = false;
+                try {
+                    ParsedDocument parsedDocument = parseRequest(percolateIndexService, request, context);
+                    if (request.docSource() != null && request.docSource().length() != 0) {
+                        parsedDocument = parseFetchedDoc(context, request.docSource(), percolateIndexService, request.documentType());
+                    }
+                    if (parsedDocument != null && canBatch(request, context, parsedDocument, indexShard)) {
+                        if (context.size() < 0) {
+                            context.size(0);
+                        }
+                        context.percolatorTypeId = request.onlyCount() ? countPercolator.id() : matchPercolator.id();
+                        slots.add(slot);
+                        contexts.add(context);
+                        parsedDocuments.add(parsedDocument);
+                        batched = true;
+                    }
+                } catch (Throwable t) {
+                    // the request is percolated on its own, which will report the failure for this request only
+                    logger.trace("[{}] failed to prepare request for batch percolation", t, shardId);
+                } finally {
+                    if (!batched) {
+                        context.close();
+                    }
+                }
+            }
+            if (contexts.size() < 2) {
+                return responses;
+            }
+
+            for (int i = 0; i < contexts.size(); i++) {
+                shardPercolateService.prePercolate();
+            }
+            long startTime = System.nanoTime();
+            try {
+                PercolateShardResponse[] batchResponses = percolateBatch(contexts, parsedDocuments, indexShard);
+                for (int i = 0; i < batchResponses.length; i++) {
+                    responses[slots.get(i)] = batchResponses[i];
+                }
+            } catch (Throwable t) {
+                // the requests are percolated one by one, which will report the failures per request
+                logger.debug("[{}] failed to execute batch percolation", t, shardId);
+            } finally {
+                // the time is shared by all requests of the batch
+                long tookInNanos = (System.nanoTime() - startTime) / contexts.size();
+                for (int i = 0; i < contexts.size(); i++) {
+                    shardPercolateService.postPercolate(tookInNanos);
+                }
+            }
+            return responses;
+        } finally {
+            for (PercolateContext context : contexts) {
+                context.close();
+            }
+        }
+    }
+
+    private boolean canBatch(PercolateShardRequest request, PercolateContext context, ParsedDocument parsedDocument, IndexShard indexShard) {
+        return context.percolateQuery() == null
+                && !context.doSort
+                && !context.trackScores()
+                && context.highlight() == null
+                && context.aggregations() == null
+                && parsedDocument.docs().size() == 1
+                && !indexShard.mapperService().documentMapper(request.documentType()).hasNestedObjects();
+    }
+
+    private PercolateShardResponse[] percolateBatch(final List<PercolateContext> contexts, List<ParsedDocument> parsedDocuments, IndexShard indexShard) throws IOException {
+        final int numDocs = contexts.size();
+        final long[] counts = new long[numDocs];
+        final List<List<BytesRef>> matches = new ArrayList<>(numDocs);
+        for (int doc = 0; doc < numDocs; doc++) {
+            matches.add(new ArrayList<BytesRef>());
+        }
+
+        try (MultiDocumentPercolatorIndex.BatchSearcher batchSearcher = multi.prepareBatch(parsedDocuments)) {
+            Map<BytesRef, Query> candidates = indexShard.percolateRegistry().candidateQueries(batchSearcher.searcher().getIndexReader());
+            Lucene.EarlyTerminatingCollector existsCollector = Lucene.createExistsCollector();
+            for (Map.Entry<BytesRef, Query> entry : candidates.entrySet()) {
+                final BytesRef id = entry.getKey();
+                final Query query = entry.getValue();
+                if (matchesIndependentlyOfOtherDocs(query)) {
+                    // the query is executed once for all documents
+                    batchSearcher.searcher().search(query, new Collector() {
+
+                        private int docBase;
+
+                        @Override
+                        public void setScorer(Scorer scorer) {
+                        }
+
+                        @Override
+                        public void collect(int doc) {
+                            addMatch(docBase + doc, id, contexts, counts, matches);
+                        }
+
+                        @Override
+                        public void setNextReader(AtomicReaderContext context) {
+                            docBase = context.docBase;
+                        }
+
+                        @Override
+                        public boolean acceptsDocsOutOfOrder() {
+                            return true;
+                        }
+                    });
+                } else {
+                    // the outcome of the query may depend on statistics of the index, so it has to see one document at a time
+                    for (int doc = 0; doc < numDocs; doc++) {
+                        Lucene.exists(batchSearcher.docSearcher(doc), query, existsCollector);
+                        if (existsCollector.exists()) {
+                            addMatch(doc, id, contexts, counts, matches);
+                        }
+                    }
+                }
+            }
+        }
+
+        PercolateShardResponse[] responses = new PercolateShardResponse[numDocs];
+        for (int doc = 0; doc < numDocs; doc++) {
+            PercolateContext context = contexts.get(doc);
+            ShardId shardId = context.indexShard().shardId();
+            if (context.percolatorTypeId == countPercolator.id()) {
+                responses[doc] = new PercolateShardResponse(counts[doc], context, shardId);
+            } else {
+                List<BytesRef> docMatches = matches.get(doc);
+                BytesRef[] finalMatches = docMatches.toArray(new BytesRef[docMatches.size()]);
+                responses[doc] = new PercolateShardResponse(finalMatches, new ArrayList<Map<String, HighlightField>>(), counts[doc], context, shardId);
+            }
+        }
+        return responses;
+    }
+
+    private void addMatch(int doc, BytesRef id, List<PercolateContext> contexts, long[] counts, List<List<BytesRef>> matches) {
+        PercolateContext context = contexts.get(doc);
+        if (context.percolatorTypeId != countPercolator.id() && (!context.limit || counts[doc] < context.size())) {
+            matches.get(doc).add(id);
+        }
+        counts[doc]++;
+    }
+
+    /**
+     * Whether the documents that the query matches only depend on their own content, so that the query returns the same
+     * matches when executed against a batch of documents as when executed against each document separately. This isn't
+     * the case of queries that depend on index statistics, like the common terms query or the more like this query.
+     */
+    private static boolean matchesIndependentlyOfOtherDocs(Query query) {
+        if (query instanceof TermQuery || query instanceof PhraseQuery || query instanceof MultiPhraseQuery
+                || query instanceof MatchAllDocsQuery) {
+            return true;
+        } else if (query instanceof MultiTermQuery) {
+            // top terms rewrites, like the fuzzy query's, only keep the best terms of the index
+            MultiTermQuery.RewriteMethod rewriteMethod = ((MultiTermQuery) query).getRewriteMethod();
+            return rewriteMethod == MultiTermQuery.CONSTANT_SCORE_AUTO_REWRITE_DEFAULT || rewriteMethod == MultiTermQuery.CONSTANT_SCORE_FILTER_REWRITE;
+        } else if (query instanceof BooleanQuery) {
+            for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                if (!matchesIndependentlyOfOtherDocs(clause.getQuery())) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (query instanceof DisjunctionMaxQuery) {
+            for (Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts()) {
+                if (!matchesIndependentlyOfOtherDocs(disjunct)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (query instanceof ConstantScoreQuery) {
+            ConstantScoreQuery constantScoreQuery = (ConstantScoreQuery) query;
+            if (constantScoreQuery.getQuery() != null) {
+                return matchesIndependentlyOfOtherDocs(constantScoreQuery.getQuery());
+            }
+            return constantScoreQuery.getFilter() instanceof TermFilter;
+        }
+        return false;
+    }
+
     private ParsedDocument parseRequest(IndexService documentIndexService, PercolateShardRequest request, PercolateContext context) throws ElasticsearchException {
         BytesReference source = request.source();
         if (source == null || source.length() == 0) {
@@ -0,0 +1,56 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.BytesReference;
+
+/**
+ * The body of a {@link RestRequest} handed over chunk by chunk as it is received by the transport, rather than
+ * buffered as a whole. See {@link RestRequest#contentStream()}.
+ */
+public interface RestContentStream {
+
+    /**
+     * Receives the chunks of the body, in order. Callbacks are invoked on a network thread and must not block.
+     */
+    public static interface Consumer {
+
+        void onChunk(BytesReference chunk);
+
+        /**
+         * Called once all the chunks have been received.
+         */
+        void onEnd();
+    }
+
+    /**
+     * Starts delivering the body to the consumer, including the chunks received before it was set. Can only be
+     * called once.
+     */
+    void consume(Consumer consumer);
+
+    /**
+     * Stops reading from the client until {@link #resume()} is called, pushing back on it. Calls nest, reading
+     * resumes once every pause has been resumed.
+     */
+    void pause();
+
+    void resume();
+}
@@ -72,6 +72,16 @@ public abstract class RestRequest implements ToXContent.Params {
 
     public abstract BytesReference content();
 
+    /**
+     * The body of the request as a stream of chunks, for transports and endpoints that support streaming it, in which
+     * case {@link #content()} is empty. Returns <tt>null</tt> when the body is buffered and available through
+     * {@link #content()}.
+     */
+    @Nullable
+    public RestContentStream contentStream() {
+        return null;
+    }
+
     public abstract String header(String name);
 
     public abstract Iterable<Map.Entry<String, String>> headers();
@@ -81,6 +81,7 @@ import org.elasticsearch.rest.action.admin.indices.warmer.put.RestPutWarmerActio
 import org.elasticsearch.rest.action.admin.indices.recovery.RestRecoveryAction;
 import org.elasticsearch.rest.action.bench.RestBenchAction;
 import org.elasticsearch.rest.action.bulk.RestBulkAction;
+import org.elasticsearch.rest.action.bulk.RestBulkStreamAction;
 import org.elasticsearch.rest.action.cat.*;
 import org.elasticsearch.rest.action.delete.RestDeleteAction;
 import org.elasticsearch.rest.action.deletebyquery.RestDeleteByQueryAction;
@@ -92,6 +93,7 @@ import org.elasticsearch.rest.action.get.RestMultiGetAction;
 import org.elasticsearch.rest.action.index.RestIndexAction;
 import org.elasticsearch.rest.action.main.RestMainAction;
 import org.elasticsearch.rest.action.mlt.RestMoreLikeThisAction;
+import org.elasticsearch.rest.action.rollup.RestRollupAction;
 import org.elasticsearch.rest.action.percolate.RestMultiPercolateAction;
 import org.elasticsearch.rest.action.percolate.RestPercolateAction;
 import org.elasticsearch.rest.action.script.RestDeleteIndexedScriptAction;
@@ -201,6 +203,7 @@ public class RestActionModule extends AbstractModule {
         bind(RestTermVectorAction.class).asEagerSingleton();
         bind(RestMultiTermVectorsAction.class).asEagerSingleton();
         bind(RestBulkAction.class).asEagerSingleton();
+        bind(RestBulkStreamAction.class).asEagerSingleton();
         bind(RestUpdateAction.class).asEagerSingleton();
         bind(RestPercolateAction.class).asEagerSingleton();
         bind(RestMultiPercolateAction.class).asEagerSingleton();
@@ -214,6 +217,8 @@ public class RestActionModule extends AbstractModule {
 
         bind(RestMoreLikeThisAction.class).asEagerSingleton();
 
+        bind(RestRollupAction.class).asEagerSingleton();
+
         bind(RestExplainAction.class).asEagerSingleton();
 
         bind(RestRecoveryAction.class).asEagerSingleton();
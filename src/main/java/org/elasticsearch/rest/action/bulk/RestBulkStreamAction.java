@@ -0,0 +1,139 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.bulk;
+
+import org.elasticsearch.action.WriteConsistencyLevel;
+import org.elasticsearch.action.bulk.BulkShardRequest;
+import org.elasticsearch.action.bulk.StreamingBulkProcessor;
+import org.elasticsearch.action.support.replication.ReplicationType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+import static org.elasticsearch.rest.RestRequest.Method.PUT;
+
+/**
+ * Handles the <tt>_bulk/stream</tt> endpoints, which take the same format as the bulk API but execute the actions in
+ * batches through a {@link StreamingBulkProcessor} and only respond with a summary. When the HTTP transport streams
+ * the body of these requests (<tt>http.bulk_stream.enabled</tt>), chunks are handed over to the processor as they
+ * are received. Otherwise the buffered body is processed as a single chunk.
+ */
+public class RestBulkStreamAction extends BaseRestHandler {
+
+    private final boolean allowExplicitIndex;
+    private final ByteSizeValue batchSize;
+    private final int maxInFlight;
+    private final int maxRetries;
+
+    @Inject
+    public RestBulkStreamAction(Settings settings, Client client, RestController controller) {
+        super(settings, client);
+
+        controller.registerHandler(POST, "/_bulk/stream", this);
+        controller.registerHandler(PUT, "/_bulk/stream", this);
+        controller.registerHandler(POST, "/{index}/_bulk/stream", this);
+        controller.registerHandler(PUT, "/{index}/_bulk/stream", this);
+        controller.registerHandler(POST, "/{index}/{type}/_bulk/stream", this);
+        controller.registerHandler(PUT, "/{index}/{type}/_bulk/stream", this);
+
+        this.allowExplicitIndex = settings.getAsBoolean("rest.action.multi.allow_explicit_index", true);
+        this.batchSize = settings.getAsBytesSize("http.bulk_stream.batch_size", new ByteSizeValue(5, ByteSizeUnit.MB));
+        this.maxInFlight = settings.getAsInt("http.bulk_stream.max_in_flight", EsExecutors.boundedNumberOfProcessors(settings));
+        this.maxRetries = settings.getAsInt("http.bulk_stream.max_retries", 3);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel, final Client client) throws Exception {
+        final RestContentStream stream = request.contentStream();
+        StreamingBulkProcessor.Builder builder = StreamingBulkProcessor.builder(client, new StreamingBulkProcessor.Listener() {
+            @Override
+            public void pause() {
+                if (stream != null) {
+                    stream.pause();
+                }
+            }
+
+            @Override
+            public void resume() {
+                if (stream != null) {
+                    stream.resume();
+                }
+            }
+
+            @Override
+            public void onCompletion(StreamingBulkProcessor.Summary summary) {
+                try {
+                    XContentBuilder builder = channel.newBuilder();
+                    builder.startObject();
+                    summary.toXContent(builder, request);
+                    builder.endObject();
+                    channel.sendResponse(new BytesRestResponse(summary.status(), builder));
+                } catch (Throwable t) {
+                    try {
+                        channel.sendResponse(new BytesRestResponse(channel, t));
+                    } catch (Throwable inner) {
+                        logger.error("failed to send failure response for bulk stream", inner);
+                    }
+                }
+            }
+        });
+        builder.setDefaultIndex(request.param("index")).setDefaultType(request.param("type")).setDefaultRouting(request.param("routing"))
+                .setAllowExplicitIndex(allowExplicitIndex)
+                .setTimeout(request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT))
+                .setRefresh(request.paramAsBoolean("refresh", false))
+                .setBatchSize(request.paramAsSize("batch_size", batchSize))
+                .setMaxInFlight(maxInFlight)
+                .setMaxRetries(maxRetries);
+        String replicationType = request.param("replication");
+        if (replicationType != null) {
+            builder.setReplicationType(ReplicationType.fromString(replicationType));
+        }
+        String consistencyLevel = request.param("consistency");
+        if (consistencyLevel != null) {
+            builder.setConsistencyLevel(WriteConsistencyLevel.fromString(consistencyLevel));
+        }
+        final StreamingBulkProcessor processor = builder.build();
+
+        if (stream == null) {
+            // the transport buffered the whole body
+            processor.add(request.content());
+            processor.close();
+        } else {
+            stream.consume(new RestContentStream.Consumer() {
+                @Override
+                public void onChunk(BytesReference chunk) {
+                    processor.add(chunk);
+                }
+
+                @Override
+                public void onEnd() {
+                    processor.close();
+                }
+            });
+        }
+    }
+}
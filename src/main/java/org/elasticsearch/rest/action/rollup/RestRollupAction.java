@@ -0,0 +1,67 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.rollup;
+
+import org.elasticsearch.action.rollup.RollupRequest;
+import org.elasticsearch.action.rollup.RollupResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.support.RestToXContentListener;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ *
+ */
+public class RestRollupAction extends BaseRestHandler {
+
+    @Inject
+    public RestRollupAction(Settings settings, Client client, RestController controller) {
+        super(settings, client);
+        controller.registerHandler(POST, "/{index}/_rollup", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel, final Client client) {
+        RollupRequest rollupRequest = new RollupRequest(Strings.splitStringByCommaToArray(request.param("index")));
+        rollupRequest.indicesOptions(IndicesOptions.fromRequest(request, rollupRequest.indicesOptions()));
+        rollupRequest.listenerThreaded(false);
+        rollupRequest.rollupIndex(request.param("rollup_index"));
+        rollupRequest.rollupType(request.param("rollup_type", RollupRequest.DEFAULT_TYPE));
+        rollupRequest.field(request.param("field"));
+        rollupRequest.interval(request.param("interval"));
+        rollupRequest.timeZone(request.param("time_zone"));
+        rollupRequest.metrics(request.paramAsStringArray("metrics", Strings.EMPTY_ARRAY));
+        if (request.hasParam("from")) {
+            rollupRequest.from(request.paramAsLong("from", 0));
+        }
+        if (request.hasParam("to")) {
+            rollupRequest.to(request.paramAsLong("to", 0));
+        }
+        client.rollup(rollupRequest, new RestToXContentListener<RollupResponse>(channel));
+    }
+}
@@ -110,6 +110,7 @@ public class RestSearchAction extends BaseRestHandler {
         searchRequest.extraSource(parseSearchSource(request));
         searchRequest.searchType(request.param("search_type"));
         searchRequest.queryCache(request.paramAsBoolean("query_cache", null));
+        searchRequest.batchedReduceSize(request.paramAsInt("batched_reduce_size", searchRequest.batchedReduceSize()));
 
         String scroll = request.param("scroll");
         if (scroll != null) {
@@ -0,0 +1,37 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.script;
+
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+
+/**
+ * A {@link SearchScript} that computes exactly one double per document. Its values can be
+ * read directly from {@link #doubleValues()}, without positioning the script on a document
+ * and boxing the result of {@link #run()}.
+ */
+public interface NumericSearchScript extends SearchScript {
+
+    /**
+     * Returns a view over the values of this script for the segment last passed to
+     * {@link #setNextReader(org.apache.lucene.index.AtomicReaderContext)}.
+     */
+    NumericDoubleValues doubleValues();
+
+}
@@ -26,6 +26,8 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.queries.function.FunctionValues;
 import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.search.Scorer;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
+import org.elasticsearch.script.NumericSearchScript;
 import org.elasticsearch.script.SearchScript;
 
 import java.io.IOException;
@@ -36,7 +38,7 @@ import java.util.Map;
  * A bridge to evaluate an {@link Expression} against {@link Bindings} in the context
  * of a {@link SearchScript}.
  */
-class ExpressionScript implements SearchScript {
+class ExpressionScript implements NumericSearchScript {
 
     final Expression expression;
     final XSimpleBindings bindings;
@@ -47,6 +49,13 @@ class ExpressionScript implements SearchScript {
     FunctionValues values;
     int docid;
 
+    final NumericDoubleValues doubleValues = new NumericDoubleValues() {
+        @Override
+        public double get(int docID) {
+            return values.doubleVal(docID);
+        }
+    };
+
     ExpressionScript(Expression e, XSimpleBindings b, ReplaceableConstValueSource v) {
         expression = e;
         bindings = b;
@@ -59,6 +68,11 @@ class ExpressionScript implements SearchScript {
         return values.doubleVal(docid);
     }
 
+    @Override
+    public NumericDoubleValues doubleValues() {
+        return doubleValues;
+    }
+
     @Override
     public Object run() { return new Double(evaluate()); }
 
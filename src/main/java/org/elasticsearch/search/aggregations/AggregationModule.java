@@ -35,6 +35,7 @@ import org.elasticsearch.search.aggregations.bucket.range.RangeParser;
 import org.elasticsearch.search.aggregations.bucket.range.date.DateRangeParser;
 import org.elasticsearch.search.aggregations.bucket.range.geodistance.GeoDistanceParser;
 import org.elasticsearch.search.aggregations.bucket.range.ipv4.IpRangeParser;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplerParser;
 import org.elasticsearch.search.aggregations.bucket.significant.SignificantTermsParser;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsParser;
 import org.elasticsearch.search.aggregations.metrics.avg.AvgParser;
@@ -91,6 +92,7 @@ public class AggregationModule extends AbstractModule {
         parsers.add(GeoBoundsParser.class);
         parsers.add(ScriptedMetricParser.class);
         parsers.add(ChildrenParser.class);
+        parsers.add(SamplerParser.class);
     }
 
     /**
@@ -138,12 +138,20 @@ public class AggregationPhase implements SearchPhase {
 
     public static class AggregationsCollector extends XCollector {
 
+        /** Number of documents buffered before being handed to the aggregators as a block. */
+        static final int BLOCK_SIZE = 1024;
+
         private final AggregationContext aggregationContext;
         private final Aggregator[] collectors;
+        // null if documents must be collected one at a time
+        private final int[] docBuffer;
+        private int bufferedDocs;
 
         public AggregationsCollector(Collection<Aggregator> collectors, AggregationContext aggregationContext) {
             this.collectors = collectors.toArray(new Aggregator[collectors.size()]);
             this.aggregationContext = aggregationContext;
+            // the scorer is only positioned on the current document, so documents can't be buffered if scores are needed
+            this.docBuffer = aggregationContext.needsScores() ? null : new int[BLOCK_SIZE];
         }
 
         @Override
@@ -153,13 +161,31 @@ public class AggregationPhase implements SearchPhase {
 
         @Override
         public void collect(int doc) throws IOException {
-            for (Aggregator collector : collectors) {
-                collector.collect(doc, 0);
+            if (docBuffer == null) {
+                for (Aggregator collector : collectors) {
+                    collector.collect(doc, 0);
+                }
+            } else {
+                docBuffer[bufferedDocs++] = doc;
+                if (bufferedDocs == docBuffer.length) {
+                    flush();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            if (bufferedDocs > 0) {
+                for (Aggregator collector : collectors) {
+                    collector.collect(docBuffer, bufferedDocs, 0);
+                }
+                bufferedDocs = 0;
             }
         }
 
         @Override
         public void setNextReader(AtomicReaderContext context) throws IOException {
+            // buffered documents belong to the previous reader
+            flush();
             aggregationContext.setNextReader(context);
         }
 
@@ -170,6 +196,7 @@ public class AggregationPhase implements SearchPhase {
 
         @Override
         public void postCollection() throws IOException {
+            flush();
             for (Aggregator collector : collectors) {
                 collector.postCollection();
             }
@@ -230,7 +230,7 @@ public abstract class Aggregator extends BucketCollector implements Releasable {
         }
         if (nextPassCollectors.size() > 0) {
             BucketCollector deferreds = BucketCollector.wrap(nextPassCollectors);
-            recordingWrapper = new DeferringBucketCollector(deferreds, context);
+            recordingWrapper = createDeferringCollector(deferreds);
             // TODO. Without line below we are dependent on subclass aggs
             // delegating setNextReader calls on to child aggs
             // which they don't seem to do as a matter of course. Need to move
@@ -256,6 +256,13 @@ public abstract class Aggregator extends BucketCollector implements Releasable {
         return false;
     }
     
+    /**
+     * Create the collector that records the matches of the deferred sub-aggregators and replays them.
+     */
+    protected DeferringBucketCollector createDeferringCollector(BucketCollector deferreds) {
+        return new DeferringBucketCollector(deferreds, context);
+    }
+
     protected void runDeferredCollections(long... bucketOrds){
         // Being lenient here - ignore calls where there are no deferred collections to playback
         if (recordingWrapper != null) {
@@ -175,6 +175,20 @@ public class AggregatorFactories {
         }
     }
 
+    /**
+     * @return  {@code true} if all the factories in this tree produce aggregations that can be computed per segment
+     *          and reduced afterwards.
+     * @see AggregatorFactory#segmentReducible()
+     */
+    public boolean segmentReducible() {
+        for (AggregatorFactory factory : factories) {
+            if (!factory.segmentReducible() || !factory.factories.segmentReducible()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private final static class Empty extends AggregatorFactories {
 
         private static final AggregatorFactory[] EMPTY_FACTORIES = new AggregatorFactory[0];
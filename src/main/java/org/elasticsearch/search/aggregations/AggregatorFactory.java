@@ -62,6 +62,13 @@ public abstract class AggregatorFactory {
         factories.validate();
     }
 
+    /**
+     * @return  The name of the aggregation.
+     */
+    public String name() {
+        return name;
+    }
+
     /**
      * @return  The parent factory if one exists (will always return {@code null} for top level aggregator factories).
      */
@@ -84,4 +91,23 @@ public abstract class AggregatorFactory {
     public void doValidate() {
     }
 
+    /**
+     * @return  {@code true} if the aggregations created by this factory can be computed independently on each segment and
+     *          then reduced into exactly the same result as a single pass over the whole shard would produce. Defaults to
+     *          {@code false}, aggregators that prune their results at the shard level (eg. top-n buckets) must not
+     *          override it.
+     */
+    public boolean segmentReducible() {
+        return false;
+    }
+
+    /**
+     * @return  {@code true} if the aggregators created by this factory only collect the sub-aggregator created by
+     *          <code>subFactory</code> once their own collection is over, by replaying the recorded documents without their
+     *          scores. Defaults to {@code false}.
+     */
+    public boolean defersCollection(AggregatorFactory subFactory) {
+        return false;
+    }
+
 }
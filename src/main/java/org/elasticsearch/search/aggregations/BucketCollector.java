@@ -82,6 +82,13 @@ public abstract class BucketCollector implements ReaderContextAware {
                         }
                     }
 
+                    @Override
+                    public void collect(int[] docIds, int count, long bucketOrdinal) throws IOException {
+                        for (BucketCollector collector : collectors) {
+                            collector.collect(docIds, count, bucketOrdinal);
+                        }
+                    }
+
                     @Override
                     public void setNextReader(AtomicReaderContext reader) {
                         for (BucketCollector collector : collectors) {
@@ -120,6 +127,22 @@ public abstract class BucketCollector implements ReaderContextAware {
      */
     public abstract void collect(int docId, long bucketOrdinal) throws IOException;
 
+    /**
+     * Called during the query phase to collect a block of documents that all fall into the same bucket.
+     * The default implementation calls {@link #collect(int, long)} for every document, implementations
+     * may override it to aggregate the whole block in a tight loop.
+     *
+     * @param docIds        The documents to collect, from the current reader
+     * @param count         The number of documents to collect from {@code docIds}
+     * @param bucketOrdinal The ordinal of the bucket all the documents belong to
+     * @throws IOException
+     */
+    public void collect(int[] docIds, int count, long bucketOrdinal) throws IOException {
+        for (int i = 0; i < count; i++) {
+            collect(docIds[i], bucketOrdinal);
+        }
+    }
+
     /**
      * Post collection callback.
      */
@@ -88,11 +88,17 @@ public abstract class InternalAggregation implements Aggregation, ToXContent, St
         private final List<InternalAggregation> aggregations;
         private final BigArrays bigArrays;
         private ScriptService scriptService;
+        private final boolean finalReduce;
 
         public ReduceContext(List<InternalAggregation> aggregations, BigArrays bigArrays, ScriptService scriptService) {
+            this(aggregations, bigArrays, scriptService, true);
+        }
+
+        public ReduceContext(List<InternalAggregation> aggregations, BigArrays bigArrays, ScriptService scriptService, boolean finalReduce) {
             this.aggregations = aggregations;
             this.bigArrays = bigArrays;
             this.scriptService = scriptService;
+            this.finalReduce = finalReduce;
         }
 
         public List<InternalAggregation> aggregations() {
@@ -106,6 +112,15 @@ public abstract class InternalAggregation implements Aggregation, ToXContent, St
         public ScriptService scriptService() {
             return scriptService;
         }
+
+        /**
+         * Returns <tt>false</tt> if this reduce is only a partial reduce of some of the shard results, whose result
+         * will be reduced again with other results. Partial reduces must not prune buckets, or compute final values
+         * that could not be reduced again.
+         */
+        public boolean isFinalReduce() {
+            return finalReduce;
+        }
     }
 
 
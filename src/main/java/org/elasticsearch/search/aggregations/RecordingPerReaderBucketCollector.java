@@ -23,9 +23,14 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.util.packed.AppendingDeltaPackedLongBuffer;
 import org.apache.lucene.util.packed.AppendingPackedLongBuffer;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
 
-import java.io.IOException;
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -33,18 +38,30 @@ import java.util.List;
  * Records a "collect" stream for subsequent play-back using a per-segment
  * object to collect matches. Playback is fast because each collection
  * contains only the required matches for the current reader.
+ * Once the recorded matches held in memory exceed a threshold, they are spilled
+ * to delta-encoded temporary files which are read back on play-back.
  */
 public class RecordingPerReaderBucketCollector extends RecordingBucketCollector  {
 
+    /** How many collected docs to wait between two checks of the memory usage. */
+    private static final int SPILL_CHECK_INTERVAL = 4096;
+
     final List<PerSegmentCollects> perSegmentCollections = new ArrayList<>();
     private PerSegmentCollects currentCollection;
     private boolean recordingComplete;
-    
+    private final long spillThresholdBytes;
+    private final File spillDirectory;
+    private long stowedBytes;
+    private int collectsSinceSpillCheck;
+
     static class PerSegmentCollects {
         AtomicReaderContext readerContext;
         AppendingPackedLongBuffer docs;
         AppendingPackedLongBuffer buckets;
         int lastDocId = 0;
+        // matches that have been moved out of memory, they precede the ones in docs/buckets
+        File spillFile;
+        long spilledCount;
 
         PerSegmentCollects(AtomicReaderContext readerContext) {
             this.readerContext = readerContext;
@@ -84,7 +101,51 @@ public class RecordingPerReaderBucketCollector extends RecordingBucketCollector
         }
 
         boolean hasItems() {
-            return docs != null;
+            return docs != null || spilledCount > 0;
+        }
+
+        long ramBytesUsed() {
+            long bytes = 0;
+            if (docs != null) {
+                bytes += docs.ramBytesUsed();
+            }
+            if (buckets != null) {
+                bytes += buckets.ramBytesUsed();
+            }
+            return bytes;
+        }
+
+        /**
+         * Appends the matches held in memory to the spill file and releases them.
+         * Entries are written as a vint doc id delta followed by a vlong bucket ordinal.
+         */
+        void spill(File directory) throws IOException {
+            if (docs == null) {
+                return;
+            }
+            if (spillFile == null) {
+                FileSystemUtils.mkdirs(directory);
+                spillFile = File.createTempFile("deferred", ".docs", directory);
+            }
+            try (StreamOutput out = new OutputStreamStreamOutput(new BufferedOutputStream(new FileOutputStream(spillFile, true)))) {
+                final AppendingDeltaPackedLongBuffer.Iterator docsIter = docs.iterator();
+                final AppendingDeltaPackedLongBuffer.Iterator bucketsIter = buckets == null ? null : buckets.iterator();
+                while (docsIter.hasNext()) {
+                    out.writeVInt((int) docsIter.next());
+                    out.writeVLong(bucketsIter == null ? 0 : bucketsIter.next());
+                    spilledCount++;
+                }
+            }
+            docs = null;
+            buckets = null;
+        }
+
+        void deleteSpillFile() {
+            if (spillFile != null) {
+                spillFile.delete();
+                spillFile = null;
+                spilledCount = 0;
+            }
         }
 
         void replay(BucketCollector collector) throws IOException {
@@ -93,6 +154,17 @@ public class RecordingPerReaderBucketCollector extends RecordingBucketCollector
             if (!hasItems()) {
                 return;
             }
+            if (spilledCount > 0) {
+                try (StreamInput in = new InputStreamStreamInput(new BufferedInputStream(new FileInputStream(spillFile)))) {
+                    for (long i = 0; i < spilledCount; i++) {
+                        lastDocId += in.readVInt();
+                        collector.collect(lastDocId, in.readVLong());
+                    }
+                }
+            }
+            if (docs == null) {
+                return;
+            }
             if (buckets == null) {
                 final AppendingDeltaPackedLongBuffer.Iterator docsIter = docs.iterator();
                 while (docsIter.hasNext()) {
@@ -111,9 +183,16 @@ public class RecordingPerReaderBucketCollector extends RecordingBucketCollector
         }
     }
     
-    public RecordingPerReaderBucketCollector(AggregationContext context) {
+    /**
+     * @param context             the aggregation context
+     * @param spillThresholdBytes the amount of memory recorded matches may use before they are spilled to disk
+     * @param spillDirectory      the directory spill files are created in
+     */
+    public RecordingPerReaderBucketCollector(AggregationContext context, long spillThresholdBytes, File spillDirectory) {
         // Call this method to achieve better compression in the recorded arrays of matches
         context.ensureScoreDocsInOrder();        
+        this.spillThresholdBytes = spillThresholdBytes;
+        this.spillDirectory = spillDirectory;
     }
 
     @Override
@@ -124,23 +203,51 @@ public class RecordingPerReaderBucketCollector extends RecordingBucketCollector
             // registering a listener.
             return;
         }
-        stowLastSegmentCollection();
+        try {
+            stowLastSegmentCollection();
+        } catch (IOException e) {
+            throw new ElasticsearchException("Failed to spill deferred set of matching docIDs", e);
+        }
         currentCollection = new PerSegmentCollects(reader);
     }
 
-    private void stowLastSegmentCollection() {
+    private void stowLastSegmentCollection() throws IOException {
         if (currentCollection != null) {
             if (currentCollection.hasItems()) {
                 currentCollection.endCollect();
                 perSegmentCollections.add(currentCollection);
+                stowedBytes += currentCollection.ramBytesUsed();
             }
             currentCollection = null;
+            if (stowedBytes > spillThresholdBytes) {
+                spill();
+            }
         }
     }
 
     @Override
     public void collect(int doc, long owningBucketOrdinal) throws IOException {
         currentCollection.collect(doc, owningBucketOrdinal);
+        if (++collectsSinceSpillCheck == SPILL_CHECK_INTERVAL) {
+            collectsSinceSpillCheck = 0;
+            if (stowedBytes + currentCollection.ramBytesUsed() > spillThresholdBytes) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Moves all recorded matches that are still held in memory to disk.
+     */
+    private void spill() throws IOException {
+        for (PerSegmentCollects collection : perSegmentCollections) {
+            collection.spill(spillDirectory);
+        }
+        stowedBytes = 0;
+        if (currentCollection != null) {
+            // the segment is still being collected, it is fine to keep appending to it afterwards
+            currentCollection.spill(spillDirectory);
+        }
     }
 
     /*
@@ -163,5 +270,11 @@ public class RecordingPerReaderBucketCollector extends RecordingBucketCollector
 
     @Override
     public void close() throws ElasticsearchException {
+        for (PerSegmentCollects collection : perSegmentCollections) {
+            collection.deleteSpillFile();
+        }
+        if (currentCollection != null) {
+            currentCollection.deleteSpillFile();
+        }
     }    
 }
@@ -23,6 +23,9 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.search.aggregations.BucketCollector;
 import org.elasticsearch.search.aggregations.FilteringBucketCollector;
 import org.elasticsearch.search.aggregations.RecordingBucketCollector;
@@ -42,6 +45,10 @@ import java.io.IOException;
  * from the {@link RecordingBucketCollector} impl which is concentrated on efficient storage of doc and bucket IDs  
  */
 public class DeferringBucketCollector extends BucketCollector implements Releasable {
+
+    /** Amount of memory the recorded matches may use before being spilled to temporary files. */
+    public static final String SPILL_THRESHOLD = "index.search.aggregations.deferred.spill_threshold";
+    public static final ByteSizeValue DEFAULT_SPILL_THRESHOLD = new ByteSizeValue(64, ByteSizeUnit.MB);
     
     private final BucketCollector deferred;
     private final RecordingBucketCollector recording;
@@ -50,11 +57,27 @@ public class DeferringBucketCollector extends BucketCollector implements Releasa
 
 
     public DeferringBucketCollector (BucketCollector deferred, AggregationContext context) {
+        this(deferred, context, new RecordingPerReaderBucketCollector(context, spillThreshold(context), context.searchContext().tempDirectory()));
+    }
+
+    /**
+     * Create a deferring collector that uses a custom recorder, eg. one that only keeps a selection
+     * of the collected docs.
+     */
+    public DeferringBucketCollector(BucketCollector deferred, AggregationContext context, RecordingBucketCollector recording) {
         this.deferred = deferred;
-        this.recording = new RecordingPerReaderBucketCollector(context);
+        this.recording = recording;
         this.context = context;
     }
 
+    private static long spillThreshold(AggregationContext context) {
+        final IndexShard indexShard = context.searchContext().indexShard();
+        if (indexShard == null) {
+            return DEFAULT_SPILL_THRESHOLD.bytes();
+        }
+        return indexShard.indexSettings().getAsBytesSize(SPILL_THRESHOLD, DEFAULT_SPILL_THRESHOLD).bytes();
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext reader) {
         recording.setNextReader(reader);
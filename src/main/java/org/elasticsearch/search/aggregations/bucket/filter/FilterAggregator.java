@@ -81,6 +81,11 @@ public class FilterAggregator extends SingleBucketAggregator {
             this.filter = filter;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
             return new FilterAggregator(name, filter, factories, context, parent);
@@ -123,6 +123,11 @@ public class FiltersAggregator extends BucketsAggregator {
             this.keyed = keyed;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
             return new FiltersAggregator(name, factories, filters, keyed, context, parent);
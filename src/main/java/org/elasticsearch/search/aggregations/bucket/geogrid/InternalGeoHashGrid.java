@@ -187,7 +187,8 @@ public class InternalGeoHashGrid extends InternalAggregation implements GeoHashG
             }
         }
 
-        final int size = (int) Math.min(requiredSize, buckets.size());
+        // partial reduces keep all the cells, they are only pruned once all shard results are reduced
+        final int size = reduceContext.isFinalReduce() ? (int) Math.min(requiredSize, buckets.size()) : (int) buckets.size();
         BucketPriorityQueue ordered = new BucketPriorityQueue(size);
         for (LongObjectPagedHashMap.Cursor<List<Bucket>> cursor : buckets) {
             List<Bucket> sameCellBuckets = cursor.value;
@@ -61,6 +61,11 @@ public class GlobalAggregator extends SingleBucketAggregator {
             super(name, InternalGlobal.TYPE.name());
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
             if (parent != null) {
@@ -44,28 +44,27 @@ public class DateHistogramParser implements Aggregator.Parser {
 
     static final ParseField EXTENDED_BOUNDS = new ParseField("extended_bounds");
 
-    private final ImmutableMap<String, DateTimeUnit> dateFieldUnits;
-
-    public DateHistogramParser() {
-        dateFieldUnits = MapBuilder.<String, DateTimeUnit>newMapBuilder()
-                .put("year", DateTimeUnit.YEAR_OF_CENTURY)
-                .put("1y", DateTimeUnit.YEAR_OF_CENTURY)
-                .put("quarter", DateTimeUnit.QUARTER)
-                .put("1q", DateTimeUnit.QUARTER)
-                .put("month", DateTimeUnit.MONTH_OF_YEAR)
-                .put("1M", DateTimeUnit.MONTH_OF_YEAR)
-                .put("week", DateTimeUnit.WEEK_OF_WEEKYEAR)
-                .put("1w", DateTimeUnit.WEEK_OF_WEEKYEAR)
-                .put("day", DateTimeUnit.DAY_OF_MONTH)
-                .put("1d", DateTimeUnit.DAY_OF_MONTH)
-                .put("hour", DateTimeUnit.HOUR_OF_DAY)
-                .put("1h", DateTimeUnit.HOUR_OF_DAY)
-                .put("minute", DateTimeUnit.MINUTES_OF_HOUR)
-                .put("1m", DateTimeUnit.MINUTES_OF_HOUR)
-                .put("second", DateTimeUnit.SECOND_OF_MINUTE)
-                .put("1s", DateTimeUnit.SECOND_OF_MINUTE)
-                .immutableMap();
-    }
+    /**
+     * The calendar intervals, other intervals are parsed as time values.
+     */
+    public static final ImmutableMap<String, DateTimeUnit> DATE_FIELD_UNITS = MapBuilder.<String, DateTimeUnit>newMapBuilder()
+            .put("year", DateTimeUnit.YEAR_OF_CENTURY)
+            .put("1y", DateTimeUnit.YEAR_OF_CENTURY)
+            .put("quarter", DateTimeUnit.QUARTER)
+            .put("1q", DateTimeUnit.QUARTER)
+            .put("month", DateTimeUnit.MONTH_OF_YEAR)
+            .put("1M", DateTimeUnit.MONTH_OF_YEAR)
+            .put("week", DateTimeUnit.WEEK_OF_WEEKYEAR)
+            .put("1w", DateTimeUnit.WEEK_OF_WEEKYEAR)
+            .put("day", DateTimeUnit.DAY_OF_MONTH)
+            .put("1d", DateTimeUnit.DAY_OF_MONTH)
+            .put("hour", DateTimeUnit.HOUR_OF_DAY)
+            .put("1h", DateTimeUnit.HOUR_OF_DAY)
+            .put("minute", DateTimeUnit.MINUTES_OF_HOUR)
+            .put("1m", DateTimeUnit.MINUTES_OF_HOUR)
+            .put("second", DateTimeUnit.SECOND_OF_MINUTE)
+            .put("1s", DateTimeUnit.SECOND_OF_MINUTE)
+            .immutableMap();
 
     @Override
     public String type() {
@@ -185,7 +184,7 @@ public class DateHistogramParser implements Aggregator.Parser {
         }
 
         TimeZoneRounding.Builder tzRoundingBuilder;
-        DateTimeUnit dateTimeUnit = dateFieldUnits.get(interval);
+        DateTimeUnit dateTimeUnit = DATE_FIELD_UNITS.get(interval);
         if (dateTimeUnit != null) {
             tzRoundingBuilder = TimeZoneRounding.builder(dateTimeUnit);
         } else {
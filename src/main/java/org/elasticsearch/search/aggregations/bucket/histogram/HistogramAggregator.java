@@ -157,6 +157,12 @@ public class HistogramAggregator extends BucketsAggregator {
             this.histogramFactory = histogramFactory;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            // buckets under min_doc_count would be dropped by the segment level reduce
+            return minDocCount <= 1;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new HistogramAggregator(name, factories, rounding, order, keyed, minDocCount, null, null, config.formatter(), 0, histogramFactory, aggregationContext, parent);
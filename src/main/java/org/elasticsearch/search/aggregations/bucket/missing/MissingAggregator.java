@@ -77,6 +77,11 @@ public class MissingAggregator extends SingleBucketAggregator {
             super(name, InternalMissing.TYPE.name(), valueSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected MissingAggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new MissingAggregator(name, factories, null, aggregationContext, parent);
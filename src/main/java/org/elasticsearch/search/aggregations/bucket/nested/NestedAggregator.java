@@ -150,6 +150,11 @@ public class NestedAggregator extends SingleBucketAggregator implements ReaderCo
             this.path = path;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
             return new NestedAggregator(name, factories, path, context, parent);
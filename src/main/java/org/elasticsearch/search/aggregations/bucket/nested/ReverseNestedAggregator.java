@@ -154,6 +154,11 @@ public class ReverseNestedAggregator extends SingleBucketAggregator implements R
             this.path = path;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
             return new ReverseNestedAggregator(name, factories, path, context, parent);
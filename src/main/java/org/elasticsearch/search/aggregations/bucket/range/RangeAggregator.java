@@ -292,6 +292,11 @@ public class RangeAggregator extends BucketsAggregator {
             this.keyed = keyed;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new Unmapped(name, ranges, keyed, config.format(), aggregationContext, parent, rangeFactory);
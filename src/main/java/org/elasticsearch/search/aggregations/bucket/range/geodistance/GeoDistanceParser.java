@@ -173,6 +173,11 @@ public class GeoDistanceParser implements Aggregator.Parser {
             this.keyed = keyed;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new Unmapped(name, ranges, keyed, null, aggregationContext, parent, rangeFactory);
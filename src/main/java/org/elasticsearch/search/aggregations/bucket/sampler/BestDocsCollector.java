@@ -0,0 +1,302 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CollectionUtil;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.lucene.ScorerAware;
+import org.elasticsearch.common.util.LongObjectPagedHashMap;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.search.aggregations.BucketCollector;
+import org.elasticsearch.search.aggregations.RecordingBucketCollector;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Records the best scoring documents of every bucket, optionally keeping at most a given number of documents
+ * per value of a field, and replays them in doc id order. The recorded scores are replayed as well, so that
+ * sub-aggregations that use the score see the score of the document being replayed.
+ */
+class BestDocsCollector extends RecordingBucketCollector implements ScorerAware {
+
+    private static final Comparator<ScoreDocEntry> BY_SCORE = new Comparator<ScoreDocEntry>() {
+        @Override
+        public int compare(ScoreDocEntry a, ScoreDocEntry b) {
+            final int cmp = Float.compare(a.score, b.score);
+            if (cmp != 0) {
+                return cmp;
+            }
+            // on ties, documents that have been collected first win
+            return b.doc - a.doc;
+        }
+    };
+
+    private static final Comparator<ScoreDocEntry> BY_DOC = new Comparator<ScoreDocEntry>() {
+        @Override
+        public int compare(ScoreDocEntry a, ScoreDocEntry b) {
+            if (a.doc != b.doc) {
+                return a.doc - b.doc;
+            }
+            return Long.compare(a.bucket, b.bucket);
+        }
+    };
+
+    private final AggregationContext context;
+    private final int shardSize;
+    private final ValuesSource diversitySource;
+    private final int maxDocsPerValue;
+    private final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+
+    private LongObjectPagedHashMap<Sample> samples;
+    private long maxBucket = 0;
+    private Scorer scorer;
+    private int docBase;
+    private SortedBinaryDocValues values;
+
+    BestDocsCollector(int shardSize, ValuesSource diversitySource, int maxDocsPerValue, AggregationContext context) {
+        this.context = context;
+        this.shardSize = shardSize;
+        this.diversitySource = diversitySource;
+        this.maxDocsPerValue = maxDocsPerValue;
+        this.samples = new LongObjectPagedHashMap<>(1, context.bigArrays());
+        context.registerScorerAware(this);
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext reader) {
+        docBase = reader.docBase;
+        if (diversitySource != null) {
+            values = diversitySource.bytesValues();
+        }
+    }
+
+    @Override
+    public void collect(int doc, long bucketOrdinal) throws IOException {
+        Sample sample = samples.get(bucketOrdinal);
+        if (sample == null) {
+            sample = new Sample();
+            samples.put(bucketOrdinal, sample);
+            maxBucket = Math.max(maxBucket, bucketOrdinal + 1);
+        }
+        final float score = scorer.score();
+        // once a sample is full most documents don't make it, so they are rejected before allocating an entry
+        if (!sample.competes(docBase + doc, score)) {
+            return;
+        }
+        sample.add(new ScoreDocEntry(docBase + doc, score, bucketOrdinal, diversityKey(doc)));
+    }
+
+    private Long diversityKey(int doc) {
+        if (values == null) {
+            return null;
+        }
+        values.setDocument(doc);
+        if (values.count() == 0) {
+            // documents that don't have a value are not subject to diversity
+            return null;
+        }
+        final BytesRef value = values.valueAt(0);
+        return MurmurHash3.hash128(value.bytes, value.offset, value.length, 0, hash).h1;
+    }
+
+    @Override
+    public void postCollection() throws IOException {
+    }
+
+    /** The number of buckets that may have sampled documents. */
+    long maxBucket() {
+        return maxBucket;
+    }
+
+    /** The number of documents that have been sampled for the given bucket. */
+    int sampleSize(long bucketOrdinal) {
+        final Sample sample = samples.get(bucketOrdinal);
+        return sample == null ? 0 : sample.best.size();
+    }
+
+    @Override
+    public void replayCollection(BucketCollector collector) throws IOException {
+        final List<ScoreDocEntry> entries = new ArrayList<>();
+        for (LongObjectPagedHashMap.Cursor<Sample> cursor : samples) {
+            entries.addAll(cursor.value.best);
+        }
+        CollectionUtil.timSort(entries, BY_DOC);
+
+        final Scorer previousScorer = context.currentScorer();
+        final ReplayScorer replayScorer = new ReplayScorer();
+        context.setScorer(replayScorer);
+        try {
+            final List<AtomicReaderContext> leaves = context.searchContext().searcher().getIndexReader().leaves();
+            AtomicReaderContext leaf = null;
+            for (ScoreDocEntry entry : entries) {
+                if (leaf == null || entry.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                    leaf = leaves.get(ReaderUtil.subIndex(entry.doc, leaves));
+                    collector.setNextReader(leaf);
+                }
+                replayScorer.doc = entry.doc - leaf.docBase;
+                replayScorer.score = entry.score;
+                collector.collect(replayScorer.doc, entry.bucket);
+            }
+            collector.postCollection();
+        } finally {
+            if (previousScorer != null) {
+                context.setScorer(previousScorer);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ElasticsearchException {
+        Releasables.close(samples);
+        samples = null;
+    }
+
+    /**
+     * A scorer that returns the recorded score of the document being replayed.
+     */
+    private static final class ReplayScorer extends Scorer {
+
+        int doc = -1;
+        float score;
+
+        ReplayScorer() {
+            super(null);
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public float score() throws IOException {
+            return score;
+        }
+
+        @Override
+        public int freq() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long cost() {
+            return 1;
+        }
+    }
+
+    private static class ScoreDocEntry {
+
+        final int doc;
+        final float score;
+        final long bucket;
+        final Long key;
+
+        ScoreDocEntry(int doc, float score, long bucket, Long key) {
+            this.doc = doc;
+            this.score = score;
+            this.bucket = bucket;
+            this.key = key;
+        }
+    }
+
+    private class Sample {
+
+        final TreeSet<ScoreDocEntry> best = new TreeSet<>(BY_SCORE);
+        final Map<Long, TreeSet<ScoreDocEntry>> bestPerValue = new HashMap<>();
+
+        /**
+         * Whether a document could make it into this sample. Documents that have the same value as others can only
+         * replace one of them, and these are all at least as good as the worst document of the sample, so a document
+         * that does not beat the worst document of a full sample never makes it.
+         */
+        boolean competes(int doc, float score) {
+            if (best.size() < shardSize) {
+                return true;
+            }
+            final ScoreDocEntry worst = best.first();
+            final int cmp = Float.compare(score, worst.score);
+            // same as BY_SCORE, on ties the document collected first wins
+            return cmp > 0 || (cmp == 0 && doc < worst.doc);
+        }
+
+        void add(ScoreDocEntry entry) {
+            TreeSet<ScoreDocEntry> sameValue = null;
+            if (entry.key != null) {
+                sameValue = bestPerValue.get(entry.key);
+                if (sameValue == null) {
+                    sameValue = new TreeSet<>(BY_SCORE);
+                    bestPerValue.put(entry.key, sameValue);
+                } else if (sameValue.size() >= maxDocsPerValue) {
+                    // the document can only replace a document that has the same value
+                    final ScoreDocEntry worst = sameValue.first();
+                    if (BY_SCORE.compare(entry, worst) > 0) {
+                        sameValue.pollFirst();
+                        best.remove(worst);
+                        sameValue.add(entry);
+                        best.add(entry);
+                    }
+                    return;
+                }
+            }
+            if (best.size() >= shardSize) {
+                final ScoreDocEntry worst = best.first();
+                if (BY_SCORE.compare(entry, worst) <= 0) {
+                    return;
+                }
+                best.pollFirst();
+                if (worst.key != null) {
+                    final TreeSet<ScoreDocEntry> worstSameValue = bestPerValue.get(worst.key);
+                    worstSameValue.remove(worst);
+                    if (worstSameValue.isEmpty() && worstSameValue != sameValue) {
+                        bestPerValue.remove(worst.key);
+                    }
+                }
+            }
+            best.add(entry);
+            if (sameValue != null) {
+                sameValue.add(entry);
+            }
+        }
+    }
+}
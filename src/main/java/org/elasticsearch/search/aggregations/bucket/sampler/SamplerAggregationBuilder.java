@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+
+import java.io.IOException;
+
+/**
+ * Builder for the {@link Sampler} aggregation.
+ */
+public class SamplerAggregationBuilder extends AggregationBuilder<SamplerAggregationBuilder> {
+
+    private int shardSize = -1;
+    private String field;
+    private int maxDocsPerValue = -1;
+
+    public SamplerAggregationBuilder(String name) {
+        super(name, InternalSampler.TYPE.name());
+    }
+
+    /**
+     * Set the maximum number of documents to sample on each shard.
+     */
+    public SamplerAggregationBuilder shardSize(int shardSize) {
+        this.shardSize = shardSize;
+        return this;
+    }
+
+    /**
+     * Set the field whose values must be diversified in the sample.
+     */
+    public SamplerAggregationBuilder field(String field) {
+        this.field = field;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of sampled documents that may share the same value of the diversity field.
+     */
+    public SamplerAggregationBuilder maxDocsPerValue(int maxDocsPerValue) {
+        this.maxDocsPerValue = maxDocsPerValue;
+        return this;
+    }
+
+    @Override
+    protected XContentBuilder internalXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        if (shardSize >= 0) {
+            builder.field(SamplerParser.SHARD_SIZE.getPreferredName(), shardSize);
+        }
+        if (field != null) {
+            builder.field("field", field);
+        }
+        if (maxDocsPerValue >= 0) {
+            builder.field(SamplerParser.MAX_DOCS_PER_VALUE.getPreferredName(), maxDocsPerValue);
+        }
+        return builder.endObject();
+    }
+}
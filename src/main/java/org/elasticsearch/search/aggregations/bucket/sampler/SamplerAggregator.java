@@ -0,0 +1,133 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.search.aggregations.*;
+import org.elasticsearch.search.aggregations.bucket.DeferringBucketCollector;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+
+import java.io.IOException;
+
+/**
+ * Aggregate the best scoring docs of each shard. Sub-aggregations are deferred until all docs have been
+ * seen and are then only run on the sampled docs.
+ */
+public class SamplerAggregator extends SingleBucketAggregator {
+
+    private final BestDocsCollector bestDocs;
+
+    public SamplerAggregator(String name,
+                             int shardSize,
+                             ValuesSource diversitySource,
+                             int maxDocsPerValue,
+                             AggregatorFactories factories,
+                             AggregationContext aggregationContext,
+                             Aggregator parent) {
+        super(name, factories, aggregationContext, parent);
+        this.bestDocs = new BestDocsCollector(shardSize, diversitySource, maxDocsPerValue, aggregationContext);
+    }
+
+    @Override
+    protected boolean shouldDefer(Aggregator aggregator) {
+        return true;
+    }
+
+    @Override
+    protected DeferringBucketCollector createDeferringCollector(BucketCollector deferreds) {
+        return new DeferringBucketCollector(deferreds, context, bestDocs);
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext reader) {
+        bestDocs.setNextReader(reader);
+    }
+
+    @Override
+    public void collect(int doc, long owningBucketOrdinal) throws IOException {
+        // sub-aggregators don't see the doc yet, they are replayed the sampled docs once collection is over
+        bestDocs.collect(doc, owningBucketOrdinal);
+    }
+
+    @Override
+    protected void doPostCollection() throws IOException {
+        final long[] bucketOrds = new long[(int) bestDocs.maxBucket()];
+        for (int i = 0; i < bucketOrds.length; i++) {
+            bucketOrds[i] = i;
+            incrementBucketDocCount(i, bestDocs.sampleSize(i));
+        }
+        runDeferredCollections(bucketOrds);
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) {
+        return new InternalSampler(name, bucketDocCount(owningBucketOrdinal), bucketAggregations(owningBucketOrdinal));
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalSampler(name, 0, buildEmptySubAggregations());
+    }
+
+    @Override
+    protected void doClose() {
+        Releasables.close(bestDocs);
+    }
+
+    public static class Factory extends AggregatorFactory {
+
+        private final int shardSize;
+        private final ValuesSourceConfig<?> diversityConfig;
+        private final int maxDocsPerValue;
+
+        public Factory(String name, int shardSize, ValuesSourceConfig<?> diversityConfig, int maxDocsPerValue) {
+            super(name, InternalSampler.TYPE.name());
+            this.shardSize = shardSize;
+            this.diversityConfig = diversityConfig;
+            this.maxDocsPerValue = maxDocsPerValue;
+        }
+
+        @Override
+        public boolean defersCollection(AggregatorFactory subFactory) {
+            return true;
+        }
+
+        @Override
+        public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
+            // the sampler needs the scores of documents, which are not recorded by ancestors that defer their sub-aggregations
+            for (AggregatorFactory child = this, ancestor = parent(); ancestor != null; child = ancestor, ancestor = ancestor.parent()) {
+                if (ancestor.defersCollection(child)) {
+                    throw new AggregationInitializationException("Aggregation [" + name + "] of type [" + type + "] cannot be nested under ["
+                            + ancestor.name() + "] which defers the collection of its sub-aggregations, as with the [breadth_first] collection mode");
+                }
+            }
+            ValuesSource diversitySource = null;
+            if (diversityConfig.valid() && !diversityConfig.unmapped()) {
+                diversitySource = context.valuesSource(diversityConfig, parent == null ? 0 : 1 + parent.depth());
+            }
+            return new SamplerAggregator(name, shardSize, diversitySource, maxDocsPerValue, factories, context, parent);
+        }
+
+    }
+}
@@ -104,6 +104,8 @@ public abstract class InternalTerms extends InternalAggregation implements Terms
     protected Map<String, Bucket> bucketMap;
     protected long docCountError;
     protected boolean showTermDocCountError;
+    // set on the result of a partial reduce, which keeps all buckets so its error can't be derived from their number
+    boolean partiallyReduced;
 
     protected InternalTerms() {} // for serialization
 
@@ -145,10 +147,18 @@ public abstract class InternalTerms extends InternalAggregation implements Terms
 
         Multimap<Object, InternalTerms.Bucket> buckets = ArrayListMultimap.create();
         long sumDocCountError = 0;
+        // a single aggregation only has an error if it was computed approximately
+        final long singleAggDocCountError = ((InternalTerms) aggregations.get(0)).docCountError;
         for (InternalAggregation aggregation : aggregations) {
             InternalTerms terms = (InternalTerms) aggregation;
             final long thisAggDocCountError;
-            if (terms.buckets.size() < this.shardSize || this.order == InternalOrder.TERM_ASC || this.order == InternalOrder.TERM_DESC) {
+            if (terms.partiallyReduced) {
+                // the result of a partial reduce already knows its error, even when it is 0
+                thisAggDocCountError = terms.docCountError;
+            } else if (this.order == InternalOrder.COUNT_DESC && terms.docCountError > 0) {
+                // an approximate shard aggregation already knows its error
+                thisAggDocCountError = terms.docCountError;
+            } else if (terms.buckets.size() < this.shardSize || this.order == InternalOrder.TERM_ASC || this.order == InternalOrder.TERM_DESC) {
                 thisAggDocCountError = 0;
             } else if (this.order == InternalOrder.COUNT_DESC) {
                 thisAggDocCountError = terms.buckets.get(terms.buckets.size() - 1).docCount;
@@ -164,12 +174,19 @@ public abstract class InternalTerms extends InternalAggregation implements Terms
             }
             terms.docCountError = thisAggDocCountError;
             for (Bucket bucket : terms.buckets) {
-                bucket.docCountError = thisAggDocCountError;
+                // the error a bucket got from a partial reduce comes from the shards it was missing on, so only
+                // the remaining part of the error of this aggregation is accounted for the shards it was found on
+                if (thisAggDocCountError == -1 || bucket.docCountError == -1) {
+                    bucket.docCountError = thisAggDocCountError;
+                } else {
+                    bucket.docCountError = thisAggDocCountError - bucket.docCountError;
+                }
                 buckets.put(bucket.getKeyAsObject(), bucket);
             }
         }
 
-        final int size = Math.min(requiredSize, buckets.size());
+        // partial reduces keep all the buckets, they are only pruned once all shard results are reduced
+        final int size = reduceContext.isFinalReduce() ? Math.min(requiredSize, buckets.size()) : buckets.size();
         BucketPriorityQueue ordered = new BucketPriorityQueue(size, order.comparator(null));
         for (Collection<Bucket> l : buckets.asMap().values()) {
             List<Bucket> sameTermBuckets = (List<Bucket>) l; // cast is ok according to javadocs
@@ -181,7 +198,7 @@ public abstract class InternalTerms extends InternalAggregation implements Terms
                     b.docCountError = sumDocCountError - b.docCountError;
                 }
             }
-            if (b.docCount >= minDocCount) {
+            if (b.docCount >= minDocCount || !reduceContext.isFinalReduce()) {
                 ordered.insertWithOverflow(b);
             }
         }
@@ -192,10 +209,14 @@ public abstract class InternalTerms extends InternalAggregation implements Terms
         long docCountError;
         if (sumDocCountError == -1) {
             docCountError = -1;
+        } else if (aggregations.size() == 1 && reduceContext.isFinalReduce()) {
+            docCountError = singleAggDocCountError;
         } else {
-            docCountError = aggregations.size() == 1 ? 0 : sumDocCountError;
+            docCountError = sumDocCountError;
         }
-        return newAggregation(name, Arrays.asList(list), showTermDocCountError, docCountError);
+        InternalTerms reduced = newAggregation(name, Arrays.asList(list), showTermDocCountError, docCountError);
+        reduced.partiallyReduced = !reduceContext.isFinalReduce();
+        return reduced;
     }
 
     protected abstract InternalTerms newAggregation(String name, List<Bucket> buckets, boolean showTermDocCountError, long docCountError);
@@ -0,0 +1,196 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.support.BucketPriorityQueue;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.aggregations.bucket.terms.support.SpaceSavingSketch;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An approximate aggregator of string values that does not need global ordinals and whose memory usage does not depend
+ * on the cardinality of the field. Terms are counted exactly per segment, using segment ordinals, and the per-segment
+ * counts are then merged into a {@link SpaceSavingSketch} which only keeps track of a bounded number of terms.
+ * <p/>
+ * The doc count of a bucket is a lower bound of its actual doc count, and the doc count error of the bucket is how
+ * much the doc count may be under-estimated. Only top-level aggregations without sub-aggregations that are sorted by
+ * descending doc count can be computed this way.
+ */
+public class SketchStringTermsAggregator extends AbstractStringTermsAggregator {
+
+    // number of terms that are monitored for every term that is returned by the shard
+    static final int CAPACITY_FACTOR = 100;
+    static final int MAX_CAPACITY = 1 << 20;
+    // segments that have more unique terms are not counted by ordinal, since counting would require too much memory
+    static final long MAX_SEGMENT_VALUE_COUNT = 1 << 20;
+
+    private final ValuesSource.Bytes.WithOrdinals valuesSource;
+    private final IncludeExclude includeExclude;
+    private final SpaceSavingSketch sketch;
+    private final BytesRef previous;
+
+    private IntArray segmentDocCounts;
+    private RandomAccessOrds segmentOrds;
+    private SortedBinaryDocValues values;
+
+    public SketchStringTermsAggregator(String name, AggregatorFactories factories, ValuesSource.Bytes.WithOrdinals valuesSource,
+                                       InternalOrder order, BucketCountThresholds bucketCountThresholds, IncludeExclude includeExclude,
+                                       AggregationContext aggregationContext, Aggregator parent, SubAggCollectionMode collectionMode, boolean showTermDocCountError) {
+        super(name, factories, 1, aggregationContext, parent, order, bucketCountThresholds, collectionMode, showTermDocCountError);
+        assert factories == null || factories.count() == 0;
+        assert order == InternalOrder.COUNT_DESC;
+        this.valuesSource = valuesSource;
+        this.includeExclude = includeExclude;
+        this.sketch = new SpaceSavingSketch(capacity(bucketCountThresholds.getShardSize()), bigArrays);
+        this.previous = new BytesRef();
+        this.segmentDocCounts = bigArrays.newIntArray(1, true);
+    }
+
+    static int capacity(int shardSize) {
+        return (int) Math.min(MAX_CAPACITY, Math.max(1L, (long) shardSize * CAPACITY_FACTOR));
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext reader) {
+        flushSegmentDocCounts();
+        final RandomAccessOrds ords = valuesSource.ordinalsValues();
+        if (ords.getValueCount() <= MAX_SEGMENT_VALUE_COUNT) {
+            segmentOrds = ords;
+            segmentDocCounts = bigArrays.grow(segmentDocCounts, ords.getValueCount());
+            values = null;
+        } else {
+            segmentOrds = null;
+            values = valuesSource.bytesValues();
+        }
+    }
+
+    @Override
+    public void collect(int doc, long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0;
+        if (segmentOrds != null) {
+            segmentOrds.setDocument(doc);
+            final int numOrds = segmentOrds.cardinality();
+            for (int i = 0; i < numOrds; i++) {
+                segmentDocCounts.increment(segmentOrds.ordAt(i), 1);
+            }
+        } else {
+            values.setDocument(doc);
+            final int valuesCount = values.count();
+
+            // SortedBinaryDocValues don't guarantee uniqueness so we need to take care of dups
+            previous.length = 0;
+            for (int i = 0; i < valuesCount; ++i) {
+                final BytesRef bytes = values.valueAt(i);
+                if (includeExclude != null && !includeExclude.accept(bytes)) {
+                    continue;
+                }
+                if (previous.equals(bytes)) {
+                    continue;
+                }
+                sketch.add(bytes, 1);
+                previous.copyBytes(bytes);
+            }
+        }
+    }
+
+    @Override
+    protected void doPostCollection() {
+        flushSegmentDocCounts();
+    }
+
+    private void flushSegmentDocCounts() {
+        if (segmentOrds == null) {
+            return;
+        }
+        for (long ord = 0; ord < segmentOrds.getValueCount(); ord++) {
+            final int inc = segmentDocCounts.set(ord, 0);
+            if (inc == 0) {
+                continue;
+            }
+            final BytesRef term = segmentOrds.lookupOrd(ord);
+            if (includeExclude == null || includeExclude.accept(term)) {
+                sketch.add(term, inc);
+            }
+        }
+        segmentOrds = null;
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) {
+        assert owningBucketOrdinal == 0;
+
+        final int size = Math.min(sketch.size(), bucketCountThresholds.getShardSize());
+
+        BucketPriorityQueue ordered = new BucketPriorityQueue(size, order.comparator(this));
+        StringTerms.Bucket spare = null;
+        for (int slot = 0; slot < sketch.size(); slot++) {
+            if (spare == null) {
+                spare = new StringTerms.Bucket(null, 0, InternalAggregations.EMPTY, showTermDocCountError, 0);
+            }
+            // only report what is guaranteed, the error tells by how much the doc count may be under-estimated
+            spare.termBytes = sketch.term(slot);
+            spare.docCount = sketch.count(slot) - sketch.error(slot);
+            spare.docCountError = sketch.error(slot);
+            if (bucketCountThresholds.getShardMinDocCount() <= spare.docCount) {
+                spare = (StringTerms.Bucket) ordered.insertWithOverflow(spare);
+            }
+        }
+
+        final InternalTerms.Bucket[] list = new InternalTerms.Bucket[ordered.size()];
+        for (int i = ordered.size() - 1; i >= 0; --i) {
+            final StringTerms.Bucket bucket = (StringTerms.Bucket) ordered.pop();
+            bucket.termBytes = BytesRef.deepCopyOf(bucket.termBytes);
+            list[i] = bucket;
+        }
+
+        // counts are exact as long as no term has been evicted from the sketch. Otherwise terms that are not returned
+        // occurred at most as many times as the least frequent monitored term, or as the last returned term since its
+        // count may be under-estimated
+        long docCountError = 0;
+        if (sketch.minCount() > 0) {
+            docCountError = sketch.minCount();
+            if (list.length > 0 && list.length == bucketCountThresholds.getShardSize()) {
+                final InternalTerms.Bucket last = list[list.length - 1];
+                docCountError = Math.max(docCountError, last.docCount + last.docCountError);
+            }
+        }
+        return new StringTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getShardSize(), bucketCountThresholds.getMinDocCount(), Arrays.asList(list), showTermDocCountError, docCountError);
+    }
+
+    @Override
+    protected void doClose() {
+        Releasables.close(segmentDocCounts, sketch);
+    }
+
+}
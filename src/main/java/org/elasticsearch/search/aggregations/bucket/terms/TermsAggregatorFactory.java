@@ -25,6 +25,7 @@ import org.elasticsearch.search.aggregations.*;
 import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
 import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.OrderPath;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSourceAggregatorFactory;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
@@ -96,6 +97,25 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory {
             boolean needsGlobalOrdinals() {
                 return true;
             }
+        },
+        SKETCH(new ParseField("sketch")) {
+
+            @Override
+            Aggregator create(String name, AggregatorFactories factories, ValuesSource valuesSource, long estimatedBucketCount,
+                              long maxOrd, InternalOrder order, TermsAggregator.BucketCountThresholds bucketCountThresholds, IncludeExclude includeExclude,
+                              AggregationContext aggregationContext, Aggregator parent, SubAggCollectionMode subAggCollectMode, boolean showTermDocCountError) {
+                // the sketch can only tell about the most frequent terms of a single set of documents
+                if (factories.count() > 0 || Aggregator.hasParentBucketAggregator(parent) || order != InternalOrder.COUNT_DESC
+                        || bucketCountThresholds.getMinDocCount() == 0 || !(valuesSource instanceof ValuesSource.Bytes.WithOrdinals)) {
+                    return MAP.create(name, factories, valuesSource, estimatedBucketCount, maxOrd, order, bucketCountThresholds, includeExclude, aggregationContext, parent, subAggCollectMode, showTermDocCountError);
+                }
+                return new SketchStringTermsAggregator(name, factories, (ValuesSource.Bytes.WithOrdinals) valuesSource, order, bucketCountThresholds, includeExclude, aggregationContext, parent, subAggCollectMode, showTermDocCountError);
+            }
+
+            @Override
+            boolean needsGlobalOrdinals() {
+                return false;
+            }
         };
 
         public static ExecutionMode fromString(String value) {
@@ -142,6 +162,19 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory {
         this.showTermDocCountError = showTermDocCountError;
     }
 
+    @Override
+    public boolean defersCollection(AggregatorFactory subFactory) {
+        if (subAggCollectMode != SubAggCollectionMode.BREADTH_FIRST) {
+            return false;
+        }
+        // the sub-aggregation that buckets are sorted by is not deferred, see TermsAggregator#shouldDefer
+        if (order instanceof InternalOrder.Aggregation) {
+            OrderPath path = ((InternalOrder.Aggregation) order).path();
+            return !path.tokens[0].name.equals(subFactory.name());
+        }
+        return true;
+    }
+
     @Override
     protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
         final InternalAggregation aggregation = new UnmappedTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getShardSize(), bucketCountThresholds.getMinDocCount());
@@ -0,0 +1,264 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms.support;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.ObjectArray;
+
+/**
+ * A bounded summary of the most frequent terms of a stream of (possibly weighted) terms, based on the Space-Saving
+ * algorithm from Metwally, Agrawal and El Abbadi, "Efficient Computation of Frequent and Top-k Elements in Data Streams".
+ * <p/>
+ * At most <code>capacity</code> terms are monitored. When a term that is not monitored is added to a full sketch, it
+ * replaces the monitored term that has the lowest count and inherits this count as its error. As a consequence, for
+ * every monitored term <code>count - error &lt;= true count &lt;= count</code>, and any term that is not monitored
+ * occurred at most {@link #minCount()} times, which is itself bounded by <code>total / capacity</code>.
+ * <p/>
+ * The per slot arrays are allocated through {@link BigArrays} and only grow with the number of monitored terms, so
+ * a sketch with a large capacity that only sees a few terms stays small.
+ */
+public class SpaceSavingSketch implements Releasable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private final BigArrays bigArrays;
+    private ObjectArray<BytesRef> terms;
+    private IntArray hashes;
+    private LongArray counts;
+    private LongArray errors;
+    // a min-heap of slots, by count
+    private IntArray heap;
+    // the position of each slot in the heap
+    private IntArray positions;
+    // an open addressing hash table of slot + 1, 0 being an empty bucket, which load factor is at most 0.5
+    private IntArray table;
+    private int mask;
+    private int size;
+    private long total;
+
+    public SpaceSavingSketch(int capacity, BigArrays bigArrays) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.bigArrays = bigArrays;
+        final int initialSize = Math.min(capacity, INITIAL_CAPACITY);
+        terms = bigArrays.newObjectArray(initialSize);
+        hashes = bigArrays.newIntArray(initialSize, false);
+        counts = bigArrays.newLongArray(initialSize, false);
+        errors = bigArrays.newLongArray(initialSize, false);
+        heap = bigArrays.newIntArray(initialSize, false);
+        positions = bigArrays.newIntArray(initialSize, false);
+        table = bigArrays.newIntArray(2 * INITIAL_CAPACITY, true);
+        mask = 2 * INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * Add <code>count</code> occurrences of <code>term</code>. The bytes of the term are copied if it needs to be monitored.
+     */
+    public void add(BytesRef term, long count) {
+        assert count > 0;
+        total += count;
+        final int hash = term.hashCode();
+        final int bucket = find(term, hash);
+        if (bucket >= 0) {
+            final int slot = table.get(bucket) - 1;
+            counts.increment(slot, count);
+            siftDown(positions.get(slot));
+        } else if (size < capacity) {
+            final int slot = size++;
+            grow();
+            terms.set(slot, BytesRef.deepCopyOf(term));
+            hashes.set(slot, hash);
+            counts.set(slot, count);
+            errors.set(slot, 0);
+            set(slot, slot);
+            insert(slot);
+            siftUp(slot);
+        } else {
+            // evict the term with the lowest count, the new term may have occurred as many times before
+            final int slot = heap.get(0);
+            remove(find(terms.get(slot), hashes.get(slot)));
+            terms.get(slot).copyBytes(term);
+            hashes.set(slot, hash);
+            errors.set(slot, counts.get(slot));
+            counts.increment(slot, count);
+            insert(slot);
+            siftDown(0);
+        }
+    }
+
+    /** Return the number of monitored terms. */
+    public int size() {
+        return size;
+    }
+
+    /** Return the maximum number of monitored terms. */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Return the sum of the counts of all terms that have been added. */
+    public long total() {
+        return total;
+    }
+
+    /** Return the term that is monitored in <code>slot</code>, with <code>0 &lt;= slot &lt; size()</code>. */
+    public BytesRef term(int slot) {
+        return terms.get(slot);
+    }
+
+    /** Return an upper bound of the number of occurrences of the term that is monitored in <code>slot</code>. */
+    public long count(int slot) {
+        return counts.get(slot);
+    }
+
+    /** Return by how much {@link #count(int)} may over-estimate the number of occurrences of the term in <code>slot</code>. */
+    public long error(int slot) {
+        return errors.get(slot);
+    }
+
+    /**
+     * Return an upper bound of the number of occurrences of any term that is not monitored.
+     */
+    public long minCount() {
+        return size < capacity ? 0 : counts.get(heap.get(0));
+    }
+
+    /**
+     * Return the memory used by the arrays of the sketch, not including the bytes of the monitored terms.
+     */
+    public long ramBytesUsed() {
+        return terms.ramBytesUsed() + hashes.ramBytesUsed() + counts.ramBytesUsed() + errors.ramBytesUsed()
+                + heap.ramBytesUsed() + positions.ramBytesUsed() + table.ramBytesUsed();
+    }
+
+    /** Make room for the slot <code>size - 1</code>. */
+    private void grow() {
+        terms = bigArrays.grow(terms, size);
+        hashes = bigArrays.grow(hashes, size);
+        counts = bigArrays.grow(counts, size);
+        errors = bigArrays.grow(errors, size);
+        heap = bigArrays.grow(heap, size);
+        positions = bigArrays.grow(positions, size);
+        if (size > (mask + 1) >>> 1) {
+            final int numBuckets = (mask + 1) << 1;
+            Releasables.close(table);
+            table = bigArrays.newIntArray(numBuckets, true);
+            mask = numBuckets - 1;
+            for (int slot = 0; slot < size - 1; slot++) {
+                insert(slot);
+            }
+        }
+    }
+
+    /** Return the bucket of the term, or -1 if it is not monitored. */
+    private int find(BytesRef term, int hash) {
+        for (int bucket = hash & mask; ; bucket = (bucket + 1) & mask) {
+            final int slot = table.get(bucket) - 1;
+            if (slot == -1) {
+                return -1;
+            }
+            if (hashes.get(slot) == hash && terms.get(slot).bytesEquals(term)) {
+                return bucket;
+            }
+        }
+    }
+
+    private void insert(int slot) {
+        int bucket = hashes.get(slot) & mask;
+        while (table.get(bucket) != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table.set(bucket, slot + 1);
+    }
+
+    /** Empty the bucket, shifting back the following entries of the cluster so that lookups still find them. */
+    private void remove(int bucket) {
+        assert bucket >= 0;
+        int hole = bucket;
+        for (int i = (bucket + 1) & mask; ; i = (i + 1) & mask) {
+            final int entry = table.get(i);
+            if (entry == 0) {
+                break;
+            }
+            final int home = hashes.get(entry - 1) & mask;
+            // the entry can fill the hole if the hole is between its home bucket and its current bucket
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table.set(hole, entry);
+                hole = i;
+            }
+        }
+        table.set(hole, 0);
+    }
+
+    private void siftUp(int pos) {
+        final int slot = heap.get(pos);
+        final long count = counts.get(slot);
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            final int parentSlot = heap.get(parent);
+            if (counts.get(parentSlot) <= count) {
+                break;
+            }
+            set(pos, parentSlot);
+            pos = parent;
+        }
+        set(pos, slot);
+    }
+
+    private void siftDown(int pos) {
+        final int slot = heap.get(pos);
+        final long count = counts.get(slot);
+        while (true) {
+            int child = (pos << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts.get(heap.get(child + 1)) < counts.get(heap.get(child))) {
+                child++;
+            }
+            final int childSlot = heap.get(child);
+            if (count <= counts.get(childSlot)) {
+                break;
+            }
+            set(pos, childSlot);
+            pos = child;
+        }
+        set(pos, slot);
+    }
+
+    private void set(int pos, int slot) {
+        heap.set(pos, slot);
+        positions.set(slot, pos);
+    }
+
+    @Override
+    public void close() {
+        Releasables.close(terms, hashes, counts, errors, heap, positions, table);
+    }
+
+}
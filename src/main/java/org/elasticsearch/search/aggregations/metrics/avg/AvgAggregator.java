@@ -19,9 +19,12 @@
 package org.elasticsearch.search.aggregations.metrics.avg;
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.Bits;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.DoubleArray;
 import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.index.fielddata.FieldData;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -79,6 +82,37 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
         sums.increment(owningBucketOrdinal, sum);
     }
 
+    @Override
+    public void collect(int[] docs, int count, long owningBucketOrdinal) throws IOException {
+        final NumericDoubleValues singleValues = FieldData.unwrapSingleton(values);
+        if (singleValues == null) {
+            super.collect(docs, count, owningBucketOrdinal);
+            return;
+        }
+        counts = bigArrays.grow(counts, owningBucketOrdinal + 1);
+        sums = bigArrays.grow(sums, owningBucketOrdinal + 1);
+
+        final Bits docsWithValue = FieldData.unwrapSingletonBits(values);
+        double sum = 0;
+        int valueCount = 0;
+        if (docsWithValue == null) {
+            for (int i = 0; i < count; i++) {
+                sum += singleValues.get(docs[i]);
+            }
+            valueCount = count;
+        } else {
+            for (int i = 0; i < count; i++) {
+                final int doc = docs[i];
+                if (docsWithValue.get(doc)) {
+                    sum += singleValues.get(doc);
+                    valueCount++;
+                }
+            }
+        }
+        counts.increment(owningBucketOrdinal, valueCount);
+        sums.increment(owningBucketOrdinal, sum);
+    }
+
     @Override
     public double metric(long owningBucketOrd) {
         return valuesSource == null ? Double.NaN : sums.get(owningBucketOrd) / counts.get(owningBucketOrd);
@@ -103,6 +137,11 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
             super(name, type, valuesSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new AvgAggregator(name, 0, null, aggregationContext, parent);
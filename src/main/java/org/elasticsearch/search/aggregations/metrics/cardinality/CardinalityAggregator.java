@@ -29,6 +29,7 @@ import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
@@ -51,6 +52,7 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     private final int precision;
     private final boolean rehash;
+    private final boolean sketches;
     private final ValuesSource valuesSource;
 
     // Expensive to initialize, so we only initialize it when we have an actual value source
@@ -61,9 +63,19 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     public CardinalityAggregator(String name, long estimatedBucketsCount, ValuesSource valuesSource, boolean rehash,
                                  int precision, AggregationContext context, Aggregator parent) {
+        this(name, estimatedBucketsCount, valuesSource, rehash, false, precision, context, parent);
+    }
+
+    /**
+     * @param sketches whether the values are serialized HyperLogLog++ counters that need to be merged, in which case
+     *                 <code>precision</code> must be the precision of these counters
+     */
+    public CardinalityAggregator(String name, long estimatedBucketsCount, ValuesSource valuesSource, boolean rehash, boolean sketches,
+                                 int precision, AggregationContext context, Aggregator parent) {
         super(name, estimatedBucketsCount, context, parent);
         this.valuesSource = valuesSource;
         this.rehash = rehash;
+        this.sketches = sketches;
         this.precision = precision;
         this.counts = valuesSource == null ? null : new HyperLogLogPlusPlus(precision, bigArrays, estimatedBucketsCount);
     }
@@ -76,6 +88,10 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     private Collector createCollector(AtomicReaderContext reader) {
 
+        if (sketches) {
+            return new SketchCollector(counts, valuesSource.bytesValues());
+        }
+
         // if rehash is false then the value source is either already hashed, or the user explicitly
         // requested not to hash the values (perhaps they already hashed the values themselves before indexing the doc)
         // so we can just work with the original value source as is
@@ -220,6 +236,42 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     }
 
+    private static class SketchCollector implements Collector {
+
+        private final SortedBinaryDocValues sketches;
+        private final HyperLogLogPlusPlus counts;
+
+        SketchCollector(HyperLogLogPlusPlus counts, SortedBinaryDocValues sketches) {
+            this.counts = counts;
+            this.sketches = sketches;
+        }
+
+        @Override
+        public void collect(int doc, long bucketOrd) {
+            sketches.setDocument(doc);
+            final int valueCount = sketches.count();
+            for (int i = 0; i < valueCount; ++i) {
+                final BytesRef sketch = sketches.valueAt(i);
+                try {
+                    counts.merge(bucketOrd, new BytesStreamInput(sketch.bytes, sketch.offset, sketch.length, false));
+                } catch (IOException e) {
+                    throw new ElasticsearchException("failed to read HyperLogLog++ counts", e);
+                }
+            }
+        }
+
+        @Override
+        public void postCollect() {
+            // no-op
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            // no-op
+        }
+
+    }
+
     private static class OrdinalsCollector implements Collector {
 
         private static final long SHALLOW_FIXEDBITSET_SIZE = RamUsageEstimator.shallowSizeOfInstance(FixedBitSet.class);
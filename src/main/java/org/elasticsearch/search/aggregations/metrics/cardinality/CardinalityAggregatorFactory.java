@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.aggregations.metrics.cardinality;
 
+import org.elasticsearch.index.mapper.core.HyperLogLogFieldMapper;
 import org.elasticsearch.search.aggregations.AggregationExecutionException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.Aggregator.BucketAggregationMode;
@@ -38,6 +39,11 @@ final class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<V
         this.rehash = rehash;
     }
 
+    @Override
+    public boolean segmentReducible() {
+        return true;
+    }
+
     private int precision(Aggregator parent) {
         return precisionThreshold < 0 ? defaultPrecision(parent) : HyperLogLogPlusPlus.precisionFromThreshold(precisionThreshold);
     }
@@ -49,6 +55,11 @@ final class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<V
 
     @Override
     protected Aggregator create(ValuesSource valuesSource, long expectedBucketsCount, AggregationContext context, Aggregator parent) {
+        if (config.fieldContext() != null && config.fieldContext().mapper() instanceof HyperLogLogFieldMapper) {
+            // stored counters can only be merged into counters that have the same precision
+            final int precision = ((HyperLogLogFieldMapper) config.fieldContext().mapper()).precision();
+            return new CardinalityAggregator(name, parent == null ? 1 : parent.estimatedBucketCount(), valuesSource, true, true, precision, context, parent);
+        }
         if (!(valuesSource instanceof ValuesSource.Numeric) && !rehash) {
             throw new AggregationExecutionException("Turning off rehashing for cardinality aggregation [" + name + "] on non-numeric values in not allowed");
         }
@@ -225,6 +225,35 @@ public final class HyperLogLogPlusPlus implements Releasable {
         }
     }
 
+    /**
+     * Merge counts that have been serialized with {@link #writeTo(long, StreamOutput)} into <code>thisBucket</code>,
+     * without deserializing them into a new instance first.
+     */
+    public void merge(long thisBucket, StreamInput in) throws IOException {
+        final int precision = in.readVInt();
+        Preconditions.checkArgument(p == precision, "cannot merge counts with precision " + precision + " into counts with precision " + p);
+        ensureCapacity(thisBucket + 1);
+        if (in.readBoolean() == LINEAR_COUNTING) {
+            final long size = in.readVLong();
+            for (long i = 0; i < size; ++i) {
+                final int encoded = in.readInt();
+                if (algorithm.get(thisBucket) == LINEAR_COUNTING) {
+                    collectLcEncoded(thisBucket, encoded);
+                } else {
+                    collectHllEncoded(thisBucket, encoded);
+                }
+            }
+        } else {
+            if (algorithm.get(thisBucket) != HYPERLOGLOG) {
+                upgradeToHll(thisBucket);
+            }
+            final long thisStart = thisBucket << p;
+            for (int i = 0; i < m; ++i) {
+                runLens.set(thisStart + i, (byte) Math.max(runLens.get(thisStart + i), in.readByte()));
+            }
+        }
+    }
+
     public void collect(long bucket, long hash) {
         ensureCapacity(bucket + 1);
         if (algorithm.get(bucket) == LINEAR_COUNTING) {
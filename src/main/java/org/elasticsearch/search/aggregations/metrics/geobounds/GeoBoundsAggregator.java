@@ -168,6 +168,11 @@ public final class GeoBoundsAggregator extends MetricsAggregator {
             this.wrapLongitude = wrapLongitude;
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new GeoBoundsAggregator(name, 0, aggregationContext, parent, null, wrapLongitude);
@@ -103,6 +103,11 @@ public class MaxAggregator extends NumericMetricsAggregator.SingleValue {
             super(name, InternalMax.TYPE.name(), valuesSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new MaxAggregator(name, 0, null, aggregationContext, parent);
@@ -103,6 +103,11 @@ public class MinAggregator extends NumericMetricsAggregator.SingleValue {
             super(name, InternalMin.TYPE.name(), valuesSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new MinAggregator(name, 0, null, aggregationContext, parent);
@@ -20,15 +20,22 @@
 package org.elasticsearch.search.aggregations.metrics.percentiles;
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.ArrayUtils;
 import org.elasticsearch.common.util.ObjectArray;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.index.mapper.core.TDigestFieldMapper;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
 import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.FieldContext;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
 
 import java.io.IOException;
 
@@ -39,13 +46,15 @@ public abstract class AbstractPercentilesAggregator extends NumericMetricsAggreg
     }
 
     protected final double[] keys;
-    protected final ValuesSource.Numeric valuesSource;
+    // either numeric values, or serialized digests
+    protected final ValuesSource valuesSource;
     private SortedNumericDoubleValues values;
+    private SortedBinaryDocValues digests;
     protected ObjectArray<TDigestState> states;
     protected final double compression;
     protected final boolean keyed;
 
-    public AbstractPercentilesAggregator(String name, long estimatedBucketsCount, ValuesSource.Numeric valuesSource, AggregationContext context,
+    public AbstractPercentilesAggregator(String name, long estimatedBucketsCount, ValuesSource valuesSource, AggregationContext context,
                                  Aggregator parent, double[] keys, double compression, boolean keyed) {
         super(name, estimatedBucketsCount, context, parent);
         this.valuesSource = valuesSource;
@@ -62,7 +71,11 @@ public abstract class AbstractPercentilesAggregator extends NumericMetricsAggreg
 
     @Override
     public void setNextReader(AtomicReaderContext reader) {
-        values = valuesSource.doubleValues();
+        if (valuesSource instanceof ValuesSource.Numeric) {
+            values = ((ValuesSource.Numeric) valuesSource).doubleValues();
+        } else {
+            digests = valuesSource.bytesValues();
+        }
     }
 
     @Override
@@ -75,10 +88,19 @@ public abstract class AbstractPercentilesAggregator extends NumericMetricsAggreg
             states.set(bucketOrd, state);
         }
     
-        values.setDocument(doc);
-        final int valueCount = values.count();
-        for (int i = 0; i < valueCount; i++) {
-            state.add(values.valueAt(i));
+        if (digests != null) {
+            digests.setDocument(doc);
+            final int digestCount = digests.count();
+            for (int i = 0; i < digestCount; i++) {
+                final BytesRef digest = digests.valueAt(i);
+                state.merge(new BytesStreamInput(digest.bytes, digest.offset, digest.length, false));
+            }
+        } else {
+            values.setDocument(doc);
+            final int valueCount = values.count();
+            for (int i = 0; i < valueCount; i++) {
+                state.add(values.valueAt(i));
+            }
         }
     }
 
@@ -95,6 +117,23 @@ public abstract class AbstractPercentilesAggregator extends NumericMetricsAggreg
         return state;
     }
 
+    /**
+     * Return a values source over the serialized digests of the field if <code>config</code> targets a
+     * {@link TDigestFieldMapper} field, or <code>null</code> otherwise.
+     */
+    static ValuesSource digestsValuesSource(ValuesSourceConfig<?> config, AggregationContext context, Aggregator parent) {
+        final FieldContext fieldContext = config.fieldContext();
+        if (fieldContext == null || !(fieldContext.mapper() instanceof TDigestFieldMapper)) {
+            return null;
+        }
+        if (config.script() != null) {
+            throw new AggregationExecutionException("scripts are not supported on field [" + fieldContext.field() + "] of type ["
+                    + TDigestFieldMapper.CONTENT_TYPE + "]");
+        }
+        final ValuesSourceConfig<ValuesSource.Bytes> digestsConfig = new ValuesSourceConfig<>(ValuesSource.Bytes.class).fieldContext(fieldContext);
+        return context.valuesSource(digestsConfig, parent == null ? 0 : 1 + parent.depth());
+    }
+
     @Override
     protected void doClose() {
         Releasables.close(states);
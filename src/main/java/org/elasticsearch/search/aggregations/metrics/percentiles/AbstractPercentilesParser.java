@@ -21,9 +21,11 @@ package org.elasticsearch.search.aggregations.metrics.percentiles;
 
 import com.carrotsearch.hppc.DoubleArrayList;
 import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.mapper.core.TDigestFieldMapper;
 import org.elasticsearch.search.SearchParseException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.metrics.percentiles.hdr.HdrHistogramState;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSource.Numeric;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
@@ -47,6 +49,9 @@ public abstract class AbstractPercentilesParser implements Aggregator.Parser {
         double[] keys = null;
         boolean keyed = true;
         double compression = 100;
+        boolean compressionSet = false;
+        PercentilesMethod method = PercentilesMethod.TDIGEST;
+        int numberOfSignificantValueDigits = 3;
     
         XContentParser.Token token;
         String currentFieldName = null;
@@ -76,6 +81,23 @@ public abstract class AbstractPercentilesParser implements Aggregator.Parser {
             } else if (token == XContentParser.Token.VALUE_NUMBER) {
                 if ("compression".equals(currentFieldName)) {
                     compression = parser.doubleValue();
+                    compressionSet = true;
+                } else {
+                    throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: [" + currentFieldName + "].");
+                }
+            } else if (token == XContentParser.Token.START_OBJECT) {
+                if (PercentilesMethod.HDR.getName().equals(currentFieldName)) {
+                    method = PercentilesMethod.HDR;
+                    String hdrFieldName = null;
+                    while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                        if (token == XContentParser.Token.FIELD_NAME) {
+                            hdrFieldName = parser.currentName();
+                        } else if (token == XContentParser.Token.VALUE_NUMBER && "number_of_significant_value_digits".equals(hdrFieldName)) {
+                            numberOfSignificantValueDigits = parser.intValue();
+                        } else {
+                            throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: [" + hdrFieldName + "].");
+                        }
+                    }
                 } else {
                     throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: [" + currentFieldName + "].");
                 }
@@ -83,11 +105,25 @@ public abstract class AbstractPercentilesParser implements Aggregator.Parser {
                 throw new SearchParseException(context, "Unexpected token " + token + " in [" + aggregationName + "].");
             }
         }
-        return buildFactory(context, aggregationName, vsParser.config(), keys, compression, keyed);
+        ValuesSourceConfig<Numeric> config = vsParser.config();
+        if (method == PercentilesMethod.HDR) {
+            if (compressionSet) {
+                throw new SearchParseException(context, "[compression] cannot be used with the [hdr] method in [" + aggregationName + "].");
+            }
+            if (numberOfSignificantValueDigits < HdrHistogramState.MIN_SIGNIFICANT_DIGITS || numberOfSignificantValueDigits > HdrHistogramState.MAX_SIGNIFICANT_DIGITS) {
+                throw new SearchParseException(context, "[number_of_significant_value_digits] must be in [" + HdrHistogramState.MIN_SIGNIFICANT_DIGITS
+                        + ", " + HdrHistogramState.MAX_SIGNIFICANT_DIGITS + "] in [" + aggregationName + "].");
+            }
+            if (config.fieldContext() != null && config.fieldContext().mapper() instanceof TDigestFieldMapper) {
+                throw new SearchParseException(context, "The [hdr] method is not supported on fields of type [" + TDigestFieldMapper.CONTENT_TYPE
+                        + "] in [" + aggregationName + "].");
+            }
+        }
+        return buildFactory(context, aggregationName, config, keys, method, compression, numberOfSignificantValueDigits, keyed);
     }
 
     protected abstract AggregatorFactory buildFactory(SearchContext context, String aggregationName, ValuesSourceConfig<Numeric> config, double[] cdfValues,
-            double compression, boolean keyed);
+            PercentilesMethod method, double compression, int numberOfSignificantValueDigits, boolean keyed);
 
     protected abstract String keysFieldName();
 
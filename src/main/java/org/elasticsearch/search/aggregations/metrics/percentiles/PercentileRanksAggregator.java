@@ -22,14 +22,13 @@ import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
 import org.elasticsearch.search.aggregations.support.*;
-import org.elasticsearch.search.aggregations.support.ValuesSource.Numeric;
 
 /**
  *
  */
 public class PercentileRanksAggregator extends AbstractPercentilesAggregator {
 
-    public PercentileRanksAggregator(String name, long estimatedBucketsCount, Numeric valuesSource, AggregationContext context,
+    public PercentileRanksAggregator(String name, long estimatedBucketsCount, ValuesSource valuesSource, AggregationContext context,
             Aggregator parent, double[] percents, double compression, boolean keyed) {
         super(name, estimatedBucketsCount, valuesSource, context, parent, percents, compression, keyed);
     }
@@ -73,6 +72,15 @@ public class PercentileRanksAggregator extends AbstractPercentilesAggregator {
             this.keyed = keyed;
         }
 
+        @Override
+        public Aggregator create(AggregationContext context, Aggregator parent, long expectedBucketsCount) {
+            final ValuesSource digests = digestsValuesSource(config, context, parent);
+            if (digests != null) {
+                return new PercentileRanksAggregator(name, expectedBucketsCount, digests, context, parent, values, compression, keyed);
+            }
+            return super.create(context, parent, expectedBucketsCount);
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new PercentileRanksAggregator(name, 0, null, aggregationContext, parent, values, compression, keyed);
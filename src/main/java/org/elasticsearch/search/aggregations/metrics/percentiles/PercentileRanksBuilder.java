@@ -30,6 +30,8 @@ public class PercentileRanksBuilder extends ValuesSourceMetricsAggregationBuilde
 
     private double[] values;
     private Double compression;
+    private PercentilesMethod method;
+    private Integer numberOfSignificantValueDigits;
 
     public PercentileRanksBuilder(String name) {
         super(name, InternalPercentileRanks.TYPE.name());
@@ -45,6 +47,22 @@ public class PercentileRanksBuilder extends ValuesSourceMetricsAggregationBuilde
         return this;
     }
 
+    /**
+     * Set the method used to compute the percentiles, defaults to {@link PercentilesMethod#TDIGEST}.
+     */
+    public PercentileRanksBuilder method(PercentilesMethod method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Set the number of significant digits of the values, only used by the {@link PercentilesMethod#HDR} method.
+     */
+    public PercentileRanksBuilder numberOfSignificantValueDigits(int numberOfSignificantValueDigits) {
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        return this;
+    }
+
     @Override
     protected void internalXContent(XContentBuilder builder, Params params) throws IOException {
         super.internalXContent(builder, params);
@@ -56,5 +74,13 @@ public class PercentileRanksBuilder extends ValuesSourceMetricsAggregationBuilde
         if (compression != null) {
             builder.field("compression", compression);
         }
+
+        if (method == PercentilesMethod.HDR) {
+            builder.startObject(PercentilesMethod.HDR.getName());
+            if (numberOfSignificantValueDigits != null) {
+                builder.field("number_of_significant_value_digits", numberOfSignificantValueDigits);
+            }
+            builder.endObject();
+        }
     }
 }
@@ -30,6 +30,8 @@ public class PercentilesBuilder extends ValuesSourceMetricsAggregationBuilder<Pe
 
     private double[] percentiles;
     private Double compression;
+    private PercentilesMethod method;
+    private Integer numberOfSignificantValueDigits;
 
     public PercentilesBuilder(String name) {
         super(name, InternalPercentiles.TYPE.name());
@@ -51,6 +53,22 @@ public class PercentilesBuilder extends ValuesSourceMetricsAggregationBuilder<Pe
         return this;
     }
 
+    /**
+     * Set the method used to compute the percentiles, defaults to {@link PercentilesMethod#TDIGEST}.
+     */
+    public PercentilesBuilder method(PercentilesMethod method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Set the number of significant digits of the values, only used by the {@link PercentilesMethod#HDR} method.
+     */
+    public PercentilesBuilder numberOfSignificantValueDigits(int numberOfSignificantValueDigits) {
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        return this;
+    }
+
     @Override
     protected void internalXContent(XContentBuilder builder, Params params) throws IOException {
         super.internalXContent(builder, params);
@@ -62,5 +80,13 @@ public class PercentilesBuilder extends ValuesSourceMetricsAggregationBuilder<Pe
         if (compression != null) {
             builder.field("compression", compression);
         }
+
+        if (method == PercentilesMethod.HDR) {
+            builder.startObject(PercentilesMethod.HDR.getName());
+            if (numberOfSignificantValueDigits != null) {
+                builder.field("number_of_significant_value_digits", numberOfSignificantValueDigits);
+            }
+            builder.endObject();
+        }
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles;
+
+/**
+ * The algorithm used to compute percentiles.
+ */
+public enum PercentilesMethod {
+
+    /**
+     * Approximate percentiles from a t-digest, whose accuracy is controlled by a <code>compression</code>.
+     */
+    TDIGEST("tdigest"),
+
+    /**
+     * Percentiles from a log-linear histogram, accurate to a configured number of significant digits.
+     */
+    HDR("hdr");
+
+    private final String name;
+
+    private PercentilesMethod(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name of the method, as used in requests
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.hdr;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.ArrayUtils;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ObjectArray;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+
+import java.io.IOException;
+
+public abstract class AbstractHDRPercentilesAggregator extends NumericMetricsAggregator.MultiValue {
+
+    private static int indexOfKey(double[] keys, double key) {
+        return ArrayUtils.binarySearch(keys, key, 0.001);
+    }
+
+    protected final double[] keys;
+    protected final ValuesSource.Numeric valuesSource;
+    private SortedNumericDoubleValues values;
+    protected ObjectArray<HdrHistogramState> states;
+    protected final int numberOfSignificantValueDigits;
+    protected final boolean keyed;
+
+    public AbstractHDRPercentilesAggregator(String name, long estimatedBucketsCount, ValuesSource.Numeric valuesSource, AggregationContext context,
+                                 Aggregator parent, double[] keys, int numberOfSignificantValueDigits, boolean keyed) {
+        super(name, estimatedBucketsCount, context, parent);
+        this.valuesSource = valuesSource;
+        this.keyed = keyed;
+        this.states = bigArrays.newObjectArray(estimatedBucketsCount);
+        this.keys = keys;
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+    }
+
+    @Override
+    public boolean shouldCollect() {
+        return valuesSource != null;
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext reader) {
+        values = valuesSource.doubleValues();
+    }
+
+    @Override
+    public void collect(int doc, long bucketOrd) throws IOException {
+        states = bigArrays.grow(states, bucketOrd + 1);
+
+        HdrHistogramState state = states.get(bucketOrd);
+        if (state == null) {
+            state = new HdrHistogramState(numberOfSignificantValueDigits, bigArrays);
+            states.set(bucketOrd, state);
+        }
+
+        values.setDocument(doc);
+        final int valueCount = values.count();
+        for (int i = 0; i < valueCount; i++) {
+            state.add(values.valueAt(i));
+        }
+    }
+
+    @Override
+    public boolean hasMetric(String name) {
+        return indexOfKey(keys, Double.parseDouble(name)) >= 0;
+    }
+
+    protected HdrHistogramState getState(long bucketOrd) {
+        if (bucketOrd >= states.size()) {
+            return null;
+        }
+        return states.get(bucketOrd);
+    }
+
+    /**
+     * Return a copy of the state of the given bucket that outlives this aggregator, or <code>null</code> if
+     * the bucket didn't collect any document.
+     */
+    protected HdrHistogramState copyState(long bucketOrd) {
+        final HdrHistogramState state = getState(bucketOrd);
+        return state == null ? null : state.copy(BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    protected HdrHistogramState emptyState() {
+        return new HdrHistogramState(numberOfSignificantValueDigits, BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    @Override
+    protected void doClose() {
+        for (long i = 0; i < states.size(); ++i) {
+            Releasables.close(states.get(i));
+        }
+        Releasables.close(states);
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.hdr;
+
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+
+import java.io.IOException;
+
+/**
+ * A log-linear histogram of non-negative doubles, in the spirit of HDR histograms.
+ *
+ * Values are bucketed by their binary exponent and by the <code>subBits</code> most significant bits of
+ * their mantissa, so that every counter covers a range whose width is at most <code>2^-subBits</code>
+ * times its lower bound. The number of mantissa bits is derived from the requested number of significant
+ * decimal digits. Counters are only allocated for the range of exponents that have been seen, which may
+ * not span more than {@link #MAX_BINADES} binades, so a histogram never uses more than
+ * <code>MAX_BINADES &lt;&lt; subBits</code> counters. Recording a value is a constant-time operation.
+ */
+public final class HdrHistogramState implements Releasable {
+
+    public static final int MIN_SIGNIFICANT_DIGITS = 0;
+    public static final int MAX_SIGNIFICANT_DIGITS = 5;
+
+    /** Maximum ratio, as a power of two, between the highest and lowest non-zero recorded values. */
+    public static final int MAX_BINADES = 64;
+
+    private static final int MANTISSA_BITS = 52;
+
+    private final BigArrays bigArrays;
+    private final int numberOfSignificantValueDigits;
+    private final int subBits;
+    private int lowExponent = -1, highExponent = -1; // range of exponents that counters are allocated for
+    private LongArray counts;
+    private long zeroCount;
+    private long totalCount;
+    private double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    public HdrHistogramState(int numberOfSignificantValueDigits, BigArrays bigArrays) {
+        if (numberOfSignificantValueDigits < MIN_SIGNIFICANT_DIGITS || numberOfSignificantValueDigits > MAX_SIGNIFICANT_DIGITS) {
+            throw new ElasticsearchIllegalArgumentException("numberOfSignificantValueDigits must be in [" + MIN_SIGNIFICANT_DIGITS
+                    + ", " + MAX_SIGNIFICANT_DIGITS + "], got [" + numberOfSignificantValueDigits + "]");
+        }
+        this.bigArrays = bigArrays;
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        this.subBits = subBits(numberOfSignificantValueDigits);
+    }
+
+    /** Number of mantissa bits required so that counters are precise to the given number of decimal digits. */
+    static int subBits(int numberOfSignificantValueDigits) {
+        long subBucketCount = 1;
+        for (int i = 0; i < numberOfSignificantValueDigits; ++i) {
+            subBucketCount *= 10;
+        }
+        return 64 - Long.numberOfLeadingZeros(subBucketCount - 1);
+    }
+
+    public int numberOfSignificantValueDigits() {
+        return numberOfSignificantValueDigits;
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /** Return the number of counters that are currently allocated. */
+    long counterCount() {
+        return counts == null ? 0 : counts.size();
+    }
+
+    private static int exponent(long bits) {
+        return (int) (bits >>> MANTISSA_BITS);
+    }
+
+    private int subBucket(long bits) {
+        return (int) ((bits >>> (MANTISSA_BITS - subBits)) & ((1 << subBits) - 1));
+    }
+
+    /** Lower bound of the values that go to the given counter. */
+    private double lowerBound(long index) {
+        final long exponent = lowExponent + (index >>> subBits);
+        final long subBucket = index & ((1 << subBits) - 1);
+        return Double.longBitsToDouble((exponent << MANTISSA_BITS) | (subBucket << (MANTISSA_BITS - subBits)));
+    }
+
+    /** Upper bound of the values that go to the given counter. */
+    private double upperBound(long index) {
+        return Double.longBitsToDouble(Double.doubleToRawLongBits(lowerBound(index)) + (1L << (MANTISSA_BITS - subBits)));
+    }
+
+    /** Make sure counters are allocated for all exponents in <code>[low, high]</code>. */
+    private void ensureExponentRange(int low, int high) {
+        if (counts != null && low >= lowExponent && high <= highExponent) {
+            return;
+        }
+        final int newLow = counts == null ? low : Math.min(low, lowExponent);
+        final int newHigh = counts == null ? high : Math.max(high, highExponent);
+        if (newHigh - newLow + 1 > MAX_BINADES) {
+            throw new AggregationExecutionException("Values recorded by an HDR histogram may not have a ratio greater than 2^"
+                    + MAX_BINADES + " between each other, got values in [" + Double.longBitsToDouble((long) newLow << MANTISSA_BITS)
+                    + ", " + Double.longBitsToDouble((long) (newHigh + 1) << MANTISSA_BITS) + ")");
+        }
+        final LongArray newCounts = bigArrays.newLongArray((long) (newHigh - newLow + 1) << subBits, true);
+        if (counts != null) {
+            final long offset = (long) (lowExponent - newLow) << subBits;
+            for (long i = 0; i < counts.size(); ++i) {
+                final long count = counts.get(i);
+                if (count != 0) {
+                    newCounts.set(offset + i, count);
+                }
+            }
+            Releasables.close(counts);
+        }
+        counts = newCounts;
+        lowExponent = newLow;
+        highExponent = newHigh;
+    }
+
+    /** Record a value. */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /** Record a value <code>count</code> times. */
+    public void add(double value, long count) {
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            throw new AggregationExecutionException("HDR histograms only support finite non-negative values, got [" + value + "]");
+        }
+        if (value < Double.MIN_NORMAL) {
+            zeroCount += count;
+        } else {
+            final long bits = Double.doubleToRawLongBits(value);
+            final int exponent = exponent(bits);
+            ensureExponentRange(exponent, exponent);
+            counts.increment(((long) (exponent - lowExponent) << subBits) | subBucket(bits), count);
+        }
+        totalCount += count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /** Add all values recorded by <code>other</code> to this histogram. */
+    public void add(HdrHistogramState other) {
+        if (other.subBits != subBits) {
+            throw new ElasticsearchIllegalArgumentException("Cannot merge HDR histograms with different numbers of significant digits: ["
+                    + numberOfSignificantValueDigits + "] and [" + other.numberOfSignificantValueDigits + "]");
+        }
+        if (other.totalCount == 0) {
+            return;
+        }
+        if (other.counts != null) {
+            ensureExponentRange(other.lowExponent, other.highExponent);
+            final long offset = (long) (other.lowExponent - lowExponent) << subBits;
+            for (long i = 0; i < other.counts.size(); ++i) {
+                final long count = other.counts.get(i);
+                if (count != 0) {
+                    counts.increment(offset + i, count);
+                }
+            }
+        }
+        zeroCount += other.zeroCount;
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Return the value at the given quantile, in <code>[0, 1]</code>, or {@link Double#NaN} if the histogram is empty.
+     * The returned value is the upper bound of the counter that holds the value, bounded by the maximum recorded value.
+     */
+    public double quantile(double q) {
+        if (totalCount == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(q * totalCount));
+        long seen = zeroCount;
+        if (seen >= rank) {
+            return min;
+        }
+        for (long i = 0; i < counts.size(); ++i) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, upperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Return the fraction, in <code>[0, 1]</code>, of recorded values that are less than or equal to <code>value</code>,
+     * or {@link Double#NaN} if the histogram is empty. Values that share a counter with <code>value</code> are counted.
+     */
+    public double cdf(double value) {
+        if (totalCount == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value >= max) {
+            return 1;
+        }
+        long seen = zeroCount;
+        if (counts != null) {
+            for (long i = 0; i < counts.size() && lowerBound(i) <= value; ++i) {
+                seen += counts.get(i);
+            }
+        }
+        return (double) seen / totalCount;
+    }
+
+    /** Return a copy of this histogram that is backed by the given {@link BigArrays}. */
+    public HdrHistogramState copy(BigArrays bigArrays) {
+        final HdrHistogramState copy = new HdrHistogramState(numberOfSignificantValueDigits, bigArrays);
+        copy.add(this);
+        return copy;
+    }
+
+    public static void write(HdrHistogramState state, StreamOutput out) throws IOException {
+        out.writeVInt(state.numberOfSignificantValueDigits);
+        out.writeVLong(state.totalCount);
+        if (state.totalCount == 0) {
+            return;
+        }
+        out.writeDouble(state.min);
+        out.writeDouble(state.max);
+        out.writeVLong(state.zeroCount);
+        if (state.counts == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        out.writeVInt(state.lowExponent);
+        out.writeVInt(state.highExponent);
+        // sparse encoding: delta-encoded indices of non-empty counters followed by their counts
+        int nonEmpty = 0;
+        for (long i = 0; i < state.counts.size(); ++i) {
+            if (state.counts.get(i) != 0) {
+                ++nonEmpty;
+            }
+        }
+        out.writeVInt(nonEmpty);
+        long previous = 0;
+        for (long i = 0; i < state.counts.size(); ++i) {
+            final long count = state.counts.get(i);
+            if (count != 0) {
+                out.writeVLong(i - previous);
+                out.writeVLong(count);
+                previous = i;
+            }
+        }
+    }
+
+    /** Read a histogram that has been serialized with {@link #write(HdrHistogramState, StreamOutput)}. */
+    public static HdrHistogramState read(StreamInput in) throws IOException {
+        final HdrHistogramState state = new HdrHistogramState(in.readVInt(), BigArrays.NON_RECYCLING_INSTANCE);
+        state.totalCount = in.readVLong();
+        if (state.totalCount == 0) {
+            return state;
+        }
+        state.min = in.readDouble();
+        state.max = in.readDouble();
+        state.zeroCount = in.readVLong();
+        if (in.readBoolean()) {
+            final int low = in.readVInt();
+            final int high = in.readVInt();
+            state.ensureExponentRange(low, high);
+            final int nonEmpty = in.readVInt();
+            long index = 0;
+            for (int i = 0; i < nonEmpty; ++i) {
+                index += in.readVLong();
+                state.counts.set(index, in.readVLong());
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public void close() {
+        Releasables.close(counts);
+        counts = null;
+    }
+
+}
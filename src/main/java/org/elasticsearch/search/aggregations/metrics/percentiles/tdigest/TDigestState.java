@@ -49,6 +49,17 @@ public class TDigestState extends AVLTreeDigest {
         }
     }
 
+    /**
+     * Add the centroids of a digest that has been serialized with {@link #write(TDigestState, StreamOutput)} to this digest.
+     */
+    public void merge(StreamInput in) throws IOException {
+        in.readDouble(); // compression of the serialized digest
+        int n = in.readVInt();
+        for (int i = 0; i < n; i++) {
+            add(in.readDouble(), in.readVInt());
+        }
+    }
+
     public static TDigestState read(StreamInput in) throws IOException {
         double compression = in.readDouble();
         TDigestState state = new TDigestState(compression);
@@ -56,6 +56,8 @@ public class InternalScriptedMetric extends InternalMetricsAggregation implement
     private String reduceScript;
     private Map<String, Object> reduceParams;
     private Object aggregation;
+    // set on the result of a partial reduce, whose aggregation is the list of the shard aggregations reduced so far
+    private boolean partial;
 
     private InternalScriptedMetric() {
     }
@@ -84,9 +86,20 @@ public class InternalScriptedMetric extends InternalMetricsAggregation implement
         List<Object> aggregationObjects = new ArrayList<>();
         for (InternalAggregation aggregation : reduceContext.aggregations()) {
             InternalScriptedMetric mapReduceAggregation = (InternalScriptedMetric) aggregation;
-            aggregationObjects.add(mapReduceAggregation.aggregation());
+            if (mapReduceAggregation.partial) {
+                aggregationObjects.addAll((List<Object>) mapReduceAggregation.aggregation());
+            } else {
+                aggregationObjects.add(mapReduceAggregation.aggregation());
+            }
         }
         InternalScriptedMetric firstAggregation = ((InternalScriptedMetric) reduceContext.aggregations().get(0));
+        if (!reduceContext.isFinalReduce()) {
+            // the reduce script must see all the shard aggregations at once
+            InternalScriptedMetric result = new InternalScriptedMetric(firstAggregation.getName(), aggregationObjects, firstAggregation.scriptLang,
+                    firstAggregation.scriptType, firstAggregation.reduceScript, firstAggregation.reduceParams);
+            result.partial = true;
+            return result;
+        }
         Object aggregation;
         if (firstAggregation.reduceScript != null) {
             Map<String, Object> params;
@@ -19,11 +19,14 @@
 package org.elasticsearch.search.aggregations.metrics.stats;
 
 import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.Bits;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.DoubleArray;
 import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.index.fielddata.FieldData;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -72,8 +75,7 @@ public class StatsAggegator extends NumericMetricsAggregator.MultiValue {
         values = valuesSource.doubleValues();
     }
 
-    @Override
-    public void collect(int doc, long owningBucketOrdinal) throws IOException {
+    private void grow(long owningBucketOrdinal) {
         if (owningBucketOrdinal >= counts.size()) {
             final long from = counts.size();
             final long overSize = BigArrays.overSize(owningBucketOrdinal + 1);
@@ -84,6 +86,11 @@ public class StatsAggegator extends NumericMetricsAggregator.MultiValue {
             mins.fill(from, overSize, Double.POSITIVE_INFINITY);
             maxes.fill(from, overSize, Double.NEGATIVE_INFINITY);
         }
+    }
+
+    @Override
+    public void collect(int doc, long owningBucketOrdinal) throws IOException {
+        grow(owningBucketOrdinal);
 
         values.setDocument(doc);
         final int valuesCount = values.count();
@@ -102,6 +109,36 @@ public class StatsAggegator extends NumericMetricsAggregator.MultiValue {
         maxes.set(owningBucketOrdinal, max);
     }
 
+    @Override
+    public void collect(int[] docs, int count, long owningBucketOrdinal) throws IOException {
+        final NumericDoubleValues singleValues = FieldData.unwrapSingleton(values);
+        if (singleValues == null) {
+            super.collect(docs, count, owningBucketOrdinal);
+            return;
+        }
+        grow(owningBucketOrdinal);
+
+        final Bits docsWithValue = FieldData.unwrapSingletonBits(values);
+        double sum = 0;
+        double min = mins.get(owningBucketOrdinal);
+        double max = maxes.get(owningBucketOrdinal);
+        int valueCount = 0;
+        for (int i = 0; i < count; i++) {
+            final int doc = docs[i];
+            if (docsWithValue == null || docsWithValue.get(doc)) {
+                final double value = singleValues.get(doc);
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                valueCount++;
+            }
+        }
+        counts.increment(owningBucketOrdinal, valueCount);
+        sums.increment(owningBucketOrdinal, sum);
+        mins.set(owningBucketOrdinal, min);
+        maxes.set(owningBucketOrdinal, max);
+    }
+
     @Override
     public boolean hasMetric(String name) {
         try {
@@ -145,6 +182,11 @@ public class StatsAggegator extends NumericMetricsAggregator.MultiValue {
             super(name, InternalStats.TYPE.name(), valuesSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new StatsAggegator(name, 0, null, aggregationContext, parent);
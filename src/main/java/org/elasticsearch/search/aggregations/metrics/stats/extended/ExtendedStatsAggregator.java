@@ -166,6 +166,11 @@ public class ExtendedStatsAggregator extends NumericMetricsAggregator.MultiValue
             super(name, InternalExtendedStats.TYPE.name(), valuesSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new ExtendedStatsAggregator(name, 0, null, aggregationContext, parent);
@@ -21,6 +21,8 @@ package org.elasticsearch.search.aggregations.metrics.sum;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.DoubleArray;
+import org.elasticsearch.index.fielddata.FieldData;
+import org.elasticsearch.index.fielddata.NumericDoubleValues;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -74,6 +76,22 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
         sums.increment(owningBucketOrdinal, sum);
     }
 
+    @Override
+    public void collect(int[] docs, int count, long owningBucketOrdinal) throws IOException {
+        final NumericDoubleValues singleValues = FieldData.unwrapSingleton(values);
+        if (singleValues == null) {
+            super.collect(docs, count, owningBucketOrdinal);
+            return;
+        }
+        sums = bigArrays.grow(sums, owningBucketOrdinal + 1);
+        // documents without a value return 0, which doesn't change the sum
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += singleValues.get(docs[i]);
+        }
+        sums.increment(owningBucketOrdinal, sum);
+    }
+
     @Override
     public double metric(long owningBucketOrd) {
         return valuesSource == null ? 0 : sums.get(owningBucketOrd);
@@ -98,6 +116,11 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
             super(name, InternalSum.TYPE.name(), valuesSourceConfig);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new SumAggregator(name, 0, null, aggregationContext, parent);
@@ -20,6 +20,7 @@ package org.elasticsearch.search.aggregations.metrics.tophits;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -59,6 +60,7 @@ import org.elasticsearch.search.rescore.RescoreSearchContext;
 import org.elasticsearch.search.scan.ScanContext;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -340,6 +342,11 @@ public class TopHitsContext extends SearchContext {
         return context.fieldData();
     }
 
+    @Override
+    public File tempDirectory() {
+        return context.tempDirectory();
+    }
+
     @Override
     public long timeoutInMillis() {
         return context.timeoutInMillis();
@@ -381,6 +388,26 @@ public class TopHitsContext extends SearchContext {
         return sort;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return null;
+    }
+
+    @Override
+    public SearchContext sliceFilter(Filter sliceFilter) {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    @Override
+    public Filter sliceFilter() {
+        return null;
+    }
+
     @Override
     public SearchContext trackScores(boolean trackScores) {
         this.trackScores = trackScores;
@@ -556,7 +583,7 @@ public class TopHitsContext extends SearchContext {
     }
 
     @Override
-    public SearchLookup lookup() {
+    protected SearchLookup lookupImpl() {
         return context.lookup();
     }
 
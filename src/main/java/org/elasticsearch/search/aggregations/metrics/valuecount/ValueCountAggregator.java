@@ -103,6 +103,11 @@ public class ValueCountAggregator extends NumericMetricsAggregator.SingleValue {
             super(name, InternalValueCount.TYPE.name(), config);
         }
 
+        @Override
+        public boolean segmentReducible() {
+            return true;
+        }
+
         @Override
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent) {
             return new ValueCountAggregator(name, 0, null, aggregationContext, parent);
@@ -102,6 +102,13 @@ public class AggregationContext implements ReaderContextAware, ScorerAware {
         }
     }
 
+    /**
+     * Whether some aggregators or scripts need access to the score of the document being collected.
+     */
+    public boolean needsScores() {
+        return !scorerAwares.isEmpty();
+    }
+
     public boolean scoreDocsInOrder() {
         return scoreDocsInOrder;
     }
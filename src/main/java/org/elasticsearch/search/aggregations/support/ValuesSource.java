@@ -27,6 +27,7 @@ import org.elasticsearch.common.lucene.TopReaderContextAware;
 import org.elasticsearch.index.fielddata.*;
 import org.elasticsearch.index.fielddata.plain.ParentChildAtomicFieldData;
 import org.elasticsearch.index.fielddata.plain.ParentChildIndexFieldData;
+import org.elasticsearch.script.NumericSearchScript;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.aggregations.support.ValuesSource.Numeric.WithScript.DoubleValues;
 import org.elasticsearch.search.aggregations.support.ValuesSource.WithScript.BytesValues;
@@ -587,15 +588,22 @@ public abstract class ValuesSource {
         public static class Script extends Numeric {
             private final ValueType scriptValueType;
 
-            private final ScriptDoubleValues doubleValues;
-            private final ScriptLongValues longValues;
-            private final ScriptBytesValues bytesValues;
+            private final SortedNumericDoubleValues doubleValues;
+            private final SortedNumericDocValues longValues;
+            private final SortedBinaryDocValues bytesValues;
 
             public Script(SearchScript script, ValueType scriptValueType) {
                 this.scriptValueType = scriptValueType;
-                longValues = new ScriptLongValues(script);
-                doubleValues = new ScriptDoubleValues(script);
-                bytesValues = new ScriptBytesValues(script);
+                if (script instanceof NumericSearchScript) {
+                    // read the values of the script directly, without boxing them on every document
+                    doubleValues = org.elasticsearch.index.fielddata.FieldData.singleton(((NumericSearchScript) script).doubleValues(), null);
+                    longValues = org.elasticsearch.index.fielddata.FieldData.castToLong(doubleValues);
+                    bytesValues = org.elasticsearch.index.fielddata.FieldData.toString(doubleValues);
+                } else {
+                    longValues = new ScriptLongValues(script);
+                    doubleValues = new ScriptDoubleValues(script);
+                    bytesValues = new ScriptBytesValues(script);
+                }
             }
 
             @Override
@@ -95,6 +95,11 @@ public class SearchSourceBuilder implements ToXContent {
 
     private boolean trackScores = false;
 
+    private Object[] searchAfter;
+
+    private int sliceId = -1;
+    private int sliceMax = -1;
+
     private Float minScore;
 
     private long timeoutInMillis = -1;
@@ -357,6 +362,35 @@ public class SearchSourceBuilder implements ToXContent {
         return this;
     }
 
+    /**
+     * The sort values of the last hit of the previous page, in the order of the sorts of this request. Only
+     * hits that sort after these values are returned, which allows to page through all hits without having
+     * to use <tt>from</tt>.
+     */
+    public SearchSourceBuilder searchAfter(Object... values) {
+        if (values == null || values.length == 0) {
+            throw new ElasticsearchIllegalArgumentException("searchAfter requires at least one value");
+        }
+        this.searchAfter = values;
+        return this;
+    }
+
+    /**
+     * Restricts a scroll to the slice <code>id</code> out of <code>max</code> disjoint slices of the documents, so
+     * that <code>max</code> scrolls can consume the documents of the same search in parallel.
+     */
+    public SearchSourceBuilder slice(int id, int max) {
+        if (max <= 1) {
+            throw new ElasticsearchIllegalArgumentException("slice max must be greater than 1");
+        }
+        if (id < 0 || id >= max) {
+            throw new ElasticsearchIllegalArgumentException("slice id must be between 0 and max - 1");
+        }
+        this.sliceId = id;
+        this.sliceMax = max;
+        return this;
+    }
+
     /**
      * Add an get to perform as part of the search.
      */
@@ -822,6 +856,17 @@ public class SearchSourceBuilder implements ToXContent {
             builder.field("track_scores", trackScores);
         }
 
+        if (searchAfter != null) {
+            builder.array("search_after", searchAfter);
+        }
+
+        if (sliceMax != -1) {
+            builder.startObject("slice");
+            builder.field("id", sliceId);
+            builder.field("max", sliceMax);
+            builder.endObject();
+        }
+
         if (indexBoost != null) {
             builder.startObject("indices_boost");
             final boolean[] states = indexBoost.allocated;
@@ -0,0 +1,107 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.controller;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.query.QuerySearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces the aggregations of the shard results incrementally, as they arrive on the coordinating node.
+ * <p/>
+ * The aggregations of the shard results are buffered, and once the buffer holds <tt>batchSize</tt> of them, they
+ * are partially reduced into a single result that stays in the buffer. So at most <tt>batchSize</tt> shard
+ * aggregations are held at once, instead of the aggregations of all the shards, and the reduce work is spread over
+ * the time spent waiting for the shard results. Partial reduces don't prune buckets, the final pruning happens
+ * in {@link #reduce()} once all the shard results are consumed.
+ */
+public class BatchedAggregationsReducer {
+
+    private final int batchSize;
+    private final BigArrays bigArrays;
+    private final ScriptService scriptService;
+
+    private final List<InternalAggregations> buffer;
+    private int numReducePhases;
+    private Throwable failure;
+
+    BatchedAggregationsReducer(int batchSize, BigArrays bigArrays, ScriptService scriptService) {
+        assert batchSize >= 2 : "batch size must be >= 2 but was [" + batchSize + "]";
+        this.batchSize = batchSize;
+        this.bigArrays = bigArrays;
+        this.scriptService = scriptService;
+        this.buffer = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Takes the aggregations out of the shard result and reduces them with the other ones if the buffer is full.
+     */
+    public void consume(QuerySearchResult queryResult) {
+        InternalAggregations aggregations = (InternalAggregations) queryResult.aggregations();
+        if (aggregations == null) {
+            return;
+        }
+        // the shard result doesn't need to hold on to its aggregations anymore
+        queryResult.aggregations(null);
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            if (buffer.size() >= batchSize) {
+                // reduce before adding the new aggregations, so that the final reduce always sees more than one result
+                try {
+                    InternalAggregations reduced = InternalAggregations.reduce(buffer, new ReduceContext(null, bigArrays, scriptService, false));
+                    buffer.clear();
+                    buffer.add(reduced);
+                    numReducePhases++;
+                } catch (Throwable t) {
+                    // fail the final reduce instead of the shard response
+                    failure = t;
+                    buffer.clear();
+                    return;
+                }
+            }
+            buffer.add(aggregations);
+        }
+    }
+
+    /**
+     * Returns the number of partial reduces that were executed so far.
+     */
+    public synchronized int numReducePhases() {
+        return numReducePhases;
+    }
+
+    /**
+     * Reduces the consumed aggregations into the final aggregations, or returns <tt>null</tt> if no shard result
+     * had aggregations.
+     */
+    public synchronized InternalAggregations reduce() {
+        if (failure != null) {
+            throw ExceptionsHelper.convertToRuntime(failure);
+        }
+        return InternalAggregations.reduce(buffer, new ReduceContext(null, bigArrays, scriptService));
+    }
+}
@@ -24,6 +24,7 @@ import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.collect.HppcMaps;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
@@ -263,7 +264,29 @@ public class SearchPhaseController extends AbstractComponent {
         }
     }
 
+    /**
+     * Returns a reducer that reduces the aggregations of the shard results as they arrive, or <tt>null</tt> if the
+     * search targets no more shards than the batched reduce size of the request, in which case the aggregations
+     * are reduced at once by {@link #merge}.
+     */
+    @Nullable
+    public BatchedAggregationsReducer newAggregationsReducer(SearchRequest request, int numShards) {
+        if (numShards <= request.batchedReduceSize()) {
+            return null;
+        }
+        return new BatchedAggregationsReducer(request.batchedReduceSize(), bigArrays, scriptService);
+    }
+
     public InternalSearchResponse merge(ScoreDoc[] sortedDocs, AtomicArray<? extends QuerySearchResultProvider> queryResultsArr, AtomicArray<? extends FetchSearchResultProvider> fetchResultsArr) {
+        return merge(sortedDocs, queryResultsArr, fetchResultsArr, null);
+    }
+
+    /**
+     * Merges the shard results into the search response. If an aggregations reducer is provided, it has consumed the
+     * aggregations of the shard results, and is used to reduce the final aggregations.
+     */
+    public InternalSearchResponse merge(ScoreDoc[] sortedDocs, AtomicArray<? extends QuerySearchResultProvider> queryResultsArr, AtomicArray<? extends FetchSearchResultProvider> fetchResultsArr,
+                                        @Nullable BatchedAggregationsReducer aggregationsReducer) {
 
         List<? extends AtomicArray.Entry<? extends QuerySearchResultProvider>> queryResults = queryResultsArr.asList();
         List<? extends AtomicArray.Entry<? extends FetchSearchResultProvider>> fetchResults = fetchResultsArr.asList();
@@ -365,7 +388,9 @@ public class SearchPhaseController extends AbstractComponent {
 
         // merge addAggregation
         InternalAggregations aggregations = null;
-        if (!queryResults.isEmpty()) {
+        if (aggregationsReducer != null) {
+            aggregations = aggregationsReducer.reduce();
+        } else if (!queryResults.isEmpty()) {
             if (firstResult.aggregations() != null && firstResult.aggregations().asList() != null) {
                 List<InternalAggregations> aggregationsList = new ArrayList<>(queryResults.size());
                 for (AtomicArray.Entry<? extends QuerySearchResultProvider> entry : queryResults) {
@@ -150,10 +150,19 @@ public class FetchPhase implements SearchPhase {
 
         InternalSearchHit[] hits = new InternalSearchHit[context.docIdsToLoadSize()];
         FetchSubPhase.HitContext hitContext = new FetchSubPhase.HitContext();
-        for (int index = 0; index < context.docIdsToLoadSize(); index++) {
-            int docId = context.docIdsToLoad()[context.docIdsToLoadFrom() + index];
+        List<AtomicReaderContext> leaves = context.searcher().getIndexReader().leaves();
+        AtomicReaderContext subReaderContext = null;
+        for (long docIdAndIndex : docIdsInOrder(context)) {
+            // hits are loaded in doc id order, so that stored fields are read sequentially segment after segment,
+            // and are put back at their position in the response
+            int docId = (int) (docIdAndIndex >>> 32);
+            int index = (int) docIdAndIndex;
+            if (subReaderContext == null || docId >= subReaderContext.docBase + subReaderContext.reader().maxDoc()) {
+                subReaderContext = leaves.get(ReaderUtil.subIndex(docId, leaves));
+            }
+            int subDoc = docId - subReaderContext.docBase;
 
-            loadStoredFields(context, fieldsVisitor, docId);
+            loadStoredFields(context, fieldsVisitor, subReaderContext, subDoc);
             fieldsVisitor.postProcess(context.mapperService());
 
             Map<String, SearchHitField> searchFields = null;
@@ -175,10 +184,6 @@ public class FetchPhase implements SearchPhase {
 
             hits[index] = searchHit;
 
-            int readerIndex = ReaderUtil.subIndex(docId, context.searcher().getIndexReader().leaves());
-            AtomicReaderContext subReaderContext = context.searcher().getIndexReader().leaves().get(readerIndex);
-            int subDoc = docId - subReaderContext.docBase;
-
             // go over and extract fields that are not mapped / stored
             context.lookup().setNextReader(subReaderContext);
             context.lookup().setNextDocId(subDoc);
@@ -222,12 +227,25 @@ public class FetchPhase implements SearchPhase {
         context.fetchResult().hits(new InternalSearchHits(hits, context.queryResult().topDocs().totalHits, context.queryResult().topDocs().getMaxScore()));
     }
 
-    private void loadStoredFields(SearchContext context, FieldsVisitor fieldVisitor, int docId) {
+    /**
+     * Returns the doc ids to load in the upper 32 bits and their index in the hits in the lower 32 bits, sorted by doc id.
+     */
+    private static long[] docIdsInOrder(SearchContext context) {
+        long[] docIdsAndIndices = new long[context.docIdsToLoadSize()];
+        for (int index = 0; index < docIdsAndIndices.length; index++) {
+            long docId = context.docIdsToLoad()[context.docIdsToLoadFrom() + index];
+            docIdsAndIndices[index] = (docId << 32) | index;
+        }
+        Arrays.sort(docIdsAndIndices);
+        return docIdsAndIndices;
+    }
+
+    private void loadStoredFields(SearchContext context, FieldsVisitor fieldVisitor, AtomicReaderContext readerContext, int subDoc) {
         fieldVisitor.reset();
         try {
-            context.searcher().doc(docId, fieldVisitor);
+            readerContext.reader().document(subDoc, fieldVisitor);
         } catch (IOException e) {
-            throw new FetchPhaseExecutionException(context, "Failed to fetch doc id [" + docId + "]", e);
+            throw new FetchPhaseExecutionException(context, "Failed to fetch doc id [" + (readerContext.docBase + subDoc) + "]", e);
         }
     }
 }
@@ -21,6 +21,7 @@ package org.elasticsearch.search.internal;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -37,6 +38,7 @@ import org.elasticsearch.common.lucene.search.XFilteredQuery;
 import org.elasticsearch.common.lucene.search.function.BoostScoreFunction;
 import org.elasticsearch.common.lucene.search.function.FunctionScoreQuery;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
@@ -68,6 +70,7 @@ import org.elasticsearch.search.rescore.RescoreSearchContext;
 import org.elasticsearch.search.scan.ScanContext;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -116,6 +119,10 @@ public class DefaultSearchContext extends SearchContext {
     // terminate after count
     private int terminateAfter = DEFAULT_TERMINATE_AFTER;
 
+    private FieldDoc searchAfter;
+
+    private Filter sliceFilter;
+
 
     private List<String> groupStats;
 
@@ -220,6 +227,9 @@ public class DefaultSearchContext extends SearchContext {
             parsedQuery(new ParsedQuery(new FunctionScoreQuery(query(), new BoostScoreFunction(queryBoost)), parsedQuery()));
         }
         Filter searchFilter = searchFilter(types());
+        if (sliceFilter != null) {
+            searchFilter = searchFilter == null ? sliceFilter : new AndFilter(ImmutableList.of(searchFilter, sliceFilter));
+        }
         if (searchFilter != null) {
             if (Queries.isConstantMatchAllQuery(query())) {
                 Query q = new XConstantScoreQuery(searchFilter);
@@ -447,6 +457,10 @@ public class DefaultSearchContext extends SearchContext {
         return indexService.fieldData();
     }
 
+    public File tempDirectory() {
+        return indexService.injector().getInstance(Environment.class).workWithClusterFile();
+    }
+
     public long timeoutInMillis() {
         return timeoutInMillis;
     }
@@ -483,6 +497,28 @@ public class DefaultSearchContext extends SearchContext {
         return this.sort;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        this.searchAfter = searchAfter;
+        return this;
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return searchAfter;
+    }
+
+    @Override
+    public SearchContext sliceFilter(Filter sliceFilter) {
+        this.sliceFilter = sliceFilter;
+        return this;
+    }
+
+    @Override
+    public Filter sliceFilter() {
+        return sliceFilter;
+    }
+
     public SearchContext trackScores(boolean trackScores) {
         this.trackScores = trackScores;
         return this;
@@ -642,7 +678,8 @@ public class DefaultSearchContext extends SearchContext {
         return lastEmittedDoc;
     }
 
-    public SearchLookup lookup() {
+    @Override
+    protected SearchLookup lookupImpl() {
         // TODO: The types should take into account the parsing context in QueryParserContext...
         if (searchLookup == null) {
             searchLookup = new SearchLookup(mapperService(), fieldData(), request.types());
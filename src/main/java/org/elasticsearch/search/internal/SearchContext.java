@@ -21,6 +21,7 @@ package org.elasticsearch.search.internal;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -61,6 +62,7 @@ import org.elasticsearch.search.rescore.RescoreSearchContext;
 import org.elasticsearch.search.scan.ScanContext;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -97,6 +99,8 @@ public abstract class SearchContext implements Releasable {
     }
 
     private boolean nowInMillisUsed;
+    private boolean lookupUsed;
+    private boolean scoreFunctionsUsed;
 
     protected abstract void doClose();
 
@@ -212,6 +216,11 @@ public abstract class SearchContext implements Releasable {
 
     public abstract IndexFieldDataService fieldData();
 
+    /**
+     * The directory temporary files of the request are created in, under the work location of the node.
+     */
+    public abstract File tempDirectory();
+
     public abstract long timeoutInMillis();
 
     public abstract void timeoutInMillis(long timeoutInMillis);
@@ -228,6 +237,20 @@ public abstract class SearchContext implements Releasable {
 
     public abstract Sort sort();
 
+    /**
+     * Sets the sort values of the hit after which the top hits must be collected.
+     */
+    public abstract SearchContext searchAfter(FieldDoc searchAfter);
+
+    public abstract FieldDoc searchAfter();
+
+    /**
+     * Sets the filter that restricts the search to a slice of the documents of the shard.
+     */
+    public abstract SearchContext sliceFilter(Filter sliceFilter);
+
+    public abstract Filter sliceFilter();
+
     public abstract SearchContext trackScores(boolean trackScores);
 
     public abstract boolean trackScores();
@@ -304,7 +327,32 @@ public abstract class SearchContext implements Releasable {
 
     public abstract ScoreDoc lastEmittedDoc();
 
-    public abstract SearchLookup lookup();
+    /**
+     * The lookup of the fields and source of the current document, used by scripts. The lookup keeps the state of
+     * the document being looked up, so a request that uses it can only be executed by one thread at a time.
+     */
+    public final SearchLookup lookup() {
+        lookupUsed = true;
+        return lookupImpl();
+    }
+
+    public final boolean lookupUsed() {
+        return lookupUsed;
+    }
+
+    protected abstract SearchLookup lookupImpl();
+
+    /**
+     * Marks that the query holds score functions, which keep per segment state and can only be executed by one thread
+     * at a time.
+     */
+    public final void markScoreFunctionsUsed() {
+        scoreFunctionsUsed = true;
+    }
+
+    public final boolean scoreFunctionsUsed() {
+        return scoreFunctionsUsed;
+    }
 
     public abstract DfsSearchResult dfsResult();
 
@@ -314,9 +362,10 @@ public abstract class SearchContext implements Releasable {
 
     /**
      * Schedule the release of a resource. The time when {@link Releasable#release()} will be called on this object
-     * is function of the provided {@link Lifetime}.
+     * is function of the provided {@link Lifetime}. Safe to call from the threads that execute the slices of a
+     * concurrent query phase.
      */
-    public void addReleasable(Releasable releasable, Lifetime lifetime) {
+    public synchronized void addReleasable(Releasable releasable, Lifetime lifetime) {
         if (clearables == null) {
             clearables = MultimapBuilder.enumKeys(Lifetime.class).arrayListValues().build();
         }
@@ -324,16 +373,19 @@ public abstract class SearchContext implements Releasable {
     }
 
     public void clearReleasables(Lifetime lifetime) {
-        if (clearables != null) {
-            List<Collection<Releasable>> releasables = new ArrayList<>();
+        List<Collection<Releasable>> releasables = new ArrayList<>();
+        synchronized (this) {
+            if (clearables == null) {
+                return;
+            }
             for (Lifetime lc : Lifetime.values()) {
                 if (lc.compareTo(lifetime) > 0) {
                     break;
                 }
                 releasables.add(clearables.removeAll(lc));
             }
-            Releasables.close(Iterables.concat(releasables));
         }
+        Releasables.close(Iterables.concat(releasables));
     }
 
     public abstract ScanContext scanContext();
@@ -0,0 +1,342 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.*;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.MultiCollector;
+import org.elasticsearch.common.lucene.search.Queries;
+import org.elasticsearch.common.lucene.search.XConstantScoreQuery;
+import org.elasticsearch.common.lucene.search.XFilteredQuery;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Executes the main query of a shard over several slices of its segments concurrently, when enabled for the index
+ * using {@link #INDEX_SEARCH_CONCURRENT_SLICES}.
+ * <p/>
+ * Each slice is a contiguous range of segments, collected with its own top docs collector and its own aggregators.
+ * The per slice top docs are then merged, and the per slice aggregations are reduced the same way shard results are,
+ * which is why only requests whose aggregations can be reduced without changing their result are executed
+ * concurrently, see {@link org.elasticsearch.search.aggregations.AggregatorFactory#segmentReducible()}.
+ * <p/>
+ * Slices are submitted to the <tt>search</tt> thread pool, and the searching thread executes the slices that were not
+ * picked up yet itself, so that a saturated pool degrades to sequential execution instead of blocking.
+ * <p/>
+ * Requests that use scripts or score functions, which are not thread safe, are always executed sequentially.
+ */
+public class ConcurrentQueryExecutor extends AbstractComponent {
+
+    /**
+     * The number of slices the segments of a shard are partitioned into, a dynamic index level setting. Defaults
+     * to <tt>1</tt>, meaning the query is executed sequentially.
+     */
+    public static final String INDEX_SEARCH_CONCURRENT_SLICES = "index.search.concurrent.slices";
+
+    private final ThreadPool threadPool;
+
+    @Inject
+    public ConcurrentQueryExecutor(Settings settings, ThreadPool threadPool) {
+        super(settings);
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * Returns the number of slices to execute the query phase of the given context with, or <tt>1</tt> if it
+     * should be executed sequentially.
+     */
+    public int slices(SearchContext context) {
+        IndexShard indexShard = context.indexShard();
+        if (indexShard == null) {
+            return 1;
+        }
+        int slices = indexShard.indexService().settingsService().getSettings().getAsInt(INDEX_SEARCH_CONCURRENT_SLICES, 1);
+        if (slices <= 1) {
+            return 1;
+        }
+        int numLeaves = context.searcher().getIndexReader().leaves().size();
+        if (numLeaves <= 1) {
+            return 1;
+        }
+        if (context.searchType() == SearchType.SCAN || context.scroll() != null || context.searchAfter() != null) {
+            return 1;
+        }
+        // anything that needs to see the whole shard at once, or that may stop collecting early
+        if (context.parsedPostFilter() != null || context.minimumScore() != null || !context.rescore().isEmpty()) {
+            return 1;
+        }
+        if (context.timeoutInMillis() != -1 || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return 1;
+        }
+        if (context.aggregations() != null && !context.aggregations().factories().segmentReducible()) {
+            return 1;
+        }
+        // scripts (in script fields, script sorts, score functions, filters or aggregations) share the lookup of the
+        // context, and score functions keep per segment state, none of which can be used by several threads
+        if (context.lookupUsed() || context.hasScriptFields() || context.scoreFunctionsUsed()) {
+            return 1;
+        }
+        return Math.min(slices, numLeaves);
+    }
+
+    /**
+     * Executes the main query and the aggregations of the given context, setting the top docs and the aggregations
+     * on its query result.
+     */
+    public void execute(SearchContext context, int numSlices) throws Exception {
+        List<AtomicReaderContext> leaves = context.searcher().getIndexReader().leaves();
+        Weight weight = context.searcher().createNormalizedWeight(context.query());
+
+        int numDocs = context.from() + context.size();
+        boolean countOnly = context.searchType() == SearchType.COUNT || numDocs == 0;
+        numDocs = Math.max(1, Math.min(numDocs, context.searcher().getIndexReader().maxDoc()));
+        Sort sort = context.sort() == null ? null : context.sort().rewrite(context.searcher());
+
+        List<List<AtomicReaderContext>> partitions = partition(leaves, numSlices);
+        List<Slice> slices = new ArrayList<>(partitions.size());
+        for (List<AtomicReaderContext> partition : partitions) {
+            // everything that registers itself with the search context is created here, on the searching thread
+            Collector hitsCollector;
+            if (countOnly) {
+                hitsCollector = new TotalHitCountCollector();
+            } else if (sort != null) {
+                hitsCollector = TopFieldCollector.create(sort, numDocs, true, context.trackScores(), context.trackScores(), !weight.scoresDocsOutOfOrder());
+            } else {
+                hitsCollector = TopScoreDocCollector.create(numDocs, !weight.scoresDocsOutOfOrder());
+            }
+            slices.add(new Slice(context, partition, weight, hitsCollector));
+        }
+
+        Executor executor = threadPool.executor(ThreadPool.Names.SEARCH);
+        List<FutureTask<Void>> tasks = new ArrayList<>(slices.size());
+        for (Slice slice : slices) {
+            tasks.add(new FutureTask<>(slice));
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (EsRejectedExecutionException e) {
+                // executed by this thread below
+            }
+        }
+        for (FutureTask<Void> task : tasks) {
+            // a no-op if the task was already picked up by the pool
+            task.run();
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        context.queryResult().topDocs(mergeTopDocs(slices, countOnly, sort, numDocs));
+        if (context.aggregations() != null) {
+            List<InternalAggregations> aggregations = new ArrayList<>(slices.size());
+            for (Slice slice : slices) {
+                aggregations.add(slice.buildAggregations());
+            }
+            InternalAggregation.ReduceContext reduceContext = new InternalAggregation.ReduceContext(null, context.bigArrays(), context.scriptService());
+            context.queryResult().aggregations(InternalAggregations.reduce(aggregations, reduceContext));
+        }
+    }
+
+    private static TopDocs mergeTopDocs(List<Slice> slices, boolean countOnly, Sort sort, int numDocs) throws IOException {
+        if (countOnly) {
+            int totalHits = 0;
+            for (Slice slice : slices) {
+                totalHits += ((TotalHitCountCollector) slice.hitsCollector).getTotalHits();
+            }
+            return new TopDocs(totalHits, Lucene.EMPTY_SCORE_DOCS, 0);
+        }
+        TopDocs[] topDocs = sort == null ? new TopDocs[slices.size()] : new TopFieldDocs[slices.size()];
+        for (int i = 0; i < topDocs.length; i++) {
+            topDocs[i] = ((TopDocsCollector) slices.get(i).hitsCollector).topDocs();
+        }
+        // slices are contiguous ranges of segments, so ties broken by slice keep the doc id order
+        TopDocs merged = TopDocs.merge(sort, numDocs, topDocs);
+        for (ScoreDoc scoreDoc : merged.scoreDocs) {
+            // doc ids are already top level ones, don't leak the slice as a shard index
+            scoreDoc.shardIndex = -1;
+        }
+        return merged;
+    }
+
+    /**
+     * Partitions the leaves into contiguous slices holding roughly the same number of documents.
+     */
+    static List<List<AtomicReaderContext>> partition(List<AtomicReaderContext> leaves, int numSlices) {
+        long maxDoc = 0;
+        for (AtomicReaderContext leaf : leaves) {
+            maxDoc += leaf.reader().maxDoc();
+        }
+        long docsPerSlice = Math.max(1, maxDoc / numSlices);
+        List<List<AtomicReaderContext>> slices = new ArrayList<>(numSlices);
+        List<AtomicReaderContext> current = new ArrayList<>();
+        long currentDocs = 0;
+        for (int i = 0; i < leaves.size(); i++) {
+            AtomicReaderContext leaf = leaves.get(i);
+            current.add(leaf);
+            currentDocs += leaf.reader().maxDoc();
+            int remainingLeaves = leaves.size() - i - 1;
+            int remainingSlices = numSlices - slices.size() - 1;
+            if (remainingSlices > 0 && remainingLeaves > 0 && (currentDocs >= docsPerSlice || remainingLeaves <= remainingSlices)) {
+                slices.add(current);
+                current = new ArrayList<>();
+                currentDocs = 0;
+            }
+        }
+        if (!current.isEmpty()) {
+            slices.add(current);
+        }
+        return slices;
+    }
+
+    /**
+     * A range of segments collected by a single thread, with its own collectors and aggregators.
+     */
+    private static class Slice implements Callable<Void> {
+
+        private final SearchContext context;
+        private final List<AtomicReaderContext> leaves;
+        private final Weight weight;
+        private final Collector hitsCollector;
+
+        private final Aggregator[] aggregators;
+        private final AggregationContext aggregationContext;
+        private final List<Aggregator> collectors = new ArrayList<>();
+        private final List<Aggregator> globals = new ArrayList<>();
+        private final Weight globalsWeight;
+
+        Slice(SearchContext context, List<AtomicReaderContext> leaves, Weight weight, Collector hitsCollector) throws IOException {
+            this.context = context;
+            this.leaves = leaves;
+            this.weight = weight;
+            this.hitsCollector = hitsCollector;
+            if (context.aggregations() != null) {
+                aggregationContext = new AggregationContext(context);
+                aggregators = context.aggregations().factories().createTopLevelAggregators(aggregationContext);
+                for (Aggregator aggregator : aggregators) {
+                    if (aggregator instanceof GlobalAggregator) {
+                        globals.add(aggregator);
+                    } else if (aggregator.shouldCollect()) {
+                        collectors.add(aggregator);
+                    }
+                }
+                aggregationContext.setNextReader(context.searcher().getIndexReader().getContext());
+            } else {
+                aggregationContext = null;
+                aggregators = null;
+            }
+            if (!globals.isEmpty()) {
+                Query query = new XConstantScoreQuery(Queries.MATCH_ALL_FILTER);
+                Filter searchFilter = context.searchFilter(context.types());
+                if (searchFilter != null) {
+                    query = new XFilteredQuery(query, searchFilter);
+                }
+                globalsWeight = context.searcher().createNormalizedWeight(query);
+            } else {
+                globalsWeight = null;
+            }
+        }
+
+        @Override
+        public Void call() throws Exception {
+            // filters and aggregators look the context up, eg. to release what they use at the end of the phase
+            boolean setCurrent = SearchContext.current() == null;
+            if (setCurrent) {
+                SearchContext.setCurrent(context);
+            }
+            try {
+                if (collectors.isEmpty()) {
+                    collect(weight, hitsCollector);
+                } else {
+                    AggregationPhase.AggregationsCollector aggregationsCollector = new AggregationPhase.AggregationsCollector(collectors, aggregationContext);
+                    MultiCollector collector = new MultiCollector(hitsCollector, new Collector[]{aggregationsCollector});
+                    collect(weight, collector);
+                    collector.postCollection();
+                }
+                if (!globals.isEmpty()) {
+                    AggregationPhase.AggregationsCollector globalsCollector = new AggregationPhase.AggregationsCollector(globals, aggregationContext);
+                    collect(globalsWeight, globalsCollector);
+                    globalsCollector.postCollection();
+                }
+            } finally {
+                if (setCurrent) {
+                    SearchContext.removeCurrent();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Same as {@link IndexSearcher#search(List, Weight, Collector)}, without the wrapping done by the context
+         * searcher, which relies on state that is not safe to share across threads.
+         */
+        private void collect(Weight weight, Collector collector) throws IOException {
+            for (AtomicReaderContext leaf : leaves) {
+                try {
+                    collector.setNextReader(leaf);
+                } catch (CollectionTerminatedException e) {
+                    continue;
+                }
+                BulkScorer scorer = weight.bulkScorer(leaf, !collector.acceptsDocsOutOfOrder(), leaf.reader().getLiveDocs());
+                if (scorer != null) {
+                    try {
+                        scorer.score(collector);
+                    } catch (CollectionTerminatedException e) {
+                        // collection was terminated prematurely, continue with the next leaf
+                    }
+                }
+            }
+        }
+
+        InternalAggregations buildAggregations() {
+            List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
+            for (Aggregator aggregator : aggregators) {
+                aggregations.add(aggregator.buildAggregation(0));
+            }
+            return new InternalAggregations(aggregations);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.rescore.RescorePhase;
 import org.elasticsearch.search.rescore.RescoreSearchContext;
+import org.elasticsearch.search.slice.SliceParseElement;
 import org.elasticsearch.search.sort.SortParseElement;
 import org.elasticsearch.search.sort.TrackScoresParseElement;
 import org.elasticsearch.search.suggest.SuggestPhase;
@@ -48,12 +49,14 @@ public class QueryPhase implements SearchPhase {
     private final AggregationPhase aggregationPhase;
     private final SuggestPhase suggestPhase;
     private RescorePhase rescorePhase;
+    private final ConcurrentQueryExecutor concurrentQueryExecutor;
 
     @Inject
-    public QueryPhase(AggregationPhase aggregationPhase, SuggestPhase suggestPhase, RescorePhase rescorePhase) {
+    public QueryPhase(AggregationPhase aggregationPhase, SuggestPhase suggestPhase, RescorePhase rescorePhase, ConcurrentQueryExecutor concurrentQueryExecutor) {
         this.aggregationPhase = aggregationPhase;
         this.suggestPhase = suggestPhase;
         this.rescorePhase = rescorePhase;
+        this.concurrentQueryExecutor = concurrentQueryExecutor;
     }
 
     @Override
@@ -77,6 +80,8 @@ public class QueryPhase implements SearchPhase {
                 .put("minScore", new MinScoreParseElement())
                 .put("timeout", new TimeoutParseElement())
                 .put("terminate_after", new TerminateAfterParseElement())
+                .put("search_after", new SearchAfterParseElement())
+                .put("slice", new SliceParseElement())
                 .putAll(aggregationPhase.parseElements())
                 .putAll(suggestPhase.parseElements())
                 .putAll(rescorePhase.parseElements());
@@ -86,9 +91,18 @@ public class QueryPhase implements SearchPhase {
     @Override
     public void preProcess(SearchContext context) {
         context.preProcess();
+        if (context.searchAfter() != null) {
+            context.searchAfter(SearchAfterParseElement.buildFieldDoc(context));
+        }
     }
 
     public void execute(SearchContext searchContext) throws QueryPhaseExecutionException {
+        int slices = concurrentQueryExecutor.slices(searchContext);
+        if (slices > 1) {
+            executeConcurrently(searchContext, slices);
+            return;
+        }
+
         // Pre-process aggregations as late as possible. In the case of a DFS_Q_T_F
         // request, preProcess is called on the DFS phase phase, this is why we pre-process them
         // here to make sure it happens during the QUERY phase
@@ -141,7 +155,11 @@ public class QueryPhase implements SearchPhase {
                         }
                     }
                 } else {
-                    if (searchContext.sort() != null) {
+                    if (searchContext.searchAfter() != null) {
+                        // only hits that sort after the given values are competitive, no matter how deep the page is
+                        topDocs = searchContext.searcher().searchAfter(searchContext.searchAfter(), query, null, numDocs,
+                                searchContext.sort(), searchContext.trackScores(), searchContext.trackScores());
+                    } else if (searchContext.sort() != null) {
                         topDocs = searchContext.searcher().search(query, null, numDocs, searchContext.sort(),
                                 searchContext.trackScores(), searchContext.trackScores());
                     } else {
@@ -165,4 +183,21 @@ public class QueryPhase implements SearchPhase {
         suggestPhase.execute(searchContext);
         aggregationPhase.execute(searchContext);
     }
+
+    private void executeConcurrently(SearchContext searchContext, int slices) throws QueryPhaseExecutionException {
+        // aggregators are created per slice by the executor, the aggregation phase doesn't need to pre-process them
+        searchContext.queryResult().searchTimedOut(false);
+        searchContext.searcher().inStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+        try {
+            searchContext.queryResult().from(searchContext.from());
+            searchContext.queryResult().size(searchContext.size());
+            concurrentQueryExecutor.execute(searchContext, slices);
+        } catch (Throwable e) {
+            throw new QueryPhaseExecutionException(searchContext, "Failed to execute main query", e);
+        } finally {
+            searchContext.searcher().finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+            searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+        }
+        suggestPhase.execute(searchContext);
+    }
 }
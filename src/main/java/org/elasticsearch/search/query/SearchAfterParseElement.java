@@ -0,0 +1,142 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.search.SearchParseElement;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser element for 'search_after': the sort values of the last hit of the previous page. Sort fields might
+ * be parsed after this element, so the values are kept as they were parsed and are only converted to the
+ * types of the comparators in {@link #buildFieldDoc(SearchContext)}.
+ */
+public class SearchAfterParseElement implements SearchParseElement {
+
+    @Override
+    public void parse(XContentParser parser, SearchContext context) throws Exception {
+        XContentParser.Token token = parser.currentToken();
+        if (token != XContentParser.Token.START_ARRAY) {
+            throw new ElasticsearchIllegalArgumentException("[search_after] must be an array of sort values");
+        }
+        List<Object> values = new ArrayList<>();
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token == XContentParser.Token.VALUE_NUMBER) {
+                values.add(parser.numberValue());
+            } else if (token == XContentParser.Token.VALUE_STRING) {
+                values.add(parser.text());
+            } else if (token == XContentParser.Token.VALUE_NULL) {
+                values.add(null);
+            } else {
+                throw new ElasticsearchIllegalArgumentException("[search_after] values must be numbers, strings or null but got [" + token + "]");
+            }
+        }
+        // ties with the last hit have already been returned, so the doc id is set to make them non-competitive
+        context.searchAfter(new FieldDoc(Integer.MAX_VALUE, Float.NaN, values.toArray()));
+    }
+
+    /**
+     * Validates the search_after values of the context against its sort, and returns a {@link FieldDoc} whose
+     * values have the types expected by the comparators of the sort fields.
+     */
+    public static FieldDoc buildFieldDoc(SearchContext context) throws SearchParseException {
+        FieldDoc searchAfter = context.searchAfter();
+        Sort sort = context.sort();
+        if (sort == null) {
+            throw new SearchParseException(context, "[search_after] requires a sort on at least one field other than _score");
+        }
+        if (context.scroll() != null) {
+            throw new SearchParseException(context, "[search_after] cannot be used in a scroll context");
+        }
+        if (context.from() > 0) {
+            throw new SearchParseException(context, "[from] must be 0 when [search_after] is used, got [" + context.from() + "]");
+        }
+        SortField[] sortFields = sort.getSort();
+        if (sortFields.length != searchAfter.fields.length) {
+            throw new SearchParseException(context, "[search_after] has " + searchAfter.fields.length + " values but the sort has " + sortFields.length + " fields");
+        }
+        Object[] values = new Object[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            try {
+                values[i] = convertValue(sortFields[i], searchAfter.fields[i]);
+            } catch (NumberFormatException e) {
+                throw new SearchParseException(context, "Failed to parse [search_after] value [" + searchAfter.fields[i] + "] for sort field [" + sortFields[i].getField() + "]", e);
+            }
+        }
+        return new FieldDoc(searchAfter.doc, searchAfter.score, values);
+    }
+
+    private static Object convertValue(SortField sortField, Object value) {
+        SortField.Type type = sortField.getType();
+        if (type == SortField.Type.CUSTOM && sortField.getComparatorSource() instanceof IndexFieldData.XFieldComparatorSource) {
+            type = ((IndexFieldData.XFieldComparatorSource) sortField.getComparatorSource()).reducedType();
+        }
+        switch (type) {
+            case STRING:
+            case STRING_VAL:
+                // documents that have no value and sort first have a null sort value
+                if (value == null || value instanceof BytesRef) {
+                    return value;
+                }
+                return new BytesRef(value.toString());
+            case DOC:
+            case INT:
+                if (value instanceof Number) {
+                    return ((Number) value).intValue();
+                }
+                return Integer.parseInt(nonNull(sortField, value).toString());
+            case LONG:
+                if (value instanceof Number) {
+                    return ((Number) value).longValue();
+                }
+                return Long.parseLong(nonNull(sortField, value).toString());
+            case SCORE:
+            case FLOAT:
+                if (value instanceof Number) {
+                    return ((Number) value).floatValue();
+                }
+                return Float.parseFloat(nonNull(sortField, value).toString());
+            case DOUBLE:
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue();
+                }
+                return Double.parseDouble(nonNull(sortField, value).toString());
+            default:
+                throw new ElasticsearchIllegalArgumentException("[search_after] is not supported on sort field [" + sortField + "]");
+        }
+    }
+
+    private static Object nonNull(SortField sortField, Object value) {
+        if (value == null) {
+            throw new ElasticsearchIllegalArgumentException("[search_after] value for sort field [" + sortField.getField() + "] cannot be null");
+        }
+        return value;
+    }
+}
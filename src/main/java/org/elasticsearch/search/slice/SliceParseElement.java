@@ -0,0 +1,103 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import org.apache.lucene.search.Filter;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.lucene.search.MatchNoDocsFilter;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+import org.elasticsearch.search.SearchParseElement;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.internal.SearchContext;
+
+/**
+ * Parser element for 'slice', which restricts a scroll to one of <code>max</code> disjoint slices of the
+ * documents so that several consumers can each scroll through their own slice in parallel:
+ * <pre>
+ *     "slice" : {
+ *         "id" : 0,
+ *         "max" : 4
+ *     }
+ * </pre>
+ */
+public class SliceParseElement implements SearchParseElement {
+
+    @Override
+    public void parse(XContentParser parser, SearchContext context) throws Exception {
+        XContentParser.Token token = parser.currentToken();
+        if (token != XContentParser.Token.START_OBJECT) {
+            throw new SearchParseException(context, "[slice] must be an object with an [id] and a [max]");
+        }
+        int id = -1;
+        int max = -1;
+        String currentFieldName = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token.isValue()) {
+                if ("id".equals(currentFieldName)) {
+                    id = parser.intValue();
+                } else if ("max".equals(currentFieldName)) {
+                    max = parser.intValue();
+                } else {
+                    throw new SearchParseException(context, "Unknown key for [slice]: [" + currentFieldName + "]");
+                }
+            } else {
+                throw new SearchParseException(context, "Unexpected token [" + token + "] in [slice]");
+            }
+        }
+        if (max <= 1) {
+            throw new SearchParseException(context, "[slice] max must be greater than 1, got [" + max + "]");
+        }
+        if (id < 0 || id >= max) {
+            throw new SearchParseException(context, "[slice] id must be between 0 and max - 1 (" + (max - 1) + "), got [" + id + "]");
+        }
+        if (context.scroll() == null) {
+            throw new SearchParseException(context, "[slice] can only be used with [scroll] requests");
+        }
+        int numShards = context.indexShard().indexSettings().getAsInt(IndexMetaData.SETTING_NUMBER_OF_SHARDS, -1);
+        context.sliceFilter(sliceFilter(id, max, context.indexShard().shardId().id(), numShards));
+    }
+
+    /**
+     * Returns the filter that matches the documents of slice <code>id</code> out of <code>max</code> on the given
+     * shard, or <tt>null</tt> if all the documents of the shard belong to the slice. When there are at least as many
+     * shards as slices, a slice is made of whole shards. Otherwise every shard is further split by hashing the
+     * <code>_uid</code> of its documents.
+     */
+    public static Filter sliceFilter(int id, int max, int shardId, int numShards) {
+        if (max <= numShards) {
+            return shardId % max == id ? null : new MatchNoDocsFilter();
+        }
+        final int targetShard = id % numShards;
+        if (targetShard != shardId) {
+            return new MatchNoDocsFilter();
+        }
+        int numSlicesInShard = max / numShards;
+        if (max % numShards > targetShard) {
+            numSlicesInShard++;
+        }
+        if (numSlicesInShard == 1) {
+            return null;
+        }
+        return new TermsSliceFilter(UidFieldMapper.NAME, id / numShards, numSlicesInShard);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A filter that partitions the documents of a shard into <code>max</code> slices by hashing the terms of
+ * a field that has a single, unique term per document such as <code>_uid</code>, and that only matches the
+ * documents of slice <code>id</code>.
+ * <p/>
+ * The same filter instance is used by all the pages of a scroll, which all run on the same point-in-time
+ * reader, so the matching documents are only computed once per segment.
+ */
+public class TermsSliceFilter extends Filter {
+
+    private final String field;
+    private final int id;
+    private final int max;
+
+    private final ConcurrentMap<Object, DocIdSet> docIdSets = ConcurrentCollections.newConcurrentMap();
+
+    public TermsSliceFilter(String field, int id, int max) {
+        this.field = field;
+        this.id = id;
+        this.max = max;
+    }
+
+    int id() {
+        return id;
+    }
+
+    int max() {
+        return max;
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+        final AtomicReader reader = context.reader();
+        DocIdSet docIdSet = docIdSets.get(reader.getCoreCacheKey());
+        if (docIdSet == null) {
+            docIdSet = build(reader);
+            docIdSets.put(reader.getCoreCacheKey(), docIdSet);
+        }
+        return BitsFilteredDocIdSet.wrap(docIdSet, acceptDocs);
+    }
+
+    private DocIdSet build(AtomicReader reader) throws IOException {
+        final Terms terms = reader.terms(field);
+        if (terms == null) {
+            return DocIdSet.EMPTY;
+        }
+        final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+        FixedBitSet bits = null;
+        TermsEnum termsEnum = terms.iterator(null);
+        DocsEnum docsEnum = null;
+        for (BytesRef term = termsEnum.next(); term != null; term = termsEnum.next()) {
+            if (slice(term, hash) != id) {
+                continue;
+            }
+            // deleted documents are filtered out by the accept docs of each search
+            docsEnum = termsEnum.docs(null, docsEnum, DocsEnum.FLAG_NONE);
+            for (int doc = docsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docsEnum.nextDoc()) {
+                if (bits == null) {
+                    bits = new FixedBitSet(reader.maxDoc());
+                }
+                bits.set(doc);
+            }
+        }
+        return bits == null ? DocIdSet.EMPTY : bits;
+    }
+
+    private int slice(BytesRef term, MurmurHash3.Hash128 hash) {
+        MurmurHash3.hash128(term.bytes, term.offset, term.length, 0, hash);
+        final int slice = (int) (hash.h1 % max);
+        return slice < 0 ? slice + max : slice;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        TermsSliceFilter that = (TermsSliceFilter) o;
+        return id == that.id && max == that.max && field.equals(that.field);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = field.hashCode();
+        result = 31 * result + id;
+        result = 31 * result + max;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "slice(" + field + ", id=" + id + ", max=" + max + ")";
+    }
+}
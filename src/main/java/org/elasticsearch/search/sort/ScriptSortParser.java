@@ -35,6 +35,7 @@ import org.elasticsearch.index.mapper.ObjectMappers;
 import org.elasticsearch.index.mapper.object.ObjectMapper;
 import org.elasticsearch.index.query.ParsedFilter;
 import org.elasticsearch.index.search.nested.NonNestedDocsFilter;
+import org.elasticsearch.script.NumericSearchScript;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.MultiValueMode;
@@ -177,6 +178,9 @@ public class ScriptSortParser implements SortParser {
                     @Override
                     protected SortedNumericDoubleValues getValues(AtomicReaderContext context) {
                         searchScript.setNextReader(context);
+                        if (searchScript instanceof NumericSearchScript) {
+                            return FieldData.singleton(((NumericSearchScript) searchScript).doubleValues(), null);
+                        }
                         final NumericDoubleValues values = new NumericDoubleValues() {
                             @Override
                             public double get(int docID) {
@@ -25,12 +25,10 @@ import org.elasticsearch.*;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Booleans;
 import org.elasticsearch.common.Strings;
-import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.HandlesStreamOutput;
-import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.math.MathUtils;
@@ -145,6 +143,9 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
     final ByteSizeValue maxCumulationBufferCapacity;
     final int maxCompositeBufferComponents;
 
+    // bytes references at least this large are sent without being copied into the message pages, -1 to always copy
+    final int zeroCopyThreshold;
+
     final BigArrays bigArrays;
 
     private final ThreadPool threadPool;
@@ -217,6 +218,8 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
 
         this.maxCumulationBufferCapacity = componentSettings.getAsBytesSize("max_cumulation_buffer_capacity", null);
         this.maxCompositeBufferComponents = componentSettings.getAsInt("max_composite_buffer_components", -1);
+        ByteSizeValue zeroCopyThreshold = componentSettings.getAsBytesSize("zero_copy_threshold", new ByteSizeValue(BigArrays.PAGE_SIZE_IN_BYTES));
+        this.zeroCopyThreshold = zeroCopyThreshold.bytes() < 0 ? -1 : (int) Math.min(Integer.MAX_VALUE, zeroCopyThreshold.bytes());
 
         long defaultReceiverPredictor = 512 * 1024;
         if (JvmInfo.jvmInfo().mem().directMemoryMax().bytes() > 0) {
@@ -516,7 +519,7 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
         byte status = 0;
         status = TransportStatus.setRequest(status);
 
-        ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
+        ZeroCopyBytesStreamOutput bStream = new ZeroCopyBytesStreamOutput(bigArrays, zeroCopyThreshold);
         boolean addedReleaseListener = false;
         try {
             bStream.skip(NettyHeader.HEADER_SIZE);
@@ -537,34 +540,30 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
             stream.setVersion(version);
             stream.writeString(transportServiceAdapter.action(action, version));
 
-            ReleasableBytesReference bytes;
             ChannelBuffer buffer;
-            // it might be nice to somehow generalize this optimization, maybe a smart "paged" bytes output
-            // that create paged channel buffers, but its tricky to know when to do it (where this option is
-            // more explicit).
+            // large bytes references written by the request are referenced by the stream rather than copied,
+            // bytes requests are always sent that way, as their content follows the (thin) request as is
             if (request instanceof BytesTransportRequest) {
                 BytesTransportRequest bRequest = (BytesTransportRequest) request;
                 assert node.version().equals(bRequest.version());
                 bRequest.writeThin(stream);
                 stream.close();
-                bytes = bStream.bytes();
-                ChannelBuffer headerBuffer = bytes.toChannelBuffer();
+                ChannelBuffer headerBuffer = bStream.toChannelBuffer();
                 ChannelBuffer contentBuffer = bRequest.bytes().toChannelBuffer();
                 buffer = NettyUtils.buildComposite(false, headerBuffer, contentBuffer);
             } else {
                 request.writeTo(stream);
                 stream.close();
-                bytes = bStream.bytes();
-                buffer = bytes.toChannelBuffer();
+                buffer = bStream.toChannelBuffer();
             }
             NettyHeader.writeHeader(buffer, requestId, status, version);
             ChannelFuture future = targetChannel.write(buffer);
-            ReleaseChannelFutureListener listener = new ReleaseChannelFutureListener(bytes);
+            ReleaseChannelFutureListener listener = new ReleaseChannelFutureListener(bStream.releasable());
             future.addListener(listener);
             addedReleaseListener = true;
         } finally {
             if (!addedReleaseListener) {
-                Releasables.close(bStream.bytes());
+                Releasables.close(bStream.releasable());
             }
         }
     }
@@ -21,12 +21,10 @@ package org.elasticsearch.transport.netty;
 
 import org.elasticsearch.Version;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.io.ThrowableObjectOutputStream;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.HandlesStreamOutput;
-import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.netty.ReleaseChannelFutureListener;
@@ -77,7 +75,7 @@ public class NettyTransportChannel implements TransportChannel {
         byte status = 0;
         status = TransportStatus.setResponse(status);
 
-        ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(transport.bigArrays);
+        ZeroCopyBytesStreamOutput bStream = new ZeroCopyBytesStreamOutput(transport.bigArrays, transport.zeroCopyThreshold);
         boolean addedReleaseListener = false;
         try {
             bStream.skip(NettyHeader.HEADER_SIZE);
@@ -91,16 +89,15 @@ public class NettyTransportChannel implements TransportChannel {
             response.writeTo(stream);
             stream.close();
 
-            ReleasableBytesReference bytes = bStream.bytes();
-            ChannelBuffer buffer = bytes.toChannelBuffer();
+            ChannelBuffer buffer = bStream.toChannelBuffer();
             NettyHeader.writeHeader(buffer, requestId, status, version);
             ChannelFuture future = channel.write(buffer);
-            ReleaseChannelFutureListener listener = new ReleaseChannelFutureListener(bytes);
+            ReleaseChannelFutureListener listener = new ReleaseChannelFutureListener(bStream.releasable());
             future.addListener(listener);
             addedReleaseListener = true;
         } finally {
             if (!addedReleaseListener) {
-                Releasables.close(bStream.bytes());
+                Releasables.close(bStream.releasable());
             }
         }
     }
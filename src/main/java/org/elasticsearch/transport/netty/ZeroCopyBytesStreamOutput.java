@@ -0,0 +1,175 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ChannelBufferBytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.netty.NettyUtils;
+import org.elasticsearch.common.util.BigArrays;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link StreamOutput} that writes into recycled {@link BigArrays} pages, like {@link ReleasableBytesStreamOutput},
+ * except for large heap backed {@link BytesReference}s (eg. document sources or recovery chunks) which are not
+ * copied: the stream keeps a reference to them and they become components of the composite {@link ChannelBuffer}
+ * returned by {@link #toChannelBuffer()}.
+ * <p/>
+ * Since referenced bytes are only read when the buffer is actually written to the network, they must not be
+ * modified until the message has been sent. Recycled (releasable) references are always copied, as they might
+ * be released before that.
+ * <p/>
+ * Once done, the pages must be released using the {@link Releasable} returned by {@link #releasable()}, typically
+ * once the write future completes.
+ */
+public class ZeroCopyBytesStreamOutput extends StreamOutput {
+
+    private final BigArrays bigArrays;
+    private final int referenceThreshold;
+
+    private final List<ChannelBuffer> buffers = new ArrayList<>();
+    private final List<ReleasableBytesReference> pages = new ArrayList<>();
+    private ReleasableBytesStreamOutput current;
+    private long position;
+
+    /**
+     * @param referenceThreshold the minimum length of a bytes reference to be referenced instead of copied,
+     *                           <tt>-1</tt> to always copy
+     */
+    public ZeroCopyBytesStreamOutput(BigArrays bigArrays, int referenceThreshold) {
+        this.bigArrays = bigArrays;
+        this.referenceThreshold = referenceThreshold;
+        this.current = new ReleasableBytesStreamOutput(bigArrays);
+    }
+
+    /**
+     * Skips the given number of bytes, only valid before anything else got written.
+     */
+    public void skip(int length) {
+        assert position == 0 : "skip is only supported at the beginning of the stream";
+        current.skip(length);
+        position += length;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        current().writeByte(b);
+        position++;
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        current().writeBytes(b, offset, length);
+        position += length;
+    }
+
+    @Override
+    public void writeBytesReference(@Nullable BytesReference bytes) throws IOException {
+        if (!canReference(bytes)) {
+            super.writeBytesReference(bytes);
+            return;
+        }
+        writeVInt(bytes.length());
+        flushPages();
+        buffers.add(bytes.toChannelBuffer());
+        position += bytes.length();
+    }
+
+    private boolean canReference(BytesReference bytes) {
+        if (bytes == null || referenceThreshold < 0 || bytes.length() < referenceThreshold) {
+            return false;
+        }
+        return bytes instanceof BytesArray || bytes instanceof ChannelBufferBytesReference;
+    }
+
+    private ReleasableBytesStreamOutput current() {
+        if (current == null) {
+            current = new ReleasableBytesStreamOutput(bigArrays);
+        }
+        return current;
+    }
+
+    private void flushPages() {
+        if (current != null) {
+            ReleasableBytesReference bytes = current.bytes();
+            pages.add(bytes);
+            if (bytes.length() > 0) {
+                buffers.add(bytes.toChannelBuffer());
+            }
+            current = null;
+        }
+    }
+
+    /**
+     * Returns a channel buffer over everything written so far. Can only be called once.
+     */
+    public ChannelBuffer toChannelBuffer() {
+        flushPages();
+        if (buffers.size() == 1) {
+            return buffers.get(0);
+        }
+        return NettyUtils.buildComposite(false, buffers.toArray(new ChannelBuffer[buffers.size()]));
+    }
+
+    /**
+     * Returns a {@link Releasable} releasing the pages acquired by this stream, can be used once the content
+     * returned by {@link #toChannelBuffer()} is no longer needed.
+     */
+    public Releasable releasable() {
+        flushPages();
+        final ReleasableBytesReference[] pages = this.pages.toArray(new ReleasableBytesReference[this.pages.size()]);
+        return new Releasable() {
+            @Override
+            public void close() {
+                Releasables.close(pages);
+            }
+        };
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // nothing to do
+    }
+
+    @Override
+    public void close() throws IOException {
+        // called when closing the wrapping streams, releasing is explicit through releasable()
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+}
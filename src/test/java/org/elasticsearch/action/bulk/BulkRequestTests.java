@@ -37,6 +37,7 @@ import java.util.List;
 import static org.elasticsearch.common.io.Streams.copyToStringFromClasspath;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.startsWith;
 
 public class BulkRequestTests extends ElasticsearchTestCase {
 
@@ -117,4 +118,26 @@ public class BulkRequestTests extends ElasticsearchTestCase {
         assertThat(bulkRequest.requests().get(1), instanceOf(UpdateRequest.class));
         assertThat(bulkRequest.requests().get(2), instanceOf(DeleteRequest.class));
     }
+
+    @Test
+    public void testBulkAddCompleteActions() throws Exception {
+        String bulkAction = copyToStringFromClasspath("/org/elasticsearch/action/bulk/simple-bulk.json");
+        // translate Windows line endings (\r\n) to standard ones (\n)
+        if (Constants.WINDOWS) {
+            bulkAction = Strings.replace(bulkAction, "\r\n", "\n");
+        }
+        byte[] data = bulkAction.getBytes(Charsets.UTF_8);
+        int completeLength = data.length;
+        // cut within the source line of the create action, only the index and delete actions are complete
+        int cut = bulkAction.lastIndexOf("value3");
+        BulkRequest bulkRequest = new BulkRequest();
+        int consumed = bulkRequest.addCompleteActions(new BytesArray(data, 0, cut), true, null, null, null, null, true);
+        assertThat(bulkRequest.numberOfActions(), equalTo(2));
+        assertThat(bulkAction.substring(consumed), startsWith("{ \"create\""));
+
+        // feeding the remaining data from the consumed offset completes the create action
+        consumed += bulkRequest.addCompleteActions(new BytesArray(data, consumed, completeLength - consumed), true, null, null, null, null, true);
+        assertThat(bulkRequest.numberOfActions(), equalTo(3));
+        assertThat(consumed, equalTo(completeLength));
+    }
 }
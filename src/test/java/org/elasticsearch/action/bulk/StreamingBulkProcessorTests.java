@@ -0,0 +1,163 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.hamcrest.Matchers.*;
+
+public class StreamingBulkProcessorTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testStreamedActionsAreIndexed() throws Exception {
+        createIndex("test");
+        int numDocs = randomIntBetween(1, 500);
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < numDocs; i++) {
+            data.append("{\"index\":{\"_id\":\"").append(i).append("\"}}\n");
+            data.append("{\"field\":\"value ").append(i).append("\"}\n");
+        }
+
+        TestListener listener = new TestListener();
+        StreamingBulkProcessor processor = StreamingBulkProcessor.builder(client(), listener)
+                .setDefaultIndex("test").setDefaultType("type")
+                .setBatchSize(new ByteSizeValue(randomIntBetween(1, 4096), ByteSizeUnit.BYTES))
+                .setMaxInFlight(randomIntBetween(1, 4))
+                .build();
+        addInRandomChunks(processor, data.toString());
+        processor.close();
+
+        StreamingBulkProcessor.Summary summary = listener.await();
+        assertThat(summary.getFailure(), nullValue());
+        assertThat(summary.hasFailures(), equalTo(false));
+        assertThat(summary.status(), equalTo(RestStatus.OK));
+        assertThat(summary.getItems(), equalTo((long) numDocs));
+        assertThat(listener.pauses.get(), equalTo(listener.resumes.get()));
+
+        refresh();
+        assertHitCount(client().prepareCount("test").get(), numDocs);
+    }
+
+    @Test
+    public void testItemFailuresAreReported() throws Exception {
+        createIndex("test");
+        StringBuilder data = new StringBuilder();
+        data.append("{\"create\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"1\"}}\n{\"field\":\"value\"}\n");
+        data.append("{\"create\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"1\"}}\n{\"field\":\"value\"}\n");
+        data.append("{\"index\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"2\"}}\n{\"field\":\"value\"}");
+
+        TestListener listener = new TestListener();
+        StreamingBulkProcessor processor = StreamingBulkProcessor.builder(client(), listener).build();
+        addInRandomChunks(processor, data.toString());
+        processor.close();
+
+        StreamingBulkProcessor.Summary summary = listener.await();
+        assertThat(summary.getFailure(), nullValue());
+        assertThat(summary.hasFailures(), equalTo(true));
+        assertThat(summary.getItems(), equalTo(3l));
+        assertThat(summary.getFailedItems(), equalTo(1l));
+        assertThat(summary.getFailures().size(), equalTo(1));
+        assertThat(summary.getFailures().get(0).getId(), equalTo("1"));
+        assertThat(summary.getFailures().get(0).getStatus(), equalTo(RestStatus.CONFLICT));
+    }
+
+    @Test
+    public void testIncompleteTrailingActionFails() throws Exception {
+        createIndex("test");
+        String data = "{\"index\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"1\"}}\n{\"field\":\"value\"}\n"
+                + "{\"index\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"2\"}}\n";
+
+        TestListener listener = new TestListener();
+        StreamingBulkProcessor processor = StreamingBulkProcessor.builder(client(), listener).build();
+        addInRandomChunks(processor, data);
+        processor.close();
+
+        StreamingBulkProcessor.Summary summary = listener.await();
+        assertThat(summary.getFailure(), notNullValue());
+        assertThat(summary.status(), equalTo(RestStatus.BAD_REQUEST));
+        assertThat(listener.pauses.get(), equalTo(listener.resumes.get()));
+    }
+
+    @Test
+    public void testExplicitIndexNotAllowed() throws Exception {
+        String data = "{\"index\":{\"_index\":\"test\",\"_type\":\"type\",\"_id\":\"1\"}}\n{\"field\":\"value\"}\n";
+
+        TestListener listener = new TestListener();
+        StreamingBulkProcessor processor = StreamingBulkProcessor.builder(client(), listener).setAllowExplicitIndex(false).build();
+        processor.add(new BytesArray(data));
+        processor.close();
+
+        StreamingBulkProcessor.Summary summary = listener.await();
+        assertThat(summary.getFailure(), notNullValue());
+        assertThat(summary.getItems(), equalTo(0l));
+    }
+
+    private void addInRandomChunks(StreamingBulkProcessor processor, String data) {
+        BytesReference bytes = new BytesArray(data.getBytes(StandardCharsets.UTF_8));
+        int offset = 0;
+        while (offset < bytes.length()) {
+            int length = Math.min(bytes.length() - offset, randomIntBetween(1, 256));
+            processor.add(bytes.slice(offset, length));
+            offset += length;
+        }
+    }
+
+    static class TestListener implements StreamingBulkProcessor.Listener {
+
+        final AtomicInteger pauses = new AtomicInteger();
+        final AtomicInteger resumes = new AtomicInteger();
+        final AtomicReference<StreamingBulkProcessor.Summary> summary = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void pause() {
+            pauses.incrementAndGet();
+        }
+
+        @Override
+        public void resume() {
+            resumes.incrementAndGet();
+        }
+
+        @Override
+        public void onCompletion(StreamingBulkProcessor.Summary summary) {
+            assertThat(this.summary.getAndSet(summary), nullValue());
+            latch.countDown();
+        }
+
+        StreamingBulkProcessor.Summary await() throws InterruptedException {
+            assertThat(latch.await(1, TimeUnit.MINUTES), equalTo(true));
+            return summary.get();
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.elasticsearch.cluster.serialization;
 
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.IncompatibleClusterStateVersionException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
@@ -31,6 +32,8 @@ import org.elasticsearch.test.ElasticsearchAllocationTestCase;
 import org.junit.Test;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  *
@@ -85,4 +88,54 @@ public class ClusterSerializationTests extends ElasticsearchAllocationTestCase {
         assertThat(target.prettyPrint(), equalTo(source.prettyPrint()));
     }
 
+    @Test
+    public void testClusterStateDiffSerialization() throws Exception {
+        MetaData metaData = MetaData.builder()
+                .put(IndexMetaData.builder("test1").numberOfShards(10).numberOfReplicas(1))
+                .put(IndexMetaData.builder("test2").numberOfShards(2).numberOfReplicas(0))
+                .build();
+
+        RoutingTable routingTable = RoutingTable.builder()
+                .addAsNew(metaData.index("test1"))
+                .addAsNew(metaData.index("test2"))
+                .build();
+
+        DiscoveryNodes nodes = DiscoveryNodes.builder().put(newNode("node1")).put(newNode("node2")).put(newNode("node3")).localNodeId("node1").masterNodeId("node2").build();
+
+        ClusterState previousState = ClusterState.builder(org.elasticsearch.cluster.ClusterName.DEFAULT).nodes(nodes).metaData(metaData).routingTable(routingTable).build();
+        ClusterState receivedPreviousState = ClusterState.Builder.fromBytes(ClusterState.Builder.toBytes(previousState), newNode("node1"));
+        assertThat(receivedPreviousState.uuid(), equalTo(previousState.uuid()));
+
+        AllocationService strategy = createAllocationService();
+        MetaData newMetaData = MetaData.builder(metaData)
+                .remove("test2")
+                .put(IndexMetaData.builder("test3").numberOfShards(1).numberOfReplicas(0))
+                .build();
+        ClusterState newState = ClusterState.builder(previousState).version(previousState.version() + 1).metaData(newMetaData)
+                .routingTable(RoutingTable.builder(previousState.routingTable()).remove("test2").addAsNew(newMetaData.index("test3")))
+                .build();
+        newState = ClusterState.builder(newState).routingTable(strategy.reroute(newState).routingTable()).build();
+        assertThat(newState.uuid(), not(equalTo(previousState.uuid())));
+
+        BytesStreamOutput outStream = new BytesStreamOutput();
+        ClusterState.Builder.writeDiffTo(previousState, newState, outStream);
+        ClusterState diffedState = ClusterState.Builder.readDiffFrom(new BytesStreamInput(outStream.bytes().toBytes(), false), receivedPreviousState, newNode("node1"));
+
+        assertThat(diffedState.version(), equalTo(newState.version()));
+        assertThat(diffedState.uuid(), equalTo(newState.uuid()));
+        assertThat(diffedState.metaData().hasIndex("test2"), equalTo(false));
+        assertThat(diffedState.metaData().index("test3").numberOfShards(), equalTo(1));
+        // unchanged parts are reused from the previous state
+        assertThat(diffedState.metaData().index("test1"), sameInstance(receivedPreviousState.metaData().index("test1")));
+        assertThat(diffedState.nodes(), sameInstance(receivedPreviousState.nodes()));
+        assertThat(diffedState.routingTable().prettyPrint(), equalTo(newState.routingTable().prettyPrint()));
+
+        try {
+            ClusterState.Builder.readDiffFrom(new BytesStreamInput(outStream.bytes().toBytes(), false), diffedState, newNode("node1"));
+            fail("diff should not apply on top of a different state");
+        } catch (IncompatibleClusterStateVersionException e) {
+            // expected
+        }
+    }
+
 }
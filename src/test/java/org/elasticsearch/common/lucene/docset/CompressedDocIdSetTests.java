@@ -0,0 +1,155 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.lucene.docset;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class CompressedDocIdSetTests extends ElasticsearchTestCase {
+
+    private FixedBitSet randomSet(int maxDoc) {
+        FixedBitSet set = new FixedBitSet(maxDoc);
+        int blockSize = 1 << 16;
+        for (int blockStart = 0; blockStart < maxDoc; blockStart += blockSize) {
+            int blockEnd = Math.min(maxDoc, blockStart + blockSize);
+            // mix sparse, dense, full, empty and in between blocks
+            switch (randomInt(4)) {
+                case 0:
+                    for (int i = randomInt(100); i > 0; i--) {
+                        set.set(randomIntBetween(blockStart, blockEnd - 1));
+                    }
+                    break;
+                case 1:
+                    set.set(blockStart, blockEnd);
+                    for (int i = randomInt(100); i > 0; i--) {
+                        set.clear(randomIntBetween(blockStart, blockEnd - 1));
+                    }
+                    break;
+                case 2:
+                    set.set(blockStart, blockEnd);
+                    break;
+                case 3:
+                    break;
+                default:
+                    for (int doc = blockStart; doc < blockEnd; doc++) {
+                        if (randomBoolean()) {
+                            set.set(doc);
+                        }
+                    }
+            }
+        }
+        return set;
+    }
+
+    @Test
+    public void testIteration() throws Exception {
+        int maxDoc = randomIntBetween(1, 300000);
+        FixedBitSet expected = randomSet(maxDoc);
+        CompressedDocIdSet set = CompressedDocIdSet.build(expected.iterator(), maxDoc);
+        assertThat(set.cardinality(), equalTo(expected.cardinality()));
+
+        DocIdSetIterator expectedIt = expected.iterator();
+        DocIdSetIterator it = set.iterator();
+        for (int doc = expectedIt.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = expectedIt.nextDoc()) {
+            assertThat(it.nextDoc(), equalTo(doc));
+        }
+        assertThat(it.nextDoc(), equalTo(DocIdSetIterator.NO_MORE_DOCS));
+    }
+
+    @Test
+    public void testAdvance() throws Exception {
+        int maxDoc = randomIntBetween(1, 300000);
+        FixedBitSet expected = randomSet(maxDoc);
+        CompressedDocIdSet set = CompressedDocIdSet.build(expected.iterator(), maxDoc);
+
+        DocIdSetIterator expectedIt = expected.iterator();
+        DocIdSetIterator it = set.iterator();
+        int doc = -1;
+        while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+            int target = doc + 1 + randomInt(randomBoolean() ? 10 : 100000);
+            if (target >= maxDoc) {
+                target = maxDoc - 1;
+                if (target <= doc) {
+                    break;
+                }
+            }
+            doc = expectedIt.advance(target);
+            assertThat(it.advance(target), equalTo(doc));
+            if (randomBoolean() && doc != DocIdSetIterator.NO_MORE_DOCS) {
+                doc = expectedIt.nextDoc();
+                assertThat(it.nextDoc(), equalTo(doc));
+            }
+        }
+    }
+
+    @Test
+    public void testBits() throws Exception {
+        int maxDoc = randomIntBetween(1, 300000);
+        FixedBitSet expected = randomSet(maxDoc);
+        CompressedDocIdSet set = CompressedDocIdSet.build(expected.iterator(), maxDoc);
+        Bits bits = set.bits();
+        assertThat(bits.length(), equalTo(maxDoc));
+        for (int doc = 0; doc < maxDoc; doc++) {
+            assertThat(bits.get(doc), equalTo(expected.get(doc)));
+        }
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        int maxDoc = 1 << 20;
+        FixedBitSet full = new FixedBitSet(maxDoc);
+        full.set(0, maxDoc);
+        // a full segment takes no space at all
+        assertThat(CompressedDocIdSet.build(full.iterator(), maxDoc).offHeapBytesUsed(), equalTo(0L));
+
+        FixedBitSet sparse = new FixedBitSet(maxDoc);
+        for (int i = 0; i < 10; i++) {
+            sparse.set(i * 1000);
+        }
+        // 2 bytes per document
+        assertThat(CompressedDocIdSet.build(sparse.iterator(), maxDoc).offHeapBytesUsed(), equalTo(20L));
+    }
+
+    @Test
+    public void testRefCounting() throws Exception {
+        int maxDoc = randomIntBetween(1, 300000);
+        FixedBitSet expected = randomSet(maxDoc);
+        CompressedDocIdSet set = CompressedDocIdSet.build(expected.iterator(), maxDoc);
+        assertThat(set.refCount(), equalTo(1));
+        int numRefs = randomIntBetween(1, 5);
+        for (int i = 0; i < numRefs; i++) {
+            assertThat(set.tryIncRef(), equalTo(true));
+        }
+        for (int i = 0; i < numRefs; i++) {
+            set.decRef();
+            // still readable
+            assertThat(set.cardinality(), equalTo(expected.cardinality()));
+        }
+        assertThat(set.refCount(), equalTo(1));
+        set.decRef();
+        assertThat(set.refCount(), equalTo(0));
+        assertThat(set.tryIncRef(), equalTo(false));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http;
+
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.RestContentStream;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+
+public class HttpContentStreamTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testBufferedChunksAreReplayedInOrder() {
+        TestContentStream stream = new TestContentStream(1024);
+        stream.onChunk(new BytesArray("a"));
+        stream.onChunk(new BytesArray("b"));
+        RecordingConsumer consumer = new RecordingConsumer();
+        stream.consume(consumer);
+        stream.onChunk(new BytesArray("c"));
+        assertThat(consumer.chunks, contains("a", "b", "c"));
+        assertThat(consumer.ended, equalTo(false));
+        stream.onEnd();
+        assertThat(consumer.ended, equalTo(true));
+        assertThat(stream.readable, empty());
+    }
+
+    @Test
+    public void testEndBeforeConsume() {
+        TestContentStream stream = new TestContentStream(1024);
+        stream.onChunk(new BytesArray("a"));
+        stream.onEnd();
+        RecordingConsumer consumer = new RecordingConsumer();
+        stream.consume(consumer);
+        assertThat(consumer.chunks, contains("a"));
+        assertThat(consumer.ended, equalTo(true));
+    }
+
+    @Test
+    public void testReadingPausedWhenBufferIsFull() {
+        TestContentStream stream = new TestContentStream(4);
+        stream.onChunk(new BytesArray("ab"));
+        assertThat(stream.readable, empty());
+        stream.onChunk(new BytesArray("cd"));
+        assertThat(stream.readable, contains(false));
+        stream.onChunk(new BytesArray("ef"));
+        assertThat(stream.readable, contains(false));
+        RecordingConsumer consumer = new RecordingConsumer();
+        stream.consume(consumer);
+        assertThat(consumer.chunks, contains("ab", "cd", "ef"));
+        assertThat(stream.readable, contains(false, true));
+    }
+
+    @Test
+    public void testPausesNest() {
+        TestContentStream stream = new TestContentStream(4);
+        stream.onChunk(new BytesArray("abcd"));
+        stream.pause();
+        stream.consume(new RecordingConsumer());
+        // still paused by the consumer
+        assertThat(stream.readable, contains(false));
+        stream.pause();
+        stream.resume();
+        assertThat(stream.readable, contains(false));
+        stream.resume();
+        assertThat(stream.readable, contains(false, true));
+        // unbalanced resumes are ignored
+        stream.resume();
+        assertThat(stream.readable, contains(false, true));
+    }
+
+    @Test
+    public void testDiscard() {
+        TestContentStream stream = new TestContentStream(1024);
+        RecordingConsumer consumer = new RecordingConsumer();
+        stream.consume(consumer);
+        stream.onChunk(new BytesArray("a"));
+        stream.pause();
+        stream.pause();
+        stream.discard();
+        assertThat(stream.readable, contains(false, true));
+        stream.onChunk(new BytesArray("b"));
+        stream.onEnd();
+        assertThat(consumer.chunks, contains("a"));
+        assertThat(consumer.ended, equalTo(false));
+        // reading is not paused anymore once the stream is discarded
+        stream.pause();
+        assertThat(stream.readable, contains(false, true));
+    }
+
+    @Test
+    public void testDiscardBeforeConsume() {
+        TestContentStream stream = new TestContentStream(1);
+        stream.onChunk(new BytesArray("a"));
+        stream.discard();
+        assertThat(stream.readable, contains(false, true));
+        RecordingConsumer consumer = new RecordingConsumer();
+        stream.consume(consumer);
+        stream.onEnd();
+        assertThat(consumer.chunks, empty());
+        assertThat(consumer.ended, equalTo(false));
+    }
+
+    @Test(expected = ElasticsearchIllegalStateException.class)
+    public void testConsumeTwice() {
+        TestContentStream stream = new TestContentStream(1024);
+        stream.consume(new RecordingConsumer());
+        stream.consume(new RecordingConsumer());
+    }
+
+    static class TestContentStream extends HttpContentStream {
+
+        final List<Boolean> readable = new ArrayList<>();
+
+        TestContentStream(long maxBufferedBytes) {
+            super(maxBufferedBytes);
+        }
+
+        @Override
+        protected void setReadable(boolean readable) {
+            this.readable.add(readable);
+        }
+    }
+
+    static class RecordingConsumer implements RestContentStream.Consumer {
+
+        final List<String> chunks = new ArrayList<>();
+        boolean ended;
+
+        @Override
+        public void onChunk(BytesReference chunk) {
+            chunks.add(chunk.toUtf8());
+        }
+
+        @Override
+        public void onEnd() {
+            ended = true;
+        }
+    }
+}
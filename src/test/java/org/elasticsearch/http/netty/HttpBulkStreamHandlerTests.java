@@ -0,0 +1,45 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class HttpBulkStreamHandlerTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testBulkStreamPath() {
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/_bulk/stream"), equalTo(true));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/_bulk/stream?refresh=true"), equalTo(true));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/index/_bulk/stream"), equalTo(true));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/index/type/_bulk/stream?routing=1&batch_size=1mb"), equalTo(true));
+
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/_bulk"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/index/_bulk"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/_bulk/stream/"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/index/type/id/_bulk/stream"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("//_bulk/stream"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/index//_bulk/stream"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("/_search?q=_bulk/stream"), equalTo(false));
+        assertThat(HttpBulkStreamHandler.isBulkStreamPath("_bulk/stream"), equalTo(false));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.http.HttpServerTransport;
+import org.elasticsearch.rest.*;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.elasticsearch.test.ElasticsearchIntegrationTest.ClusterScope;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.elasticsearch.test.ElasticsearchIntegrationTest.Scope;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Sends bulk streams over HTTP, with the body either streamed or buffered by the transport.
+ */
+@ClusterScope(scope = Scope.SUITE, numDataNodes = 1)
+public class NettyHttpBulkStreamTests extends ElasticsearchIntegrationTest {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return ImmutableSettings.settingsBuilder()
+                .put(super.nodeSettings(nodeOrdinal))
+                .put("force.http.enabled", true)
+                .put("http.bulk_stream.enabled", randomBoolean())
+                .build();
+    }
+
+    @Test
+    public void testChunkedBulkStream() throws Exception {
+        createIndex("test");
+        CountingFilter filter = new CountingFilter();
+        internalCluster().getDataNodeInstance(RestController.class).registerFilter(filter);
+
+        int numDocs = randomIntBetween(1, 2000);
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < numDocs; i++) {
+            data.append("{\"index\":{\"_id\":\"").append(i).append("\"}}\n");
+            data.append("{\"field\":\"value ").append(i).append("\"}\n");
+        }
+
+        try (CloseableHttpClient httpClient = HttpClients.createDefault();
+             CloseableHttpResponse response = httpClient.execute(post("/test/type/_bulk/stream?batch_size=" + randomIntBetween(100, 10000), data.toString(), false))) {
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(RestStatus.OK.getStatus()));
+            Map<String, Object> summary = XContentHelper.convertToMap(EntityUtils.toByteArray(response.getEntity()), false).v2();
+            assertThat(summary.get("errors"), equalTo((Object) false));
+            assertThat(((Number) summary.get("items")).intValue(), equalTo(numDocs));
+        }
+        assertThat(filter.bulkStreamRequests.get(), equalTo(1));
+
+        refresh();
+        assertHitCount(client().prepareCount("test").get(), numDocs);
+    }
+
+    @Test
+    public void testRestFiltersCanRejectBulkStream() throws Exception {
+        createIndex("test");
+        internalCluster().getDataNodeInstance(RestController.class).registerFilter(new RejectingFilter());
+
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            data.append("{\"index\":{\"_id\":\"").append(i).append("\"}}\n{\"field\":\"value\"}\n");
+        }
+
+        try (CloseableHttpClient httpClient = HttpClients.createDefault();
+             CloseableHttpResponse response = httpClient.execute(post("/test/type/_bulk/stream", data.toString(), true))) {
+            assertThat(response.getStatusLine().getStatusCode(), equalTo(RestStatus.FORBIDDEN.getStatus()));
+            EntityUtils.consume(response.getEntity());
+        }
+
+        refresh();
+        assertHitCount(client().prepareCount("test").get(), 0);
+    }
+
+    private HttpPost post(String path, String body, boolean reject) {
+        InetSocketTransportAddress address = (InetSocketTransportAddress) internalCluster().getDataNodeInstance(HttpServerTransport.class).boundAddress().publishAddress();
+        HttpPost post = new HttpPost("http://" + address.address().getHostName() + ":" + address.address().getPort() + path);
+        if (reject) {
+            post.addHeader("X-Reject", "true");
+        }
+        // an unknown length makes the client use chunked transfer encoding
+        post.setEntity(new InputStreamEntity(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), -1));
+        return post;
+    }
+
+    static class CountingFilter extends RestFilter {
+
+        final AtomicInteger bulkStreamRequests = new AtomicInteger();
+
+        @Override
+        public void process(RestRequest request, RestChannel channel, RestFilterChain filterChain) throws Exception {
+            if (request.path().endsWith("/_bulk/stream")) {
+                bulkStreamRequests.incrementAndGet();
+            }
+            filterChain.continueProcessing(request, channel);
+        }
+    }
+
+    static class RejectingFilter extends RestFilter {
+
+        @Override
+        public void process(RestRequest request, RestChannel channel, RestFilterChain filterChain) throws Exception {
+            if (request.header("X-Reject") != null) {
+                channel.sendResponse(new BytesRestResponse(RestStatus.FORBIDDEN, "rejected"));
+                return;
+            }
+            filterChain.continueProcessing(request, channel);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.cache.filter.support;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermFilter;
+import org.apache.lucene.queries.TermsFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class UsageTrackingFilterCachingPolicyTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testFromSettings() {
+        assertThat(UsageTrackingFilterCachingPolicy.fromSettings(ImmutableSettings.EMPTY), nullValue());
+        assertThat(UsageTrackingFilterCachingPolicy.fromSettings(ImmutableSettings.builder()
+                .put(UsageTrackingFilterCachingPolicy.INDEX_CACHE_FILTER_POLICY, "always").build()), nullValue());
+        assertThat(UsageTrackingFilterCachingPolicy.fromSettings(ImmutableSettings.builder()
+                .put(UsageTrackingFilterCachingPolicy.INDEX_CACHE_FILTER_POLICY, "usage_tracking").build()), notNullValue());
+        try {
+            UsageTrackingFilterCachingPolicy.fromSettings(ImmutableSettings.builder()
+                    .put(UsageTrackingFilterCachingPolicy.INDEX_CACHE_FILTER_POLICY, "never").build());
+            fail("expected an unknown policy to be rejected");
+        } catch (ElasticsearchIllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUsageTracking() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES));
+        for (int i = 0; i < 2; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", "value" + i, Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+        }
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        List<AtomicReaderContext> leaves = reader.leaves();
+        assertThat(leaves.size(), equalTo(2));
+
+        UsageTrackingFilterCachingPolicy policy = new UsageTrackingFilterCachingPolicy(4, 3, 2);
+        Filter filter = new TermFilter(new Term("field", "value0"));
+        Filter costlyFilter = new TermsFilter(new Term("field", "value0"), new Term("field", "value1"));
+
+        ShardId shardId = randomBoolean() ? null : new ShardId("index", 0);
+
+        // only the first segment counts as a use
+        for (AtomicReaderContext leaf : leaves) {
+            policy.onUse(shardId, filter, leaf);
+        }
+        assertThat(policy.frequency(shardId, filter), equalTo(1));
+        policy.onUse(shardId, filter, leaves.get(0));
+        assertThat(policy.shouldCache(shardId, filter, filter), equalTo(false));
+        policy.onUse(shardId, filter, leaves.get(0));
+        assertThat(policy.shouldCache(shardId, filter, filter), equalTo(true));
+
+        policy.onUse(shardId, costlyFilter, leaves.get(0));
+        assertThat(policy.shouldCache(shardId, costlyFilter, costlyFilter), equalTo(false));
+        // the oldest use of the first filter leaves the history
+        policy.onUse(shardId, costlyFilter, leaves.get(0));
+        assertThat(policy.shouldCache(shardId, costlyFilter, costlyFilter), equalTo(true));
+        assertThat(policy.frequency(shardId, filter), equalTo(2));
+        assertThat(policy.shouldCache(shardId, filter, filter), equalTo(false));
+
+        reader.close();
+        writer.close();
+        dir.close();
+    }
+
+    @Test
+    public void testHistoryIsPerShard() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, new KeywordAnalyzer()));
+        writer.addDocument(new Document());
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+        AtomicReaderContext leaf = reader.leaves().get(0);
+
+        UsageTrackingFilterCachingPolicy policy = new UsageTrackingFilterCachingPolicy(16, 3, 2);
+        Filter filter = new TermFilter(new Term("field", "value"));
+        int numShards = randomIntBetween(3, 5);
+
+        // a single request hitting all the local shards of the index is one use per shard
+        for (int shard = 0; shard < numShards; shard++) {
+            policy.onUse(new ShardId("index", shard), filter, leaf);
+        }
+        for (int shard = 0; shard < numShards; shard++) {
+            assertThat(policy.frequency(new ShardId("index", shard), filter), equalTo(1));
+            assertThat(policy.shouldCache(new ShardId("index", shard), filter, filter), equalTo(false));
+        }
+        assertThat(policy.frequency(null, filter), equalTo(0));
+        assertThat(policy.frequency(new ShardId("index", numShards), filter), equalTo(0));
+
+        for (int i = 0; i < 2; i++) {
+            policy.onUse(new ShardId("index", 0), filter, leaf);
+        }
+        assertThat(policy.shouldCache(new ShardId("index", 0), filter, filter), equalTo(true));
+        assertThat(policy.shouldCache(new ShardId("index", 1), filter, filter), equalTo(false));
+
+        reader.close();
+        writer.close();
+        dir.close();
+    }
+}
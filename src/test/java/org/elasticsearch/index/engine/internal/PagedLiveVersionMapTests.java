@@ -0,0 +1,142 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine.internal;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.test.cache.recycler.MockBigArrays;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+
+public class PagedLiveVersionMapTests extends ElasticsearchTestCase {
+
+    // mock arrays make the test fail if the map does not release all its pages once cleared
+    private static BigArrays bigArrays() {
+        return new MockBigArrays(ImmutableSettings.EMPTY, null, new NoneCircuitBreakerService());
+    }
+
+    @Test
+    public void testPutAndGet() {
+        PagedLiveVersionMap map = new PagedLiveVersionMap(bigArrays());
+        Map<BytesRef, Long> expected = new HashMap<>();
+        int numOps = scaledRandomIntBetween(10, 5000);
+        for (int i = 0; i < numOps; i++) {
+            BytesRef uid = new BytesRef(Integer.toString(randomInt(numOps / 2)));
+            long version = randomIntBetween(1, 10000);
+            map.putUnderLock(uid, new VersionValue(version, new Translog.Location(1, i, 10)));
+            expected.put(uid, version);
+        }
+        for (Map.Entry<BytesRef, Long> entry : expected.entrySet()) {
+            VersionValue value = map.getUnderLock(entry.getKey());
+            assertThat(value, notNullValue());
+            assertThat(value.version(), equalTo(entry.getValue()));
+            assertThat(value.delete(), equalTo(false));
+            assertThat(value.translogLocation().translogId, equalTo(1l));
+        }
+        assertThat(map.getUnderLock(new BytesRef("missing")), nullValue());
+        map.clear();
+    }
+
+    @Test
+    public void testRefreshDropsOldGeneration() throws Exception {
+        PagedLiveVersionMap map = new PagedLiveVersionMap(bigArrays());
+        long emptyBytes = map.ramBytesUsedForRefresh();
+        BytesRef uid = new BytesRef("1");
+        map.putUnderLock(uid, new VersionValue(1, new Translog.Location(1, 0, 10)));
+        for (int i = 0; i < 1000; i++) {
+            map.putUnderLock(new BytesRef("doc_" + i), new VersionValue(1, new Translog.Location(1, i, 10)));
+        }
+        assertThat(map.ramBytesUsedForRefresh(), greaterThan(emptyBytes));
+
+        map.beforeRefresh();
+        // writes during the refresh go to the new generation, but the old one is still visible
+        assertThat(map.ramBytesUsedForRefresh(), equalTo(emptyBytes));
+        assertThat(map.getUnderLock(uid).version(), equalTo(1l));
+        map.putUnderLock(uid, new VersionValue(2, new Translog.Location(1, 10, 10)));
+        assertThat(map.getUnderLock(uid).version(), equalTo(2l));
+
+        map.afterRefresh(true);
+        assertThat(map.getUnderLock(uid).version(), equalTo(2l));
+        assertThat(map.getUnderLock(new BytesRef("doc_0")), nullValue());
+
+        map.beforeRefresh();
+        map.afterRefresh(true);
+        assertThat(map.getUnderLock(uid), nullValue());
+        map.clear();
+    }
+
+    @Test
+    public void testTombstones() throws Exception {
+        PagedLiveVersionMap map = new PagedLiveVersionMap(bigArrays());
+        BytesRef uid = new BytesRef("1");
+        map.putUnderLock(uid, new DeleteVersionValue(3, 42, new Translog.Location(1, 0, 10)));
+        VersionValue value = map.getUnderLock(uid);
+        assertThat(value.delete(), equalTo(true));
+        assertThat(value.time(), equalTo(42l));
+        assertThat(map.getTombstoneUnderLock(uid).version(), equalTo(3l));
+
+        // deletes survive refreshes as tombstones
+        map.beforeRefresh();
+        map.afterRefresh(true);
+        map.beforeRefresh();
+        map.afterRefresh(true);
+        assertThat(map.getUnderLock(uid).version(), equalTo(3l));
+
+        map.removeTombstoneUnderLock(uid);
+        assertThat(map.getUnderLock(uid), nullValue());
+        assertThat(map.ramBytesUsed(), equalTo(map.ramBytesUsedForRefresh()));
+
+        // an add removes the tombstone
+        map.putUnderLock(uid, new DeleteVersionValue(4, 42, new Translog.Location(1, 0, 10)));
+        map.putUnderLock(uid, new VersionValue(5, new Translog.Location(1, 10, 10)));
+        assertThat(map.getTombstoneUnderLock(uid), nullValue());
+        assertThat(map.getUnderLock(uid).version(), equalTo(5l));
+        map.clear();
+    }
+
+    @Test
+    public void testClearReleasesAllPages() throws Exception {
+        PagedLiveVersionMap map = new PagedLiveVersionMap(bigArrays());
+        for (int i = 0; i < 100; i++) {
+            map.putUnderLock(new BytesRef("doc_" + i), new VersionValue(1, new Translog.Location(1, i, 10)));
+        }
+        if (randomBoolean()) {
+            // a refresh that never finished
+            map.beforeRefresh();
+            map.putUnderLock(new BytesRef("doc_0"), new VersionValue(2, new Translog.Location(1, 100, 10)));
+        }
+        map.clear();
+        MockBigArrays.ensureAllArraysAreReleased();
+
+        // the map stays usable but does not hold pages anymore
+        assertThat(map.getUnderLock(new BytesRef("doc_0")), nullValue());
+        map.putUnderLock(new BytesRef("doc_0"), new VersionValue(3, new Translog.Location(1, 101, 10)));
+        assertThat(map.ramBytesUsedForRefresh(), equalTo(0l));
+        map.clear();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.elasticsearch.index.fielddata.AbstractRandomAccessOrds;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IncrementalOrdinalMapTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testIncrementalMatchesFullBuild() throws IOException {
+        List<Object> keys = new ArrayList<>();
+        List<RandomAccessOrds> subs = new ArrayList<>();
+        final int numInitialSegments = between(1, 5);
+        for (int i = 0; i < numInitialSegments; i++) {
+            keys.add(new Object());
+            subs.add(randomSegment(between(10, 200)));
+        }
+        IncrementalOrdinalMap map = IncrementalOrdinalMap.build(keys.toArray(), subs.toArray(new RandomAccessOrds[subs.size()]));
+        assertMatchesFullBuild(map, keys, subs);
+
+        final int numGenerations = between(1, IncrementalOrdinalMap.MAX_GENERATIONS - 1);
+        for (int generation = 1; generation <= numGenerations; generation++) {
+            final int numNewSegments = between(0, 3);
+            for (int i = 0; i < numNewSegments; i++) {
+                final int index = randomInt(keys.size());
+                keys.add(index, new Object());
+                subs.add(index, randomSegment(between(0, 50)));
+            }
+            map = IncrementalOrdinalMap.update(map, keys.toArray(), subs.toArray(new RandomAccessOrds[subs.size()]));
+            assertThat(map, notNullValue());
+            assertThat(map.getGeneration(), equalTo(generation));
+            assertMatchesFullBuild(map, keys, subs);
+        }
+    }
+
+    @Test
+    public void testRemovedSegmentsRequireFullBuild() throws IOException {
+        Object[] keys = new Object[] {new Object(), new Object()};
+        RandomAccessOrds[] subs = new RandomAccessOrds[] {randomSegment(20), randomSegment(20)};
+        IncrementalOrdinalMap map = IncrementalOrdinalMap.build(keys, subs);
+        assertThat(IncrementalOrdinalMap.update(map, new Object[] {keys[0], new Object()}, new RandomAccessOrds[] {subs[0], randomSegment(10)}), nullValue());
+    }
+
+    private void assertMatchesFullBuild(IncrementalOrdinalMap map, List<Object> keys, List<RandomAccessOrds> subs) throws IOException {
+        final RandomAccessOrds[] subsArray = subs.toArray(new RandomAccessOrds[subs.size()]);
+        final IncrementalOrdinalMap expected = IncrementalOrdinalMap.build(keys.toArray(), subsArray);
+        assertThat(map.getValueCount(), equalTo(expected.getValueCount()));
+        for (int segment = 0; segment < subsArray.length; segment++) {
+            final LongValues globalOrds = map.getGlobalOrds(segment);
+            final LongValues expectedGlobalOrds = expected.getGlobalOrds(segment);
+            for (long ord = 0; ord < subsArray[segment].getValueCount(); ord++) {
+                assertThat(globalOrds.get(ord), equalTo(expectedGlobalOrds.get(ord)));
+            }
+        }
+        for (long globalOrd = 0; globalOrd < map.getValueCount(); globalOrd++) {
+            final BytesRef term = subsArray[map.getFirstSegmentNumber(globalOrd)].lookupOrd(map.getFirstSegmentOrd(globalOrd));
+            final BytesRef expectedTerm = subsArray[expected.getFirstSegmentNumber(globalOrd)].lookupOrd(expected.getFirstSegmentOrd(globalOrd));
+            assertThat(term, equalTo(expectedTerm));
+        }
+    }
+
+    private RandomAccessOrds randomSegment(int maxTerms) {
+        final TreeSet<BytesRef> terms = new TreeSet<>();
+        final int numTerms = randomInt(maxTerms);
+        for (int i = 0; i < numTerms; i++) {
+            terms.add(new BytesRef(randomAsciiOfLength(between(1, 3))));
+        }
+        return new SortedTerms(terms.toArray(new BytesRef[terms.size()]));
+    }
+
+    // only exposes the terms of a segment, documents are not needed to build ordinal maps
+    private static class SortedTerms extends AbstractRandomAccessOrds {
+
+        private final BytesRef[] terms;
+
+        SortedTerms(BytesRef[] terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        protected void doSetDocument(int docID) {
+        }
+
+        @Override
+        public long ordAt(int index) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int cardinality() {
+            return 0;
+        }
+
+        @Override
+        public BytesRef lookupOrd(long ord) {
+            return terms[(int) ord];
+        }
+
+        @Override
+        public long getValueCount() {
+            return terms.length;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.percolator;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+
+public class QueryTermsIndexTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testExtractTermQuery() {
+        Set<Term> terms = QueryTermsIndex.extractQueryTerms(new TermQuery(new Term("field", "value")));
+        assertThat(terms, contains(new Term("field", "value")));
+    }
+
+    @Test
+    public void testExtractPhraseQuery() {
+        PhraseQuery query = new PhraseQuery();
+        query.add(new Term("field", "quick"));
+        query.add(new Term("field", "brown"));
+        query.add(new Term("field", "fox"));
+        Set<Term> terms = QueryTermsIndex.extractQueryTerms(query);
+        assertThat(terms, hasSize(1));
+        assertThat(terms.iterator().next().bytes().length, equalTo(5));
+    }
+
+    @Test
+    public void testExtractBooleanQuery() {
+        BooleanQuery should = new BooleanQuery();
+        should.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.SHOULD);
+        should.add(new TermQuery(new Term("field", "b")), BooleanClause.Occur.SHOULD);
+        should.add(new TermQuery(new Term("field", "c")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsIndex.extractQueryTerms(should), containsInAnyOrder(new Term("field", "a"), new Term("field", "b")));
+
+        BooleanQuery must = new BooleanQuery();
+        must.add(new TermQuery(new Term("field", "short")), BooleanClause.Occur.MUST);
+        must.add(new TermQuery(new Term("field", "much_longer")), BooleanClause.Occur.MUST);
+        must.add(new PrefixQuery(new Term("field", "pre")), BooleanClause.Occur.MUST);
+        must.add(new TermQuery(new Term("field", "optional")), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractQueryTerms(must), contains(new Term("field", "much_longer")));
+
+        BooleanQuery unsupported = new BooleanQuery();
+        unsupported.add(new TermQuery(new Term("field", "a")), BooleanClause.Occur.SHOULD);
+        unsupported.add(new PrefixQuery(new Term("field", "pre")), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractQueryTerms(unsupported), nullValue());
+    }
+
+    @Test
+    public void testExtractUnsupportedQuery() {
+        assertThat(QueryTermsIndex.extractQueryTerms(new MatchAllDocsQuery()), nullValue());
+        assertThat(QueryTermsIndex.extractQueryTerms(NumericRangeQuery.newLongRange("field", 1L, 10L, true, true)), nullValue());
+        assertThat(QueryTermsIndex.extractQueryTerms(new BooleanQuery()), nullValue());
+    }
+
+    @Test
+    public void testCandidates() throws Exception {
+        QueryTermsIndex index = new QueryTermsIndex();
+        index.add(new BytesRef("1"), new TermQuery(new Term("field", "fox")));
+        index.add(new BytesRef("2"), new TermQuery(new Term("field", "dog")));
+        index.add(new BytesRef("3"), new TermQuery(new Term("other_field", "fox")));
+        index.add(new BytesRef("4"), new PrefixQuery(new Term("field", "d")));
+        index.add(new BytesRef("5"), new TermQuery(new Term("field", "brown")));
+
+        MemoryIndex memoryIndex = new MemoryIndex();
+        memoryIndex.addField("field", "the quick brown fox", new WhitespaceAnalyzer(Lucene.VERSION));
+        IndexSearcher searcher = memoryIndex.createSearcher();
+
+        assertThat(index.candidates(searcher.getIndexReader()),
+                containsInAnyOrder(new BytesRef("1"), new BytesRef("4"), new BytesRef("5")));
+        assertThat(index.unindexedQueriesCount(), equalTo(1));
+
+        // updated and removed queries are not candidates anymore
+        index.add(new BytesRef("1"), new TermQuery(new Term("field", "cat")));
+        index.remove(new BytesRef("5"));
+        index.remove(new BytesRef("4"));
+        assertThat(index.candidates(searcher.getIndexReader()).isEmpty(), equalTo(true));
+        assertThat(index.unindexedQueriesCount(), equalTo(0));
+
+        index.clear();
+        index.add(new BytesRef("2"), new TermQuery(new Term("field", "fox")));
+        assertThat(index.candidates(searcher.getIndexReader()), contains(new BytesRef("2")));
+    }
+}
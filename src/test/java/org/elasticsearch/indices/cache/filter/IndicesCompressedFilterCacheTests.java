@@ -0,0 +1,114 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.cache.filter;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.lucene.docset.CompressedDocIdSet;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.cache.filter.compressed.CompressedFilterCache;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class IndicesCompressedFilterCacheTests extends ElasticsearchTestCase {
+
+    private static CompressedDocIdSet sparseSet(int numDocs) throws Exception {
+        int maxDoc = 1 << 16;
+        FixedBitSet bits = new FixedBitSet(maxDoc);
+        for (int i = 0; i < numDocs; i++) {
+            bits.set(i * 100);
+        }
+        return CompressedDocIdSet.build(bits.iterator(), maxDoc);
+    }
+
+    @Test
+    public void testRemovedSetsAreFreed() throws Exception {
+        ThreadPool threadPool = new ThreadPool(getClass().getName());
+        try {
+            Settings settings = ImmutableSettings.builder()
+                    .put(IndicesCompressedFilterCache.INDICES_CACHE_FILTER_COMPRESSED_SIZE, "1mb")
+                    .put(IndicesCompressedFilterCache.INDICES_CACHE_FILTER_COMPRESSED_OFF_HEAP_SIZE, "1kb")
+                    .build();
+            IndicesCompressedFilterCache cache = new IndicesCompressedFilterCache(settings, threadPool);
+            Object readerKey = new Object();
+            CompressedDocIdSet[] sets = new CompressedDocIdSet[3];
+            CompressedFilterCache.FilterCacheKey[] keys = new CompressedFilterCache.FilterCacheKey[sets.length];
+            for (int i = 0; i < sets.length; i++) {
+                // 2 bytes per document
+                sets[i] = sparseSet(200);
+                keys[i] = new CompressedFilterCache.FilterCacheKey(readerKey, "filter" + i);
+                cache.put(keys[i], sets[i], sets[i].ramBytesUsed(), sets[i].offHeapBytesUsed());
+                // the search that built the set is done with it
+                sets[i].decRef();
+            }
+
+            // the first set went over the off heap size and was freed
+            assertThat(cache.get(keys[0]), nullValue());
+            assertThat(sets[0].refCount(), equalTo(0));
+            assertThat(sets[1].refCount(), equalTo(1));
+            assertThat(cache.offHeapSizeInBytes(), equalTo(800L));
+
+            // a search holds on to a set, it is only freed once the search releases it
+            DocIdSet inUse = cache.get(keys[1]);
+            assertThat(inUse, sameInstance((DocIdSet) sets[1]));
+            assertThat(sets[1].refCount(), equalTo(2));
+            cache.close();
+            assertThat(sets[1].refCount(), equalTo(1));
+            assertThat(sets[2].refCount(), equalTo(0));
+            assertThat(cache.offHeapSizeInBytes(), equalTo(0L));
+            sets[1].decRef();
+            assertThat(sets[1].refCount(), equalTo(0));
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOversizedSetsAreNotCached() throws Exception {
+        ThreadPool threadPool = new ThreadPool(getClass().getName());
+        try {
+            Settings settings = ImmutableSettings.builder()
+                    .put(IndicesCompressedFilterCache.INDICES_CACHE_FILTER_COMPRESSED_OFF_HEAP_SIZE, "100b")
+                    .build();
+            IndicesCompressedFilterCache cache = new IndicesCompressedFilterCache(settings, threadPool);
+            CompressedDocIdSet set = sparseSet(100);
+            CompressedFilterCache.FilterCacheKey key = new CompressedFilterCache.FilterCacheKey(new Object(), "filter");
+            cache.put(key, set, set.ramBytesUsed(), set.offHeapBytesUsed());
+            assertThat(cache.get(key), nullValue());
+            assertThat(set.refCount(), equalTo(1));
+            set.decRef();
+            cache.close();
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParseOffHeapSize() {
+        assertThat(IndicesCompressedFilterCache.parseOffHeapSize("10%", 1000), equalTo(100L));
+        assertThat(IndicesCompressedFilterCache.parseOffHeapSize("2kb", 1000), equalTo(2048L));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.cache.query;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+
+public class IndicesQueryCacheTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testSegmentsCacheMatchesUncachedResults() throws Exception {
+        assertAcked(prepareCreate("idx").setSettings(ImmutableSettings.builder()
+                .put(IndicesQueryCache.INDEX_CACHE_QUERY_ENABLED, true)
+                .put(IndicesQueryCache.INDEX_CACHE_QUERY_SEGMENTS, true))
+                .addMapping("type", "value", "type=long", "tag", "type=string,index=not_analyzed"));
+        ensureGreen();
+
+        int id = 0;
+        int rounds = randomIntBetween(3, 6);
+        for (int round = 0; round < rounds; round++) {
+            // each round is refreshed separately to end up with several segments, most of them unchanged by the next round
+            int numDocs = randomIntBetween(1, 50);
+            for (int i = 0; i < numDocs; i++) {
+                client().prepareIndex("idx", "type", Integer.toString(id++))
+                        .setSource("value", randomIntBetween(0, 100), "tag", "t" + randomInt(5)).get();
+            }
+            if (rarely() && id > 1) {
+                client().prepareDelete("idx", "type", Integer.toString(randomInt(id - 1))).get();
+            }
+            refresh();
+
+            for (int i = 0; i < 2; i++) {
+                SearchResponse cached = client().prepareSearch("idx").setSearchType(SearchType.COUNT).setQueryCache(true)
+                        .setQuery(rangeQuery("value").gte(10))
+                        .addAggregation(histogram("histo").field("value").interval(10).subAggregation(stats("stats").field("value")))
+                        .get();
+                SearchResponse uncached = client().prepareSearch("idx").setSearchType(SearchType.COUNT).setQueryCache(false)
+                        .setQuery(rangeQuery("value").gte(10))
+                        .addAggregation(histogram("histo").field("value").interval(10).subAggregation(stats("stats").field("value")))
+                        .get();
+                assertSearchResponse(cached);
+                assertSearchResponse(uncached);
+                assertThat(cached.getHits().getTotalHits(), equalTo(uncached.getHits().getTotalHits()));
+
+                List<? extends Histogram.Bucket> cachedBuckets = cached.getAggregations().<Histogram>get("histo").getBuckets();
+                List<? extends Histogram.Bucket> uncachedBuckets = uncached.getAggregations().<Histogram>get("histo").getBuckets();
+                assertThat(cachedBuckets.size(), equalTo(uncachedBuckets.size()));
+                for (int j = 0; j < cachedBuckets.size(); j++) {
+                    assertThat(cachedBuckets.get(j).getKeyAsNumber(), equalTo(uncachedBuckets.get(j).getKeyAsNumber()));
+                    assertThat(cachedBuckets.get(j).getDocCount(), equalTo(uncachedBuckets.get(j).getDocCount()));
+                    Stats cachedStats = cachedBuckets.get(j).getAggregations().get("stats");
+                    Stats uncachedStats = uncachedBuckets.get(j).getAggregations().get("stats");
+                    assertThat(cachedStats.getCount(), equalTo(uncachedStats.getCount()));
+                    assertThat(cachedStats.getMin(), equalTo(uncachedStats.getMin()));
+                    assertThat(cachedStats.getMax(), equalTo(uncachedStats.getMax()));
+                    assertThat(cachedStats.getSum(), equalTo(uncachedStats.getSum()));
+                }
+            }
+        }
+
+        // terms are pruned per shard, so they are not computed per segment but must still be served correctly
+        SearchResponse cached = client().prepareSearch("idx").setSearchType(SearchType.COUNT).setQueryCache(true)
+                .addAggregation(terms("tags").field("tag").size(2)).get();
+        SearchResponse uncached = client().prepareSearch("idx").setSearchType(SearchType.COUNT).setQueryCache(false)
+                .addAggregation(terms("tags").field("tag").size(2)).get();
+        assertSearchResponse(cached);
+        assertThat(cached.getHits().getTotalHits(), equalTo(uncached.getHits().getTotalHits()));
+        Terms cachedTerms = cached.getAggregations().get("tags");
+        Terms uncachedTerms = uncached.getAggregations().get("tags");
+        assertThat(cachedTerms.getBuckets().size(), equalTo(uncachedTerms.getBuckets().size()));
+        for (int i = 0; i < cachedTerms.getBuckets().size(); i++) {
+            assertThat(cachedTerms.getBuckets().get(i).getKey(), equalTo(uncachedTerms.getBuckets().get(i).getKey()));
+            assertThat(cachedTerms.getBuckets().get(i).getDocCount(), equalTo(uncachedTerms.getBuckets().get(i).getDocCount()));
+        }
+    }
+}
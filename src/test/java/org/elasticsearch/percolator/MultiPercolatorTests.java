@@ -21,11 +21,13 @@ package org.elasticsearch.percolator;
 import org.elasticsearch.action.ShardOperationFailedException;
 import org.elasticsearch.action.percolate.MultiPercolateRequestBuilder;
 import org.elasticsearch.action.percolate.MultiPercolateResponse;
+import org.elasticsearch.action.percolate.PercolateResponse;
 import org.elasticsearch.action.percolate.PercolateSourceBuilder;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.MatchQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.test.ElasticsearchIntegrationTest;
 import org.junit.Test;
@@ -270,6 +272,80 @@ public class MultiPercolatorTests extends ElasticsearchIntegrationTest {
         assertEquals(response.getItems()[1].getResponse().getMatches()[0].getId().string(), "Q");
     }
 
+    @Test
+    public void testBatchedPercolationMatchesSinglePercolation() throws Exception {
+        assertAcked(prepareCreate("test").addMapping("type", "field1", "type=string", "number", "type=integer"));
+        ensureGreen();
+
+        int numWords = randomIntBetween(3, 10);
+        int numQueries = randomIntBetween(20, 50);
+        logger.info("--> register [{}] queries", numQueries);
+        for (int i = 0; i < numQueries; i++) {
+            String word1 = "w" + randomInt(numWords);
+            String word2 = "w" + randomInt(numWords);
+            QueryBuilder query;
+            switch (randomInt(6)) {
+                case 0:
+                    query = matchQuery("field1", word1);
+                    break;
+                case 1:
+                    query = boolQuery().must(termQuery("field1", word1)).must(termQuery("field1", word2));
+                    break;
+                case 2:
+                    query = matchPhraseQuery("field1", word1 + " " + word2);
+                    break;
+                case 3:
+                    // the common terms query depends on the statistics of the index
+                    query = matchQuery("field1", word1 + " " + word2).cutoffFrequency(0.5f);
+                    break;
+                case 4:
+                    query = fuzzyQuery("field1", word1);
+                    break;
+                case 5:
+                    query = prefixQuery("field1", word1);
+                    break;
+                default:
+                    query = rangeQuery("number").from(randomInt(10)).to(randomInt(10));
+                    break;
+            }
+            client().prepareIndex("test", PercolatorService.TYPE_NAME, Integer.toString(i))
+                    .setSource(jsonBuilder().startObject().field("query", query).endObject())
+                    .execute().actionGet();
+        }
+
+        int numDocs = randomIntBetween(2, 20);
+        XContentBuilder[] docs = new XContentBuilder[numDocs];
+        boolean[] onlyCount = new boolean[numDocs];
+        MultiPercolateRequestBuilder builder = client().prepareMultiPercolate();
+        for (int i = 0; i < numDocs; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = randomIntBetween(1, 4); j > 0; j--) {
+                text.append("w").append(randomInt(numWords)).append(' ');
+            }
+            docs[i] = jsonBuilder().startObject().field("field1", text.toString()).field("number", randomInt(10)).endObject();
+            onlyCount[i] = randomBoolean();
+            builder.add(client().preparePercolate()
+                    .setIndices("test").setDocumentType("type").setOnlyCount(onlyCount[i])
+                    .setPercolateDoc(docBuilder().setDoc(docs[i])));
+        }
+        MultiPercolateResponse response = builder.execute().actionGet();
+        assertThat(response.getItems().length, equalTo(numDocs));
+
+        for (int i = 0; i < numDocs; i++) {
+            PercolateResponse expected = client().preparePercolate()
+                    .setIndices("test").setDocumentType("type").setOnlyCount(onlyCount[i])
+                    .setPercolateDoc(docBuilder().setDoc(docs[i]))
+                    .execute().actionGet();
+            MultiPercolateResponse.Item item = response.getItems()[i];
+            assertThat(item.errorMessage(), nullValue());
+            assertMatchCount(item.getResponse(), expected.getCount());
+            if (!onlyCount[i]) {
+                assertThat(convertFromTextArray(item.getResponse().getMatches(), "test"),
+                        arrayContainingInAnyOrder(convertFromTextArray(expected.getMatches(), "test")));
+            }
+        }
+    }
+
     void initNestedIndexAndPercolation() throws IOException {
         XContentBuilder mapping = XContentFactory.jsonBuilder();
         mapping.startObject().startObject("properties").startObject("companyname").field("type", "string").endObject()
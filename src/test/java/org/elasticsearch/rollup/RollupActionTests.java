@@ -0,0 +1,229 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rollup;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.rollup.RollupResponse;
+import org.elasticsearch.action.rollup.TransportRollupAction;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.dateHistogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.max;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.sum;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RollupActionTests extends ElasticsearchIntegrationTest {
+
+    private static final long START = new DateTime(2014, 9, 1, 0, 0, DateTimeZone.UTC).getMillis();
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        // roll up in windows of a few intervals, so that ranges span several windows
+        return ImmutableSettings.settingsBuilder()
+                .put(TransportRollupAction.WINDOW_SIZE, randomIntBetween(1, 3))
+                .put(super.nodeSettings(nodeOrdinal))
+                .build();
+    }
+
+    private void indexEvents(int numHours, int docsPerHour) throws Exception {
+        assertAcked(prepareCreate("events").addMapping("event", "timestamp", "type=date", "value", "type=long"));
+        List<IndexRequestBuilder> docs = new ArrayList<>();
+        for (int h = 0; h < numHours; ++h) {
+            for (int i = 0; i < docsPerHour; ++i) {
+                docs.add(client().prepareIndex("events", "event").setSource(jsonBuilder().startObject()
+                        .field("timestamp", START + h * HOUR + i * 1000)
+                        .field("value", h * 100 + i)
+                        .endObject()));
+            }
+        }
+        indexRandom(true, docs);
+    }
+
+    @Test
+    public void testRollup() throws Exception {
+        final int numHours = randomIntBetween(2, 10);
+        final int docsPerHour = randomIntBetween(1, 20);
+        indexEvents(numHours, docsPerHour);
+
+        RollupResponse response = client().prepareRollup("events")
+                .setRollupIndex("events-rollup")
+                .setField("timestamp")
+                .setInterval("1h")
+                .setMetrics("value")
+                .get();
+        assertThat(response.getSourceDocs(), equalTo((long) numHours * docsPerHour));
+        assertThat(response.getRollupDocs(), equalTo((long) numHours));
+        refresh();
+
+        // a day worth of rollup documents gives the same result as the source documents
+        SearchResponse rollup = client().prepareSearch("events-rollup")
+                .setSize(0)
+                .addAggregation(dateHistogram("days").field("timestamp").interval(DateHistogram.Interval.DAY)
+                        .subAggregation(sum("docs").field("doc_count"))
+                        .subAggregation(sum("sum").field("value.sum"))
+                        .subAggregation(max("max").field("value.max")))
+                .get();
+        assertSearchResponse(rollup);
+        SearchResponse source = client().prepareSearch("events")
+                .setSize(0)
+                .addAggregation(dateHistogram("days").field("timestamp").interval(DateHistogram.Interval.DAY)
+                        .subAggregation(sum("sum").field("value"))
+                        .subAggregation(max("max").field("value")))
+                .get();
+        assertSearchResponse(source);
+
+        DateHistogram rollupDays = rollup.getAggregations().get("days");
+        DateHistogram sourceDays = source.getAggregations().get("days");
+        assertThat(rollupDays.getBuckets().size(), equalTo(sourceDays.getBuckets().size()));
+        for (int i = 0; i < rollupDays.getBuckets().size(); ++i) {
+            DateHistogram.Bucket rollupDay = rollupDays.getBuckets().get(i);
+            DateHistogram.Bucket sourceDay = sourceDays.getBuckets().get(i);
+            assertThat(rollupDay.getKeyAsNumber().longValue(), equalTo(sourceDay.getKeyAsNumber().longValue()));
+            assertThat((long) ((Sum) rollupDay.getAggregations().get("docs")).getValue(), equalTo(sourceDay.getDocCount()));
+            assertThat(((Sum) rollupDay.getAggregations().get("sum")).getValue(), equalTo(((Sum) sourceDay.getAggregations().get("sum")).getValue()));
+            assertThat(((Max) rollupDay.getAggregations().get("max")).getValue(), equalTo(((Max) sourceDay.getAggregations().get("max")).getValue()));
+        }
+    }
+
+    @Test
+    public void testRollupIsIdempotent() throws Exception {
+        final int numHours = randomIntBetween(2, 10);
+        indexEvents(numHours, randomIntBetween(1, 5));
+
+        final long from = START + HOUR;
+        for (int i = 0; i < 2; ++i) {
+            RollupResponse response = client().prepareRollup("events")
+                    .setRollupIndex("events-rollup")
+                    .setField("timestamp")
+                    .setInterval("1h")
+                    .setFrom(from)
+                    .get();
+            assertThat(response.getRollupDocs(), equalTo((long) numHours - 1));
+        }
+        refresh();
+        assertThat(client().prepareCount("events-rollup").get().getCount(), equalTo((long) numHours - 1));
+    }
+
+    @Test
+    public void testUnalignedRangeIsRejected() throws Exception {
+        indexEvents(2, 1);
+        final boolean unalignedFrom = randomBoolean();
+        try {
+            client().prepareRollup("events")
+                    .setRollupIndex("events-rollup")
+                    .setField("timestamp")
+                    .setInterval(randomFrom("1h", "hour", "60m"))
+                    .setFrom(unalignedFrom ? START + randomIntBetween(1, (int) HOUR - 1) : START)
+                    .setTo(unalignedFrom ? null : START + HOUR + randomIntBetween(1, (int) HOUR - 1))
+                    .get();
+            fail("expected an unaligned range to be rejected");
+        } catch (ActionRequestValidationException e) {
+            assertThat(e.getMessage(), containsString(unalignedFrom ? "from [" : "to ["));
+        }
+
+        // with a time zone, intervals start at the local hour
+        RollupResponse response = client().prepareRollup("events")
+                .setRollupIndex("events-rollup")
+                .setField("timestamp")
+                .setInterval("day")
+                .setTimeZone("+02:00")
+                .setFrom(START - 2 * HOUR)
+                .get();
+        assertThat(response.getRollupDocs(), equalTo(1l));
+    }
+
+    @Test
+    public void testWindowsInTimeZone() throws Exception {
+        final int numHours = randomIntBetween(24, 24 * 7);
+        indexEvents(numHours, 1);
+
+        RollupResponse response = client().prepareRollup("events")
+                .setRollupIndex("events-rollup")
+                .setField("timestamp")
+                .setInterval("day")
+                .setTimeZone("-05:00")
+                .setMetrics("value")
+                .get();
+        assertThat(response.getSourceDocs(), equalTo((long) numHours));
+        refresh();
+
+        // every day is rolled up exactly once, even though days start in the middle of UTC days
+        SearchResponse source = client().prepareSearch("events")
+                .setSize(0)
+                .addAggregation(dateHistogram("days").field("timestamp").interval(DateHistogram.Interval.DAY).preZone("-05:00"))
+                .get();
+        assertSearchResponse(source);
+        DateHistogram sourceDays = source.getAggregations().get("days");
+        assertThat(response.getRollupDocs(), equalTo((long) sourceDays.getBuckets().size()));
+        for (DateHistogram.Bucket sourceDay : sourceDays.getBuckets()) {
+            SearchResponse rollup = client().prepareSearch("events-rollup")
+                    .setSize(0)
+                    .setQuery(termQuery("timestamp", sourceDay.getKeyAsNumber().longValue()))
+                    .addAggregation(sum("docs").field("doc_count"))
+                    .get();
+            assertSearchResponse(rollup);
+            assertThat(rollup.getHits().getTotalHits(), equalTo(1l));
+            assertThat((long) ((Sum) rollup.getAggregations().get("docs")).getValue(), equalTo(sourceDay.getDocCount()));
+        }
+    }
+
+    @Test
+    public void testShardFailuresAreNotWritten() throws Exception {
+        indexEvents(randomIntBetween(2, 5), 1);
+        // the metric is not numeric in this index, so stats fail on its shards
+        assertAcked(prepareCreate("events-text").addMapping("event", "timestamp", "type=date", "value", "type=string"));
+        indexRandom(true, client().prepareIndex("events-text", "event").setSource("timestamp", START, "value", "foo"));
+        createIndex("events-rollup");
+
+        try {
+            client().prepareRollup("events", "events-text")
+                    .setRollupIndex("events-rollup")
+                    .setField("timestamp")
+                    .setInterval("1h")
+                    .setMetrics("value")
+                    .get();
+            fail("expected shard failures to fail the rollup");
+        } catch (ElasticsearchException e) {
+            assertThat(e.getMessage(), containsString("shards"));
+        }
+        refresh();
+        assertThat(client().prepareCount("events-rollup").get().getCount(), equalTo(0l));
+    }
+}
@@ -29,6 +29,7 @@ import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
 import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
@@ -240,6 +241,57 @@ public class ExpressionScriptTests extends ElasticsearchIntegrationTest {
         assertEquals(0.1, stats.getMin(), 0.0001);
     }
 
+    public void testScriptOnlyAggregation() throws Exception {
+        createIndex("test");
+        ensureGreen("test");
+        indexRandom(true,
+            client().prepareIndex("test", "doc", "1").setSource("x", 5, "y", 1.2),
+            client().prepareIndex("test", "doc", "2").setSource("x", 10, "y", 1.4),
+            client().prepareIndex("test", "doc", "3").setSource("x", 13, "y", 1.8));
+
+        SearchRequestBuilder req = new SearchRequestBuilder(client()).setIndices("test");
+        req.setQuery(QueryBuilders.matchAllQuery())
+           .addAggregation(AggregationBuilders.stats("stats_agg").script("doc['x'].value * doc['y'].value").lang("expression"))
+           .addAggregation(AggregationBuilders.histogram("histo_agg").script("doc['x'].value").lang("expression").interval(5));
+
+        SearchResponse rsp = req.get();
+        ElasticsearchAssertions.assertSearchResponse(rsp);
+        assertEquals(3, rsp.getHits().getTotalHits());
+
+        Stats stats = rsp.getAggregations().get("stats_agg");
+        assertEquals(3, stats.getCount());
+        assertEquals(23.4, stats.getMax(), 0.0001);
+        assertEquals(6.0, stats.getMin(), 0.0001);
+        assertEquals(43.4, stats.getSum(), 0.0001);
+
+        Histogram histo = rsp.getAggregations().get("histo_agg");
+        assertEquals(2, histo.getBuckets().size());
+        assertEquals(5L, histo.getBuckets().get(0).getKeyAsNumber().longValue());
+        assertEquals(1, histo.getBuckets().get(0).getDocCount());
+        assertEquals(10L, histo.getBuckets().get(1).getKeyAsNumber().longValue());
+        assertEquals(2, histo.getBuckets().get(1).getDocCount());
+    }
+
+    public void testScriptSort() throws Exception {
+        createIndex("test");
+        ensureGreen("test");
+        indexRandom(true,
+            client().prepareIndex("test", "doc", "1").setSource("x", 5),
+            client().prepareIndex("test", "doc", "2").setSource("x", 10),
+            client().prepareIndex("test", "doc", "3").setSource("x", 13));
+
+        SearchResponse rsp = new SearchRequestBuilder(client()).setIndices("test")
+                .setQuery(QueryBuilders.matchAllQuery())
+                .addSort(SortBuilders.scriptSort("-doc['x'].value", "number").lang("expression"))
+                .get();
+        ElasticsearchAssertions.assertSearchResponse(rsp);
+        SearchHits hits = rsp.getHits();
+        assertEquals(3, hits.getTotalHits());
+        assertEquals("3", hits.getAt(0).getId());
+        assertEquals("2", hits.getAt(1).getId());
+        assertEquals("1", hits.getAt(2).getId());
+    }
+
     public void testStringSpecialValueVariable() throws Exception {
         // i.e. expression script for term aggregations, which is not allowed
         createIndex("test");
@@ -0,0 +1,175 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoHashGrid;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.significant.SignificantTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHits;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_REPLICAS;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_SHARDS;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.*;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Checks that reducing the shard results incrementally on the coordinating node gives the same aggregations as
+ * reducing all of them at once.
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class BatchedReduceTests extends ElasticsearchIntegrationTest {
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        assertAcked(prepareCreate("idx")
+                .setSettings(ImmutableSettings.builder().put(SETTING_NUMBER_OF_SHARDS, between(4, 10)).put(SETTING_NUMBER_OF_REPLICAS, 0))
+                .addMapping("type", "term", "type=string,index=not_analyzed", "value", "type=long", "location", "type=geo_point"));
+
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        final int numDocs = scaledRandomIntBetween(100, 500);
+        for (int i = 0; i < numDocs; i++) {
+            builders.add(client().prepareIndex("idx", "type").setSource(jsonBuilder()
+                    .startObject()
+                    .field("term", "term" + randomInt(30))
+                    .field("value", randomInt(100))
+                    .field("location", randomDouble() * 10 + "," + randomDouble() * 10)
+                    .endObject()));
+        }
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    private SearchRequestBuilder search() {
+        return client().prepareSearch("idx")
+                .setQuery(rangeQuery("value").lte(60))
+                .addAggregation(terms("terms").field("term").size(5).shardSize(100)
+                        .subAggregation(sum("sum").field("value")))
+                // shards return fewer terms than they have, so that their results have an error
+                .addAggregation(terms("terms_error").field("term").size(3).shardSize(5).showTermDocCountError(true))
+                .addAggregation(histogram("histo").field("value").interval(10).minDocCount(0).extendedBounds(-20l, 120l))
+                .addAggregation(geohashGrid("grid").field("location").precision(3).size(5).shardSize(100))
+                .addAggregation(significantTerms("significant").field("term").minDocCount(2).size(100))
+                .addAggregation(topHits("top").addSort("value", SortOrder.DESC).setSize(3).setFrom(1));
+    }
+
+    @Test
+    public void testBatchedReduce() throws Exception {
+        SearchResponse expected = search().execute().actionGet();
+        assertSearchResponse(expected);
+        SearchResponse response = search().setBatchedReduceSize(2).execute().actionGet();
+        assertSearchResponse(response);
+
+        Terms expectedTerms = expected.getAggregations().get("terms");
+        Terms terms = response.getAggregations().get("terms");
+        assertThat(terms.getBuckets().size(), equalTo(expectedTerms.getBuckets().size()));
+        for (int i = 0; i < terms.getBuckets().size(); i++) {
+            Terms.Bucket expectedBucket = expectedTerms.getBuckets().get(i);
+            Terms.Bucket bucket = terms.getBuckets().get(i);
+            assertThat(bucket.getKey(), equalTo(expectedBucket.getKey()));
+            assertThat(bucket.getDocCount(), equalTo(expectedBucket.getDocCount()));
+            Sum expectedSum = expectedBucket.getAggregations().get("sum");
+            Sum sum = bucket.getAggregations().get("sum");
+            assertThat(sum.getValue(), equalTo(expectedSum.getValue()));
+        }
+
+        // partial reduces keep more buckets than the shard size, their error must not be derived from the last one
+        Terms expectedErrorTerms = expected.getAggregations().get("terms_error");
+        Terms errorTerms = response.getAggregations().get("terms_error");
+        assertThat(errorTerms.getDocCountError(), equalTo(expectedErrorTerms.getDocCountError()));
+        assertThat(errorTerms.getBuckets().size(), equalTo(expectedErrorTerms.getBuckets().size()));
+        for (int i = 0; i < errorTerms.getBuckets().size(); i++) {
+            Terms.Bucket expectedBucket = expectedErrorTerms.getBuckets().get(i);
+            Terms.Bucket bucket = errorTerms.getBuckets().get(i);
+            assertThat(bucket.getKey(), equalTo(expectedBucket.getKey()));
+            assertThat(bucket.getDocCount(), equalTo(expectedBucket.getDocCount()));
+            assertThat(bucket.getDocCountError(), equalTo(expectedBucket.getDocCountError()));
+        }
+
+        Histogram expectedHisto = expected.getAggregations().get("histo");
+        Histogram histo = response.getAggregations().get("histo");
+        assertThat(histo.getBuckets().size(), equalTo(expectedHisto.getBuckets().size()));
+        for (int i = 0; i < histo.getBuckets().size(); i++) {
+            assertThat(histo.getBuckets().get(i).getKeyAsNumber(), equalTo(expectedHisto.getBuckets().get(i).getKeyAsNumber()));
+            assertThat(histo.getBuckets().get(i).getDocCount(), equalTo(expectedHisto.getBuckets().get(i).getDocCount()));
+        }
+
+        GeoHashGrid expectedGrid = expected.getAggregations().get("grid");
+        GeoHashGrid grid = response.getAggregations().get("grid");
+        List<GeoHashGrid.Bucket> expectedCells = new ArrayList<>(expectedGrid.getBuckets());
+        List<GeoHashGrid.Bucket> cells = new ArrayList<>(grid.getBuckets());
+        assertThat(cells.size(), equalTo(expectedCells.size()));
+        for (int i = 0; i < cells.size(); i++) {
+            assertThat(cells.get(i).getKey(), equalTo(expectedCells.get(i).getKey()));
+            assertThat(cells.get(i).getDocCount(), equalTo(expectedCells.get(i).getDocCount()));
+        }
+
+        // compared by key, the order of buckets with the same score is not defined
+        assertThat(significantDocCounts(response.getAggregations().<SignificantTerms>get("significant")),
+                equalTo(significantDocCounts(expected.getAggregations().<SignificantTerms>get("significant"))));
+
+        // compared by sort value, the order of hits with the same value is not defined
+        TopHits expectedTop = expected.getAggregations().get("top");
+        TopHits top = response.getAggregations().get("top");
+        assertThat(top.getHits().getTotalHits(), equalTo(expectedTop.getHits().getTotalHits()));
+        assertThat(top.getHits().getHits().length, equalTo(expectedTop.getHits().getHits().length));
+        for (int i = 0; i < top.getHits().getHits().length; i++) {
+            SearchHit expectedHit = expectedTop.getHits().getAt(i);
+            SearchHit hit = top.getHits().getAt(i);
+            assertThat(hit.getSortValues()[0], equalTo(expectedHit.getSortValues()[0]));
+        }
+    }
+
+    private static Map<String, Long> significantDocCounts(SignificantTerms significantTerms) {
+        Map<String, Long> docCounts = new HashMap<>();
+        for (SignificantTerms.Bucket bucket : significantTerms.getBuckets()) {
+            docCounts.put(bucket.getKey(), bucket.getDocCount());
+        }
+        return docCounts;
+    }
+
+    @Test
+    public void testInvalidBatchedReduceSize() throws Exception {
+        try {
+            client().prepareSearch("idx").setBatchedReduceSize(1).execute().actionGet();
+            fail("expected a batched reduce size of 1 to be rejected");
+        } catch (ActionRequestValidationException e) {
+            // expected
+        }
+    }
+}
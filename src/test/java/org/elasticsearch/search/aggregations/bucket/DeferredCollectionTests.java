@@ -0,0 +1,108 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
+import org.elasticsearch.search.aggregations.bucket.DeferringBucketCollector;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+
+/**
+ * Checks that breadth-first collection returns the same results whether or not the
+ * recorded matches get spilled to disk.
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class DeferredCollectionTests extends ElasticsearchIntegrationTest {
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        assertAcked(prepareCreate("idx"));
+        assertAcked(prepareCreate("idx_spill")
+                .setSettings(ImmutableSettings.builder().put(DeferringBucketCollector.SPILL_THRESHOLD, "0b")));
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        final int numDocs = scaledRandomIntBetween(100, 2000);
+        for (int i = 0; i < numDocs; i++) {
+            for (String index : new String[] {"idx", "idx_spill"}) {
+                builders.add(client().prepareIndex(index, "type", Integer.toString(i)).setSource(jsonBuilder()
+                        .startObject()
+                        .field("outer", "o" + (i % 7))
+                        .field("inner", "i" + (i % 13))
+                        .field("value", i)
+                        .endObject()));
+            }
+        }
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    private SearchResponse search(String index) {
+        SearchResponse response = client().prepareSearch(index)
+                .addAggregation(terms("outer").field("outer").size(3).collectMode(SubAggCollectionMode.BREADTH_FIRST)
+                        .subAggregation(terms("inner").field("inner").size(5).collectMode(SubAggCollectionMode.BREADTH_FIRST)
+                                .subAggregation(histogram("histo").field("value").interval(100))))
+                .get();
+        assertSearchResponse(response);
+        return response;
+    }
+
+    @Test
+    public void testSpilledCollectionMatchesInMemory() throws Exception {
+        Terms expected = search("idx").getAggregations().get("outer");
+        Terms actual = search("idx_spill").getAggregations().get("outer");
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (Terms.Bucket expectedOuter : expected.getBuckets()) {
+            Terms.Bucket actualOuter = actual.getBucketByKey(expectedOuter.getKey());
+            assertThat(actualOuter, notNullValue());
+            assertThat(actualOuter.getDocCount(), equalTo(expectedOuter.getDocCount()));
+            Terms expectedInners = expectedOuter.getAggregations().get("inner");
+            Terms actualInners = actualOuter.getAggregations().get("inner");
+            assertThat(actualInners.getBuckets().size(), equalTo(expectedInners.getBuckets().size()));
+            for (Terms.Bucket expectedInner : expectedInners.getBuckets()) {
+                Terms.Bucket actualInner = actualInners.getBucketByKey(expectedInner.getKey());
+                assertThat(actualInner, notNullValue());
+                assertThat(actualInner.getDocCount(), equalTo(expectedInner.getDocCount()));
+                Histogram expectedHisto = expectedInner.getAggregations().get("histo");
+                Histogram actualHisto = actualInner.getAggregations().get("histo");
+                assertThat(actualHisto.getBuckets().size(), equalTo(expectedHisto.getBuckets().size()));
+                for (int i = 0; i < expectedHisto.getBuckets().size(); i++) {
+                    assertThat(actualHisto.getBuckets().get(i).getKeyAsNumber(), equalTo(expectedHisto.getBuckets().get(i).getKeyAsNumber()));
+                    assertThat(actualHisto.getBuckets().get(i).getDocCount(), equalTo(expectedHisto.getBuckets().get(i).getDocCount()));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
+import org.elasticsearch.search.aggregations.bucket.sampler.Sampler;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHits;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_REPLICAS;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_SHARDS;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.FilterBuilders.matchAllFilter;
+import static org.elasticsearch.index.query.QueryBuilders.functionScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.fieldValueFactorFunction;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.*;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+
+/**
+ *
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class SamplerTests extends ElasticsearchIntegrationTest {
+
+    static int numDocs, numGroups;
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        // a single shard so that the sample of the shard is the sample of the index
+        assertAcked(prepareCreate("idx").setSettings(SETTING_NUMBER_OF_SHARDS, 1, SETTING_NUMBER_OF_REPLICAS, 0)
+                .addMapping("type", "value", "type=integer", "group", "type=string,index=not_analyzed"));
+        numDocs = randomIntBetween(50, 200);
+        numGroups = randomIntBetween(2, 10);
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        for (int i = 1; i <= numDocs; i++) {
+            builders.add(client().prepareIndex("idx", "type", "" + i).setSource(jsonBuilder()
+                    .startObject()
+                    .field("value", i)
+                    .field("group", "group" + (i % numGroups))
+                    .endObject()));
+        }
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    /** A query whose score is the value of the document, so that the best scoring documents have the highest values. */
+    private static QueryBuilder scoreByValue() {
+        return functionScoreQuery(matchAllQuery(), fieldValueFactorFunction("value"));
+    }
+
+    @Test
+    public void noSubAggregation() throws Exception {
+        final int shardSize = randomIntBetween(1, numDocs * 2);
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(scoreByValue())
+                .addAggregation(sampler("sample").shardSize(shardSize))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Sampler sample = response.getAggregations().get("sample");
+        assertThat(sample, notNullValue());
+        assertThat(sample.getName(), equalTo("sample"));
+        assertThat(sample.getDocCount(), equalTo((long) Math.min(shardSize, numDocs)));
+    }
+
+    @Test
+    public void bestScoringDocs() throws Exception {
+        final int shardSize = randomIntBetween(1, numDocs);
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(scoreByValue())
+                .addAggregation(sampler("sample").shardSize(shardSize)
+                        .subAggregation(min("min_value").field("value"))
+                        .subAggregation(max("max_value").field("value")))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Sampler sample = response.getAggregations().get("sample");
+        assertThat(sample, notNullValue());
+        assertThat(sample.getDocCount(), equalTo((long) shardSize));
+        Min min = sample.getAggregations().get("min_value");
+        assertThat(min.getValue(), equalTo((double) numDocs - shardSize + 1));
+        Max max = sample.getAggregations().get("max_value");
+        assertThat(max.getValue(), equalTo((double) numDocs));
+    }
+
+    @Test
+    public void subAggregationsSeeTheScoresOfSampledDocs() throws Exception {
+        final int shardSize = randomIntBetween(1, numDocs);
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(scoreByValue())
+                .addAggregation(sampler("sample").shardSize(shardSize)
+                        .subAggregation(min("min_score").script("_score"))
+                        .subAggregation(topHits("top").setSize(1)))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Sampler sample = response.getAggregations().get("sample");
+        assertThat(sample, notNullValue());
+        Min min = sample.getAggregations().get("min_score");
+        assertThat(min.getValue(), equalTo((double) numDocs - shardSize + 1));
+        TopHits top = sample.getAggregations().get("top");
+        assertThat(top.getHits().getAt(0).getId(), equalTo(Integer.toString(numDocs)));
+        assertThat(top.getHits().getAt(0).getScore(), equalTo((float) numDocs));
+    }
+
+    @Test
+    public void diversified() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(scoreByValue())
+                .addAggregation(sampler("sample").shardSize(numDocs).field("group").maxDocsPerValue(1)
+                        .subAggregation(terms("groups").field("group").size(0))
+                        .subAggregation(min("min_value").field("value")))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Sampler sample = response.getAggregations().get("sample");
+        assertThat(sample, notNullValue());
+        assertThat(sample.getDocCount(), equalTo((long) numGroups));
+        Terms groups = sample.getAggregations().get("groups");
+        assertThat(groups.getBuckets().size(), equalTo(numGroups));
+        for (Terms.Bucket bucket : groups.getBuckets()) {
+            assertThat(bucket.getDocCount(), equalTo(1L));
+        }
+        // the best document of every group is one of the last numGroups documents
+        Min min = sample.getAggregations().get("min_value");
+        assertThat(min.getValue(), equalTo((double) numDocs - numGroups + 1));
+    }
+
+    @Test
+    public void underTermsAggregation() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(scoreByValue())
+                .addAggregation(terms("groups").field("group").size(0)
+                        .subAggregation(sampler("sample").shardSize(1)
+                                .subAggregation(min("min_value").field("value"))))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Terms groups = response.getAggregations().get("groups");
+        assertThat(groups.getBuckets().size(), equalTo(numGroups));
+        for (Terms.Bucket bucket : groups.getBuckets()) {
+            final int group = Integer.parseInt(bucket.getKey().substring("group".length()));
+            int best = numDocs;
+            while (best % numGroups != group) {
+                --best;
+            }
+            Sampler sample = bucket.getAggregations().get("sample");
+            assertThat(sample.getDocCount(), equalTo(1L));
+            Min min = sample.getAggregations().get("min_value");
+            assertThat(min.getValue(), equalTo((double) best));
+        }
+    }
+
+    @Test
+    public void underBreadthFirstAggregation() throws Exception {
+        try {
+            client().prepareSearch("idx")
+                    .setQuery(scoreByValue())
+                    .addAggregation(terms("groups").field("group").collectMode(SubAggCollectionMode.BREADTH_FIRST)
+                            .subAggregation(filter("all").filter(matchAllFilter())
+                                    .subAggregation(sampler("sample").shardSize(1)
+                                            .subAggregation(min("min_value").field("value")))))
+                    .execute().actionGet();
+            fail("expected the sampler to be rejected under a breadth_first aggregation");
+        } catch (SearchPhaseExecutionException e) {
+            assertThat(e.getMessage(), containsString("breadth_first"));
+        }
+    }
+
+}
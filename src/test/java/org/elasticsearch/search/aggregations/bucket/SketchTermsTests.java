@@ -0,0 +1,224 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_REPLICAS;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF_SHARDS;
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.max;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the <tt>sketch</tt> execution hint of the <tt>terms</tt> aggregation against exact counts.
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class SketchTermsTests extends ElasticsearchIntegrationTest {
+
+    private static final String FIELD = "s_value";
+    private static final String SMALL_FIELD = "small";
+    private static final String LONG_FIELD = "l_value";
+    // the most frequent terms, which are far more frequent than the terms of the tail
+    private static final int[] HEAVY_COUNTS = new int[] { 100, 80, 60, 40, 20 };
+
+    private static int numSmallTerms;
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        final String mapping = "type=string,index=not_analyzed";
+        assertAcked(prepareCreate("idx_single_shard").setSettings(SETTING_NUMBER_OF_SHARDS, 1, SETTING_NUMBER_OF_REPLICAS, 0)
+                .addMapping("type", FIELD, mapping, SMALL_FIELD, mapping, LONG_FIELD, "type=long"));
+        assertAcked(prepareCreate("idx").setSettings(SETTING_NUMBER_OF_SHARDS, 3, SETTING_NUMBER_OF_REPLICAS, 0)
+                .addMapping("type", FIELD, mapping, SMALL_FIELD, mapping, LONG_FIELD, "type=long"));
+        numSmallTerms = randomIntBetween(2, 20);
+        // with a shard size of 2, the sketch monitors 200 terms, which is less than the number of terms of every shard
+        final int numTailTerms = randomIntBetween(1000, 1200);
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        for (String index : new String[] { "idx_single_shard", "idx" }) {
+            int id = 0;
+            for (int i = 0; i < HEAVY_COUNTS.length; i++) {
+                for (int j = 0; j < HEAVY_COUNTS[i]; j++) {
+                    builders.add(indexDoc(index, id++, "heavy" + i));
+                }
+            }
+            for (int i = 0; i < numTailTerms; i++) {
+                builders.add(indexDoc(index, id++, "tail" + i));
+            }
+        }
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    private IndexRequestBuilder indexDoc(String index, int id, String term) throws Exception {
+        return client().prepareIndex(index, "type", "" + id).setSource(jsonBuilder()
+                .startObject()
+                .field(FIELD, term)
+                .field(SMALL_FIELD, "small" + (id % numSmallTerms))
+                .field(LONG_FIELD, id)
+                .endObject());
+    }
+
+    private SearchResponse search(String index, TermsBuilder terms) {
+        SearchResponse response = client().prepareSearch(index).setTypes("type")
+                .addAggregation(terms.showTermDocCountError(true))
+                .execute().actionGet();
+        assertSearchResponse(response);
+        return response;
+    }
+
+    /** Exact counts of all terms of the field. */
+    private Terms exactTerms(String index, String field) {
+        Terms terms = search(index, terms("terms").field(field).executionHint("map").size(0)).getAggregations().get("terms");
+        assertThat(terms.getDocCountError(), equalTo(0l));
+        return terms;
+    }
+
+    private static void assertSameTerms(Terms expected, Terms actual) {
+        assertThat(actual.getDocCountError(), equalTo(expected.getDocCountError()));
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (int i = 0; i < expected.getBuckets().size(); i++) {
+            Terms.Bucket expectedBucket = expected.getBuckets().get(i);
+            Terms.Bucket actualBucket = actual.getBuckets().get(i);
+            assertThat(actualBucket.getKey(), equalTo(expectedBucket.getKey()));
+            assertThat(actualBucket.getDocCount(), equalTo(expectedBucket.getDocCount()));
+            assertThat(actualBucket.getDocCountError(), equalTo(expectedBucket.getDocCountError()));
+        }
+    }
+
+    /**
+     * Checks that the doc counts of the approximate terms are lower bounds of their exact doc counts, and that their errors
+     * are upper bounds of how much they are under-estimated.
+     */
+    private static void assertWithinBounds(Terms exact, Terms approximate) {
+        assertThat(approximate.getDocCountError(), greaterThan(0l));
+        for (Terms.Bucket bucket : approximate.getBuckets()) {
+            Terms.Bucket exactBucket = exact.getBucketByKey(bucket.getKey());
+            assertThat(exactBucket, notNullValue());
+            assertThat(bucket.getDocCountError(), greaterThanOrEqualTo(0l));
+            assertThat(bucket.getDocCountError(), lessThanOrEqualTo(approximate.getDocCountError()));
+            assertThat(bucket.getDocCount(), lessThanOrEqualTo(exactBucket.getDocCount()));
+            assertThat(bucket.getDocCount() + bucket.getDocCountError(), greaterThanOrEqualTo(exactBucket.getDocCount()));
+        }
+        // the heavy hitters are always found
+        for (int i = 0; i < approximate.getBuckets().size(); i++) {
+            assertThat(approximate.getBuckets().get(i).getKey(), equalTo("heavy" + i));
+        }
+        // terms that were not returned are not more frequent than the error
+        for (Terms.Bucket exactBucket : exact.getBuckets()) {
+            if (approximate.getBucketByKey(exactBucket.getKey()) == null && exactBucket.getDocCount() < HEAVY_COUNTS[HEAVY_COUNTS.length - 1]) {
+                assertThat(exactBucket.getDocCount(), lessThanOrEqualTo(approximate.getDocCountError()));
+            }
+        }
+    }
+
+    @Test
+    public void exactWhenCardinalityFitsInCapacity() throws Exception {
+        for (String index : new String[] { "idx_single_shard", "idx" }) {
+            Terms sketch = search(index, terms("terms").field(SMALL_FIELD).executionHint("sketch")
+                    .size(numSmallTerms).shardSize(numSmallTerms + 1)).getAggregations().get("terms");
+            assertSameTerms(exactTerms(index, SMALL_FIELD), sketch);
+            assertThat(sketch.getDocCountError(), equalTo(0l));
+            for (Terms.Bucket bucket : sketch.getBuckets()) {
+                assertThat(bucket.getDocCountError(), equalTo(0l));
+            }
+        }
+    }
+
+    @Test
+    public void boundedErrorWhenCardinalityExceedsCapacity() throws Exception {
+        Terms sketch = search("idx_single_shard", terms("terms").field(FIELD).executionHint("sketch")
+                .size(2).shardSize(2)).getAggregations().get("terms");
+        assertThat(sketch.getBuckets().size(), equalTo(2));
+        assertWithinBounds(exactTerms("idx_single_shard", FIELD), sketch);
+    }
+
+    @Test
+    public void reduceCarriesShardErrors() throws Exception {
+        // every shard has more terms than the sketch can monitor, so all shard results have a non-zero error
+        Terms sketch = search("idx", terms("terms").field(FIELD).executionHint("sketch")
+                .size(2).shardSize(2)).getAggregations().get("terms");
+        assertThat(sketch.getBuckets().size(), equalTo(2));
+        assertWithinBounds(exactTerms("idx", FIELD), sketch);
+    }
+
+    @Test
+    public void fallbackWithSubAggregations() throws Exception {
+        Terms map = search("idx", terms("terms").field(FIELD).executionHint("map").size(5)
+                .subAggregation(max("max").field(LONG_FIELD))).getAggregations().get("terms");
+        Terms sketch = search("idx", terms("terms").field(FIELD).executionHint("sketch").size(5)
+                .subAggregation(max("max").field(LONG_FIELD))).getAggregations().get("terms");
+        assertSameTerms(map, sketch);
+        for (int i = 0; i < map.getBuckets().size(); i++) {
+            Max expected = map.getBuckets().get(i).getAggregations().get("max");
+            Max actual = sketch.getBuckets().get(i).getAggregations().get("max");
+            assertThat(actual.getValue(), equalTo(expected.getValue()));
+        }
+    }
+
+    @Test
+    public void fallbackUnderPerBucketParent() throws Exception {
+        Terms map = search("idx", terms("small").field(SMALL_FIELD).executionHint("map").size(0)
+                .subAggregation(terms("terms").field(FIELD).executionHint("map").size(5).showTermDocCountError(true))).getAggregations().get("small");
+        Terms sketch = search("idx", terms("small").field(SMALL_FIELD).executionHint("map").size(0)
+                .subAggregation(terms("terms").field(FIELD).executionHint("sketch").size(5).showTermDocCountError(true))).getAggregations().get("small");
+        assertSameTerms(map, sketch);
+        for (int i = 0; i < map.getBuckets().size(); i++) {
+            Terms expected = map.getBuckets().get(i).getAggregations().get("terms");
+            Terms actual = sketch.getBuckets().get(i).getAggregations().get("terms");
+            assertSameTerms(expected, actual);
+        }
+    }
+
+    @Test
+    public void fallbackWithNonCountOrder() throws Exception {
+        Terms.Order order = randomFrom(Terms.Order.term(true), Terms.Order.term(false), Terms.Order.count(true));
+        Terms map = search("idx", terms("terms").field(FIELD).executionHint("map").size(5).order(order)).getAggregations().get("terms");
+        Terms sketch = search("idx", terms("terms").field(FIELD).executionHint("sketch").size(5).order(order)).getAggregations().get("terms");
+        assertSameTerms(map, sketch);
+    }
+
+    @Test
+    public void fallbackWithZeroMinDocCount() throws Exception {
+        Terms map = search("idx", terms("terms").field(SMALL_FIELD).executionHint("map").minDocCount(0)).getAggregations().get("terms");
+        Terms sketch = search("idx", terms("terms").field(SMALL_FIELD).executionHint("sketch").minDocCount(0)).getAggregations().get("terms");
+        assertSameTerms(map, sketch);
+    }
+
+    @Test
+    public void fallbackWithScript() throws Exception {
+        final String script = "doc['" + FIELD + "'].value";
+        Terms map = search("idx", terms("terms").script(script).executionHint("map").size(5)).getAggregations().get("terms");
+        Terms sketch = search("idx", terms("terms").script(script).executionHint("sketch").size(5)).getAggregations().get("terms");
+        assertSameTerms(map, sketch);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms.support;
+
+import com.carrotsearch.hppc.ObjectLongOpenHashMap;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.test.cache.recycler.MockBigArrays;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SpaceSavingSketchTests extends ElasticsearchTestCase {
+
+    private BigArrays bigArrays() {
+        return new MockBigArrays(ImmutableSettings.EMPTY, null, new NoneCircuitBreakerService());
+    }
+
+    @Test
+    public void testExactWhenNotFull() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10, bigArrays());
+        for (int i = 0; i < 10; ++i) {
+            sketch.add(new BytesRef(Integer.toString(i)), i + 1);
+        }
+        sketch.add(new BytesRef("3"), 5);
+        assertThat(sketch.size(), equalTo(10));
+        assertThat(sketch.minCount(), equalTo(0L));
+        assertThat(sketch.total(), equalTo(60L));
+        for (int slot = 0; slot < sketch.size(); ++slot) {
+            final int term = Integer.parseInt(sketch.term(slot).utf8ToString());
+            assertThat(sketch.count(slot), equalTo(term == 3 ? 9L : term + 1L));
+            assertThat(sketch.error(slot), equalTo(0L));
+        }
+        sketch.close();
+    }
+
+    @Test
+    public void testEvictsLeastFrequent() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2, bigArrays());
+        sketch.add(new BytesRef("a"), 5);
+        sketch.add(new BytesRef("b"), 2);
+        sketch.add(new BytesRef("c"), 1);
+        assertThat(sketch.size(), equalTo(2));
+        assertThat(sketch.minCount(), equalTo(3L));
+        for (int slot = 0; slot < sketch.size(); ++slot) {
+            final String term = sketch.term(slot).utf8ToString();
+            if (term.equals("a")) {
+                assertThat(sketch.count(slot), equalTo(5L));
+                assertThat(sketch.error(slot), equalTo(0L));
+            } else {
+                assertThat(term, equalTo("c"));
+                assertThat(sketch.count(slot), equalTo(3L));
+                assertThat(sketch.error(slot), equalTo(2L));
+            }
+        }
+        sketch.close();
+    }
+
+    @Test
+    public void testErrorBounds() {
+        final int capacity = randomIntBetween(1, 100);
+        final int numTerms = randomIntBetween(1, 1000);
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity, bigArrays());
+        ObjectLongOpenHashMap<BytesRef> expected = new ObjectLongOpenHashMap<>();
+        final int iters = scaledRandomIntBetween(100, 10000);
+        for (int i = 0; i < iters; ++i) {
+            // skew the distribution so that some terms are much more frequent than others
+            final int t = Math.min(randomInt(numTerms - 1), randomInt(numTerms - 1));
+            final BytesRef term = new BytesRef(Integer.toString(t));
+            final long count = randomIntBetween(1, 3);
+            sketch.add(term, count);
+            expected.addTo(term, count);
+        }
+
+        assertThat(sketch.size(), lessThanOrEqualTo(capacity));
+        assertThat(sketch.minCount(), lessThanOrEqualTo(sketch.total() / capacity));
+        ObjectLongOpenHashMap<BytesRef> monitored = new ObjectLongOpenHashMap<>();
+        for (int slot = 0; slot < sketch.size(); ++slot) {
+            final long actual = expected.get(sketch.term(slot));
+            assertThat(sketch.count(slot), greaterThanOrEqualTo(actual));
+            assertThat(sketch.count(slot) - sketch.error(slot), lessThanOrEqualTo(actual));
+            assertThat(sketch.error(slot), lessThanOrEqualTo(sketch.minCount()));
+            monitored.put(sketch.term(slot), sketch.count(slot));
+        }
+        // terms that are not monitored cannot be more frequent than the least frequent monitored term
+        final Object[] keys = expected.keys;
+        for (int i = 0; i < keys.length; ++i) {
+            if (expected.allocated[i] && !monitored.containsKey((BytesRef) keys[i])) {
+                assertThat(expected.values[i], lessThanOrEqualTo(sketch.minCount()));
+            }
+        }
+        sketch.close();
+    }
+
+    @Test
+    public void testGrowsLazily() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(1 << 20, bigArrays());
+        final int numTerms = randomIntBetween(1, 100);
+        for (int i = 0; i < numTerms; ++i) {
+            sketch.add(new BytesRef(Integer.toString(i)), 1);
+        }
+        assertThat(sketch.size(), equalTo(numTerms));
+        // far from the 30+MB that eagerly sized arrays would take
+        assertThat(sketch.ramBytesUsed(), lessThan(1L << 20));
+        for (int slot = 0; slot < sketch.size(); ++slot) {
+            assertThat(sketch.count(slot), equalTo(1L));
+        }
+        sketch.close();
+    }
+}
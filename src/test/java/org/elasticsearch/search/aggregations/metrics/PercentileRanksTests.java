@@ -26,6 +26,7 @@ import org.elasticsearch.search.aggregations.bucket.histogram.Histogram.Order;
 import org.elasticsearch.search.aggregations.metrics.percentiles.Percentile;
 import org.elasticsearch.search.aggregations.metrics.percentiles.PercentileRanks;
 import org.elasticsearch.search.aggregations.metrics.percentiles.PercentileRanksBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -151,6 +152,23 @@ public class PercentileRanksTests extends AbstractNumericTests {
         assertConsistent(pcts, percentiles, minValue, maxValue);
     }
 
+    @Test
+    public void testSingleValuedField_HDR() throws Exception {
+        final double[] pcts = randomPercents(minValue, maxValue);
+        SearchResponse searchResponse = client().prepareSearch("idx")
+                .setQuery(matchAllQuery())
+                .addAggregation(percentileRanks("percentile_ranks")
+                        .method(PercentilesMethod.HDR)
+                        .field("value")
+                        .percentiles(pcts))
+                .execute().actionGet();
+
+        assertThat(searchResponse.getHits().getTotalHits(), equalTo(10l));
+
+        final PercentileRanks percentiles = searchResponse.getAggregations().get("percentile_ranks");
+        assertConsistent(pcts, percentiles, minValue, maxValue);
+    }
+
     @Test
     public void testSingleValuedFieldOutsideRange() throws Exception {
         final double[] pcts = new double[] {minValue - 1, maxValue + 1};
@@ -0,0 +1,157 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentileRanks;
+import org.elasticsearch.search.aggregations.metrics.percentiles.Percentiles;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.cardinality;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.percentileRanks;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.percentiles;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for aggregations on fields that store sketches rather than values.
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class SketchFieldsTests extends ElasticsearchIntegrationTest {
+
+    static Set<String> users;
+    static double[] latencies;
+    static long numDocs;
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        assertAcked(prepareCreate("idx").addMapping("type", jsonBuilder().startObject().startObject("type").startObject("properties")
+                .startObject("group").field("type", "string").field("index", "not_analyzed").endObject()
+                .startObject("users").field("type", "hyperloglog").endObject()
+                .startObject("latency").field("type", "tdigest").endObject()
+                .endObject().endObject().endObject()));
+
+        users = new HashSet<>();
+        List<Double> allLatencies = new ArrayList<>();
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        numDocs = randomIntBetween(10, 50);
+        for (int i = 0; i < numDocs; ++i) {
+            XContentBuilder source = jsonBuilder().startObject().field("group", i % 2 == 0 ? "even" : "odd");
+            source.startArray("users");
+            final int numUsers = randomIntBetween(1, 20);
+            for (int j = 0; j < numUsers; ++j) {
+                final String user = "user" + randomInt(500);
+                users.add(user);
+                source.value(user);
+            }
+            source.endArray();
+            source.startArray("latency");
+            final int numLatencies = randomIntBetween(1, 20);
+            for (int j = 0; j < numLatencies; ++j) {
+                final double latency = randomInt(1000);
+                allLatencies.add(latency);
+                source.value(latency);
+            }
+            source.endArray();
+            builders.add(client().prepareIndex("idx", "type", Integer.toString(i)).setSource(source.endObject()));
+        }
+        latencies = new double[allLatencies.size()];
+        for (int i = 0; i < latencies.length; ++i) {
+            latencies[i] = allLatencies.get(i);
+        }
+        Arrays.sort(latencies);
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    @Test
+    public void testCardinality() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(cardinality("users").field("users"))
+                .get();
+        assertSearchResponse(response);
+        Cardinality count = response.getAggregations().get("users");
+        assertThat((double) count.getValue(), closeTo(users.size(), users.size() * 0.05));
+    }
+
+    @Test
+    public void testCardinalityPerBucket() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(terms("group").field("group").subAggregation(cardinality("users").field("users")))
+                .get();
+        assertSearchResponse(response);
+        Terms groups = response.getAggregations().get("group");
+        long totalDocs = 0;
+        for (Terms.Bucket bucket : groups.getBuckets()) {
+            totalDocs += bucket.getDocCount();
+            Cardinality count = bucket.getAggregations().get("users");
+            assertThat(count.getValue() <= users.size() * 1.05, equalTo(true));
+        }
+        assertThat(totalDocs, equalTo(numDocs));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(percentiles("latency").field("latency").percentiles(50, 90))
+                .get();
+        assertSearchResponse(response);
+        Percentiles percentiles = response.getAggregations().get("latency");
+        assertThat(percentiles.percentile(50), closeTo(exactPercentile(50), 50));
+        assertThat(percentiles.percentile(90), closeTo(exactPercentile(90), 50));
+    }
+
+    @Test
+    public void testPercentileRanks() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(percentileRanks("latency").field("latency").percentiles(500))
+                .get();
+        assertSearchResponse(response);
+        PercentileRanks ranks = response.getAggregations().get("latency");
+        int below = 0;
+        for (double latency : latencies) {
+            if (latency <= 500) {
+                ++below;
+            }
+        }
+        assertThat(ranks.percent(500), closeTo(100.0 * below / latencies.length, 5));
+    }
+
+    private static double exactPercentile(double percent) {
+        final int index = (int) Math.min(latencies.length - 1, Math.floor(percent / 100 * latencies.length));
+        return latencies[index];
+    }
+
+}
@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.search.aggregations.metrics;
 
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
@@ -25,6 +26,9 @@ import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.elasticsearch.test.junit.annotations.TestLogging;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
@@ -61,6 +65,49 @@ public class StatsTests extends AbstractNumericTests {
         assertThat(Double.isNaN(stats.getAvg()), is(true));
     }
 
+    @Test
+    public void testSparseSingleValuedField() throws Exception {
+        // spans several collection blocks, with documents missing the field in between
+        prepareCreate("sparse_idx").addMapping("type", "value", "type=long").get();
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        long count = 0;
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        final int numDocs = scaledRandomIntBetween(1100, 3000);
+        for (int i = 0; i < numDocs; i++) {
+            if (randomBoolean()) {
+                final long value = randomIntBetween(-1000, 1000);
+                builders.add(client().prepareIndex("sparse_idx", "type", "" + i).setSource("value", value));
+                count++;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            } else {
+                builders.add(client().prepareIndex("sparse_idx", "type", "" + i).setSource("other", i));
+            }
+        }
+        indexRandom(true, builders);
+
+        SearchResponse searchResponse = client().prepareSearch("sparse_idx")
+                .setQuery(matchAllQuery())
+                .addAggregation(stats("stats").field("value"))
+                .execute().actionGet();
+
+        assertShardExecutionState(searchResponse, 0);
+
+        assertThat(searchResponse.getHits().getTotalHits(), equalTo((long) numDocs));
+
+        Stats stats = searchResponse.getAggregations().get("stats");
+        assertThat(stats, notNullValue());
+        assertThat(stats.getCount(), equalTo(count));
+        assertThat(stats.getSum(), equalTo((double) sum));
+        if (count > 0) {
+            assertThat(stats.getMin(), equalTo((double) min));
+            assertThat(stats.getMax(), equalTo((double) max));
+        }
+    }
+
     @Test
     public void testUnmapped() throws Exception {
         SearchResponse searchResponse = client().prepareSearch("idx_unmapped")
@@ -0,0 +1,120 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.hdr;
+
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class HdrHistogramStateTests extends ElasticsearchTestCase {
+
+    @Test
+    public void subBits() {
+        assertThat(HdrHistogramState.subBits(0), equalTo(0));
+        assertThat(HdrHistogramState.subBits(1), equalTo(4));
+        assertThat(HdrHistogramState.subBits(2), equalTo(7));
+        assertThat(HdrHistogramState.subBits(3), equalTo(10));
+    }
+
+    @Test
+    public void accuracy() {
+        final int digits = randomIntBetween(1, 4);
+        final double maxRelativeError = Math.pow(10, -digits);
+        final HdrHistogramState state = new HdrHistogramState(digits, BigArrays.NON_RECYCLING_INSTANCE);
+        final double[] values = new double[scaledRandomIntBetween(100, 10000)];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (0.5 + randomDouble()) * Math.pow(10, randomIntBetween(-3, 6));
+            state.add(values[i]);
+        }
+        Arrays.sort(values);
+        assertThat(state.totalCount(), equalTo((long) values.length));
+        assertThat(state.quantile(0), equalTo(values[0]));
+        assertThat(state.quantile(1), equalTo(values[values.length - 1]));
+        for (double q : new double[] {0.01, 0.25, 0.5, 0.75, 0.99}) {
+            final double expected = values[(int) Math.ceil(q * values.length) - 1];
+            final double actual = state.quantile(q);
+            assertThat(Math.abs(actual - expected), lessThanOrEqualTo(expected * maxRelativeError));
+        }
+    }
+
+    @Test
+    public void cdf() {
+        final HdrHistogramState state = new HdrHistogramState(3, BigArrays.NON_RECYCLING_INSTANCE);
+        for (int i = 0; i < 100; ++i) {
+            state.add(i);
+        }
+        assertThat(state.cdf(-1), equalTo(0d));
+        assertThat(state.cdf(0), equalTo(0.01));
+        assertThat(state.cdf(49), equalTo(0.5));
+        assertThat(state.cdf(99), equalTo(1d));
+    }
+
+    @Test
+    public void mergeAndSerialize() throws Exception {
+        final int digits = randomIntBetween(0, 3);
+        final HdrHistogramState all = new HdrHistogramState(digits, BigArrays.NON_RECYCLING_INSTANCE);
+        final HdrHistogramState merged = new HdrHistogramState(digits, BigArrays.NON_RECYCLING_INSTANCE);
+        final int numHistograms = randomIntBetween(1, 5);
+        for (int i = 0; i < numHistograms; ++i) {
+            final HdrHistogramState state = new HdrHistogramState(digits, BigArrays.NON_RECYCLING_INSTANCE);
+            final int numValues = randomIntBetween(0, 1000);
+            for (int j = 0; j < numValues; ++j) {
+                final double value = randomBoolean() ? 0 : (1 + randomDouble()) * Math.pow(2, randomIntBetween(-20, 20));
+                state.add(value);
+                all.add(value);
+            }
+            BytesStreamOutput out = new BytesStreamOutput();
+            HdrHistogramState.write(state, out);
+            merged.add(HdrHistogramState.read(new BytesStreamInput(out.bytes())));
+        }
+        assertThat(merged.totalCount(), equalTo(all.totalCount()));
+        for (double q = 0; q <= 1; q += 0.05) {
+            assertThat(merged.quantile(q), equalTo(all.quantile(q)));
+        }
+    }
+
+    @Test
+    public void memoryIsBounded() {
+        final HdrHistogramState state = new HdrHistogramState(2, BigArrays.NON_RECYCLING_INSTANCE);
+        state.add(1);
+        state.add(Math.pow(2, HdrHistogramState.MAX_BINADES - 1));
+        assertThat(state.counterCount(), equalTo((long) HdrHistogramState.MAX_BINADES << HdrHistogramState.subBits(2)));
+        try {
+            state.add(Math.pow(2, HdrHistogramState.MAX_BINADES));
+            fail("values should not span more than " + HdrHistogramState.MAX_BINADES + " binades");
+        } catch (AggregationExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = AggregationExecutionException.class)
+    public void negativeValues() {
+        new HdrHistogramState(3, BigArrays.NON_RECYCLING_INSTANCE).add(-1);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.elasticsearch.index.query.QueryBuilders.functionScoreQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders.fieldValueFactorFunction;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ConcurrentQueryExecutorTests extends ElasticsearchIntegrationTest {
+
+    /**
+     * Creates a single shard index with several segments and returns the number of segments.
+     */
+    private int createSegmentedIndex() throws Exception {
+        assertAcked(prepareCreate("idx").setSettings(ImmutableSettings.builder()
+                .put("index.number_of_shards", 1)
+                .put(ConcurrentQueryExecutor.INDEX_SEARCH_CONCURRENT_SLICES, 1))
+                .addMapping("type", "value", "type=long"));
+        ensureGreen();
+
+        int id = 0;
+        int rounds = randomIntBetween(3, 8);
+        for (int round = 0; round < rounds; round++) {
+            // refresh after each round to end up with several segments to slice
+            int numDocs = randomIntBetween(1, 50);
+            for (int i = 0; i < numDocs; i++) {
+                client().prepareIndex("idx", "type", Integer.toString(id++)).setSource("value", randomIntBetween(0, 100)).get();
+            }
+            refresh();
+        }
+        return rounds;
+    }
+
+    private void enableConcurrency(int rounds) {
+        client().admin().indices().prepareUpdateSettings("idx").setSettings(ImmutableSettings.builder()
+                .put(ConcurrentQueryExecutor.INDEX_SEARCH_CONCURRENT_SLICES, randomIntBetween(2, rounds))).get();
+    }
+
+    @Test
+    public void testConcurrentMatchesSequentialResults() throws Exception {
+        int rounds = createSegmentedIndex();
+
+        int size = randomIntBetween(1, 20);
+        SearchResponse sequential = search(size);
+        enableConcurrency(rounds);
+        SearchResponse concurrent = search(size);
+
+        assertThat(concurrent.getHits().getTotalHits(), equalTo(sequential.getHits().getTotalHits()));
+        SearchHit[] sequentialHits = sequential.getHits().getHits();
+        SearchHit[] concurrentHits = concurrent.getHits().getHits();
+        assertThat(concurrentHits.length, equalTo(sequentialHits.length));
+        for (int i = 0; i < sequentialHits.length; i++) {
+            assertThat(concurrentHits[i].getId(), equalTo(sequentialHits[i].getId()));
+        }
+
+        List<? extends Histogram.Bucket> sequentialBuckets = sequential.getAggregations().<Histogram>get("histo").getBuckets();
+        List<? extends Histogram.Bucket> concurrentBuckets = concurrent.getAggregations().<Histogram>get("histo").getBuckets();
+        assertThat(concurrentBuckets.size(), equalTo(sequentialBuckets.size()));
+        for (int i = 0; i < sequentialBuckets.size(); i++) {
+            assertThat(concurrentBuckets.get(i).getKeyAsNumber(), equalTo(sequentialBuckets.get(i).getKeyAsNumber()));
+            assertThat(concurrentBuckets.get(i).getDocCount(), equalTo(sequentialBuckets.get(i).getDocCount()));
+            Stats sequentialStats = sequentialBuckets.get(i).getAggregations().get("stats");
+            Stats concurrentStats = concurrentBuckets.get(i).getAggregations().get("stats");
+            assertThat(concurrentStats.getCount(), equalTo(sequentialStats.getCount()));
+            assertThat(concurrentStats.getMin(), equalTo(sequentialStats.getMin()));
+            assertThat(concurrentStats.getMax(), equalTo(sequentialStats.getMax()));
+            assertThat(concurrentStats.getSum(), equalTo(sequentialStats.getSum()));
+        }
+    }
+
+    @Test
+    public void testScriptsAndScoreFunctions() throws Exception {
+        int rounds = createSegmentedIndex();
+
+        int size = randomIntBetween(1, 20);
+        SearchResponse sequential = searchWithScripts(size);
+        enableConcurrency(rounds);
+        // these requests are executed sequentially as scripts and score functions are not thread safe
+        for (int i = 0; i < 5; i++) {
+            SearchResponse concurrent = searchWithScripts(size);
+            SearchHit[] sequentialHits = sequential.getHits().getHits();
+            SearchHit[] concurrentHits = concurrent.getHits().getHits();
+            assertThat(concurrentHits.length, equalTo(sequentialHits.length));
+            for (int j = 0; j < sequentialHits.length; j++) {
+                assertThat(concurrentHits[j].getId(), equalTo(sequentialHits[j].getId()));
+                assertThat(concurrentHits[j].getScore(), equalTo(sequentialHits[j].getScore()));
+                assertThat(concurrentHits[j].field("double").getValue(), equalTo(sequentialHits[j].field("double").getValue()));
+            }
+            Stats sequentialStats = sequential.getAggregations().get("stats");
+            Stats concurrentStats = concurrent.getAggregations().get("stats");
+            assertThat(concurrentStats.getCount(), equalTo(sequentialStats.getCount()));
+            assertThat(concurrentStats.getSum(), equalTo(sequentialStats.getSum()));
+        }
+    }
+
+    private SearchResponse searchWithScripts(int size) {
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(functionScoreQuery(rangeQuery("value").gte(10), fieldValueFactorFunction("value")))
+                .addSort("_score", SortOrder.DESC)
+                .addSort("_uid", SortOrder.ASC)
+                .setTrackScores(true)
+                .addScriptField("double", "doc['value'].value * 2")
+                .setSize(size)
+                .addAggregation(stats("stats").script("doc['value'].value"))
+                .get();
+        assertSearchResponse(response);
+        return response;
+    }
+
+    private SearchResponse search(int size) {
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(rangeQuery("value").gte(10))
+                .addSort("value", SortOrder.DESC)
+                .addSort("_uid", SortOrder.ASC)
+                .setSize(size)
+                .addAggregation(histogram("histo").field("value").interval(10).subAggregation(stats("stats").field("value")))
+                .get();
+        assertSearchResponse(response);
+        return response;
+    }
+}
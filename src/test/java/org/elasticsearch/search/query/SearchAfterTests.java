@@ -0,0 +1,117 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertFailures;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SearchAfterTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testPagesMatchFromSize() throws Exception {
+        assertAcked(prepareCreate("idx").addMapping("type", "num", "type=integer", "str", "type=string,index=not_analyzed"));
+        final int numDocs = scaledRandomIntBetween(50, 200);
+        List<IndexRequestBuilder> indexRequests = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            // few distinct values so that the tiebreaker is needed
+            indexRequests.add(client().prepareIndex("idx", "type", Integer.toString(i)).setSource(jsonBuilder()
+                    .startObject()
+                    .field("num", randomInt(10))
+                    .field("str", randomAsciiOfLength(1))
+                    .endObject()));
+        }
+        indexRandom(true, indexRequests);
+
+        final String field = randomBoolean() ? "num" : "str";
+        final SortOrder order = randomFrom(SortOrder.values());
+        SearchResponse expected = client().prepareSearch("idx").setQuery(matchAllQuery()).setSize(numDocs)
+                .addSort(field, order).addSort("_uid", SortOrder.ASC).get();
+        assertSearchResponse(expected);
+        assertHitCount(expected, numDocs);
+
+        final int size = randomIntBetween(1, 20);
+        List<String> ids = new ArrayList<>();
+        Object[] searchAfter = null;
+        while (true) {
+            SearchRequestBuilder request = client().prepareSearch("idx").setQuery(matchAllQuery()).setSize(size)
+                    .addSort(field, order).addSort("_uid", SortOrder.ASC);
+            if (searchAfter != null) {
+                request.setSearchAfter(searchAfter);
+            }
+            SearchResponse response = request.get();
+            assertSearchResponse(response);
+            assertHitCount(response, numDocs);
+            SearchHit[] hits = response.getHits().getHits();
+            if (hits.length == 0) {
+                break;
+            }
+            for (SearchHit hit : hits) {
+                ids.add(hit.getId());
+            }
+            searchAfter = hits[hits.length - 1].getSortValues();
+        }
+
+        assertThat(ids.size(), equalTo(numDocs));
+        for (int i = 0; i < numDocs; i++) {
+            assertThat(ids.get(i), equalTo(expected.getHits().getAt(i).getId()));
+        }
+    }
+
+    @Test
+    public void testInvalidRequests() throws Exception {
+        createIndex("idx");
+        indexRandom(true, client().prepareIndex("idx", "type", "1").setSource("num", 1));
+
+        // no sort
+        assertFailures(client().prepareSearch("idx").setQuery(matchAllQuery()).setSearchAfter(1),
+                RestStatus.BAD_REQUEST, containsString("search_after"));
+
+        // not as many values as sort fields
+        assertFailures(client().prepareSearch("idx").setQuery(matchAllQuery()).addSort("num", SortOrder.ASC).setSearchAfter(1, "type#1"),
+                RestStatus.BAD_REQUEST, containsString("search_after"));
+
+        // from
+        assertFailures(client().prepareSearch("idx").setQuery(matchAllQuery()).addSort("num", SortOrder.ASC).setFrom(1).setSearchAfter(1),
+                RestStatus.BAD_REQUEST, containsString("search_after"));
+
+        // scroll
+        assertFailures(client().prepareSearch("idx").setQuery(matchAllQuery()).addSort("num", SortOrder.ASC).setScroll(TimeValue.timeValueMinutes(1)).setSearchAfter(1),
+                RestStatus.BAD_REQUEST, containsString("search_after"));
+    }
+}
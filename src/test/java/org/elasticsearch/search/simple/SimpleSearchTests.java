@@ -25,6 +25,8 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.test.ElasticsearchIntegrationTest;
 import org.elasticsearch.test.junit.annotations.TestLogging;
 import org.junit.Test;
@@ -39,6 +41,7 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.*;
+import static org.hamcrest.Matchers.equalTo;
 
 public class SimpleSearchTests extends ElasticsearchIntegrationTest {
 
@@ -244,4 +247,30 @@ public class SimpleSearchTests extends ElasticsearchIntegrationTest {
         assertHitCount(searchResponse, max);
         assertFalse(searchResponse.isTerminatedEarly());
     }
+
+    @Test
+    public void testHitsKeepTheirOrderWhenFetchedInDocIdOrder() throws Exception {
+        assertAcked(prepareCreate("test").setSettings(SETTING_NUMBER_OF_SHARDS, 1));
+        final int numDocs = scaledRandomIntBetween(20, 200);
+        List<IndexRequestBuilder> docs = new ArrayList<>(numDocs);
+        for (int i = 0; i < numDocs; i++) {
+            docs.add(client().prepareIndex("test", "type1", Integer.toString(i)).setSource("field", i, "text", "value " + i));
+        }
+        // random segments so that hits span several of them
+        indexRandom(true, docs);
+
+        SearchResponse searchResponse = client().prepareSearch("test")
+                .setQuery(QueryBuilders.matchAllQuery())
+                .addSort("field", SortOrder.DESC)
+                .setSize(numDocs)
+                .get();
+        assertSearchResponse(searchResponse);
+        assertHitCount(searchResponse, numDocs);
+        for (int i = 0; i < numDocs; i++) {
+            SearchHit hit = searchResponse.getHits().getAt(i);
+            int value = numDocs - 1 - i;
+            assertThat(hit.getId(), equalTo(Integer.toString(value)));
+            assertThat(hit.getSource().get("text"), equalTo((Object) ("value " + value)));
+        }
+    }
 }
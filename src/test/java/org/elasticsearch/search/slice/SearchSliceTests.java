@@ -0,0 +1,101 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertFailures;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SearchSliceTests extends ElasticsearchIntegrationTest {
+
+    @Test
+    public void testSlicesCoverAllDocuments() throws Exception {
+        assertAcked(prepareCreate("idx").setSettings(ImmutableSettings.builder()
+                .put("index.number_of_shards", randomIntBetween(1, 5))
+                .put("index.number_of_replicas", 0)));
+        final int numDocs = scaledRandomIntBetween(100, 500);
+        List<IndexRequestBuilder> indexRequests = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            indexRequests.add(client().prepareIndex("idx", "type", Integer.toString(i)).setSource("num", i));
+        }
+        indexRandom(true, indexRequests);
+
+        final int max = randomIntBetween(2, 10);
+        final SearchType searchType = randomBoolean() ? SearchType.SCAN : SearchType.QUERY_THEN_FETCH;
+        Set<String> ids = new HashSet<>();
+        for (int id = 0; id < max; id++) {
+            SearchResponse response = client().prepareSearch("idx").setQuery(matchAllQuery())
+                    .setSearchType(searchType)
+                    .setSize(randomIntBetween(1, 50))
+                    .setScroll(TimeValue.timeValueMinutes(1))
+                    .setSlice(id, max)
+                    .get();
+            try {
+                assertSearchResponse(response);
+                long totalHits = response.getHits().getTotalHits();
+                long sliceHits = 0;
+                if (searchType == SearchType.SCAN) {
+                    // the initial scan request doesn't return hits
+                    response = client().prepareSearchScroll(response.getScrollId()).setScroll(TimeValue.timeValueMinutes(1)).get();
+                    assertSearchResponse(response);
+                }
+                while (response.getHits().hits().length > 0) {
+                    for (SearchHit hit : response.getHits()) {
+                        assertTrue("hit [" + hit.getId() + "] was returned by several slices", ids.add(hit.getId()));
+                        sliceHits++;
+                    }
+                    response = client().prepareSearchScroll(response.getScrollId()).setScroll(TimeValue.timeValueMinutes(1)).get();
+                    assertSearchResponse(response);
+                }
+                assertThat(sliceHits, equalTo(totalHits));
+            } finally {
+                clearScroll(response.getScrollId());
+            }
+        }
+        assertThat(ids.size(), equalTo(numDocs));
+    }
+
+    @Test
+    public void testSliceRequiresScroll() throws Exception {
+        createIndex("idx");
+        indexRandom(true, client().prepareIndex("idx", "type", "1").setSource("num", 1));
+
+        assertFailures(client().prepareSearch("idx").setQuery(matchAllQuery()).setSlice(0, 2),
+                RestStatus.BAD_REQUEST, containsString("[slice] can only be used with [scroll] requests"));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.slice;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.search.MatchNoDocsFilter;
+import org.elasticsearch.common.lucene.search.XConstantScoreQuery;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class TermsSliceFilterTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testSlicesArePartition() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter indexWriter = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER));
+        final int numDocs = scaledRandomIntBetween(100, 1000);
+        for (int i = 0; i < numDocs; i++) {
+            Document document = new Document();
+            document.add(new StringField(UidFieldMapper.NAME, "type#" + i, Field.Store.NO));
+            indexWriter.addDocument(document);
+            if (rarely()) {
+                indexWriter.commit();
+            }
+        }
+        DirectoryReader reader = DirectoryReader.open(indexWriter, true);
+        IndexSearcher searcher = new IndexSearcher(reader);
+
+        final int max = randomIntBetween(2, 10);
+        final Set<Integer> seen = new HashSet<>();
+        for (int id = 0; id < max; id++) {
+            final List<Integer> docs = new ArrayList<>();
+            searcher.search(new XConstantScoreQuery(new TermsSliceFilter(UidFieldMapper.NAME, id, max)), new Collector() {
+                int docBase;
+
+                @Override
+                public void setScorer(Scorer scorer) throws IOException {
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    docs.add(docBase + doc);
+                }
+
+                @Override
+                public void setNextReader(AtomicReaderContext context) throws IOException {
+                    docBase = context.docBase;
+                }
+
+                @Override
+                public boolean acceptsDocsOutOfOrder() {
+                    return true;
+                }
+            });
+            for (Integer doc : docs) {
+                assertTrue("doc [" + doc + "] is in several slices", seen.add(doc));
+            }
+        }
+        assertThat(seen.size(), equalTo(numDocs));
+
+        reader.close();
+        indexWriter.close();
+        dir.close();
+    }
+
+    @Test
+    public void testSliceFilterPerShard() {
+        final int numShards = randomIntBetween(1, 10);
+        final int max = randomIntBetween(2, 30);
+        for (int shardId = 0; shardId < numShards; shardId++) {
+            int matchAll = 0;
+            Set<Integer> shardSlices = new HashSet<>();
+            int shardMax = -1;
+            for (int id = 0; id < max; id++) {
+                Filter filter = SliceParseElement.sliceFilter(id, max, shardId, numShards);
+                if (filter == null) {
+                    matchAll++;
+                } else if (filter instanceof TermsSliceFilter) {
+                    TermsSliceFilter sliceFilter = (TermsSliceFilter) filter;
+                    assertTrue(shardSlices.add(sliceFilter.id()));
+                    assertTrue(shardMax == -1 || shardMax == sliceFilter.max());
+                    shardMax = sliceFilter.max();
+                } else {
+                    assertThat(filter, instanceOf(MatchNoDocsFilter.class));
+                }
+            }
+            if (max <= numShards) {
+                // each shard belongs to a single slice, and a slice has whole shards
+                assertThat(matchAll, equalTo(1));
+                assertTrue(shardSlices.isEmpty());
+            } else if (shardSlices.isEmpty()) {
+                assertThat(matchAll, equalTo(1));
+            } else {
+                // the sub-slices of the shard must cover it entirely
+                assertThat(matchAll, equalTo(0));
+                assertThat(shardSlices.size(), equalTo(shardMax));
+                for (int i = 0; i < shardMax; i++) {
+                    assertTrue(shardSlices.contains(i));
+                }
+            }
+        }
+    }
+}
@@ -75,6 +75,7 @@ import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.discovery.zen.elect.ElectMasterService;
 import org.elasticsearch.index.codec.CodecService;
 import org.elasticsearch.index.fielddata.FieldDataType;
+import org.elasticsearch.index.engine.internal.InternalEngine;
 import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.mapper.FieldMapper.Loading;
 import org.elasticsearch.index.mapper.FieldMapper;
@@ -439,6 +440,9 @@ public abstract class ElasticsearchIntegrationTest extends ElasticsearchTestCase
         if (random.nextBoolean()) {
              builder.put(FsTranslog.INDEX_TRANSLOG_FS_TYPE, RandomPicks.randomFrom(random, FsTranslogFile.Type.values()).name());
         }
+        if (random.nextBoolean()) {
+            builder.put(InternalEngine.INDEX_VERSION_MAP_TYPE, random.nextBoolean() ? "live" : "paged");
+        }
 
         // Randomly load or don't load bloom filters:
         builder.put(CodecService.INDEX_CODEC_BLOOM_LOAD, random.nextBoolean());
@@ -446,6 +450,9 @@ public abstract class ElasticsearchIntegrationTest extends ElasticsearchTestCase
         if (random.nextBoolean()) {
             builder.put(IndicesQueryCache.INDEX_CACHE_QUERY_ENABLED, random.nextBoolean());
         }
+        if (random.nextBoolean()) {
+            builder.put(IndicesQueryCache.INDEX_CACHE_QUERY_SEGMENTS, random.nextBoolean());
+        }
 
         return builder;
     }
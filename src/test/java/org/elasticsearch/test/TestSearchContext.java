@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.test;
 
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -26,6 +27,7 @@ import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.docset.DocSetCache;
 import org.elasticsearch.index.cache.filter.FilterCache;
@@ -60,6 +62,7 @@ import org.elasticsearch.search.scan.ScanContext;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.File;
 import java.util.List;
 
 public class TestSearchContext extends SearchContext {
@@ -331,6 +334,14 @@ public class TestSearchContext extends SearchContext {
         return indexFieldDataService;
     }
 
+    @Override
+    public File tempDirectory() {
+        if (indexService == null) {
+            return new File(System.getProperty("java.io.tmpdir"));
+        }
+        return indexService.injector().getInstance(Environment.class).workWithClusterFile();
+    }
+
     @Override
     public long timeoutInMillis() {
         return 0;
@@ -370,6 +381,26 @@ public class TestSearchContext extends SearchContext {
         return null;
     }
 
+    @Override
+    public SearchContext searchAfter(FieldDoc searchAfter) {
+        return null;
+    }
+
+    @Override
+    public FieldDoc searchAfter() {
+        return null;
+    }
+
+    @Override
+    public SearchContext sliceFilter(Filter sliceFilter) {
+        return null;
+    }
+
+    @Override
+    public Filter sliceFilter() {
+        return null;
+    }
+
     @Override
     public SearchContext trackScores(boolean trackScores) {
         return null;
@@ -534,7 +565,7 @@ public class TestSearchContext extends SearchContext {
     }
 
     @Override
-    public SearchLookup lookup() {
+    protected SearchLookup lookupImpl() {
         return null;
     }
 
@@ -0,0 +1,80 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ChannelBufferBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ZeroCopyBytesStreamOutputTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testSameBytesAsCopyingStream() throws IOException {
+        int threshold = randomBoolean() ? -1 : randomIntBetween(0, 1024);
+        ZeroCopyBytesStreamOutput out = new ZeroCopyBytesStreamOutput(BigArrays.NON_RECYCLING_INSTANCE, threshold);
+        BytesStreamOutput expected = new BytesStreamOutput();
+        int skip = randomIntBetween(0, 20);
+        out.skip(skip);
+        expected.skip(skip);
+
+        int iters = scaledRandomIntBetween(10, 100);
+        BytesReference[] references = new BytesReference[iters];
+        for (int i = 0; i < iters; i++) {
+            byte[] bytes = new byte[randomIntBetween(0, 3 * BigArrays.PAGE_SIZE_IN_BYTES)];
+            getRandom().nextBytes(bytes);
+            int offset = randomIntBetween(0, bytes.length);
+            BytesReference reference = new BytesArray(bytes, offset, randomIntBetween(0, bytes.length - offset));
+            if (randomBoolean()) {
+                reference = new ChannelBufferBytesReference(reference.toChannelBuffer());
+            }
+            references[i] = reference;
+            for (StreamOutput stream : new StreamOutput[]{out, expected}) {
+                stream.writeVInt(i);
+                stream.writeString("ref_" + i);
+                stream.writeBytesReference(reference);
+            }
+        }
+        assertThat(out.position(), equalTo(expected.position()));
+
+        ChannelBuffer buffer = out.toChannelBuffer();
+        assertThat(new ChannelBufferBytesReference(buffer), equalTo(expected.bytes()));
+
+        StreamInput in = new ChannelBufferBytesReference(buffer).streamInput();
+        in.skip(skip);
+        for (int i = 0; i < iters; i++) {
+            assertThat(in.readVInt(), equalTo(i));
+            assertThat(in.readString(), equalTo("ref_" + i));
+            assertThat(in.readBytesReference(), equalTo(references[i]));
+        }
+        Releasables.close(out.releasable());
+    }
+}